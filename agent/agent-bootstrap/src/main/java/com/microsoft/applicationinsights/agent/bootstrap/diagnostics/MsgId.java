@@ -31,7 +31,8 @@ public enum MsgId {
   CUSTOM_JMX_METRIC_ERROR("2002"),
   FAIL_TO_SEND_STATSBEAT_ERROR("2003"),
   STATUS_FILE_ERROR("2004"),
-  STARTUP_FAILURE_ERROR("2005");
+  STARTUP_FAILURE_ERROR("2005"),
+  PERFORMANCE_COUNTER_TIME_BUDGET_ERROR("2006");
 
   private final String value;
 
@@ -0,0 +1,47 @@
+plugins {
+  id("ai.java-conventions")
+}
+
+val agent: Configuration by configurations.creating
+
+dependencies {
+  agent(project(":agent:agent", configuration = "shadow"))
+}
+
+tasks {
+  // launches a trivial app with and without the agent, and reports the startup time delta, both
+  // until the app's main method is reached, and until the app exits after a fixed workload (which
+  // gives the agent's background initialization time to run)
+  //
+  // ./gradlew :agent:agent-startup-benchmark:startupBenchmark -PstartupBenchmarkIterations=20
+  //
+  // add -PstartupBenchmarkWorkload=<n> to change the size of the workload (in loop iterations)
+  //
+  // add -PstartupBenchmarkCds=true to also compare against a run that uses a dynamic CDS archive
+  // dumped by a training run (see -Dapplicationinsights.cds.dump), which requires Java 17+
+  register<JavaExec>("startupBenchmark") {
+    inputs.files(agent)
+    // CDS archives can only be used with jars on the class path (not with directories)
+    dependsOn(jar)
+
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.microsoft.applicationinsights.agent.benchmark.StartupBenchmark")
+
+    val cds = findProperty("startupBenchmarkCds") == "true"
+    if (cds) {
+      javaLauncher.set(javaToolchains.launcherFor {
+        languageVersion.set(JavaLanguageVersion.of(17))
+      })
+    }
+
+    doFirst {
+      args(
+        agent.singleFile,
+        jar.get().archiveFile.get().asFile,
+        findProperty("startupBenchmarkIterations") ?: 10,
+        findProperty("startupBenchmarkWorkload") ?: 2_000_000_000,
+        cds
+      )
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Launches {@link StartupBenchmarkApp} repeatedly with and without the agent, and reports the
+ * median time until the app's main method is reached and the median time until the JVM exits,
+ * along with the delta that the agent adds to each.
+ *
+ * <p>The app runs a fixed workload after its main method is reached, so that the time until the
+ * JVM exits also includes the cost of the agent's background initialization.
+ *
+ * <p>When CDS is requested, a training run first dumps a dynamic CDS archive using {@code
+ * -Dapplicationinsights.cds.dump}, and the agent's startup time is then also measured with that
+ * archive (this requires Java 17+).
+ *
+ * <p>Usage: {@code StartupBenchmark <agent jar> <classpath> <iterations> <workload> [<cds>]}
+ */
+public final class StartupBenchmark {
+
+  // the agent fails to start without a connection string, nothing is listening on this endpoint
+  private static final String CONNECTION_STRING =
+      "InstrumentationKey=00000000-0000-0000-0000-000000000000;"
+          + "IngestionEndpoint=http://localhost:1;LiveEndpoint=http://localhost:1";
+
+  @SuppressWarnings("SystemOut")
+  public static void main(String[] args) throws Exception {
+    if (args.length != 4 && args.length != 5) {
+      System.err.println(
+          "Usage: StartupBenchmark <agent jar> <classpath> <iterations> <workload> [<cds>]");
+      System.exit(1);
+    }
+    String agentJar = args[0];
+    String classpath = args[1];
+    int iterations = Integer.parseInt(args[2]);
+    String workload = args[3];
+    boolean cds = args.length == 5 && Boolean.parseBoolean(args[4]);
+
+    String archiveArg = null;
+    if (cds) {
+      File archive = File.createTempFile("applicationinsights-benchmark", ".jsa");
+      archive.deleteOnExit();
+      // the training run
+      launch(
+          classpath,
+          workload,
+          agentJar,
+          "-XX:+UnlockDiagnosticVMOptions",
+          "-XX:+AllowArchivingWithJavaAgent",
+          "-XX:+RecordDynamicDumpInfo",
+          "-Dapplicationinsights.cds.dump=" + archive.getPath());
+      archiveArg = "-XX:SharedArchiveFile=" + archive.getPath();
+    }
+
+    // warm up the OS file cache, so that the first iterations are not penalized
+    launch(classpath, workload, null);
+    launch(classpath, workload, agentJar);
+
+    Measurement[] withoutAgent = new Measurement[iterations];
+    Measurement[] withAgent = new Measurement[iterations];
+    Measurement[] withAgentAndArchive = new Measurement[iterations];
+    // alternating, so that any drift in the machine's load affects all of them the same way
+    for (int i = 0; i < iterations; i++) {
+      withoutAgent[i] = launch(classpath, workload, null);
+      withAgent[i] = launch(classpath, workload, agentJar);
+      if (archiveArg != null) {
+        withAgentAndArchive[i] = launch(classpath, workload, agentJar, archiveArg);
+      }
+    }
+
+    System.out.println("Iterations: " + iterations + ", workload: " + workload);
+    report("without agent", withoutAgent, null);
+    report("with agent", withAgent, withoutAgent);
+    if (archiveArg != null) {
+      report("with agent and CDS archive", withAgentAndArchive, withoutAgent);
+    }
+  }
+
+  @SuppressWarnings("SystemOut")
+  private static void report(
+      String name, Measurement[] measurements, @Nullable Measurement[] baseline) {
+    long timeToMainMillis = median(measurements, true);
+    long totalMillis = median(measurements, false);
+    StringBuilder sb = new StringBuilder();
+    sb.append(name)
+        .append(": until main ")
+        .append(timeToMainMillis)
+        .append(" ms, until exit ")
+        .append(totalMillis)
+        .append(" ms (medians)");
+    if (baseline != null) {
+      sb.append(", delta until main ")
+          .append(timeToMainMillis - median(baseline, true))
+          .append(" ms, delta until exit ")
+          .append(totalMillis - median(baseline, false))
+          .append(" ms");
+    }
+    System.out.println(sb);
+  }
+
+  private static Measurement launch(
+      String classpath, String workload, @Nullable String agentJar, String... jvmArgs)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(Arrays.asList(jvmArgs));
+    if (agentJar != null) {
+      command.add("-javaagent:" + agentJar);
+    }
+    command.add("-cp");
+    command.add(classpath);
+    command.add(StartupBenchmarkApp.class.getName());
+    command.add(workload);
+
+    ProcessBuilder processBuilder =
+        new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+    processBuilder.environment().put("APPLICATIONINSIGHTS_CONNECTION_STRING", CONNECTION_STRING);
+    // keeps the agent's log file out of the directory where the agent jar lives
+    processBuilder
+        .environment()
+        .put(
+            "APPLICATIONINSIGHTS_SELF_DIAGNOSTICS_FILE_PATH",
+            new File(System.getProperty("java.io.tmpdir"), "applicationinsights-benchmark.log")
+                .getPath());
+
+    // wall clock time, since it is compared with the time reported by the app's process
+    long startMillis = System.currentTimeMillis();
+    Process process = processBuilder.start();
+    long mainReachedMillis = -1;
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(StartupBenchmarkApp.MAIN_REACHED_PREFIX)) {
+          mainReachedMillis =
+              Long.parseLong(line.substring(StartupBenchmarkApp.MAIN_REACHED_PREFIX.length()));
+        }
+      }
+    }
+    int exitCode = process.waitFor();
+    long endMillis = System.currentTimeMillis();
+    if (exitCode != 0) {
+      throw new IllegalStateException("Benchmark app exited with code " + exitCode);
+    }
+    if (mainReachedMillis == -1) {
+      throw new IllegalStateException("Benchmark app did not report reaching its main method");
+    }
+    return new Measurement(mainReachedMillis - startMillis, endMillis - startMillis);
+  }
+
+  private static long median(Measurement[] measurements, boolean timeToMain) {
+    long[] sorted = new long[measurements.length];
+    for (int i = 0; i < measurements.length; i++) {
+      sorted[i] = timeToMain ? measurements[i].timeToMainMillis : measurements[i].totalMillis;
+    }
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  private static class Measurement {
+
+    private final long timeToMainMillis;
+    private final long totalMillis;
+
+    private Measurement(long timeToMainMillis, long totalMillis) {
+      this.timeToMainMillis = timeToMainMillis;
+      this.totalMillis = totalMillis;
+    }
+  }
+
+  private StartupBenchmark() {}
+}
@@ -0,0 +1,50 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.benchmark;
+
+/**
+ * The app whose startup time is measured, with and without the agent.
+ *
+ * <p>It reports when its main method is reached, and then runs a fixed amount of CPU bound work
+ * before exiting. Otherwise the JVM would exit before the agent's background initialization has
+ * run, which would hide its cost. This way the background initialization also competes with the
+ * app for CPU, like it would in a real app.
+ */
+public final class StartupBenchmarkApp {
+
+  static final String MAIN_REACHED_PREFIX = "main reached at epoch millis: ";
+
+  @SuppressWarnings("SystemOut")
+  public static void main(String[] args) {
+    System.out.println(MAIN_REACHED_PREFIX + System.currentTimeMillis());
+
+    long iterations = Long.parseLong(args[0]);
+    long value = 0;
+    for (long i = 0; i < iterations; i++) {
+      value = value * 6364136223846793005L + 1442695040888963407L;
+    }
+    // so that the work cannot be optimized away
+    System.out.println("workload result: " + value);
+  }
+
+  private StartupBenchmarkApp() {}
+}
@@ -1,6 +1,7 @@
 plugins {
   id("ai.java-conventions")
   id("ai.sdk-version-file")
+  id("ai.jmh-conventions")
 }
 
 dependencies {
@@ -95,4 +96,10 @@ dependencies {
 
   testImplementation("com.microsoft.jfr:jfr-streaming")
   testImplementation("com.azure:azure-storage-blob")
+
+  jmhImplementation(project(":agent:agent-bootstrap"))
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk")
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk-metrics")
+  jmhImplementation("io.opentelemetry:opentelemetry-sdk-logs")
+  jmhImplementation("io.opentelemetry.instrumentation:opentelemetry-instrumentation-api")
 }
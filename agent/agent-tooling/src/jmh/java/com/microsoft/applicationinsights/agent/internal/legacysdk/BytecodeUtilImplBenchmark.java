@@ -0,0 +1,116 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.legacysdk;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// measures the cost of the 2.x SDK bridge, with the exporter itself short-circuited (the telemetry
+// client has no connection string), run with "-prof gc" to see the allocation rate per operation
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BytecodeUtilImplBenchmark {
+
+  private static final int OPERATION_IDS = 1024;
+
+  static {
+    TelemetryClient.setActive(TelemetryClient.createForTest());
+  }
+
+  @Param({"100", "10"})
+  public float samplingPercentage;
+
+  private final BytecodeUtilImpl bytecodeUtil = new BytecodeUtilImpl();
+
+  private final Map<String, String> properties = new HashMap<>();
+  private final Map<String, Double> measurements = new HashMap<>();
+
+  @SuppressWarnings("unchecked")
+  private final Map<String, String>[] tags = new Map[OPERATION_IDS];
+
+  private int next;
+
+  @Setup
+  public void setup() {
+    BytecodeUtilImpl.samplingPercentage = samplingPercentage;
+
+    properties.put("one", "1");
+    properties.put("two", "2");
+    measurements.put("three", 3.0);
+
+    for (int i = 0; i < OPERATION_IDS; i++) {
+      String operationId = String.format("%032x", i * 0x9E3779B97F4A7C15L);
+      tags[i] = Collections.singletonMap(ContextTagKeys.AI_OPERATION_ID.toString(), operationId);
+    }
+  }
+
+  @Benchmark
+  public void trackEvent() {
+    bytecodeUtil.trackEvent(null, "event", properties, nextTags(), measurements, null);
+  }
+
+  @Benchmark
+  public void trackTrace() {
+    bytecodeUtil.trackTrace(null, "message", 1, properties, nextTags(), null);
+  }
+
+  @Benchmark
+  public void trackDependency() {
+    bytecodeUtil.trackDependency(
+        null,
+        "dependency",
+        "0123456789abcdef",
+        "200",
+        10L,
+        true,
+        "command",
+        "type",
+        "target",
+        properties,
+        nextTags(),
+        measurements,
+        null);
+  }
+
+  private Map<String, String> nextTags() {
+    return tags[next++ & (OPERATION_IDS - 1)];
+  }
+}
@@ -157,6 +157,10 @@ public class Configuration {
   public static class SamplingPreview {
 
     public List<SamplingOverride> overrides = new ArrayList<>();
+    // when enabled, the sampling percentage is sent to downstream services in the w3c trace state
+    // (e.g. "az=sp:25"), so that they keep the upstream sampling decision and report the same
+    // sampling percentage (an inbound sampling percentage is always honored)
+    public boolean propagateSamplingPercentage;
   }
 
   public static class JmxMetric {
@@ -261,6 +265,20 @@ public class Configuration {
     // world,
     // so safer to only allow single interval for now
     public int metricIntervalSeconds = 60;
+    // overrides the collection interval (which is otherwise metricIntervalSeconds) of individual
+    // performance counters, keyed by the performance counter's class simple name, e.g.
+    // {"DeadLockDetectorPerformanceCounter": 300}
+    public Map<String, Integer> performanceCounterIntervalSeconds = new HashMap<>();
+    // a performance counter collection that takes longer than this is interrupted, and that
+    // performance counter is skipped until the collection returns (so that it does not hold up the
+    // other performance counters)
+    public int performanceCounterTimeBudgetSeconds = 10;
+    // the interval of the deadlock detection itself can be set through
+    // performanceCounterIntervalSeconds, using "DeadLockDetectorPerformanceCounter"
+    public DeadlockDetection deadlockDetection = new DeadlockDetection();
+    // percentiles (between 0 and 100) that are estimated from the buckets of exponential histograms
+    // and sent as custom dimensions on the histogram's metric, e.g. [50, 95, 99]
+    public List<Double> exponentialHistogramPercentiles = new ArrayList<>();
     // ignoreRemoteParentNotSampled is sometimes needed because .NET SDK always propagates trace
     // flags "00" (not sampled)
     // in particular, it is always needed in Azure Functions worker
@@ -269,6 +287,9 @@ public class Configuration {
     // this is just here to detect if using this old setting in order to give a helpful message
     @Deprecated public boolean httpMethodInOperationName;
     public LiveMetrics liveMetrics = new LiveMetrics();
+    public PreAggregatedStandardMetrics preAggregatedStandardMetrics =
+        new PreAggregatedStandardMetrics();
+    public TrackMetricAggregation trackMetricAggregation = new TrackMetricAggregation();
     public LegacyRequestIdPropagation legacyRequestIdPropagation = new LegacyRequestIdPropagation();
     // this is needed to unblock customer, but is not the ideal long-term solution
     // https://portal.microsofticm.com/imp/v3/incidents/details/266992200/home
@@ -282,6 +303,17 @@ public class Configuration {
     // Note: this configuration option will be removed in 4.0.0
     public boolean captureLoggingLevelAsCustomDimension;
 
+    public DuplicateLogSuppression duplicateLogSuppression = new DuplicateLogSuppression();
+    public TailSampling tailSampling = new TailSampling();
+    public JmxRuntimeControl jmxRuntimeControl = new JmxRuntimeControl();
+    public JmxExportQueueMetrics jmxExportQueueMetrics = new JmxExportQueueMetrics();
+    public JmxPerformanceCounterMetrics jmxPerformanceCounterMetrics =
+        new JmxPerformanceCounterMetrics();
+    public FileExport fileExport = new FileExport();
+    public ExceptionStackTraces exceptionStackTraces = new ExceptionStackTraces();
+    public LegacySdkTransformationCache legacySdkTransformationCache =
+        new LegacySdkTransformationCache();
+
     // this is to support interoperability with other systems
     // intentionally not allowing the removal of w3c propagator since that is key to many Azure
     // integrated experiences
@@ -301,6 +333,13 @@ public class Configuration {
     public List<RoleNameOverride> roleNameOverrides = new ArrayList<>();
 
     public int generalExportQueueCapacity = 2048;
+    // splits the general export queue into three lanes: requests, dependencies, exceptions and
+    // availability results share the high priority lane, logs get the low priority lane, and
+    // everything else gets the normal priority lane, so that a flood of logs cannot cause requests
+    // to be dropped
+    // each lane has its own capacity of generalExportQueueCapacity, so enabling this triples the
+    // maximum memory used by the general export queue
+    public boolean generalExportQueuePriorityLanes;
     // metrics get flooded every 60 seconds by default, so need larger queue size to avoid dropping
     // telemetry (they are much smaller so a larger queue size is ok)
     public int metricsExportQueueCapacity = 65536;
@@ -308,6 +347,12 @@ public class Configuration {
     // disk persistence has a default capacity of 50MB
     public int diskPersistenceMaxSizeMb = 50;
 
+    // when the export queue is full, write the overflowing telemetry to disk (and send it later on)
+    // instead of dropping it, the files are subject to the same diskPersistenceMaxSizeMb limit
+    public boolean exportQueueOverflowToDisk;
+    // limits how fast overflowing telemetry is written to disk, each file holds one export batch
+    public int exportQueueOverflowMaxFilesPerSecond = 10;
+
     // unfortunately the Java SDK behavior has always been to report the "% Processor Time" number
     // as "normalized" (divided by # of CPU cores), even though it should be non-normalized
     // we cannot change this existing behavior as it would break existing customers' alerts, but at
@@ -317,6 +362,10 @@ public class Configuration {
     // "% Processor Time Normalized"
     public boolean useNormalizedValueForNonNormalizedCpuPercentage = true;
 
+    // initializes heartbeat, statsbeat, the profiler and performance counters on a background
+    // thread, instead of on the application's startup path
+    public boolean backgroundInitialization = true;
+
     public List<CustomInstrumentation> customInstrumentation = new ArrayList<>();
 
     private static final Set<String> VALID_ADDITIONAL_PROPAGATORS =
@@ -326,6 +375,14 @@ public class Configuration {
       for (Configuration.SamplingOverride samplingOverride : sampling.overrides) {
         samplingOverride.validate();
       }
+      for (Double percentile : exponentialHistogramPercentiles) {
+        if (percentile == null || percentile < 0 || percentile > 100) {
+          throw new FriendlyException(
+              "Exponential histogram percentile configuration has an invalid percentile: "
+                  + percentile,
+              "Please provide percentiles that are between 0 and 100.");
+        }
+      }
       for (Configuration.InstrumentationKeyOverride instrumentationKeyOverride :
           instrumentationKeyOverrides) {
         instrumentationKeyOverride.validate();
@@ -337,6 +394,33 @@ public class Configuration {
         processorConfig.validate();
       }
       authentication.validate();
+      for (Map.Entry<String, Integer> entry : performanceCounterIntervalSeconds.entrySet()) {
+        if (entry.getValue() == null || entry.getValue() <= 0) {
+          throw new FriendlyException(
+              "Performance counter interval configuration has an invalid interval for "
+                  + entry.getKey()
+                  + ": "
+                  + entry.getValue(),
+              "Please provide an interval (in seconds) that is greater than 0.");
+        }
+      }
+      if (performanceCounterTimeBudgetSeconds <= 0) {
+        throw new FriendlyException(
+            "Performance counter time budget configuration has an invalid value: "
+                + performanceCounterTimeBudgetSeconds,
+            "Please provide a time budget (in seconds) that is greater than 0.");
+      }
+      if (exportQueueOverflowMaxFilesPerSecond <= 0) {
+        throw new FriendlyException(
+            "Export queue overflow configuration has an invalid max files per second: "
+                + exportQueueOverflowMaxFilesPerSecond,
+            "Please provide an exportQueueOverflowMaxFilesPerSecond that is greater than 0.");
+      }
+      deadlockDetection.validate();
+      duplicateLogSuppression.validate();
+      tailSampling.validate();
+      fileExport.validate();
+      exceptionStackTraces.validate();
 
       for (String additionalPropagator : additionalPropagators) {
         if (!VALID_ADDITIONAL_PROPAGATORS.contains(additionalPropagator)) {
@@ -512,6 +596,211 @@ public class Configuration {
     public boolean enabled = true;
   }
 
+  public static class PreAggregatedStandardMetrics {
+    // when enabled, the standard request and dependency metrics are aggregated in the agent before
+    // sampling, so that they stay accurate at any sampling percentage
+    // (this requires sampled out spans to still be recorded, though they are never exported)
+    public boolean enabled;
+    // once this many series have been seen in a single interval, new series are collapsed into a
+    // single "Other" series
+    public int maxSeries = 1000;
+  }
+
+  public static class TrackMetricAggregation {
+    // when enabled, the single values tracked through the 2.x SDK's TelemetryClient.trackMetric()
+    // are aggregated per metric name and custom dimensions, and sent once per metricIntervalSeconds
+    // (values that were already aggregated by the caller, e.g. with a count, are sent as is)
+    public boolean enabled;
+    // once this many series have been seen in a single interval, the custom dimension values of
+    // new series are collapsed into "Other"
+    public int maxSeries = 1000;
+  }
+
+  public static class DeadlockDetection {
+    // only detects deadlocks on object monitors (synchronized), and not on ownable synchronizers
+    // (e.g. ReentrantLock), which is cheaper
+    public boolean monitorsOnly;
+    // while no deadlocks are found, the detection backs off exponentially, up to running once per
+    // this many collection intervals (1 means no back off)
+    public int maxBackoffMultiplier = 1;
+    // the number of stack frames captured for each of the deadlocked threads
+    public int maxStackDepth = 3;
+
+    public void validate() {
+      if (maxBackoffMultiplier < 1) {
+        throw new FriendlyException(
+            "Deadlock detection configuration has an invalid maxBackoffMultiplier: "
+                + maxBackoffMultiplier,
+            "Please provide a maxBackoffMultiplier that is 1 or greater.");
+      }
+      if (maxStackDepth < 0) {
+        throw new FriendlyException(
+            "Deadlock detection configuration has an invalid maxStackDepth: " + maxStackDepth,
+            "Please provide a maxStackDepth that is 0 or greater.");
+      }
+    }
+  }
+
+  public static class DuplicateLogSuppression {
+    // when enabled, identical logs (same logger, severity, message and exception type) are only
+    // exported once per window, and the duplicates logged during that window are exported at the
+    // end of it as a single item, with the number of duplicates in its "OccurrenceCount" custom
+    // dimension
+    public boolean enabled;
+    public int windowSeconds = 60;
+    // once this many distinct logs are being tracked, the least recently logged one stops being
+    // tracked (and its duplicates are exported early)
+    public int maxTrackedLogs = 1000;
+
+    public void validate() {
+      if (windowSeconds <= 0) {
+        throw new FriendlyException(
+            "Duplicate log suppression configuration has an invalid windowSeconds: "
+                + windowSeconds,
+            "Please provide a windowSeconds that is greater than 0.");
+      }
+      if (maxTrackedLogs <= 0) {
+        throw new FriendlyException(
+            "Duplicate log suppression configuration has an invalid maxTrackedLogs: "
+                + maxTrackedLogs,
+            "Please provide a maxTrackedLogs that is greater than 0.");
+      }
+    }
+  }
+
+  public static class TailSampling {
+    // when enabled, all traces are recorded and buffered for decisionWindowSeconds, and then whole
+    // traces are kept if they contain a failed request or dependency, an exception, or a request or
+    // dependency slower than latencyThresholdMillis, while the other traces are sampled using the
+    // configured sampling percentage (which is then no longer applied when the trace starts)
+    public boolean enabled;
+    public int decisionWindowSeconds = 5;
+    public long latencyThresholdMillis = 3000;
+    // once this many items are buffered, the oldest traces are decided early (this is a number of
+    // items rather than a size in memory, since the size of an item is not known until it is
+    // serialized)
+    public int maxBufferedItems = 10000;
+    // the decisions are remembered for this many traces, so that items arriving after their trace
+    // was decided follow the same decision
+    public int maxRememberedDecisions = 10000;
+
+    public void validate() {
+      if (decisionWindowSeconds <= 0) {
+        throw new FriendlyException(
+            "Tail sampling configuration has an invalid decisionWindowSeconds: "
+                + decisionWindowSeconds,
+            "Please provide a decisionWindowSeconds that is greater than 0.");
+      }
+      if (maxBufferedItems <= 0) {
+        throw new FriendlyException(
+            "Tail sampling configuration has an invalid maxBufferedItems: " + maxBufferedItems,
+            "Please provide a maxBufferedItems that is greater than 0.");
+      }
+      if (maxRememberedDecisions <= 0) {
+        throw new FriendlyException(
+            "Tail sampling configuration has an invalid maxRememberedDecisions: "
+                + maxRememberedDecisions,
+            "Please provide a maxRememberedDecisions that is greater than 0.");
+      }
+    }
+  }
+
+  public static class JmxRuntimeControl {
+    // when enabled, an MBean is registered (under the object name
+    // "com.microsoft.applicationinsights:type=RuntimeControl") that can be used to change the
+    // sampling percentage, the sampling override percentages, the instrumentation logging level and
+    // whether live metrics are collected, without restarting the application
+    public boolean enabled;
+  }
+
+  public static class JmxExportQueueMetrics {
+    // when enabled, an MBean is registered per export queue (under the object names
+    // "com.microsoft.applicationinsights:type=ExportQueue,name=general" and "...,name=metrics")
+    // that exposes the queue depth, the number of dropped items, the encode time, the compressed
+    // and uncompressed bytes, the send latency and the local storage backlog
+    public boolean enabled;
+  }
+
+  public static class JmxPerformanceCounterMetrics {
+    // when enabled, an MBean is registered (under the object name
+    // "com.microsoft.applicationinsights:type=PerformanceCounters") that exposes how long the last
+    // collection of each performance counter took, and which ones are over their time budget
+    public boolean enabled;
+  }
+
+  public static class FileExport {
+    // when enabled, the telemetry is written as gzipped newline delimited json to rotating files in
+    // the given directory (e.g. so that a node agent can ship them), instead of being sent to the
+    // ingestion service
+    public boolean enabled;
+    // several processes can share the same directory, their file names never collide
+    public String path;
+    public int maxFileSizeMb = 10;
+    public int rotationIntervalSeconds = 60;
+    // the oldest files are deleted once there are more than this many (complete) files written by
+    // this process
+    public int maxFiles = 100;
+
+    public void validate() {
+      if (!enabled) {
+        return;
+      }
+      if (isEmpty(path)) {
+        throw new FriendlyException(
+            "File export configuration is missing a \"path\".",
+            "Please provide the \"path\" of the directory that the telemetry is written to.");
+      }
+      if (maxFileSizeMb <= 0) {
+        throw new FriendlyException(
+            "File export configuration has an invalid maxFileSizeMb: " + maxFileSizeMb,
+            "Please provide a maxFileSizeMb that is greater than 0.");
+      }
+      if (rotationIntervalSeconds <= 0) {
+        throw new FriendlyException(
+            "File export configuration has an invalid rotationIntervalSeconds: "
+                + rotationIntervalSeconds,
+            "Please provide a rotationIntervalSeconds that is greater than 0.");
+      }
+      if (maxFiles <= 0) {
+        throw new FriendlyException(
+            "File export configuration has an invalid maxFiles: " + maxFiles,
+            "Please provide a maxFiles that is greater than 0.");
+      }
+    }
+  }
+
+  public static class LegacySdkTransformationCache {
+    // when enabled, the 2.x SDK classes that are rewritten by the agent are cached on disk, so that
+    // they do not need to be rewritten again on the next JVM start (as long as the application's
+    // 2.x SDK jar and the agent version stay the same)
+    public boolean enabled;
+    // defaults to a subdirectory of the Application Insights temp directory
+    public String path;
+  }
+
+  public static class ExceptionStackTraces {
+    // the parsed exception details are cached for this many distinct stack traces
+    public int cacheSize = 100;
+    // when greater than 0, each distinct stack trace is only sent in full once per this many
+    // seconds, and in between only its first line is sent, together with a reference to the full
+    // stack trace (both carry the same "StackTraceHash" custom dimension)
+    public int fullStackIntervalSeconds;
+
+    public void validate() {
+      if (cacheSize <= 0) {
+        throw new FriendlyException(
+            "Exception stack traces configuration has an invalid cacheSize: " + cacheSize,
+            "Please provide a cacheSize that is greater than 0.");
+      }
+      if (fullStackIntervalSeconds < 0) {
+        throw new FriendlyException(
+            "Exception stack traces configuration has an invalid fullStackIntervalSeconds: "
+                + fullStackIntervalSeconds,
+            "Please provide a fullStackIntervalSeconds that is 0 or greater.");
+      }
+    }
+  }
+
   public static class SelfDiagnostics {
 
     public String level = "info";
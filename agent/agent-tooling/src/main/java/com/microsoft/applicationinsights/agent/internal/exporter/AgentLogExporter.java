@@ -28,13 +28,12 @@ import com.azure.monitor.opentelemetry.exporter.implementation.LogDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.logging.OperationLogger;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
 import com.azure.monitor.opentelemetry.exporter.implementation.quickpulse.QuickPulse;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
 import com.microsoft.applicationinsights.agent.internal.telemetry.BatchItemProcessor;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryObservers;
-import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.logs.data.LogData;
-import io.opentelemetry.sdk.logs.data.Severity;
 import io.opentelemetry.sdk.logs.export.LogExporter;
 import java.util.Collection;
 import java.util.function.Consumer;
@@ -49,19 +48,20 @@ public class AgentLogExporter implements LogExporter {
   private static final OperationLogger exportingLogLogger =
       new OperationLogger(AgentLogExporter.class, "Exporting log");
 
-  // TODO (trask) could implement this in a filtering LogExporter instead
-  private volatile Severity threshold;
-
   private final LogDataMapper mapper;
   private final Consumer<TelemetryItem> telemetryItemConsumer;
+  @Nullable private final DuplicateLogSuppressor duplicateLogSuppressor;
 
+  // the logging instrumentation threshold, and dropping log records that belong to a sampled out
+  // trace, are applied earlier, on the application thread, by SeverityThresholdLogProcessor
   public AgentLogExporter(
-      Severity threshold,
       LogDataMapper mapper,
       @Nullable QuickPulse quickPulse,
-      BatchItemProcessor batchItemProcessor) {
-    this.threshold = threshold;
+      BatchItemProcessor batchItemProcessor,
+      @Nullable DuplicateLogSuppressor duplicateLogSuppressor,
+      @Nullable TailSampler tailSampler) {
     this.mapper = mapper;
+    this.duplicateLogSuppressor = duplicateLogSuppressor;
     telemetryItemConsumer =
         telemetryItem -> {
           if (quickPulse != null) {
@@ -70,14 +70,14 @@ public class AgentLogExporter implements LogExporter {
           TelemetryObservers.INSTANCE
               .getObservers()
               .forEach(consumer -> consumer.accept(telemetryItem));
-          batchItemProcessor.trackAsync(telemetryItem);
+          if (tailSampler != null) {
+            tailSampler.add(telemetryItem);
+          } else {
+            batchItemProcessor.trackAsync(telemetryItem);
+          }
         };
   }
 
-  public void setThreshold(Severity threshold) {
-    this.threshold = threshold;
-  }
-
   @Override
   public CompletableResultCode export(Collection<LogData> logs) {
     if (CoreUtils.isNullOrEmpty(TelemetryClient.getActive().getInstrumentationKey())) {
@@ -86,34 +86,44 @@ public class AgentLogExporter implements LogExporter {
       return CompletableResultCode.ofFailure();
     }
     for (LogData log : logs) {
-      SpanContext spanContext = log.getSpanContext();
-      if (spanContext.isValid() && !spanContext.getTraceFlags().isSampled()) {
+      if (duplicateLogSuppressor != null
+          && !duplicateLogSuppressor.shouldExport(log, this::exportSummary)) {
         continue;
       }
       logger.debug("exporting log: {}", log);
-      try {
-        int severity = log.getSeverity().getSeverityNumber();
-        int threshold = this.threshold.getSeverityNumber();
-        if (severity < threshold) {
-          continue;
-        }
-        mapper.map(log, telemetryItemConsumer);
-        exportingLogLogger.recordSuccess();
-      } catch (Throwable t) {
-        exportingLogLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
-      }
+      export(log, null);
+    }
+    if (duplicateLogSuppressor != null) {
+      duplicateLogSuppressor.emitExpiredSummaries(this::exportSummary);
     }
     // always returning success, because all error handling is performed internally
     return CompletableResultCode.ofSuccess();
   }
 
+  private void exportSummary(LogData log, long occurrenceCount) {
+    logger.debug("exporting summary of {} suppressed duplicate logs: {}", occurrenceCount, log);
+    export(log, occurrenceCount);
+  }
+
+  private void export(LogData log, @Nullable Long occurrenceCount) {
+    try {
+      mapper.map(log, occurrenceCount, telemetryItemConsumer);
+      exportingLogLogger.recordSuccess();
+    } catch (Throwable t) {
+      exportingLogLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
+    }
+  }
+
   @Override
   public CompletableResultCode flush() {
+    if (duplicateLogSuppressor != null) {
+      duplicateLogSuppressor.emitAllSummaries(this::exportSummary);
+    }
     return CompletableResultCode.ofSuccess();
   }
 
   @Override
   public CompletableResultCode shutdown() {
-    return CompletableResultCode.ofSuccess();
+    return flush();
   }
 }
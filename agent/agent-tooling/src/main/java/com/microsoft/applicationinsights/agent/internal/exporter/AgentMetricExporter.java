@@ -37,6 +37,7 @@ import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
 import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.metrics.export.AggregationTemporalitySelector;
 import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
@@ -76,17 +77,21 @@ public class AgentMetricExporter implements MetricExporter {
       logger.debug("exporter is not active");
       return CompletableResultCode.ofSuccess();
     }
+    List<MetricData> filteredMetrics = new ArrayList<>(metrics.size());
     for (MetricData metricData : metrics) {
       if (MetricFilter.shouldSkip(metricData.getName(), metricFilters)) {
         continue;
       }
       logger.debug("exporting metric: {}", metricData);
-      try {
-        mapper.map(metricData, telemetryItemConsumer);
-        exportingMetricLogger.recordSuccess();
-      } catch (Throwable t) {
-        exportingMetricLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
-      }
+      filteredMetrics.add(metricData);
+    }
+    try {
+      // mapping all of the metrics together allows items for points which share the same
+      // dimensions to share the same tags and properties
+      mapper.map(filteredMetrics, telemetryItemConsumer);
+      exportingMetricLogger.recordSuccess();
+    } catch (Throwable t) {
+      exportingMetricLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
     }
     // always returning success, because all error handling is performed internally
     return CompletableResultCode.ofSuccess();
@@ -28,7 +28,9 @@ import com.azure.monitor.opentelemetry.exporter.implementation.logging.Operation
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
 import com.azure.monitor.opentelemetry.exporter.implementation.quickpulse.QuickPulse;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.Strings;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
 import com.microsoft.applicationinsights.agent.internal.telemetry.BatchItemProcessor;
+import com.microsoft.applicationinsights.agent.internal.telemetry.StandardMetricsAggregator;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryObservers;
 import io.opentelemetry.sdk.common.CompletableResultCode;
@@ -53,17 +55,29 @@ public final class AgentSpanExporter implements SpanExporter {
   public AgentSpanExporter(
       SpanDataMapper mapper,
       @Nullable QuickPulse quickPulse,
-      BatchItemProcessor batchItemProcessor) {
+      BatchItemProcessor batchItemProcessor,
+      @Nullable StandardMetricsAggregator standardMetricsAggregator,
+      @Nullable TailSampler tailSampler) {
     this.mapper = mapper;
     telemetryItemConsumer =
         telemetryItem -> {
+          if (standardMetricsAggregator != null) {
+            // this needs to happen first, since it marks the item as processed by the metric
+            // extractors
+            standardMetricsAggregator.record(telemetryItem);
+          }
           if (quickPulse != null) {
             quickPulse.add(telemetryItem);
           }
           TelemetryObservers.INSTANCE
               .getObservers()
               .forEach(consumer -> consumer.accept(telemetryItem));
-          batchItemProcessor.trackAsync(telemetryItem);
+          if (tailSampler != null) {
+            // standard metrics and live metrics above still see every item
+            tailSampler.add(telemetryItem);
+          } else {
+            batchItemProcessor.trackAsync(telemetryItem);
+          }
         };
   }
 
@@ -0,0 +1,170 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.exporter;
+
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.logs.data.LogData;
+import io.opentelemetry.sdk.logs.data.Severity;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+// collapses floods of identical log records (same logger, severity, message and exception type)
+//
+// the first occurrence within a window is exported right away, the duplicates that follow within
+// the same window are only counted, and once the window is over they are exported as a single
+// summary item (the last duplicate, carrying the number of duplicates that it stands for)
+//
+// tracked log records are kept in an LRU map so that memory is bounded no matter how many distinct
+// messages are logged, a tracked log record that is evicted has its summary exported early
+public class DuplicateLogSuppressor {
+
+  private final long windowNanos;
+  private final int maxTrackedLogs;
+  private final Clock clock;
+
+  // access ordered, so that iteration starts with the least recently logged message
+  private final LinkedHashMap<Key, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+
+  public DuplicateLogSuppressor(long windowNanos, int maxTrackedLogs, Clock clock) {
+    this.windowNanos = windowNanos;
+    this.maxTrackedLogs = maxTrackedLogs;
+    this.clock = clock;
+  }
+
+  public interface SummaryConsumer {
+    void accept(LogData log, long occurrenceCount);
+  }
+
+  // returns true if the log record should be exported,
+  // and passes any summaries that are due (e.g. for the previous window) to summaryConsumer
+  public synchronized boolean shouldExport(LogData log, SummaryConsumer summaryConsumer) {
+    long now = clock.nanoTime();
+    Key key = new Key(log);
+    Window window = windows.get(key);
+    if (window != null) {
+      if (now - window.startNanos < windowNanos) {
+        window.suppressed = log;
+        window.suppressedCount++;
+        return false;
+      }
+      window.emitSummary(summaryConsumer);
+      window.startNanos = now;
+      return true;
+    }
+    windows.put(key, new Window(now));
+    if (windows.size() > maxTrackedLogs) {
+      Iterator<Window> i = windows.values().iterator();
+      i.next().emitSummary(summaryConsumer);
+      i.remove();
+    }
+    return true;
+  }
+
+  // passes the summaries of all windows that are over to summaryConsumer
+  public void emitExpiredSummaries(SummaryConsumer summaryConsumer) {
+    emitSummaries(summaryConsumer, false);
+  }
+
+  // passes the summaries of all windows to summaryConsumer, e.g. on flush or shutdown
+  public void emitAllSummaries(SummaryConsumer summaryConsumer) {
+    emitSummaries(summaryConsumer, true);
+  }
+
+  private synchronized void emitSummaries(SummaryConsumer summaryConsumer, boolean all) {
+    long now = clock.nanoTime();
+    Iterator<Window> i = windows.values().iterator();
+    while (i.hasNext()) {
+      Window window = i.next();
+      if (all || now - window.startNanos >= windowNanos) {
+        // once the window is over, the next occurrence will be exported anyways,
+        // so there is no need to keep tracking it
+        window.emitSummary(summaryConsumer);
+        i.remove();
+      }
+    }
+  }
+
+  // visible for testing
+  synchronized int getTrackedLogCount() {
+    return windows.size();
+  }
+
+  private static class Window {
+
+    private long startNanos;
+    @Nullable private LogData suppressed;
+    private long suppressedCount;
+
+    private Window(long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    private void emitSummary(SummaryConsumer summaryConsumer) {
+      LogData log = suppressed;
+      if (log != null) {
+        summaryConsumer.accept(log, suppressedCount);
+        suppressed = null;
+        suppressedCount = 0;
+      }
+    }
+  }
+
+  private static final class Key {
+
+    private final String loggerName;
+    private final Severity severity;
+    private final String message;
+    @Nullable private final String exceptionType;
+    private final int hashCode;
+
+    private Key(LogData log) {
+      loggerName = log.getInstrumentationScopeInfo().getName();
+      severity = log.getSeverity();
+      message = log.getBody() == null ? "" : log.getBody().asString();
+      exceptionType = log.getAttributes().get(SemanticAttributes.EXCEPTION_TYPE);
+      hashCode = Objects.hash(loggerName, severity, message, exceptionType);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return severity == other.severity
+          && loggerName.equals(other.loggerName)
+          && message.equals(other.message)
+          && Objects.equals(exceptionType, other.exceptionType);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -25,16 +25,39 @@ import com.google.auto.service.AutoService;
 import com.microsoft.applicationinsights.agent.internal.httpclient.LazyHttpClient;
 import io.opentelemetry.javaagent.extension.AgentListener;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @AutoService(AgentListener.class)
 public class AfterAgentListener implements AgentListener {
 
+  private static final Logger startupLogger =
+      LoggerFactory.getLogger("com.microsoft.applicationinsights.agent");
+
   private static volatile AppIdSupplier appIdSupplier;
+  private static volatile BackgroundInitializer backgroundInitializer;
+  @Nullable private static volatile RuntimeControl runtimeControl;
+  private static volatile List<ExportQueueMetrics> exportQueueMetrics = Collections.emptyList();
 
   public static void setAppIdSupplier(AppIdSupplier appIdSupplier) {
     AfterAgentListener.appIdSupplier = appIdSupplier;
   }
 
+  static void setBackgroundInitializer(BackgroundInitializer backgroundInitializer) {
+    AfterAgentListener.backgroundInitializer = backgroundInitializer;
+  }
+
+  static void setRuntimeControl(RuntimeControl runtimeControl) {
+    AfterAgentListener.runtimeControl = runtimeControl;
+  }
+
+  static void setExportQueueMetrics(List<ExportQueueMetrics> exportQueueMetrics) {
+    AfterAgentListener.exportQueueMetrics = exportQueueMetrics;
+  }
+
   @Override
   public void afterAgent(AutoConfiguredOpenTelemetrySdk autoConfiguredOpenTelemetrySdk) {
     // only safe now to resolve app id because SSL initialization
@@ -50,6 +73,25 @@ public class AfterAgentListener implements AgentListener {
 
     LazyHttpClient.safeToInitLatch.countDown();
 
-    PerformanceCounterInitializer.initialize(FirstEntryPoint.getConfiguration());
+    CdsArchiveDump.registerIfRequested();
+
+    RuntimeControl runtimeControl = AfterAgentListener.runtimeControl;
+    if (runtimeControl != null) {
+      backgroundInitializer.submit("jmx runtime control", runtimeControl::register);
+    }
+    for (ExportQueueMetrics metrics : exportQueueMetrics) {
+      backgroundInitializer.submit("jmx export queue metrics", metrics::register);
+    }
+
+    backgroundInitializer.submit(
+        "performance counters",
+        () -> PerformanceCounterInitializer.initialize(FirstEntryPoint.getConfiguration()));
+
+    // this is the last of the subsystems that are initialized in the background
+    backgroundInitializer.afterAll(
+        () ->
+            startupLogger.debug(
+                "Startup phases, including background initialization: {}",
+                StartupTimer.getSummary()));
   }
 }
@@ -25,8 +25,6 @@ import ch.qos.logback.classic.LoggerContext;
 import com.azure.monitor.opentelemetry.exporter.implementation.configuration.ConnectionString;
 import com.azure.monitor.opentelemetry.exporter.implementation.configuration.StatsbeatConnectionString;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.Strings;
-import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
-import com.microsoft.applicationinsights.agent.internal.exporter.AgentLogExporter;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.DelegatingPropagator;
 import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
@@ -48,15 +46,15 @@ public class AzureFunctionsInitializer implements Runnable {
   private static final Logger logger = LoggerFactory.getLogger(AzureFunctionsInitializer.class);
 
   private final TelemetryClient telemetryClient;
-  private final AgentLogExporter agentLogExporter;
+  private final RuntimeControl runtimeControl;
   private final AppIdSupplier appIdSupplier;
 
   public AzureFunctionsInitializer(
       TelemetryClient telemetryClient,
-      AgentLogExporter agentLogExporter,
+      RuntimeControl runtimeControl,
       AppIdSupplier appIdSupplier) {
     this.telemetryClient = telemetryClient;
-    this.agentLogExporter = agentLogExporter;
+    this.runtimeControl = runtimeControl;
     this.appIdSupplier = appIdSupplier;
   }
 
@@ -86,8 +84,7 @@ public class AzureFunctionsInitializer implements Runnable {
     setConnectionString(connectionString, instrumentationKey);
     setWebsiteSiteName(websiteSiteName);
     setSelfDiagnosticsLevel(selfDiagnosticsLevel);
-    agentLogExporter.setThreshold(
-        Configuration.LoggingInstrumentation.getSeverity(instrumentationLoggingLevel));
+    setInstrumentationLoggingLevel(instrumentationLoggingLevel);
 
     startupLogger.info(
         "ApplicationInsights Java Agent specialization complete for Azure Functions placeholder");
@@ -126,7 +123,7 @@ public class AzureFunctionsInitializer implements Runnable {
         StatsbeatConnectionString.create(connectionString, null, null));
 
     // now that we know the user has opted in to tracing, we need to init the propagator and sampler
-    DelegatingPropagator.getInstance().setUpStandardDelegate(Collections.emptyList(), false);
+    DelegatingPropagator.getInstance().setUpStandardDelegate(Collections.emptyList(), false, false);
     // TODO handle APPLICATIONINSIGHTS_SAMPLING_PERCENTAGE
     DelegatingSampler.getInstance().setAlwaysOnDelegate();
 
@@ -134,6 +131,18 @@ public class AzureFunctionsInitializer implements Runnable {
     appIdSupplier.startAppIdRetrieval();
   }
 
+  // going through RuntimeControl, so that it reports the current instrumentation logging level
+  void setInstrumentationLoggingLevel(@Nullable String instrumentationLoggingLevel) {
+    if (instrumentationLoggingLevel == null || instrumentationLoggingLevel.isEmpty()) {
+      return;
+    }
+    try {
+      runtimeControl.setInstrumentationLoggingLevel(instrumentationLoggingLevel);
+    } catch (IllegalArgumentException e) {
+      logger.warn("unexpected instrumentation logging level: {}", instrumentationLoggingLevel);
+    }
+  }
+
   void setWebsiteSiteName(@Nullable String websiteSiteName) {
     if (websiteSiteName != null && !websiteSiteName.isEmpty()) {
       telemetryClient.updateRoleName(websiteSiteName);
@@ -0,0 +1,86 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.ThreadPoolUtils;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Initializes the subsystems that the application's telemetry does not depend on (e.g. heartbeat,
+ * statsbeat, the profiler and performance counters) on a background thread, so that they do not
+ * add to the application's startup time.
+ */
+class BackgroundInitializer {
+
+  private static final Logger logger = LoggerFactory.getLogger(BackgroundInitializer.class);
+
+  // a single thread so that the subsystems are initialized in the order they are submitted,
+  // and which goes away once there is nothing left to initialize
+  private final ExecutorService executor =
+      new ThreadPoolExecutor(
+          0,
+          1,
+          10,
+          TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          ThreadPoolUtils.createDaemonThreadFactory(BackgroundInitializer.class));
+
+  private final boolean enabled;
+
+  BackgroundInitializer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  void submit(String subsystem, Runnable initializer) {
+    if (enabled) {
+      executor.execute(() -> initialize(subsystem, initializer));
+    } else {
+      initialize(subsystem, initializer);
+    }
+  }
+
+  // runs once all of the previously submitted subsystems have been initialized
+  void afterAll(Runnable runnable) {
+    if (enabled) {
+      executor.execute(runnable);
+    } else {
+      runnable.run();
+    }
+  }
+
+  private static void initialize(String subsystem, Runnable initializer) {
+    long startNanos = System.nanoTime();
+    try {
+      initializer.run();
+    } catch (RuntimeException e) {
+      logger.warn("Failed to initialize {}", subsystem, e);
+      return;
+    }
+    StartupTimer.record(subsystem, startNanos);
+    logger.debug("Initialized {}", subsystem);
+  }
+}
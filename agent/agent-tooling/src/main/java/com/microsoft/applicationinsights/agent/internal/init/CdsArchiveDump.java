@@ -0,0 +1,137 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import java.lang.management.ManagementFactory;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Supports a training run that dumps a dynamic CDS (class data sharing) archive, which subsequent
+ * runs can then use with {@code -XX:SharedArchiveFile=<path>} to skip parsing and verifying the
+ * classes that were loaded during the training run.
+ *
+ * <p>The training run is requested with {@code -Dapplicationinsights.cds.dump=<path>} on Java 17+,
+ * together with {@code -XX:+RecordDynamicDumpInfo}, and the archive is then dumped when the JVM
+ * shuts down. On Java 13 to 16, the JVM can only dump the archive itself, using {@code
+ * -XX:ArchiveClassesAtExit=<path>} instead. Either way, the JVM only dumps the archive in the
+ * presence of a java agent when it is also started with {@code -XX:+UnlockDiagnosticVMOptions
+ * -XX:+AllowArchivingWithJavaAgent}.
+ *
+ * <p>Note that the JVM only archives classes loaded by the built-in class loaders, so the archive
+ * covers the application's classes and the JDK classes that the agent loads (e.g. JMX and TLS),
+ * but not the classes that the agent loads through its own isolated class loader.
+ *
+ * <p>When the archive does not match the JVM or the class path (e.g. after upgrading either of
+ * them), the JVM falls back to running without it, unless {@code -Xshare:on} is specified.
+ */
+final class CdsArchiveDump {
+
+  private static final Logger logger = LoggerFactory.getLogger(CdsArchiveDump.class);
+
+  // only safe to call once it is safe to initialize JMX (see AfterAgentListener), since the
+  // platform MBean server initializes java.util.logging
+  static void registerIfRequested() {
+    String path = System.getProperty("applicationinsights.cds.dump");
+    if (path == null) {
+      return;
+    }
+    int javaVersion = getJavaMajorVersion();
+    if (javaVersion < 13) {
+      logger.warn(
+          "Ignoring -Dapplicationinsights.cds.dump, since dynamic CDS archives require Java 13+");
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if (isVmOptionEnabled(server, "ArchiveClassesAtExit")) {
+      logger.info("The JVM will dump the CDS archive itself, using -XX:ArchiveClassesAtExit");
+      return;
+    }
+    if (javaVersion < 17 || !isVmOptionEnabled(server, "RecordDynamicDumpInfo")) {
+      logger.warn(
+          "Ignoring -Dapplicationinsights.cds.dump, since the JVM was not started with"
+              + " -XX:+RecordDynamicDumpInfo (Java 17+), use -XX:ArchiveClassesAtExit={} instead"
+              + " (Java 13+)",
+          path);
+      return;
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(server, path)));
+    logger.info("A CDS archive will be dumped to {} when the JVM shuts down", path);
+  }
+
+  private static void dump(MBeanServer server, String path) {
+    try {
+      Object output =
+          server.invoke(
+              new ObjectName("com.sun.management:type=DiagnosticCommand"),
+              "vmCds",
+              new Object[] {new String[] {"dynamic_dump", path}},
+              new String[] {String[].class.getName()});
+      logger.info("Dumped CDS archive to {}: {}", path, output);
+    } catch (JMException | RuntimeException e) {
+      logger.warn("Failed to dump CDS archive to {}", path, e);
+    }
+  }
+
+  private static boolean isVmOptionEnabled(MBeanServer server, String name) {
+    String value = getVmOption(server, name);
+    return value != null && !value.isEmpty() && !value.equals("false");
+  }
+
+  @Nullable
+  private static String getVmOption(MBeanServer server, String name) {
+    try {
+      CompositeData vmOption =
+          (CompositeData)
+              server.invoke(
+                  new ObjectName("com.sun.management:type=HotSpotDiagnostic"),
+                  "getVMOption",
+                  new Object[] {name},
+                  new String[] {String.class.getName()});
+      return (String) vmOption.get("value");
+    } catch (JMException | RuntimeException e) {
+      // the option does not exist on this JVM
+      logger.debug("Unable to read VM option {}: {}", name, e.toString());
+      return null;
+    }
+  }
+
+  private static int getJavaMajorVersion() {
+    String version = System.getProperty("java.specification.version");
+    // e.g. "1.8" and "17"
+    if (version.startsWith("1.")) {
+      version = version.substring(2);
+    }
+    try {
+      return Integer.parseInt(version);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private CdsArchiveDump() {}
+}
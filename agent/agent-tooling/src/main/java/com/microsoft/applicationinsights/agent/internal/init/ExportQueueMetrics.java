@@ -0,0 +1,127 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.ExportStats;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes the self metrics of an export queue (e.g. queue depth, dropped items, encode time and
+ * send latency), so that the agent's own overhead and backpressure can be watched with any JMX
+ * client.
+ *
+ * <p>These are deliberately not emitted as telemetry, since they would then be reported through
+ * the same queues that they are measuring.
+ */
+public class ExportQueueMetrics implements ExportQueueMetricsMBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(ExportQueueMetrics.class);
+
+  static final String OBJECT_NAME_PREFIX =
+      "com.microsoft.applicationinsights:type=ExportQueue,name=";
+
+  private final String queueName;
+  private final ExportStats stats;
+
+  ExportQueueMetrics(String queueName, ExportStats stats) {
+    this.queueName = queueName;
+    this.stats = stats;
+  }
+
+  void register() {
+    try {
+      ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + queueName);
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+      mbeanServer.registerMBean(this, objectName);
+    } catch (JMException e) {
+      logger.error("Failed to register MBean: {}", OBJECT_NAME_PREFIX + queueName, e);
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return stats.getQueueDepth();
+  }
+
+  @Override
+  public long getDroppedItemCount() {
+    return stats.getDroppedItemCount();
+  }
+
+  @Override
+  public long getEncodedBatchCount() {
+    return stats.getEncodedBatchCount();
+  }
+
+  @Override
+  public long getEncodedItemCount() {
+    return stats.getEncodedItemCount();
+  }
+
+  @Override
+  public double getAverageEncodeTimeMillis() {
+    return averageMillis(stats.getEncodeTimeNanos(), stats.getEncodedBatchCount());
+  }
+
+  @Override
+  public long getUncompressedBytes() {
+    return stats.getUncompressedBytes();
+  }
+
+  @Override
+  public long getCompressedBytes() {
+    return stats.getCompressedBytes();
+  }
+
+  @Override
+  public long getSendCount() {
+    return stats.getSendCount();
+  }
+
+  @Override
+  public long getSendFailureCount() {
+    return stats.getSendFailureCount();
+  }
+
+  @Override
+  public double getAverageSendLatencyMillis() {
+    return averageMillis(stats.getSendTimeNanos(), stats.getSendCount());
+  }
+
+  @Override
+  public int getLocalStorageBacklogFileCount() {
+    return stats.getLocalStorageBacklogFileCount();
+  }
+
+  // the total and the count are read separately, which is fine for an average since startup
+  private static double averageMillis(long totalNanos, long count) {
+    return count == 0 ? 0 : totalNanos / (count * 1_000_000.0);
+  }
+}
@@ -83,6 +83,7 @@ public class FirstEntryPoint implements LoggingCustomizer {
   @Override
   public void init() {
     try {
+      long phaseStartNanos = System.nanoTime();
       if (DEBUG_SIGNED_JAR_ACCESS) {
         JarVerifierClassFileTransformer transformer = new JarVerifierClassFileTransformer();
         Instrumentation instrumentation = InstrumentationHolder.getInstrumentation();
@@ -97,6 +98,7 @@ public class FirstEntryPoint implements LoggingCustomizer {
       // configuration is only read this early in order to extract logging configuration
       rpConfiguration = RpConfigurationBuilder.create(agentPath);
       configuration = ConfigurationBuilder.create(agentPath, rpConfiguration);
+      phaseStartNanos = StartupTimer.record("configuration", phaseStartNanos);
 
       String codelessSdkNamePrefix = getCodelessSdkNamePrefix();
       if (codelessSdkNamePrefix != null) {
@@ -104,8 +106,10 @@ public class FirstEntryPoint implements LoggingCustomizer {
       }
       startupLogger = configureLogging(configuration.selfDiagnostics, agentPath);
       ConfigurationBuilder.logConfigurationWarnMessages();
+      phaseStartNanos = StartupTimer.record("logging", phaseStartNanos);
 
-      LegacyInstrumentation.registerTransformers();
+      LegacyInstrumentation.registerTransformers(configuration);
+      StartupTimer.record("legacy transformers", phaseStartNanos);
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
@@ -122,6 +126,9 @@ public class FirstEntryPoint implements LoggingCustomizer {
         System.getProperty("java.version"),
         System.getProperty("java.vendor"),
         System.getProperty("java.home"));
+    // the subsystems that are initialized in the background are logged separately once they have
+    // all been initialized (see AfterAgentListener)
+    startupLogger.debug("Startup phases: {}", StartupTimer.getSummary());
 
     MDC.put(DiagnosticsHelper.MDC_PROP_OPERATION, "Startup");
     try (MDC.MDCCloseable ignored = INITIALIZATION_SUCCESS.makeActive()) {
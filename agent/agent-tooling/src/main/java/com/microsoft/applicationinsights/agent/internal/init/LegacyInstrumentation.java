@@ -21,7 +21,9 @@
 
 package com.microsoft.applicationinsights.agent.internal.init;
 
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TempDirs;
 import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.ApplicationInsightsAppenderClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.BytecodeUtilImpl;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.DependencyTelemetryClassFileTransformer;
@@ -32,15 +34,28 @@ import com.microsoft.applicationinsights.agent.internal.legacysdk.QuickPulseClas
 import com.microsoft.applicationinsights.agent.internal.legacysdk.RequestNameHandlerClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.RequestTelemetryClassFileTransformer;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.TelemetryClientClassFileTransformer;
+import com.microsoft.applicationinsights.agent.internal.legacysdk.TransformedClassCache;
 import com.microsoft.applicationinsights.agent.internal.legacysdk.WebRequestTrackingFilterClassFileTransformer;
 import io.opentelemetry.javaagent.bootstrap.InstrumentationHolder;
+import java.io.File;
 import java.lang.instrument.Instrumentation;
+import java.nio.file.Paths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class LegacyInstrumentation {
 
-  static void registerTransformers() {
+  private static final Logger logger = LoggerFactory.getLogger(LegacyInstrumentation.class);
+
+  static void registerTransformers(Configuration configuration) {
     Instrumentation instrumentation = InstrumentationHolder.getInstrumentation();
 
+    Configuration.LegacySdkTransformationCache transformationCache =
+        configuration.preview.legacySdkTransformationCache;
+    if (transformationCache.enabled) {
+      enableTransformationCache(transformationCache.path);
+    }
+
     // add sdk instrumentation after ensuring Global.getTelemetryClient() will not return null
     instrumentation.addTransformer(new TelemetryClientClassFileTransformer());
     instrumentation.addTransformer(new DependencyTelemetryClassFileTransformer());
@@ -58,5 +73,19 @@ class LegacyInstrumentation {
     BytecodeUtil.setDelegate(new BytecodeUtilImpl());
   }
 
+  private static void enableTransformationCache(String path) {
+    if (path != null) {
+      TransformedClassCache.enable(Paths.get(path), FirstEntryPoint.getAgentVersion());
+      return;
+    }
+    File tempDir =
+        TempDirs.getApplicationInsightsTempDir(
+            logger, "Transformed 2.x SDK classes will not be cached");
+    if (tempDir != null) {
+      TransformedClassCache.enable(
+          new File(tempDir, "legacy-sdk-classes").toPath(), FirstEntryPoint.getAgentVersion());
+    }
+  }
+
   private LegacyInstrumentation() {}
 }
@@ -25,6 +25,7 @@ import static com.microsoft.applicationinsights.agent.bootstrap.diagnostics.MsgI
 
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.Strings;
 import com.microsoft.applicationinsights.agent.internal.common.PropertyHelper;
+import com.microsoft.applicationinsights.agent.internal.common.SystemInformation;
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.DeadLockDetectorPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.FreeMemoryPerformanceCounter;
@@ -32,12 +33,12 @@ import com.microsoft.applicationinsights.agent.internal.perfcounter.GcPerformanc
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxAttributeData;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JmxMetricPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.JvmHeapMemoryUsedPerformanceCounter;
+import com.microsoft.applicationinsights.agent.internal.perfcounter.LinuxPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.OshiPerformanceCounter;
+import com.microsoft.applicationinsights.agent.internal.perfcounter.PerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.PerformanceCounterContainer;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.ProcessCpuPerformanceCounter;
 import com.microsoft.applicationinsights.agent.internal.perfcounter.ProcessMemoryPerformanceCounter;
-import java.lang.management.ManagementFactory;
-import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -55,30 +56,61 @@ public class PerformanceCounterInitializer {
 
     PerformanceCounterContainer.INSTANCE.setCollectionFrequencyInSec(
         configuration.preview.metricIntervalSeconds);
+    PerformanceCounterContainer.INSTANCE.setTimeBudgetInSec(
+        configuration.preview.performanceCounterTimeBudgetSeconds);
 
     if (logger.isDebugEnabled()) {
       PerformanceCounterContainer.INSTANCE.setLogAvailableJmxMetrics();
     }
 
-    loadCustomJmxPerfCounters(configuration.jmxMetrics);
+    Map<String, Integer> intervals = configuration.preview.performanceCounterIntervalSeconds;
 
-    PerformanceCounterContainer.INSTANCE.register(
+    loadCustomJmxPerfCounters(configuration.jmxMetrics, intervals);
+
+    register(
         new ProcessCpuPerformanceCounter(
-            configuration.preview.useNormalizedValueForNonNormalizedCpuPercentage));
-    PerformanceCounterContainer.INSTANCE.register(new ProcessMemoryPerformanceCounter());
-    PerformanceCounterContainer.INSTANCE.register(new FreeMemoryPerformanceCounter());
+            configuration.preview.useNormalizedValueForNonNormalizedCpuPercentage),
+        intervals);
+    register(new ProcessMemoryPerformanceCounter(), intervals);
+    register(new FreeMemoryPerformanceCounter(), intervals);
 
     if (!isAgentRunningInSandboxEnvWindows()) {
       // system cpu and process disk i/o
-      PerformanceCounterContainer.INSTANCE.register(new OshiPerformanceCounter());
+      if (SystemInformation.isLinux() && LinuxPerformanceCounter.isSupported()) {
+        register(new LinuxPerformanceCounter(), intervals);
+      } else {
+        register(new OshiPerformanceCounter(), intervals);
+      }
+    }
+
+    Configuration.DeadlockDetection deadlockDetection = configuration.preview.deadlockDetection;
+    if (DeadLockDetectorPerformanceCounter.isSupported(deadlockDetection.monitorsOnly)) {
+      register(
+          new DeadLockDetectorPerformanceCounter(
+              deadlockDetection.monitorsOnly,
+              deadlockDetection.maxBackoffMultiplier,
+              deadlockDetection.maxStackDepth),
+          intervals);
     }
+    register(new JvmHeapMemoryUsedPerformanceCounter(), intervals);
+    register(new GcPerformanceCounter(), intervals);
+
+    if (configuration.preview.jmxPerformanceCounterMetrics.enabled) {
+      // performance counters are initialized once it is already safe to initialize JMX (see
+      // AfterAgentListener)
+      PerformanceCounterContainer.INSTANCE.registerJmxMetrics();
+    }
+  }
 
-    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
-    if (threadBean.isSynchronizerUsageSupported()) {
-      PerformanceCounterContainer.INSTANCE.register(new DeadLockDetectorPerformanceCounter());
+  // uses the interval configured for the performance counter's class, if any
+  private static void register(
+      PerformanceCounter performanceCounter, Map<String, Integer> intervals) {
+    Integer intervalSeconds = intervals.get(performanceCounter.getClass().getSimpleName());
+    if (intervalSeconds == null) {
+      PerformanceCounterContainer.INSTANCE.register(performanceCounter);
+    } else {
+      PerformanceCounterContainer.INSTANCE.register(performanceCounter, intervalSeconds);
     }
-    PerformanceCounterContainer.INSTANCE.register(new JvmHeapMemoryUsedPerformanceCounter());
-    PerformanceCounterContainer.INSTANCE.register(new GcPerformanceCounter());
   }
 
   private static boolean isAgentRunningInSandboxEnvWindows() {
@@ -94,7 +126,8 @@ public class PerformanceCounterInitializer {
    * every entry (object name and attributes) Build a {@link JmxMetricPerformanceCounter} Register
    * the Performance Counter in the {@link PerformanceCounterContainer}
    */
-  private static void loadCustomJmxPerfCounters(List<Configuration.JmxMetric> jmxXmlElements) {
+  private static void loadCustomJmxPerfCounters(
+      List<Configuration.JmxMetric> jmxXmlElements, Map<String, Integer> intervals) {
     try {
       HashMap<String, Collection<JmxAttributeData>> data = new HashMap<>();
 
@@ -130,8 +163,7 @@ public class PerformanceCounterInitializer {
       // Register each entry in the performance container
       for (Map.Entry<String, Collection<JmxAttributeData>> entry : data.entrySet()) {
         try {
-          PerformanceCounterContainer.INSTANCE.register(
-              new JmxMetricPerformanceCounter(entry.getKey(), entry.getValue()));
+          register(new JmxMetricPerformanceCounter(entry.getKey(), entry.getValue()), intervals);
         } catch (RuntimeException e) {
           try (MDC.MDCCloseable ignored = CUSTOM_JMX_METRIC_ERROR.makeActive()) {
             logger.error(
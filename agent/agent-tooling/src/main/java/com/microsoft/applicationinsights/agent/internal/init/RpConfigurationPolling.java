@@ -31,9 +31,6 @@ import com.microsoft.applicationinsights.agent.internal.configuration.Configurat
 import com.microsoft.applicationinsights.agent.internal.configuration.ConfigurationBuilder;
 import com.microsoft.applicationinsights.agent.internal.configuration.RpConfiguration;
 import com.microsoft.applicationinsights.agent.internal.configuration.RpConfigurationBuilder;
-import com.microsoft.applicationinsights.agent.internal.legacysdk.BytecodeUtilImpl;
-import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
-import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -51,17 +48,19 @@ public class RpConfigurationPolling implements Runnable {
   private final Configuration configuration;
   private final TelemetryClient telemetryClient;
   private final AppIdSupplier appIdSupplier;
+  private final RuntimeControl runtimeControl;
 
   public static void startPolling(
       RpConfiguration rpConfiguration,
       Configuration configuration,
       TelemetryClient telemetryClient,
-      AppIdSupplier appIdSupplier) {
+      AppIdSupplier appIdSupplier,
+      RuntimeControl runtimeControl) {
     Executors.newSingleThreadScheduledExecutor(
             ThreadPoolUtils.createDaemonThreadFactory(RpConfigurationPolling.class))
         .scheduleWithFixedDelay(
             new RpConfigurationPolling(
-                rpConfiguration, configuration, telemetryClient, appIdSupplier),
+                rpConfiguration, configuration, telemetryClient, appIdSupplier, runtimeControl),
             60,
             60,
             SECONDS);
@@ -72,11 +71,13 @@ public class RpConfigurationPolling implements Runnable {
       RpConfiguration rpConfiguration,
       Configuration configuration,
       TelemetryClient telemetryClient,
-      AppIdSupplier appIdSupplier) {
+      AppIdSupplier appIdSupplier,
+      RuntimeControl runtimeControl) {
     this.rpConfiguration = rpConfiguration;
     this.configuration = configuration;
     this.telemetryClient = telemetryClient;
     this.appIdSupplier = appIdSupplier;
+    this.runtimeControl = runtimeControl;
   }
 
   @Override
@@ -122,11 +123,16 @@ public class RpConfigurationPolling implements Runnable {
               "Updating sampling percentage from {} to {}",
               rpConfiguration.sampling.percentage,
               newRpConfiguration.sampling.percentage);
-          float roundedSamplingPercentage =
-              ConfigurationBuilder.roundToNearest(newRpConfiguration.sampling.percentage);
-          DelegatingSampler.getInstance()
-              .setDelegate(Samplers.getSampler(roundedSamplingPercentage, configuration));
-          BytecodeUtilImpl.samplingPercentage = roundedSamplingPercentage;
+          // going through RuntimeControl, so that sampling override percentages that were changed
+          // at runtime are kept
+          try {
+            runtimeControl.setSamplingPercentage(newRpConfiguration.sampling.percentage);
+          } catch (IllegalArgumentException e) {
+            // not letting this escape, since that would stop all subsequent polling
+            logger.error(
+                "Invalid sampling percentage in json config file: {}",
+                newRpConfiguration.sampling.percentage);
+          }
           rpConfiguration.sampling.percentage = newRpConfiguration.sampling.percentage;
         }
         rpConfiguration = newRpConfiguration;
@@ -0,0 +1,211 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.quickpulse.QuickPulse;
+import com.microsoft.applicationinsights.agent.internal.common.FriendlyException;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import com.microsoft.applicationinsights.agent.internal.configuration.ConfigurationBuilder;
+import com.microsoft.applicationinsights.agent.internal.legacysdk.BytecodeUtilImpl;
+import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
+import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
+import io.opentelemetry.sdk.logs.data.Severity;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Changes the sampling percentage, the sampling override percentages, the instrumentation logging
+ * level and whether live metrics are collected while the application is running, e.g. to cut the
+ * telemetry volume right away during an incident.
+ *
+ * <p>Each change is applied by swapping a single reference (e.g. the delegate of the {@link
+ * DelegatingSampler}), so that the OpenTelemetry pipeline does not need to be rebuilt, and so that
+ * concurrent sampling decisions see either the old or the new settings, but never a mix of both.
+ */
+public class RuntimeControl implements RuntimeControlMBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(RuntimeControl.class);
+
+  static final String OBJECT_NAME = "com.microsoft.applicationinsights:type=RuntimeControl";
+
+  private final Configuration configuration;
+  private final Consumer<Severity> logSeverityThresholdSetter;
+  @Nullable private final QuickPulse quickPulse;
+  @Nullable private final TailSampler tailSampler;
+
+  // guarded by this
+  private float samplingPercentage;
+  // guarded by this
+  private final float[] samplingOverridePercentages;
+  // guarded by this
+  private String instrumentationLoggingLevel;
+
+  RuntimeControl(
+      Configuration configuration,
+      Consumer<Severity> logSeverityThresholdSetter,
+      @Nullable QuickPulse quickPulse,
+      @Nullable TailSampler tailSampler) {
+    this.configuration = configuration;
+    this.logSeverityThresholdSetter = logSeverityThresholdSetter;
+    this.quickPulse = quickPulse;
+    this.tailSampler = tailSampler;
+    samplingPercentage = configuration.sampling.percentage;
+    List<Configuration.SamplingOverride> overrides = configuration.preview.sampling.overrides;
+    samplingOverridePercentages = new float[overrides.size()];
+    for (int i = 0; i < overrides.size(); i++) {
+      samplingOverridePercentages[i] = overrides.get(i).percentage;
+    }
+    instrumentationLoggingLevel = configuration.instrumentation.logging.level;
+  }
+
+  void register() {
+    try {
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+      mbeanServer.registerMBean(this, objectName);
+    } catch (JMException e) {
+      logger.error("Failed to register MBean: {}", OBJECT_NAME, e);
+    }
+  }
+
+  @Override
+  public synchronized float getSamplingPercentage() {
+    return samplingPercentage;
+  }
+
+  @Override
+  public synchronized void setSamplingPercentage(float samplingPercentage) {
+    float rounded = round(samplingPercentage);
+    logger.info("Updating sampling percentage from {} to {}", this.samplingPercentage, rounded);
+    this.samplingPercentage = rounded;
+    updateSampling();
+  }
+
+  @Override
+  public synchronized float[] getSamplingOverridePercentages() {
+    return samplingOverridePercentages.clone();
+  }
+
+  @Override
+  public synchronized void setSamplingOverridePercentage(int index, float samplingPercentage) {
+    if (index < 0 || index >= samplingOverridePercentages.length) {
+      throw new IllegalArgumentException(
+          "There are "
+              + samplingOverridePercentages.length
+              + " sampling overrides, invalid index: "
+              + index);
+    }
+    float rounded = round(samplingPercentage);
+    logger.info(
+        "Updating percentage of sampling override {} from {} to {}",
+        index,
+        samplingOverridePercentages[index],
+        rounded);
+    samplingOverridePercentages[index] = rounded;
+    updateSampling();
+  }
+
+  @Override
+  public synchronized String getInstrumentationLoggingLevel() {
+    return instrumentationLoggingLevel;
+  }
+
+  @Override
+  public synchronized void setInstrumentationLoggingLevel(String level) {
+    Severity severity;
+    try {
+      severity = Configuration.LoggingInstrumentation.getSeverity(level);
+    } catch (FriendlyException e) {
+      // not passing FriendlyException along, since the JMX client does not have that class
+      throw new IllegalArgumentException("Unexpected instrumentation logging level: " + level);
+    }
+    logger.info(
+        "Updating instrumentation logging level from {} to {}", instrumentationLoggingLevel, level);
+    instrumentationLoggingLevel = level;
+    logSeverityThresholdSetter.accept(severity);
+  }
+
+  @Override
+  public boolean isLiveMetricsEnabled() {
+    return quickPulse != null && !quickPulse.isPaused();
+  }
+
+  @Override
+  public void setLiveMetricsEnabled(boolean enabled) {
+    if (quickPulse == null) {
+      if (enabled) {
+        throw new IllegalStateException(
+            "Live metrics can only be resumed at runtime if it was enabled at startup");
+      }
+      return;
+    }
+    logger.info("{} live metrics", enabled ? "Resuming" : "Pausing");
+    quickPulse.setPaused(!enabled);
+  }
+
+  // must be called while holding the lock
+  private void updateSampling() {
+    List<Configuration.SamplingOverride> overrides = new ArrayList<>();
+    List<Configuration.SamplingOverride> configured = configuration.preview.sampling.overrides;
+    for (int i = 0; i < configured.size(); i++) {
+      overrides.add(copy(configured.get(i), samplingOverridePercentages[i]));
+    }
+    // the sampling percentage and the sampling override percentages are swapped in together, since
+    // they are both captured by the new sampler
+    DelegatingSampler.getInstance()
+        .setDelegate(Samplers.getSampler(samplingPercentage, overrides, configuration));
+    BytecodeUtilImpl.samplingPercentage = samplingPercentage;
+    if (tailSampler != null) {
+      tailSampler.setBaselinePercentage(samplingPercentage);
+    }
+  }
+
+  private static float round(float samplingPercentage) {
+    if (!(samplingPercentage >= 0 && samplingPercentage <= 100)) {
+      throw new IllegalArgumentException(
+          "Sampling percentage must be between 0 and 100: " + samplingPercentage);
+    }
+    return ConfigurationBuilder.roundToNearest(samplingPercentage);
+  }
+
+  private static Configuration.SamplingOverride copy(
+      Configuration.SamplingOverride override, float percentage) {
+    Configuration.SamplingOverride copy = new Configuration.SamplingOverride();
+    copy.spanKind = override.spanKind;
+    copy.attributes = override.attributes;
+    copy.percentage = percentage;
+    copy.id = override.id;
+    return copy;
+  }
+}
@@ -27,9 +27,11 @@ import com.azure.monitor.opentelemetry.exporter.implementation.AiOperationNameSp
 import com.azure.monitor.opentelemetry.exporter.implementation.LogDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.MetricDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.SpanDataMapper;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionDetailsCache;
 import com.azure.monitor.opentelemetry.exporter.implementation.configuration.ConnectionString;
 import com.azure.monitor.opentelemetry.exporter.implementation.heartbeat.HeartbeatExporter;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryFileSink;
 import com.azure.monitor.opentelemetry.exporter.implementation.quickpulse.QuickPulse;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.Strings;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.TempDirs;
@@ -43,6 +45,7 @@ import com.microsoft.applicationinsights.agent.internal.configuration.RpConfigur
 import com.microsoft.applicationinsights.agent.internal.exporter.AgentLogExporter;
 import com.microsoft.applicationinsights.agent.internal.exporter.AgentMetricExporter;
 import com.microsoft.applicationinsights.agent.internal.exporter.AgentSpanExporter;
+import com.microsoft.applicationinsights.agent.internal.exporter.DuplicateLogSuppressor;
 import com.microsoft.applicationinsights.agent.internal.httpclient.LazyHttpClient;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.AiLegacyHeaderSpanProcessor;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.DelegatingPropagator;
@@ -55,19 +58,25 @@ import com.microsoft.applicationinsights.agent.internal.processors.SpanExporterW
 import com.microsoft.applicationinsights.agent.internal.profiler.triggers.AlertTriggerSpanExporter;
 import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
 import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatModule;
 import com.microsoft.applicationinsights.agent.internal.telemetry.BatchItemProcessor;
 import com.microsoft.applicationinsights.agent.internal.telemetry.MetricFilter;
+import com.microsoft.applicationinsights.agent.internal.telemetry.StandardMetricsAggregator;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryObservers;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TrackMetricAggregator;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogProcessor;
 import io.opentelemetry.sdk.logs.SdkLogEmitterProviderBuilder;
+import io.opentelemetry.sdk.logs.data.Severity;
 import io.opentelemetry.sdk.logs.export.BatchLogProcessor;
 import io.opentelemetry.sdk.logs.export.LogExporter;
 import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
@@ -81,6 +90,7 @@ import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
 import java.io.File;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -97,15 +107,19 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
   private static final Logger startupLogger =
       LoggerFactory.getLogger("com.microsoft.applicationinsights.agent");
 
-  @Nullable public static AgentLogExporter agentLogExporter;
+  @Nullable private static SeverityThresholdLogProcessor severityThresholdLogProcessor;
 
   @Nullable private static BatchLogProcessor batchLogProcessor;
   @Nullable private static BatchSpanProcessor batchSpanProcessor;
   @Nullable private static MetricReader metricReader;
+  @Nullable private static TailSampler tailSampler;
+  @Nullable private static StandardMetricsAggregator standardMetricsAggregator;
 
   @Override
   public void customize(AutoConfigurationCustomizer autoConfiguration) {
 
+    long phaseStartNanos = System.nanoTime();
+
     File tempDir =
         TempDirs.getApplicationInsightsTempDir(
             startupLogger,
@@ -123,6 +137,10 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
     // TODO (trask) should configuration validation be performed earlier?
     config.validate();
 
+    BackgroundInitializer backgroundInitializer =
+        new BackgroundInitializer(config.preview.backgroundInitialization);
+    AfterAgentListener.setBackgroundInitializer(backgroundInitializer);
+
     if (config.proxy.host != null) {
       LazyHttpClient.proxyHost = config.proxy.host;
       LazyHttpClient.proxyPortNumber = config.proxy.port;
@@ -136,6 +154,17 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
             .map(MetricFilter::new)
             .collect(Collectors.toList());
 
+    Configuration.FileExport fileExport = config.preview.fileExport;
+    TelemetryFileSink fileSink = null;
+    if (fileExport.enabled) {
+      fileSink =
+          TelemetryFileSink.create(
+              new File(fileExport.path),
+              fileExport.maxFileSizeMb * 1024L * 1024L,
+              fileExport.rotationIntervalSeconds,
+              fileExport.maxFiles);
+    }
+
     StatsbeatModule statsbeatModule = new StatsbeatModule();
     TelemetryClient telemetryClient =
         TelemetryClient.builder()
@@ -144,6 +173,7 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
             .setStatsbeatModule(statsbeatModule)
             .setTempDir(tempDir)
             .setGeneralExportQueueSize(config.preview.generalExportQueueCapacity)
+            .setGeneralExportQueuePriorityLanes(config.preview.generalExportQueuePriorityLanes)
             .setMetricsExportQueueSize(config.preview.metricsExportQueueCapacity)
             .setAadAuthentication(config.preview.authentication)
             .setConnectionStrings(
@@ -153,6 +183,10 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
             .setRoleName(config.role.name)
             .setRoleInstance(config.role.instance)
             .setDiskPersistenceMaxSizeMb(config.preview.diskPersistenceMaxSizeMb)
+            .setExportQueueOverflowToDisk(
+                config.preview.exportQueueOverflowToDisk,
+                config.preview.exportQueueOverflowMaxFilesPerSecond)
+            .setFileSink(fileSink)
             .build();
 
     // interval longer than 15 minutes is not allowed since we use this data for usage telemetry
@@ -166,41 +200,36 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
             telemetryClient.getMetricsBatchItemProcessor().trackAsync(telemetryItem);
           }
         };
-    HeartbeatExporter.start(
-        intervalSeconds, telemetryClient::populateDefaults, telemetryItemsConsumer);
+    backgroundInitializer.submit(
+        "heartbeat",
+        () ->
+            HeartbeatExporter.start(
+                intervalSeconds, telemetryClient::populateDefaults, telemetryItemsConsumer));
 
     TelemetryClient.setActive(telemetryClient);
+    phaseStartNanos = StartupTimer.record("telemetry client", phaseStartNanos);
 
     BytecodeUtilImpl.samplingPercentage = config.sampling.percentage;
     BytecodeUtilImpl.featureStatsbeat = statsbeatModule.getFeatureStatsbeat();
+    if (config.preview.trackMetricAggregation.enabled) {
+      BytecodeUtilImpl.trackMetricAggregator =
+          TrackMetricAggregator.start(
+              telemetryClient::newMetricTelemetryBuilder,
+              telemetryClient::trackAsync,
+              config.preview.trackMetricAggregation.maxSeries,
+              config.preview.metricIntervalSeconds);
+    }
 
     AppIdSupplier appIdSupplier = new AppIdSupplier(telemetryClient.getConnectionString());
     AiAppId.setSupplier(appIdSupplier);
 
     if (config.preview.profiler.enabled) {
-      try {
-        ProfilingInitializer.initialize(tempDir, appIdSupplier, config, telemetryClient);
-      } catch (RuntimeException e) {
-        startupLogger.warn("Failed to initialize profiler", e);
-      }
+      backgroundInitializer.submit(
+          "profiler",
+          () -> ProfilingInitializer.initialize(tempDir, appIdSupplier, config, telemetryClient));
     }
 
-    // this is for Azure Function Linux consumption plan support.
-    // TODO we can update this check after the new functions model is deployed.
-    if ("java".equals(System.getenv("FUNCTIONS_WORKER_RUNTIME"))) {
-      AzureFunctions.setup(
-          () -> telemetryClient.getConnectionString() != null,
-          new AzureFunctionsInitializer(
-              telemetryClient, SecondEntryPoint.agentLogExporter, appIdSupplier));
-    }
-
-    RpConfiguration rpConfiguration = FirstEntryPoint.getRpConfiguration();
-    if (rpConfiguration != null) {
-      RpConfigurationPolling.startPolling(rpConfiguration, config, telemetryClient, appIdSupplier);
-    }
-
-    // initialize StatsbeatModule
-    statsbeatModule.start(telemetryClient, config);
+    backgroundInitializer.submit("statsbeat", () -> statsbeatModule.start(telemetryClient, config));
 
     AfterAgentListener.setAppIdSupplier(appIdSupplier);
 
@@ -225,23 +254,96 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
       quickPulse = null;
     }
     telemetryClient.setQuickPulse(quickPulse);
+    StartupTimer.record("live metrics", phaseStartNanos);
+
+    // shared between spans and logs, since the same exception is often captured by both
+    ExceptionDetailsCache exceptionDetailsCache =
+        new ExceptionDetailsCache(
+            config.preview.exceptionStackTraces.cacheSize,
+            TimeUnit.SECONDS.toNanos(config.preview.exceptionStackTraces.fullStackIntervalSeconds),
+            Clock.getDefault());
+
+    if (config.preview.tailSampling.enabled) {
+      // shared between spans and logs, so that the logs of a trace follow the trace's decision
+      tailSampler =
+          TailSampler.start(
+              telemetryClient.getGeneralBatchItemProcessor()::trackAsync,
+              config.sampling.percentage,
+              config.preview.tailSampling);
+      BytecodeUtilImpl.tailSampler = tailSampler;
+    }
+
+    RuntimeControl runtimeControl =
+        new RuntimeControl(
+            config, SecondEntryPoint::setLogSeverityThreshold, quickPulse, tailSampler);
+    if (config.preview.jmxRuntimeControl.enabled) {
+      // registered once it is safe to initialize JMX (see AfterAgentListener)
+      AfterAgentListener.setRuntimeControl(runtimeControl);
+    }
+
+    // this is for Azure Function Linux consumption plan support.
+    // TODO we can update this check after the new functions model is deployed.
+    if ("java".equals(System.getenv("FUNCTIONS_WORKER_RUNTIME"))) {
+      AzureFunctions.setup(
+          () -> telemetryClient.getConnectionString() != null,
+          new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier));
+    }
+    if (config.preview.jmxExportQueueMetrics.enabled) {
+      // registered once it is safe to initialize JMX (see AfterAgentListener)
+      AfterAgentListener.setExportQueueMetrics(
+          Arrays.asList(
+              new ExportQueueMetrics("general", telemetryClient.getGeneralExportStats()),
+              new ExportQueueMetrics("metrics", telemetryClient.getMetricsExportStats())));
+    }
+
+    RpConfiguration rpConfiguration = FirstEntryPoint.getRpConfiguration();
+    if (rpConfiguration != null) {
+      RpConfigurationPolling.startPolling(
+          rpConfiguration, config, telemetryClient, appIdSupplier, runtimeControl);
+    }
 
     autoConfiguration
         .addTracerProviderCustomizer(
-            (builder, configProperties) ->
-                configureTracing(builder, telemetryClient, quickPulse, configProperties, config))
+            (builder, configProperties) -> {
+              long startNanos = System.nanoTime();
+              SdkTracerProviderBuilder tracerProvider =
+                  configureTracing(
+                      builder,
+                      telemetryClient,
+                      quickPulse,
+                      exceptionDetailsCache,
+                      configProperties,
+                      config);
+              StartupTimer.record("tracing", startNanos);
+              return tracerProvider;
+            })
         .addLogEmitterProviderCustomizer(
-            (builder, configProperties) ->
-                configureLogging(builder, telemetryClient, quickPulse, config))
+            (builder, configProperties) -> {
+              long startNanos = System.nanoTime();
+              SdkLogEmitterProviderBuilder logEmitterProvider =
+                  configureLogging(
+                      builder, telemetryClient, quickPulse, exceptionDetailsCache, config);
+              StartupTimer.record("log exporting", startNanos);
+              return logEmitterProvider;
+            })
         .addMeterProviderCustomizer(
-            (builder, configProperties) ->
-                configureMetrics(metricFilters, builder, telemetryClient, config));
+            (builder, configProperties) -> {
+              long startNanos = System.nanoTime();
+              SdkMeterProviderBuilder meterProvider =
+                  configureMetrics(metricFilters, builder, telemetryClient, config);
+              StartupTimer.record("metrics", startNanos);
+              return meterProvider;
+            });
 
     Runtime.getRuntime()
         .addShutdownHook(new Thread(() -> flushAll(telemetryClient).join(10, TimeUnit.SECONDS)));
   }
 
   private static CompletableResultCode flushAll(TelemetryClient telemetryClient) {
+    TrackMetricAggregator trackMetricAggregator = BytecodeUtilImpl.trackMetricAggregator;
+    if (trackMetricAggregator != null) {
+      trackMetricAggregator.flush();
+    }
     List<CompletableResultCode> results = new ArrayList<>();
     if (batchSpanProcessor != null) {
       results.add(batchSpanProcessor.forceFlush());
@@ -257,6 +359,14 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
     initialResult.whenComplete(
         () -> {
           if (initialResult.isSuccess()) {
+            // after the batch span processor flush, since the exported spans are recorded into
+            // the standard metrics by the AgentSpanExporter
+            if (standardMetricsAggregator != null) {
+              standardMetricsAggregator.flush();
+            }
+            if (tailSampler != null) {
+              tailSampler.flush();
+            }
             CompletableResultCode telemetryClientResult = telemetryClient.forceFlush();
             telemetryClientResult.whenComplete(
                 () -> {
@@ -277,6 +387,7 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
       SdkTracerProviderBuilder tracerProvider,
       TelemetryClient telemetryClient,
       @Nullable QuickPulse quickPulse,
+      ExceptionDetailsCache exceptionDetailsCache,
       ConfigProperties config,
       Configuration configuration) {
 
@@ -285,7 +396,8 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
         DelegatingPropagator.getInstance()
             .setUpStandardDelegate(
                 configuration.preview.additionalPropagators,
-                configuration.preview.legacyRequestIdPropagation.enabled);
+                configuration.preview.legacyRequestIdPropagation.enabled,
+                configuration.preview.sampling.propagateSamplingPercentage);
       }
       DelegatingSampler.getInstance()
           .setDelegate(Samplers.getSampler(configuration.sampling.percentage, configuration));
@@ -328,12 +440,29 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
 
     String tracesExporter = config.getString("otel.traces.exporter");
     if ("none".equals(tracesExporter)) { // "none" is the default set in AiConfigPropertySource
+      SpanDataMapper mapper =
+          createSpanDataMapper(
+              telemetryClient,
+              configuration.preview.captureHttpServer4xxAsError,
+              exceptionDetailsCache);
+
+      if (configuration.preview.preAggregatedStandardMetrics.enabled) {
+        standardMetricsAggregator =
+            StandardMetricsAggregator.start(
+                telemetryClient::newMetricTelemetryBuilder,
+                telemetryClient::trackAsync,
+                configuration.preview.preAggregatedStandardMetrics.maxSeries,
+                configuration.preview.metricIntervalSeconds);
+        // the sampled spans are recorded by the AgentSpanExporter, this processor only records the
+        // sampled out spans (see Samplers), so doesn't need to be chained with the batch span
+        // processor
+        tracerProvider.addSpanProcessor(
+            new StandardMetricsSpanProcessor(mapper, standardMetricsAggregator));
+      }
+
       SpanExporter spanExporter =
           createSpanExporter(
-              telemetryClient,
-              quickPulse,
-              configuration,
-              configuration.preview.captureHttpServer4xxAsError);
+              telemetryClient, quickPulse, configuration, mapper, standardMetricsAggregator);
 
       // using BatchSpanProcessor in order to get off of the application thread as soon as possible
       batchSpanProcessor =
@@ -347,39 +476,46 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
     return tracerProvider;
   }
 
+  private static SpanDataMapper createSpanDataMapper(
+      TelemetryClient telemetryClient,
+      boolean captureHttpServer4xxAsError,
+      ExceptionDetailsCache exceptionDetailsCache) {
+    return new SpanDataMapper(
+        captureHttpServer4xxAsError,
+        telemetryClient::populateDefaults,
+        (event, instrumentationName) -> {
+          boolean lettuce51 = instrumentationName.equals("io.opentelemetry.lettuce-5.1");
+          if (lettuce51 && event.getName().startsWith("redis.encode.")) {
+            // special case as these are noisy and come from the underlying library itself
+            return true;
+          }
+          boolean grpc16 = instrumentationName.equals("io.opentelemetry.grpc-1.6");
+          if (grpc16 && event.getName().equals("message")) {
+            // OpenTelemetry semantic conventions define semi-noisy grpc events
+            // https://github.com/open-telemetry/opentelemetry-specification/blob/main/specification/trace/semantic_conventions/rpc.md#events
+            //
+            // we want to suppress these (at least by default)
+            return true;
+          }
+          return false;
+        },
+        AiAppId::getAppId,
+        exceptionDetailsCache);
+  }
+
   private static SpanExporter createSpanExporter(
       TelemetryClient telemetryClient,
       @Nullable QuickPulse quickPulse,
       Configuration configuration,
-      boolean captureHttpServer4xxAsError) {
-
-    SpanDataMapper mapper =
-        new SpanDataMapper(
-            captureHttpServer4xxAsError,
-            telemetryClient::populateDefaults,
-            (event, instrumentationName) -> {
-              boolean lettuce51 = instrumentationName.equals("io.opentelemetry.lettuce-5.1");
-              if (lettuce51 && event.getName().startsWith("redis.encode.")) {
-                // special case as these are noisy and come from the underlying library itself
-                return true;
-              }
-              boolean grpc16 = instrumentationName.equals("io.opentelemetry.grpc-1.6");
-              if (grpc16 && event.getName().equals("message")) {
-                // OpenTelemetry semantic conventions define semi-noisy grpc events
-                // https://github.com/open-telemetry/opentelemetry-specification/blob/main/specification/trace/semantic_conventions/rpc.md#events
-                //
-                // we want to suppress these (at least by default)
-                return true;
-              }
-              return false;
-            },
-            AiAppId::getAppId);
+      SpanDataMapper mapper,
+      @Nullable StandardMetricsAggregator standardMetricsAggregator) {
 
     BatchItemProcessor batchItemProcessor = telemetryClient.getGeneralBatchItemProcessor();
 
     SpanExporter spanExporter =
         new StatsbeatSpanExporter(
-            new AgentSpanExporter(mapper, quickPulse, batchItemProcessor),
+            new AgentSpanExporter(
+                mapper, quickPulse, batchItemProcessor, standardMetricsAggregator, tailSampler),
             telemetryClient.getStatsbeatModule());
 
     List<ProcessorConfig> processorConfigs = getSpanProcessorConfigs(configuration);
@@ -431,9 +567,11 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
       SdkLogEmitterProviderBuilder builder,
       TelemetryClient telemetryClient,
       @Nullable QuickPulse quickPulse,
+      ExceptionDetailsCache exceptionDetailsCache,
       Configuration configuration) {
 
-    LogExporter logExporter = createLogExporter(telemetryClient, quickPulse, configuration);
+    LogExporter logExporter =
+        createLogExporter(telemetryClient, quickPulse, exceptionDetailsCache, configuration);
 
     // using BatchLogProcessor in order to get off of the application thread as soon as possible
     batchLogProcessor =
@@ -442,29 +580,55 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
     // inherited attributes log processor also handles operation name, ikey and role name attributes
     // and these all need access to Span.current(), so must be run before passing off to the
     // BatchLogProcessor
-    return builder.addLogProcessor(
+    LogProcessor logProcessor =
         new InheritedAttributesLogProcessor(
-            configuration.preview.inheritedAttributes, batchLogProcessor));
+            configuration.preview.inheritedAttributes, batchLogProcessor);
+
+    // the severity threshold is applied first, so that filtered logs are dropped right away on the
+    // application thread
+    severityThresholdLogProcessor =
+        new SeverityThresholdLogProcessor(
+            configuration.instrumentation.logging.getSeverity(), logProcessor);
+
+    return builder.addLogProcessor(severityThresholdLogProcessor);
+  }
+
+  private static void setLogSeverityThreshold(Severity threshold) {
+    if (severityThresholdLogProcessor != null) {
+      severityThresholdLogProcessor.setThreshold(threshold);
+    }
   }
 
   private static LogExporter createLogExporter(
       TelemetryClient telemetryClient,
       @Nullable QuickPulse quickPulse,
+      ExceptionDetailsCache exceptionDetailsCache,
       Configuration configuration) {
 
     LogDataMapper mapper =
         new LogDataMapper(
             configuration.preview.captureLoggingLevelAsCustomDimension,
-            telemetryClient::populateDefaults);
+            telemetryClient::populateDefaults,
+            exceptionDetailsCache);
+
+    Configuration.DuplicateLogSuppression duplicateLogSuppression =
+        configuration.preview.duplicateLogSuppression;
+    DuplicateLogSuppressor duplicateLogSuppressor = null;
+    if (duplicateLogSuppression.enabled) {
+      duplicateLogSuppressor =
+          new DuplicateLogSuppressor(
+              TimeUnit.SECONDS.toNanos(duplicateLogSuppression.windowSeconds),
+              duplicateLogSuppression.maxTrackedLogs,
+              Clock.getDefault());
+    }
 
-    agentLogExporter =
+    LogExporter logExporter =
         new AgentLogExporter(
-            configuration.instrumentation.logging.getSeverity(),
             mapper,
             quickPulse,
-            telemetryClient.getGeneralBatchItemProcessor());
-
-    LogExporter logExporter = agentLogExporter;
+            telemetryClient.getGeneralBatchItemProcessor(),
+            duplicateLogSuppressor,
+            tailSampler);
 
     List<ProcessorConfig> processorConfigs = getLogProcessorConfigs(configuration);
     if (!processorConfigs.isEmpty()) {
@@ -514,7 +678,10 @@ public class SecondEntryPoint implements AutoConfigurationCustomizerProvider {
       TelemetryClient telemetryClient,
       Configuration configuration) {
 
-    MetricDataMapper mapper = new MetricDataMapper(telemetryClient::populateDefaults);
+    MetricDataMapper mapper =
+        new MetricDataMapper(
+            telemetryClient::populateDefaults,
+            configuration.preview.exponentialHistogramPercentiles);
     metricReader =
         PeriodicMetricReader.builder(
                 new AgentMetricExporter(
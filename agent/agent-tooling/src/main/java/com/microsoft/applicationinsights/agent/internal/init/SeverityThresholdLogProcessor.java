@@ -0,0 +1,76 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogProcessor;
+import io.opentelemetry.sdk.logs.data.LogData;
+import io.opentelemetry.sdk.logs.data.Severity;
+
+// this is the first log processor in the chain, so that log records below the threshold, and log
+// records that belong to a sampled out trace, are dropped on the application thread with a couple
+// of comparisons, instead of going through the rest of the log processors and being queued and
+// handed off to the export thread before being dropped
+public class SeverityThresholdLogProcessor implements LogProcessor {
+
+  private volatile int threshold;
+
+  private final LogProcessor delegate;
+
+  public SeverityThresholdLogProcessor(Severity threshold, LogProcessor delegate) {
+    this.threshold = threshold.getSeverityNumber();
+    this.delegate = delegate;
+  }
+
+  // used during Azure Functions placeholder specialization
+  public void setThreshold(Severity threshold) {
+    this.threshold = threshold.getSeverityNumber();
+  }
+
+  @Override
+  public void emit(LogData log) {
+    if (log.getSeverity().getSeverityNumber() < threshold) {
+      return;
+    }
+    SpanContext spanContext = log.getSpanContext();
+    if (spanContext.isValid() && !spanContext.isSampled()) {
+      return;
+    }
+    delegate.emit(log);
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    return delegate.shutdown();
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    return delegate.forceFlush();
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
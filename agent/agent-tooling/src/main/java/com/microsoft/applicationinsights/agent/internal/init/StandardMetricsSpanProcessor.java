@@ -0,0 +1,77 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import static com.azure.monitor.opentelemetry.exporter.implementation.utils.AzureMonitorMsgId.EXPORTER_MAPPING_ERROR;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.SpanDataMapper;
+import com.azure.monitor.opentelemetry.exporter.implementation.logging.OperationLogger;
+import com.microsoft.applicationinsights.agent.internal.telemetry.StandardMetricsAggregator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+// sampled spans are recorded into the standard metrics by the AgentSpanExporter (since they need
+// to be mapped for export anyways), this processor covers the sampled out (record only) spans,
+// which never reach the exporter
+public class StandardMetricsSpanProcessor implements SpanProcessor {
+
+  private static final OperationLogger standardMetricsLogger =
+      new OperationLogger(StandardMetricsSpanProcessor.class, "Recording standard metrics");
+
+  private final SpanDataMapper mapper;
+  private final StandardMetricsAggregator aggregator;
+
+  public StandardMetricsSpanProcessor(SpanDataMapper mapper, StandardMetricsAggregator aggregator) {
+    this.mapper = mapper;
+    this.aggregator = aggregator;
+  }
+
+  @Override
+  public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (span.getSpanContext().isSampled()) {
+      return;
+    }
+    try {
+      // only mapping what the standard metrics need, since this runs on the application thread
+      // for every sampled out span
+      aggregator.recordNotExported(mapper.mapForStandardMetrics(span.toSpanData()));
+      standardMetricsLogger.recordSuccess();
+    } catch (Throwable t) {
+      standardMetricsLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+}
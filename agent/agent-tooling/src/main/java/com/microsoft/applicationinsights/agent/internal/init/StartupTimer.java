@@ -0,0 +1,66 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long each agent startup phase takes, so that the agent's share of the application's
+ * startup time can be broken down with debug logging.
+ *
+ * <p>No logger is used here, since the first phases run before logging has been configured.
+ */
+final class StartupTimer {
+
+  // guarded by itself, since the background phases complete on a different thread
+  private static final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+
+  /**
+   * Records the time elapsed since {@code startNanos} for the given phase, and returns the current
+   * time so that it can be used as the start of the next phase.
+   */
+  static long record(String phase, long startNanos) {
+    long nowNanos = System.nanoTime();
+    synchronized (phaseMillis) {
+      phaseMillis.put(phase, NANOSECONDS.toMillis(nowNanos - startNanos));
+    }
+    return nowNanos;
+  }
+
+  static String getSummary() {
+    StringBuilder sb = new StringBuilder();
+    synchronized (phaseMillis) {
+      for (Map.Entry<String, Long> entry : phaseMillis.entrySet()) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(entry.getKey()).append(": ").append(entry.getValue()).append(" ms");
+      }
+    }
+    return sb.toString();
+  }
+
+  private StartupTimer() {}
+}
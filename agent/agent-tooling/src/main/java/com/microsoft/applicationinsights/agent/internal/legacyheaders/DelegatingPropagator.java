@@ -21,7 +21,7 @@
 
 package com.microsoft.applicationinsights.agent.internal.legacyheaders;
 
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import com.microsoft.applicationinsights.agent.internal.sampling.PropagatedSamplingPercentage;
 import io.opentelemetry.api.baggage.propagation.W3CBaggagePropagator;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
@@ -50,7 +50,9 @@ public class DelegatingPropagator implements TextMapPropagator {
   }
 
   public void setUpStandardDelegate(
-      List<String> additionalPropagators, boolean legacyRequestIdPropagationEnabled) {
+      List<String> additionalPropagators,
+      boolean legacyRequestIdPropagationEnabled,
+      boolean samplingPercentagePropagationEnabled) {
     List<TextMapPropagator> propagators = new ArrayList<>();
 
     for (String additionalPropagator : additionalPropagators) {
@@ -73,9 +75,9 @@ public class DelegatingPropagator implements TextMapPropagator {
       propagators.add(AiLegacyPropagator.getInstance());
     }
 
-    // currently using modified W3CTraceContextPropagator because "ai-internal-sp" trace state
-    // shouldn't be sent over the wire (at least not yet, and not with that name)
-    propagators.add(new ModifiedW3cTraceContextPropagator());
+    // using modified W3CTraceContextPropagator because "ai-internal-sp" trace state shouldn't be
+    // sent over the wire with that name (see PropagatedSamplingPercentage)
+    propagators.add(new ModifiedW3cTraceContextPropagator(samplingPercentagePropagationEnabled));
     propagators.add(W3CBaggagePropagator.getInstance());
 
     delegate = TextMapPropagator.composite(propagators);
@@ -100,6 +102,12 @@ public class DelegatingPropagator implements TextMapPropagator {
 
     private final TextMapPropagator delegate = W3CTraceContextPropagator.getInstance();
 
+    private final boolean samplingPercentagePropagationEnabled;
+
+    private ModifiedW3cTraceContextPropagator(boolean samplingPercentagePropagationEnabled) {
+      this.samplingPercentagePropagationEnabled = samplingPercentagePropagationEnabled;
+    }
+
     @Override
     public Collection<String> fields() {
       return delegate.fields();
@@ -107,19 +115,13 @@ public class DelegatingPropagator implements TextMapPropagator {
 
     @Override
     public <C> void inject(Context context, @Nullable C carrier, TextMapSetter<C> setter) {
-      // do not propagate sampling percentage downstream YET
       SpanContext spanContext = Span.fromContext(context).getSpanContext();
-      // sampling percentage should always be present, so no need to optimize with checking if
-      // present
       TraceState traceState = spanContext.getTraceState();
-      TraceState updatedTraceState;
-      if (traceState.size() == 1
-          && traceState.get(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE) != null) {
-        // this is a common case, worth optimizing
-        updatedTraceState = TraceState.getDefault();
-      } else {
-        updatedTraceState =
-            traceState.toBuilder().remove(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE).build();
+      TraceState updatedTraceState =
+          PropagatedSamplingPercentage.toWire(traceState, samplingPercentagePropagationEnabled);
+      if (updatedTraceState == traceState) {
+        delegate.inject(context, carrier, setter);
+        return;
       }
       SpanContext updatedSpanContext = new ModifiedSpanContext(spanContext, updatedTraceState);
       delegate.inject(Context.root().with(Span.wrap(updatedSpanContext)), carrier, setter);
@@ -127,7 +129,23 @@ public class DelegatingPropagator implements TextMapPropagator {
 
     @Override
     public <C> Context extract(Context context, @Nullable C carrier, TextMapGetter<C> getter) {
-      return delegate.extract(context, carrier, getter);
+      Context extracted = delegate.extract(context, carrier, getter);
+      SpanContext spanContext = Span.fromContext(extracted).getSpanContext();
+      if (!spanContext.isValid()) {
+        return extracted;
+      }
+      TraceState traceState = spanContext.getTraceState();
+      TraceState updatedTraceState = PropagatedSamplingPercentage.fromWire(traceState);
+      if (updatedTraceState == traceState) {
+        return extracted;
+      }
+      return extracted.with(
+          Span.wrap(
+              SpanContext.createFromRemoteParent(
+                  spanContext.getTraceId(),
+                  spanContext.getSpanId(),
+                  spanContext.getTraceFlags(),
+                  updatedTraceState)));
     }
   }
 
@@ -54,12 +54,21 @@ public class ApplicationInsightsAppenderClassFileTransformer implements ClassFil
       @Nullable Class<?> classBeingRedefined,
       @Nullable ProtectionDomain protectionDomain,
       byte[] classfileBuffer) {
-    if (!UNSHADED_CLASS_NAME_LOGBACK.equals(className)
-        && !UNSHADED_CLASS_NAME_LOG_4_JV_2.equals(className)
-        && !UNSHADED_CLASS_NAME_LOG_4_JV_1_2.equals(className)) {
+    if (className == null
+        || (!UNSHADED_CLASS_NAME_LOGBACK.equals(className)
+            && !UNSHADED_CLASS_NAME_LOG_4_JV_2.equals(className)
+            && !UNSHADED_CLASS_NAME_LOG_4_JV_1_2.equals(className))) {
       return null;
     }
 
+    return TransformedClassCache.transform(
+        className,
+        classfileBuffer,
+        ApplicationInsightsAppenderClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ClassVisitor cv = new ApplicationInsightsAppenderClassVisitor(cw);
@@ -43,8 +43,10 @@ import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUt
 import com.microsoft.applicationinsights.agent.bootstrap.BytecodeUtil.BytecodeUtilDelegate;
 import com.microsoft.applicationinsights.agent.internal.legacyheaders.AiLegacyPropagator;
 import com.microsoft.applicationinsights.agent.internal.sampling.SamplingScoreGeneratorV2;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.FeatureStatsbeat;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TrackMetricAggregator;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.context.Context;
@@ -66,10 +68,17 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   private static final AtomicBoolean alreadyLoggedError = new AtomicBoolean();
 
+  static final float SAMPLED_OUT = -1;
+
   public static volatile float samplingPercentage = 100;
 
   public static volatile FeatureStatsbeat featureStatsbeat;
 
+  @Nullable public static volatile TrackMetricAggregator trackMetricAggregator;
+
+  // the items of a trace are kept or dropped together with the trace's spans and logs
+  @Nullable public static volatile TailSampler tailSampler;
+
   @Override
   public void trackEvent(
       @Nullable Date timestamp,
@@ -82,7 +91,13 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
-    EventTelemetryBuilder telemetryBuilder = TelemetryClient.getActive().newEventTelemetryBuilder();
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, true);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    EventTelemetryBuilder telemetryBuilder = telemetryClient.newEventTelemetryBuilder();
 
     telemetryBuilder.setName(name);
     for (Map.Entry<String, Double> entry : measurements.entrySet()) {
@@ -93,16 +108,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   // TODO do not track if perf counter (?)
@@ -122,8 +137,32 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
-    MetricTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newMetricTelemetryBuilder();
+    TrackMetricAggregator aggregator = trackMetricAggregator;
+    // a single value (as opposed to one that has already been aggregated by the caller)
+    if (aggregator != null
+        && count == null
+        && min == null
+        && max == null
+        && stdDev == null
+        && aggregator.record(
+            name,
+            value,
+            properties,
+            tags,
+            instrumentationKey,
+            timestamp != null ? timestamp.getTime() : System.currentTimeMillis())) {
+      if (featureStatsbeat != null) {
+        featureStatsbeat.track2xBridgeUsage();
+      }
+      return;
+    }
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, false);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    MetricTelemetryBuilder telemetryBuilder = telemetryClient.newMetricTelemetryBuilder();
 
     MetricPointBuilder point = new MetricPointBuilder();
     point.setName(name);
@@ -139,16 +178,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, false);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   @Override
@@ -170,8 +209,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, true);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
     RemoteDependencyTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newRemoteDependencyTelemetryBuilder();
+        telemetryClient.newRemoteDependencyTelemetryBuilder();
 
     telemetryBuilder.setName(name);
     if (id == null) {
@@ -181,7 +226,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
     telemetryBuilder.setResultCode(resultCode);
     if (totalMillis != null) {
-      telemetryBuilder.setDuration(FormattedDuration.fromNanos(MILLISECONDS.toNanos(totalMillis)));
+      telemetryBuilder.setDuration(MILLISECONDS.toNanos(totalMillis));
     }
     telemetryBuilder.setSuccess(success);
     telemetryBuilder.setData(commandName);
@@ -195,16 +240,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   @Override
@@ -221,8 +266,13 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
-    PageViewTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newPageViewTelemetryBuilder();
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, true);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    PageViewTelemetryBuilder telemetryBuilder = telemetryClient.newPageViewTelemetryBuilder();
 
     telemetryBuilder.setName(name);
     if (uri != null) {
@@ -237,16 +287,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   @Override
@@ -260,8 +310,13 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (message == null) {
       return;
     }
-    MessageTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newMessageTelemetryBuilder();
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, true);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    MessageTelemetryBuilder telemetryBuilder = telemetryClient.newMessageTelemetryBuilder();
 
     telemetryBuilder.setMessage(message);
     if (severityLevel != -1) {
@@ -273,16 +328,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   @Override
@@ -302,8 +357,13 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (Strings.isNullOrEmpty(name)) {
       return;
     }
-    RequestTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newRequestTelemetryBuilder();
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, true);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    RequestTelemetryBuilder telemetryBuilder = telemetryClient.newRequestTelemetryBuilder();
 
     if (id == null) {
       telemetryBuilder.setId(AiLegacyPropagator.generateSpanId());
@@ -315,7 +375,7 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
       telemetryBuilder.setUrl(url.toString());
     }
     if (duration != null) {
-      telemetryBuilder.setDuration(FormattedDuration.fromNanos(MILLISECONDS.toNanos(duration)));
+      telemetryBuilder.setDuration(MILLISECONDS.toNanos(duration));
     }
     telemetryBuilder.setResponseCode(responseCode);
     telemetryBuilder.setSuccess(success);
@@ -328,16 +388,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   @Override
@@ -352,8 +412,13 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     if (throwable == null) {
       return;
     }
-    ExceptionTelemetryBuilder telemetryBuilder =
-        TelemetryClient.getActive().newExceptionTelemetryBuilder();
+    SpanContext spanContext = Span.current().getSpanContext();
+    float samplingPercentage = beginTrack(spanContext, tags, true);
+    if (samplingPercentage == SAMPLED_OUT) {
+      return;
+    }
+    TelemetryClient telemetryClient = TelemetryClient.getActive();
+    ExceptionTelemetryBuilder telemetryBuilder = telemetryClient.newExceptionTelemetryBuilder();
 
     telemetryBuilder.setExceptions(TelemetryUtil.getExceptions(throwable));
     if (severityLevel != -1) {
@@ -369,16 +434,16 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
 
     if (timestamp != null) {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     } else {
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
     }
     selectivelySetTags(telemetryBuilder, tags);
     if (instrumentationKey != null) {
       telemetryBuilder.setInstrumentationKey(instrumentationKey);
     }
 
-    track(telemetryBuilder, tags, true);
+    track(telemetryClient, telemetryBuilder, tags, spanContext, samplingPercentage);
   }
 
   @Nullable
@@ -402,6 +467,14 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
 
   @Override
   public void flush() {
+    TrackMetricAggregator aggregator = trackMetricAggregator;
+    if (aggregator != null) {
+      aggregator.flush();
+    }
+    TailSampler tailSampler = BytecodeUtilImpl.tailSampler;
+    if (tailSampler != null) {
+      tailSampler.flush();
+    }
     // this is not null because sdk instrumentation is not added until TelemetryClient.setActive()
     // is called
     TelemetryClient.getActive().forceFlush().join(10, SECONDS);
@@ -414,98 +487,90 @@ public class BytecodeUtilImpl implements BytecodeUtilDelegate {
     }
   }
 
-  private static void track(
-      AbstractTelemetryBuilder telemetryBuilder, Map<String, String> tags, boolean applySampling) {
+  // the sampling decision only depends on the tags and the current span context, so it is made
+  // before the telemetry item is built, which means that sampled out items cost close to nothing
+  //
+  // returns the sampling percentage that the item is tracked with, or SAMPLED_OUT
+  static float beginTrack(
+      SpanContext spanContext, Map<String, String> tags, boolean applySampling) {
 
-    String operationId = tags.get(ContextTagKeys.AI_OPERATION_ID.toString());
+    if (featureStatsbeat != null) {
+      featureStatsbeat.track2xBridgeUsage();
+    }
 
-    SpanContext context = Span.current().getSpanContext();
-    if (context.isValid()) {
-      String operationParentId = tags.get(ContextTagKeys.AI_OPERATION_PARENT_ID.toString());
-      String operationName = tags.get(ContextTagKeys.AI_OPERATION_NAME.toString());
+    String operationId = tags.get(ContextTagKeys.AI_OPERATION_ID.toString());
 
-      trackInsideValidSpanContext(
-          telemetryBuilder, operationId, operationParentId, operationName, context, applySampling);
-    } else {
-      trackAsStandalone(telemetryBuilder, operationId, applySampling);
+    if (isInsideSpanContext(spanContext, operationId)) {
+      if (!spanContext.isSampled()) {
+        // sampled out
+        return SAMPLED_OUT;
+      }
+      if (!applySampling) {
+        return 100;
+      }
+      return TelemetryUtil.getSamplingPercentage(
+          spanContext.getTraceState(), BytecodeUtilImpl.samplingPercentage, false);
     }
 
-    if (featureStatsbeat != null) {
-      featureStatsbeat.track2xBridgeUsage();
+    if (!applySampling) {
+      return 100;
     }
+    if (tailSampler != null && operationId != null) {
+      // the item is kept or dropped together with the rest of its trace (see track())
+      return 100;
+    }
+    // sampling is done using the configured sampling percentage
+    float samplingPercentage = BytecodeUtilImpl.samplingPercentage;
+    if (!sample(operationId, samplingPercentage)) {
+      logger.debug("Item sampled out");
+      return SAMPLED_OUT;
+    }
+    return samplingPercentage;
   }
 
-  private static void trackInsideValidSpanContext(
+  private static void track(
+      TelemetryClient telemetryClient,
       AbstractTelemetryBuilder telemetryBuilder,
-      @Nullable String operationId,
-      @Nullable String operationParentId,
-      @Nullable String operationName,
+      Map<String, String> tags,
       SpanContext spanContext,
-      boolean applySampling) {
+      float samplingPercentage) {
 
-    if (operationId != null && !operationId.equals(spanContext.getTraceId())) {
-      trackAsStandalone(telemetryBuilder, operationId, applySampling);
-      return;
-    }
-
-    if (!spanContext.isSampled()) {
-      // sampled out
-      return;
-    }
+    String operationId = tags.get(ContextTagKeys.AI_OPERATION_ID.toString());
 
-    telemetryBuilder.addTag(ContextTagKeys.AI_OPERATION_ID.toString(), spanContext.getTraceId());
+    if (isInsideSpanContext(spanContext, operationId)) {
+      telemetryBuilder.addTag(ContextTagKeys.AI_OPERATION_ID.toString(), spanContext.getTraceId());
 
-    if (operationParentId == null) {
-      telemetryBuilder.addTag(
-          ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), spanContext.getSpanId());
-    }
-
-    if (operationName == null) {
-      Span localRootSpan = LocalRootSpan.fromContextOrNull(Context.current());
-      if (localRootSpan instanceof ReadableSpan) {
+      if (tags.get(ContextTagKeys.AI_OPERATION_PARENT_ID.toString()) == null) {
         telemetryBuilder.addTag(
-            ContextTagKeys.AI_OPERATION_NAME.toString(),
-            AiOperationNameSpanProcessor.getOperationName((ReadableSpan) localRootSpan));
+            ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), spanContext.getSpanId());
       }
-    }
 
-    if (applySampling) {
-      float samplingPercentage =
-          TelemetryUtil.getSamplingPercentage(
-              spanContext.getTraceState(), BytecodeUtilImpl.samplingPercentage, false);
-
-      if (samplingPercentage != 100) {
-        telemetryBuilder.setSampleRate(samplingPercentage);
+      if (tags.get(ContextTagKeys.AI_OPERATION_NAME.toString()) == null) {
+        Span localRootSpan = LocalRootSpan.fromContextOrNull(Context.current());
+        if (localRootSpan instanceof ReadableSpan) {
+          telemetryBuilder.addTag(
+              ContextTagKeys.AI_OPERATION_NAME.toString(),
+              AiOperationNameSpanProcessor.getOperationName((ReadableSpan) localRootSpan));
+        }
       }
     }
-    // this is not null because sdk instrumentation is not added until TelemetryClient.setActive()
-    // is called
-    TelemetryClient.getActive().trackAsync(telemetryBuilder.build());
-  }
-
-  private static void trackAsStandalone(
-      AbstractTelemetryBuilder telemetryBuilder, String operationId, boolean applySampling) {
-    if (applySampling) {
-      // sampling is done using the configured sampling percentage
-      float samplingPercentage = BytecodeUtilImpl.samplingPercentage;
-      if (!sample(operationId, samplingPercentage)) {
-        logger.debug("Item {} sampled out", telemetryBuilder.getClass().getSimpleName());
-        // sampled out
-        return;
-      }
-      // sampled in
 
-      if (samplingPercentage != 100) {
-        telemetryBuilder.setSampleRate(samplingPercentage);
-      }
+    if (samplingPercentage != 100) {
+      telemetryBuilder.setSampleRate(samplingPercentage);
     }
 
-    // this is not null because sdk instrumentation is not added until TelemetryClient.setActive()
-    // is called
-    TelemetryClient.getActive().trackAsync(telemetryBuilder.build());
+    // with tail sampling, every trace is recorded when it starts (see Samplers), so the item also
+    // has to wait for its trace to be decided
+    telemetryClient.trackAsync(telemetryBuilder.build(), tailSampler);
+  }
+
+  private static boolean isInsideSpanContext(
+      SpanContext spanContext, @Nullable String operationId) {
+    return spanContext.isValid()
+        && (operationId == null || operationId.equals(spanContext.getTraceId()));
   }
 
-  private static boolean sample(String operationId, double samplingPercentage) {
+  private static boolean sample(@Nullable String operationId, double samplingPercentage) {
     if (samplingPercentage == 100) {
       // just an optimization
       return true;
@@ -62,6 +62,14 @@ public class DependencyTelemetryClassFileTransformer implements ClassFileTransfo
     if (!unshadedClassName.equals(className)) {
       return null;
     }
+    return TransformedClassCache.transform(
+        unshadedClassName,
+        classfileBuffer,
+        DependencyTelemetryClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       DependencyTelemetryClassVisitor cv = new DependencyTelemetryClassVisitor(cw);
@@ -60,6 +60,12 @@ public class ExceptionTelemetryClassFileTransformer implements ClassFileTransfor
     if (!unshadedClassName.equals(className)) {
       return null;
     }
+    return TransformedClassCache.transform(
+        unshadedClassName, classfileBuffer, ExceptionTelemetryClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ExceptionTelemetryClassVisitor cv = new ExceptionTelemetryClassVisitor(cw);
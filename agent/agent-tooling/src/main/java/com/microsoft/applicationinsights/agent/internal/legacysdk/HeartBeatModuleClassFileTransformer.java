@@ -54,6 +54,12 @@ public class HeartBeatModuleClassFileTransformer implements ClassFileTransformer
     if (!unshadedClassName.equals(className)) {
       return null;
     }
+    return TransformedClassCache.transform(
+        unshadedClassName, classfileBuffer, HeartBeatModuleClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ClassVisitor cv = new HeartBeatModuleClassVisitor(cw);
@@ -54,6 +54,14 @@ public class PerformanceCounterModuleClassFileTransformer implements ClassFileTr
     if (!unshadedClassName.equals(className)) {
       return null;
     }
+    return TransformedClassCache.transform(
+        unshadedClassName,
+        classfileBuffer,
+        PerformanceCounterModuleClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ClassVisitor cv = new PerformanceCounterModuleClassVisitor(cw);
@@ -54,6 +54,12 @@ public class QuickPulseClassFileTransformer implements ClassFileTransformer {
     if (!unshadedClassName.equals(className)) {
       return null;
     }
+    return TransformedClassCache.transform(
+        unshadedClassName, classfileBuffer, QuickPulseClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ClassVisitor cv = new QuickPulseClassVisitor(cw);
@@ -55,6 +55,12 @@ public class RequestNameHandlerClassFileTransformer implements ClassFileTransfor
       return null;
     }
 
+    return TransformedClassCache.transform(
+        unshadedClassName, classfileBuffer, RequestNameHandlerClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ClassVisitor cv = new RequestNameHandlerClassVisitor(cw);
@@ -61,6 +61,12 @@ public class RequestTelemetryClassFileTransformer implements ClassFileTransforme
     if (!unshadedClassName.equals(className)) {
       return null;
     }
+    return TransformedClassCache.transform(
+        unshadedClassName, classfileBuffer, RequestTelemetryClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       RequestTelemetryClassVisitor cv = new RequestTelemetryClassVisitor(cw);
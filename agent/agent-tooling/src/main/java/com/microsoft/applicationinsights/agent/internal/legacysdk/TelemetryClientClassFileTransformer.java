@@ -91,6 +91,12 @@ public class TelemetryClientClassFileTransformer implements ClassFileTransformer
     // TODO (heya) track this via FeatureStatsbeat
     StatusFile.putValueAndWrite("SDKPresent", true);
 
+    return TransformedClassCache.transform(
+        unshadedClassName, classfileBuffer, TelemetryClientClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       TelemetryClientClassVisitor cv = new TelemetryClientClassVisitor(cw);
@@ -0,0 +1,183 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.legacysdk;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of the bytecode produced by the legacy SDK class file transformers, so that the
+ * same 2.x SDK classes are not parsed and rewritten again on every JVM start.
+ *
+ * <p>Entries are keyed by a hash of the agent version, the class name and the original class bytes,
+ * so that a different SDK jar or agent version never reads a stale entry. Each entry is written to
+ * a temporary file and then moved into place, so that a JVM starting concurrently never reads a
+ * partially written entry, and carries a checksum, so that a corrupted entry is discarded instead
+ * of being loaded.
+ */
+public class TransformedClassCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransformedClassCache.class);
+
+  private static final int CHECKSUM_LENGTH = 8;
+
+  @Nullable private static volatile TransformedClassCache instance;
+
+  private final Path directory;
+  private final String agentVersion;
+
+  public static void enable(Path directory, String agentVersion) {
+    instance = new TransformedClassCache(directory, agentVersion);
+  }
+
+  // called by the class file transformers once they have matched the class name, so that only the
+  // classes that they actually transform are hashed
+  @Nullable
+  static byte[] transform(String className, byte[] classfileBuffer, Transformer transformer) {
+    TransformedClassCache cache = instance;
+    if (cache == null) {
+      return transformer.transform(classfileBuffer);
+    }
+    return cache.getOrTransform(className, classfileBuffer, transformer);
+  }
+
+  // visible for testing
+  TransformedClassCache(Path directory, String agentVersion) {
+    this.directory = directory;
+    this.agentVersion = agentVersion;
+  }
+
+  // visible for testing
+  @Nullable
+  byte[] getOrTransform(String className, byte[] classfileBuffer, Transformer transformer) {
+    Path file = directory.resolve(getKey(className, classfileBuffer) + ".class");
+    byte[] cached = read(file);
+    if (cached != null) {
+      return cached;
+    }
+    byte[] transformed = transformer.transform(classfileBuffer);
+    if (transformed != null) {
+      write(file, transformed);
+    }
+    return transformed;
+  }
+
+  private String getKey(String className, byte[] classfileBuffer) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+    digest.update(agentVersion.getBytes(UTF_8));
+    digest.update((byte) 0);
+    digest.update(className.getBytes(UTF_8));
+    digest.update((byte) 0);
+    digest.update(classfileBuffer);
+
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  @Nullable
+  private static byte[] read(Path file) {
+    byte[] entry;
+    try {
+      entry = Files.readAllBytes(file);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      logger.debug("Unable to read transformed class from {}: {}", file, e.toString());
+      return null;
+    }
+    if (entry.length > CHECKSUM_LENGTH) {
+      byte[] bytecode = Arrays.copyOfRange(entry, CHECKSUM_LENGTH, entry.length);
+      if (ByteBuffer.wrap(entry).getLong() == checksum(bytecode)) {
+        return bytecode;
+      }
+    }
+    logger.debug("Discarding corrupted transformed class: {}", file);
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      logger.debug("Unable to delete corrupted transformed class {}: {}", file, e.toString());
+    }
+    return null;
+  }
+
+  private void write(Path file, byte[] bytecode) {
+    Path tempFile = null;
+    try {
+      Files.createDirectories(directory);
+      tempFile = Files.createTempFile(directory, "transformed", ".tmp");
+      Files.write(
+          tempFile,
+          ByteBuffer.allocate(CHECKSUM_LENGTH + bytecode.length)
+              .putLong(checksum(bytecode))
+              .put(bytecode)
+              .array());
+      try {
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to cache transformed class in {}: {}", directory, e.toString());
+      if (tempFile != null) {
+        try {
+          Files.deleteIfExists(tempFile);
+        } catch (IOException ignored) {
+          // the temporary file does not affect the cache, since it is never read
+        }
+      }
+    }
+  }
+
+  private static long checksum(byte[] bytecode) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(bytecode, 0, bytecode.length);
+    return crc32.getValue();
+  }
+
+  interface Transformer {
+    @Nullable
+    byte[] transform(byte[] classfileBuffer);
+  }
+}
@@ -56,6 +56,14 @@ public class WebRequestTrackingFilterClassFileTransformer implements ClassFileTr
       return null;
     }
 
+    return TransformedClassCache.transform(
+        unshadedClassName,
+        classfileBuffer,
+        WebRequestTrackingFilterClassFileTransformer::transformClass);
+  }
+
+  @Nullable
+  private static byte[] transformClass(byte[] classfileBuffer) {
     try {
       ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
       ClassVisitor cv = new WebRequestTrackingFilterClassVisitor(cw);
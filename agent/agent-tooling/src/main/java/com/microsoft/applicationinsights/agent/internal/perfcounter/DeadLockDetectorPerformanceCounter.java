@@ -36,25 +36,59 @@ import java.lang.management.ThreadMXBean;
  *
  * <p>Otherwise the number of detected blocked threads is sent, along with minimal stack traces as
  * trace telemetries.
+ *
+ * <p>Since detecting deadlocks requires a safepoint, which is expensive on JVMs with thousands of
+ * threads, the detection can be limited to object monitors, and can back off exponentially (up to
+ * a maximum multiple of the collection interval) while no deadlocks are found. No metric is sent
+ * for the collections that are skipped while backing off.
  */
 public final class DeadLockDetectorPerformanceCounter implements PerformanceCounter {
 
   private static final String METRIC_NAME = "Suspected Deadlocked Threads";
 
-  // TODO (trask) this seems low..
-  private static final int MAX_STACK_TRACE = 3;
-
   private final ThreadMXBean threadBean;
+  private final boolean monitorsOnly;
+  private final int maxBackoffMultiplier;
+  private final int maxStackDepth;
+
+  private int backoffMultiplier = 1;
+  private int skippedCollections;
+
+  public DeadLockDetectorPerformanceCounter(
+      boolean monitorsOnly, int maxBackoffMultiplier, int maxStackDepth) {
+    this(ManagementFactory.getThreadMXBean(), monitorsOnly, maxBackoffMultiplier, maxStackDepth);
+  }
+
+  // visible for testing
+  DeadLockDetectorPerformanceCounter(
+      ThreadMXBean threadBean, boolean monitorsOnly, int maxBackoffMultiplier, int maxStackDepth) {
+    this.threadBean = threadBean;
+    this.monitorsOnly = monitorsOnly;
+    this.maxBackoffMultiplier = maxBackoffMultiplier;
+    this.maxStackDepth = maxStackDepth;
+  }
 
-  public DeadLockDetectorPerformanceCounter() {
-    threadBean = ManagementFactory.getThreadMXBean();
+  public static boolean isSupported(boolean monitorsOnly) {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    return monitorsOnly
+        ? threadBean.isObjectMonitorUsageSupported()
+        : threadBean.isSynchronizerUsageSupported();
   }
 
   @Override
   public void report(TelemetryClient telemetryClient) {
 
-    long[] threadIds = threadBean.findDeadlockedThreads();
-    int blockedThreadCount = threadIds == null ? 0 : threadIds.length;
+    if (++skippedCollections < backoffMultiplier) {
+      return;
+    }
+    skippedCollections = 0;
+
+    long[] threadIds = findDeadlockedThreads();
+    int blockedThreadCount = threadIds.length;
+
+    // back off while there are no deadlocks, and go back to every collection once there are
+    backoffMultiplier =
+        blockedThreadCount == 0 ? Math.min(backoffMultiplier * 2, maxBackoffMultiplier) : 1;
 
     telemetryClient.trackAsync(telemetryClient.newMetricTelemetry(METRIC_NAME, blockedThreadCount));
 
@@ -63,20 +97,34 @@ public final class DeadLockDetectorPerformanceCounter implements PerformanceCoun
     }
   }
 
+  // visible for testing
+  long[] findDeadlockedThreads() {
+    long[] threadIds =
+        monitorsOnly
+            ? threadBean.findMonitorDeadlockedThreads()
+            : threadBean.findDeadlockedThreads();
+    return threadIds == null ? new long[0] : threadIds;
+  }
+
   private void sendDetailedMessage(TelemetryClient telemetryClient, long[] threadIds) {
 
     MessageTelemetryBuilder telemetryBuilder = telemetryClient.newMessageTelemetryBuilder();
 
+    telemetryBuilder.setMessage(getDetailedMessage(threadIds));
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
+    telemetryClient.trackAsync(telemetryBuilder.build());
+  }
+
+  // visible for testing
+  String getDetailedMessage(long[] threadIds) {
     StringBuilder sb = new StringBuilder("Suspected deadlocked threads: ");
-    for (long threadId : threadIds) {
-      ThreadInfo threadInfo = threadBean.getThreadInfo(threadId, MAX_STACK_TRACE);
+    // a single call, since each call requires its own safepoint
+    for (ThreadInfo threadInfo : threadBean.getThreadInfo(threadIds, maxStackDepth)) {
       if (threadInfo != null) {
         appendThreadInfoAndStack(sb, threadInfo);
       }
     }
-    telemetryBuilder.setMessage(sb.toString());
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
-    telemetryClient.trackAsync(telemetryBuilder.build());
+    return sb.toString();
   }
 
   private static void appendThreadInfoAndStack(StringBuilder sb, ThreadInfo threadInfo) {
@@ -0,0 +1,248 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// reports the same system cpu and process disk i/o counters as OshiPerformanceCounter, but reads
+// them directly from procfs on Linux, which avoids initializing OSHI (and JNA) altogether, and
+// avoids building a map (and parsing strings) on every collection
+public class LinuxPerformanceCounter implements PerformanceCounter {
+
+  private static final Logger logger = LoggerFactory.getLogger(LinuxPerformanceCounter.class);
+
+  private static final double MILLIS_IN_SECOND = 1000;
+
+  // USER_HZ, which is what /proc/stat is reported in, is 100 on all Linux architectures that
+  // matter here, and reading the real value (sysconf(_SC_CLK_TCK)) would require JNA
+  private static final long MILLIS_PER_TICK = 10;
+
+  private static final byte[] READ_BYTES = bytes("read_bytes:");
+  private static final byte[] WRITE_BYTES = bytes("write_bytes:");
+  private static final byte[] CPU = bytes("cpu");
+
+  private final Path processIoPath;
+  private final Path statPath;
+
+  // reused across collections, grows if a file doesn't fit
+  private byte[] buffer = new byte[4096];
+
+  private long prevCollectionTimeMillis;
+  private long prevProcessBytes;
+  private long prevTotalProcessorMillis;
+
+  // populated by readTotalProcessorMillis()
+  private int logicalProcessorCount;
+
+  private boolean hasError;
+
+  public LinuxPerformanceCounter() {
+    this(Paths.get("/proc/self/io"), Paths.get("/proc/stat"));
+  }
+
+  // visible for testing
+  LinuxPerformanceCounter(Path processIoPath, Path statPath) {
+    this.processIoPath = processIoPath;
+    this.statPath = statPath;
+  }
+
+  public static boolean isSupported() {
+    return Files.isReadable(Paths.get("/proc/self/io"))
+        && Files.isReadable(Paths.get("/proc/stat"));
+  }
+
+  @Override
+  public void report(TelemetryClient telemetryClient) {
+    // stop collecting when procfs cannot be read, same as OshiPerformanceCounter
+    if (hasError) {
+      return;
+    }
+
+    long currCollectionTimeMillis = System.currentTimeMillis();
+    long currProcessBytes;
+    long currTotalProcessorMillis;
+    try {
+      currProcessBytes = readProcessBytes();
+      currTotalProcessorMillis = readTotalProcessorMillis();
+    } catch (IOException | RuntimeException e) {
+      hasError = true;
+      logger.debug("Fail to read system cpu and process i/o from procfs", e);
+      return;
+    }
+
+    if (prevCollectionTimeMillis != 0) {
+      double elapsedMillis = currCollectionTimeMillis - prevCollectionTimeMillis;
+      double elapsedSeconds = elapsedMillis / MILLIS_IN_SECOND;
+
+      double processBytes = (currProcessBytes - prevProcessBytes) / elapsedSeconds;
+      send(telemetryClient, processBytes, MetricNames.PROCESS_IO);
+      logger.trace(
+          "Sent performance counter for '{}': '{}'", MetricNames.PROCESS_IO, processBytes);
+
+      double processorLoad =
+          (currTotalProcessorMillis - prevTotalProcessorMillis)
+              / (elapsedMillis * logicalProcessorCount);
+      double processorPercentage = 100 * processorLoad;
+      send(telemetryClient, processorPercentage, MetricNames.TOTAL_CPU_PERCENTAGE);
+      logger.trace(
+          "Sent performance counter for '{}': '{}'",
+          MetricNames.TOTAL_CPU_PERCENTAGE,
+          processorPercentage);
+    }
+
+    prevCollectionTimeMillis = currCollectionTimeMillis;
+    prevProcessBytes = currProcessBytes;
+    prevTotalProcessorMillis = currTotalProcessorMillis;
+  }
+
+  // read_bytes + write_bytes from /proc/self/io
+  // visible for testing
+  long readProcessBytes() throws IOException {
+    int length = read(processIoPath);
+    long bytesRead = 0;
+    long bytesWritten = 0;
+    for (int i = 0; i < length; i = nextLine(i, length)) {
+      if (startsWith(i, length, READ_BYTES)) {
+        bytesRead = parseLong(i + READ_BYTES.length, length);
+      } else if (startsWith(i, length, WRITE_BYTES)) {
+        bytesWritten = parseLong(i + WRITE_BYTES.length, length);
+      }
+    }
+    return bytesRead + bytesWritten;
+  }
+
+  // user + system time across all cpus from the first line of /proc/stat, which looks like
+  // "cpu  <user> <nice> <system> <idle> ...", and counts the "cpu<N> ..." lines that follow it
+  // visible for testing
+  long readTotalProcessorMillis() throws IOException {
+    int length = read(statPath);
+    if (!startsWith(0, length, CPU) || length <= CPU.length || buffer[CPU.length] != ' ') {
+      throw new IOException("Unexpected format: " + statPath);
+    }
+    int i = CPU.length;
+    long user = parseLong(i, length);
+    i = skipNumber(i, length);
+    i = skipNumber(i, length); // nice
+    long system = parseLong(i, length);
+
+    int cpuCount = 0;
+    for (i = nextLine(i, length); i < length; i = nextLine(i, length)) {
+      if (!startsWith(i, length, CPU)) {
+        // the per-cpu lines come right after the aggregate line
+        break;
+      }
+      cpuCount++;
+    }
+    logicalProcessorCount = Math.max(cpuCount, 1);
+    return (user + system) * MILLIS_PER_TICK;
+  }
+
+  // visible for testing
+  int getLogicalProcessorCount() {
+    return logicalProcessorCount;
+  }
+
+  private int read(Path path) throws IOException {
+    try (InputStream in = Files.newInputStream(path)) {
+      int length = 0;
+      while (true) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int count = in.read(buffer, length, buffer.length - length);
+        if (count == -1) {
+          return length;
+        }
+        length += count;
+      }
+    }
+  }
+
+  private boolean startsWith(int offset, int length, byte[] prefix) {
+    if (length - offset < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (buffer[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int nextLine(int offset, int length) {
+    int i = offset;
+    while (i < length && buffer[i] != '\n') {
+      i++;
+    }
+    return i + 1;
+  }
+
+  // parses the number that follows the (optional) spaces at offset
+  private long parseLong(int offset, int length) {
+    int i = skipSpaces(offset, length);
+    long value = 0;
+    while (i < length && isDigit(buffer[i])) {
+      value = value * 10 + (buffer[i] - '0');
+      i++;
+    }
+    return value;
+  }
+
+  // returns the offset right after the number that follows the (optional) spaces at offset
+  private int skipNumber(int offset, int length) {
+    int i = skipSpaces(offset, length);
+    while (i < length && isDigit(buffer[i])) {
+      i++;
+    }
+    return i;
+  }
+
+  private int skipSpaces(int offset, int length) {
+    int i = offset;
+    while (i < length && buffer[i] == ' ') {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static byte[] bytes(String str) {
+    return str.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static void send(TelemetryClient telemetryClient, double value, String metricName) {
+    telemetryClient.trackAsync(telemetryClient.newMetricTelemetry(metricName, value));
+  }
+}
@@ -25,7 +25,10 @@ import com.azure.monitor.opentelemetry.exporter.implementation.utils.ThreadPoolU
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -41,12 +44,16 @@ import org.slf4j.LoggerFactory;
  * Counter. That means that setting the timeouts is only relevant if done before the first
  * registration of a Performance Counter.
  *
- * <p>The container will go through all the registered Performance Counters and will trigger their
- * 'report' method. By default the container will start reporting after 5 minutes and will continue
- * doing so every 1 minute.
+ * <p>Each registered Performance Counter has its 'report' method triggered on its own schedule. By
+ * default the container will start reporting after 1 minute and will continue doing so every 1
+ * minute, unless a different interval is given when registering the Performance Counter.
  *
- * <p>The user of this class can add (register), remove (unregister) a performance counter while the
- * container is working.
+ * <p>Each collection runs on a separate thread and is subject to a time budget, so that a slow
+ * Performance Counter cannot delay the others. A collection that goes over the time budget is
+ * interrupted, and that Performance Counter is skipped until the collection returns.
+ *
+ * <p>The user of this class can add (register) a performance counter while the container is
+ * working.
  *
  * <p>The container will be stopped automatically when the application exists.
  */
@@ -60,15 +67,20 @@ public enum PerformanceCounterContainer {
   public static final long DEFAULT_COLLECTION_FREQUENCY_IN_SEC = 60;
   private static final long MIN_COLLECTION_FREQUENCY_IN_SEC = 1;
 
-  private final List<PerformanceCounter> performanceCounters = new CopyOnWriteArrayList<>();
-
-  @Nullable private volatile AvailableJmxMetricLogger availableJmxMetricLogger;
+  public static final long DEFAULT_TIME_BUDGET_IN_SEC = 10;
 
   private volatile boolean initialized = false;
 
   private long collectionFrequencyInMillis = DEFAULT_COLLECTION_FREQUENCY_IN_SEC * 1000;
+  private long timeBudgetInMillis = DEFAULT_TIME_BUDGET_IN_SEC * 1000;
+
+  @Nullable private AvailableJmxMetricLogger availableJmxMetricLogger;
 
-  private ScheduledThreadPoolExecutor threads;
+  private final List<PerformanceCounterTask> tasks = new CopyOnWriteArrayList<>();
+
+  // only schedules the collections, which are then run on the collector threads
+  private ScheduledThreadPoolExecutor scheduler;
+  private ExecutorService collectors;
 
   /**
    * Adds a {@link PerformanceCounter} that can collect data.
@@ -77,7 +89,23 @@ public enum PerformanceCounterContainer {
    */
   public void register(PerformanceCounter performanceCounter) {
     initialize();
-    performanceCounters.add(performanceCounter);
+    schedule(
+        performanceCounter, performanceCounter.getClass().getName(), collectionFrequencyInMillis);
+  }
+
+  /**
+   * Adds a {@link PerformanceCounter} that can collect data, with its own collection interval.
+   *
+   * @param performanceCounter The Performance Counter.
+   * @param collectionFrequencyInSec The timeout to wait between collections of this Performance
+   *     Counter.
+   */
+  public void register(PerformanceCounter performanceCounter, long collectionFrequencyInSec) {
+    initialize();
+    schedule(
+        performanceCounter,
+        performanceCounter.getClass().getName(),
+        validateCollectionFrequencyInSec(collectionFrequencyInSec) * 1000);
   }
 
   /**
@@ -91,6 +119,35 @@ public enum PerformanceCounterContainer {
    * @param collectionFrequencyInSec The timeout to wait between collection of Performance Counters.
    */
   public void setCollectionFrequencyInSec(long collectionFrequencyInSec) {
+    this.collectionFrequencyInMillis =
+        validateCollectionFrequencyInSec(collectionFrequencyInSec) * 1000;
+  }
+
+  /**
+   * Sets how long a single Performance Counter collection may take before it is interrupted.
+   *
+   * <p>Note that the method will be effective if called before the first call to the 'register'
+   * method.
+   *
+   * @param timeBudgetInSec The time budget of a single Performance Counter collection.
+   */
+  public void setTimeBudgetInSec(long timeBudgetInSec) {
+    this.timeBudgetInMillis = timeBudgetInSec * 1000;
+  }
+
+  public void setLogAvailableJmxMetrics() {
+    availableJmxMetricLogger = new AvailableJmxMetricLogger();
+  }
+
+  /**
+   * Registers an MBean that exposes the collection latency of each Performance Counter (see {@link
+   * PerformanceCounterMetrics}).
+   */
+  public void registerJmxMetrics() {
+    new PerformanceCounterMetrics(tasks, timeBudgetInMillis).register();
+  }
+
+  private static long validateCollectionFrequencyInSec(long collectionFrequencyInSec) {
     if (collectionFrequencyInSec < MIN_COLLECTION_FREQUENCY_IN_SEC) {
       String errorMessage =
           String.format(
@@ -99,29 +156,30 @@ public enum PerformanceCounterContainer {
               collectionFrequencyInSec, MIN_COLLECTION_FREQUENCY_IN_SEC);
       logger.error(errorMessage);
 
-      collectionFrequencyInSec = MIN_COLLECTION_FREQUENCY_IN_SEC;
+      return MIN_COLLECTION_FREQUENCY_IN_SEC;
     }
-
-    this.collectionFrequencyInMillis = collectionFrequencyInSec * 1000;
-  }
-
-  public void setLogAvailableJmxMetrics() {
-    availableJmxMetricLogger = new AvailableJmxMetricLogger();
+    return collectionFrequencyInSec;
   }
 
   /**
    * A private method that is called only when the container needs to start collecting performance
-   * counters data. The method will schedule a callback to be called, it will initialize a {@link
-   * TelemetryClient} that the Performance Counters will use to report their data
+   * counters data. The method will create the threads that the Performance Counters are scheduled
+   * and collected on
    */
   @SuppressWarnings("AlreadyChecked")
   private void initialize() {
     if (!initialized) {
       synchronized (INSTANCE) {
         if (!initialized) {
-          createThreadToCollect();
-
-          scheduleWork();
+          createThreadsToCollect();
+
+          AvailableJmxMetricLogger jmxMetricLogger = availableJmxMetricLogger;
+          if (jmxMetricLogger != null) {
+            schedule(
+                telemetryClient -> jmxMetricLogger.logAvailableJmxMetrics(),
+                AvailableJmxMetricLogger.class.getName(),
+                collectionFrequencyInMillis);
+          }
 
           initialized = true;
         }
@@ -129,39 +187,35 @@ public enum PerformanceCounterContainer {
     }
   }
 
-  private void scheduleWork() {
-    threads.scheduleAtFixedRate(
-        new Runnable() {
-          @Override
-          public void run() {
-            if (availableJmxMetricLogger != null) {
-              availableJmxMetricLogger.logAvailableJmxMetrics();
-            }
-
-            TelemetryClient telemetryClient = TelemetryClient.getActive();
-
-            for (PerformanceCounter performanceCounter : performanceCounters) {
-              try {
-                performanceCounter.report(telemetryClient);
-              } catch (ThreadDeath td) {
-                throw td;
-              } catch (Throwable t) {
-                logger.error(
-                    "Exception while reporting performance counter: '{}'",
-                    performanceCounter.getClass().getName(),
-                    t);
-              }
-            }
-          }
-        },
-        collectionFrequencyInMillis,
-        collectionFrequencyInMillis,
-        TimeUnit.MILLISECONDS);
+  private void schedule(
+      PerformanceCounter performanceCounter, String name, long collectionFrequencyInMillis) {
+    PerformanceCounterTask task =
+        new PerformanceCounterTask(
+            performanceCounter,
+            name,
+            timeBudgetInMillis,
+            scheduler,
+            collectors,
+            TelemetryClient::getActive);
+    tasks.add(task);
+    scheduler.scheduleAtFixedRate(
+        task, collectionFrequencyInMillis, collectionFrequencyInMillis, TimeUnit.MILLISECONDS);
   }
 
-  private void createThreadToCollect() {
-    threads = new ScheduledThreadPoolExecutor(1);
-    threads.setThreadFactory(
+  private void createThreadsToCollect() {
+    scheduler = new ScheduledThreadPoolExecutor(1);
+    scheduler.setThreadFactory(
         ThreadPoolUtils.createDaemonThreadFactory(PerformanceCounterContainer.class));
+    // a Performance Counter is never collected concurrently with itself, so this is bounded by the
+    // number of Performance Counters
+    collectors =
+        new ThreadPoolExecutor(
+            0,
+            Integer.MAX_VALUE,
+            5,
+            TimeUnit.MINUTES,
+            new SynchronousQueue<>(),
+            ThreadPoolUtils.createDaemonThreadFactory(
+                PerformanceCounterContainer.class, "collector"));
   }
 }
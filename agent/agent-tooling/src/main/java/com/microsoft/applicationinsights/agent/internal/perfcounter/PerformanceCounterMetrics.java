@@ -0,0 +1,98 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exposes the collection latency of each performance counter, so that slow performance counters
+ * can be spotted with any JMX client.
+ */
+class PerformanceCounterMetrics implements PerformanceCounterMetricsMXBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(PerformanceCounterMetrics.class);
+
+  static final String OBJECT_NAME = "com.microsoft.applicationinsights:type=PerformanceCounters";
+
+  private final List<PerformanceCounterTask> tasks;
+  private final long timeBudgetMillis;
+
+  PerformanceCounterMetrics(List<PerformanceCounterTask> tasks, long timeBudgetMillis) {
+    this.tasks = tasks;
+    this.timeBudgetMillis = timeBudgetMillis;
+  }
+
+  void register() {
+    try {
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+      mbeanServer.registerMBean(this, objectName);
+    } catch (JMException e) {
+      logger.error("Failed to register MBean: {}", OBJECT_NAME, e);
+    }
+  }
+
+  @Override
+  public Map<String, Long> getLastCollectionMillis() {
+    Map<String, Long> lastCollectionMillis = new LinkedHashMap<>();
+    for (PerformanceCounterTask task : tasks) {
+      long millis = task.getLastCollectionMillis();
+      if (millis != -1) {
+        // e.g. multiple custom jmx metric performance counters share the same name
+        String name = task.getName();
+        for (int i = 2; lastCollectionMillis.containsKey(name); i++) {
+          name = task.getName() + " #" + i;
+        }
+        lastCollectionMillis.put(name, millis);
+      }
+    }
+    return lastCollectionMillis;
+  }
+
+  @Override
+  public String[] getOverTimeBudget() {
+    List<String> names = new ArrayList<>();
+    for (PerformanceCounterTask task : tasks) {
+      if (task.isOverTimeBudget()) {
+        names.add(task.getName());
+      }
+    }
+    return names.toArray(new String[0]);
+  }
+
+  @Override
+  public long getTimeBudgetMillis() {
+    return timeBudgetMillis;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static com.microsoft.applicationinsights.agent.bootstrap.diagnostics.MsgId.PERFORMANCE_COUNTER_TIME_BUDGET_ERROR;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+// runs on the scheduler thread, and hands the actual collection off to a collector thread, so that
+// a slow performance counter cannot hold up the other performance counters
+//
+// a collection that goes over the time budget is interrupted, and the performance counter is
+// skipped until that collection returns (many JMX calls don't respond to interruption), which
+// also bounds the number of collector threads to the number of performance counters
+final class PerformanceCounterTask implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(PerformanceCounterTask.class);
+
+  private final PerformanceCounter performanceCounter;
+  private final String name;
+  private final long timeBudgetMillis;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService collectors;
+  private final Supplier<TelemetryClient> telemetryClientSupplier;
+
+  private final AtomicBoolean inProgress = new AtomicBoolean();
+  private final AtomicBoolean overTimeBudget = new AtomicBoolean();
+
+  private volatile long lastCollectionMillis = -1;
+
+  PerformanceCounterTask(
+      PerformanceCounter performanceCounter,
+      String name,
+      long timeBudgetMillis,
+      ScheduledExecutorService scheduler,
+      ExecutorService collectors,
+      Supplier<TelemetryClient> telemetryClientSupplier) {
+    this.performanceCounter = performanceCounter;
+    this.name = name;
+    this.timeBudgetMillis = timeBudgetMillis;
+    this.scheduler = scheduler;
+    this.collectors = collectors;
+    this.telemetryClientSupplier = telemetryClientSupplier;
+  }
+
+  @Override
+  public void run() {
+    if (!inProgress.compareAndSet(false, true)) {
+      logger.debug(
+          "Skipping performance counter '{}', its previous collection has not returned yet", name);
+      return;
+    }
+    TelemetryClient telemetryClient = telemetryClientSupplier.get();
+    Future<?> future;
+    try {
+      future = collectors.submit(() -> collect(telemetryClient));
+    } catch (RejectedExecutionException e) {
+      // shutting down
+      inProgress.set(false);
+      return;
+    }
+    scheduler.schedule(() -> enforceTimeBudget(future), timeBudgetMillis, MILLISECONDS);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  // -1 until the first collection has returned
+  long getLastCollectionMillis() {
+    return lastCollectionMillis;
+  }
+
+  boolean isOverTimeBudget() {
+    return overTimeBudget.get();
+  }
+
+  // visible for testing
+  boolean isInProgress() {
+    return inProgress.get();
+  }
+
+  private void collect(TelemetryClient telemetryClient) {
+    long startNanos = System.nanoTime();
+    try {
+      performanceCounter.report(telemetryClient);
+    } catch (ThreadDeath td) {
+      throw td;
+    } catch (Throwable t) {
+      logger.error("Exception while reporting performance counter: '{}'", name, t);
+    } finally {
+      long collectionMillis = NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      lastCollectionMillis = collectionMillis;
+      logger.debug("Performance counter '{}' collected in {} ms", name, collectionMillis);
+      if (collectionMillis < timeBudgetMillis) {
+        overTimeBudget.set(false);
+      }
+      inProgress.set(false);
+    }
+  }
+
+  private void enforceTimeBudget(Future<?> future) {
+    if (future.isDone()) {
+      return;
+    }
+    future.cancel(true);
+    // only logging once until the performance counter is back within its time budget
+    if (overTimeBudget.compareAndSet(false, true)) {
+      try (MDC.MDCCloseable ignored = PERFORMANCE_COUNTER_TIME_BUDGET_ERROR.makeActive()) {
+        logger.warn(
+            "Performance counter '{}' did not complete within {} ms, its collection was"
+                + " interrupted and it will be skipped until that collection returns",
+            name,
+            timeBudgetMillis);
+      }
+    }
+  }
+}
@@ -170,7 +170,7 @@ public class GcEventMonitor {
       addMemoryUsage("tenured", "after", telemetryBuilder, afterOg);
     }
 
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
 
     telemetryClient.trackAsync(telemetryBuilder.build());
   }
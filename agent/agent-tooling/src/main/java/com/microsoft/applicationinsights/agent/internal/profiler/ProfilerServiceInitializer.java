@@ -242,7 +242,7 @@ public class ProfilerServiceInitializer {
         telemetryBuilder.addMeasurement(entry.getKey(), entry.getValue());
       }
 
-      telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+      telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
 
       telemetryClient.trackAsync(telemetryBuilder.build());
 
@@ -289,7 +289,7 @@ public class ProfilerServiceInitializer {
     MessageTelemetryBuilder telemetryBuilder = telemetryClient.newMessageTelemetryBuilder();
 
     telemetryBuilder.setMessage(message);
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
 
     telemetryClient.trackAsync(telemetryBuilder.build());
   }
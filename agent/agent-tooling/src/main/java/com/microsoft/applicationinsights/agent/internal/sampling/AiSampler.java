@@ -55,6 +55,11 @@ class AiSampler implements Sampler {
 
   private final SamplingResult dropDecision;
 
+  // when the pre-aggregated standard metrics are enabled, spans that are sampled out by percentage
+  // are still recorded (but never exported), so that they count towards the standard metrics,
+  // while spans that are explicitly dropped (0%) are still dropped
+  private final SamplingResult sampledOutDecision;
+
   private final BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides;
 
   // samplingPercentage is still used in BehaviorIfNoMatchingOverrides.RECORD_AND_SAMPLE
@@ -66,7 +71,8 @@ class AiSampler implements Sampler {
   AiSampler(
       double samplingPercentage,
       SamplingOverrides samplingOverrides,
-      BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides) {
+      BehaviorIfNoMatchingOverrides behaviorIfNoMatchingOverrides,
+      boolean recordSampledOut) {
     this.defaultSamplingPercentage = samplingPercentage;
     recordAndSampleAndAddTraceStateIfMissing =
         SamplingOverrides.getRecordAndSampleAndAddTraceStateIfMissing(samplingPercentage);
@@ -76,6 +82,7 @@ class AiSampler implements Sampler {
     this.behaviorIfNoMatchingOverrides = behaviorIfNoMatchingOverrides;
 
     dropDecision = SamplingResult.create(SamplingDecision.DROP, Attributes.empty());
+    sampledOutDecision = recordSampledOut ? SamplingResult.recordOnly() : dropDecision;
   }
 
   @Override
@@ -100,8 +107,8 @@ class AiSampler implements Sampler {
     switch (behaviorIfNoMatchingOverrides) {
       case RECORD_AND_SAMPLE:
         // this is used for localParentSampled and remoteParentSampled
-        // (note: currently sampling percentage portion of trace state is not propagated,
-        //        so it will always be missing in the remoteParentSampled case)
+        // (note: in the remoteParentSampled case, the sampling percentage portion of the trace
+        //        state is only present if the upstream service propagated it)
         return recordAndSampleAndAddTraceStateIfMissing;
       case USE_DEFAULT_SAMPLING_PERCENTAGE:
         // this is used for root sampler
@@ -124,7 +131,7 @@ class AiSampler implements Sampler {
     }
     if (SamplingScoreGeneratorV2.getSamplingScore(traceId) >= percentage) {
       logger.debug("Item {} sampled out", name);
-      return dropDecision;
+      return sampledOutDecision;
     }
     return sampledSamplingResult;
   }
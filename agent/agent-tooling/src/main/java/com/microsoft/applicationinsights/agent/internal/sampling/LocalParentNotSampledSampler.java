@@ -0,0 +1,73 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.List;
+
+// used for the local parent not sampled case when the pre-aggregated standard metrics are enabled
+//
+// when the local parent was sampled out by percentage, it is still being recorded (see
+// AiSampler), and so its children are recorded too (but never sampled), so that they count
+// towards the standard metrics, while parents that were explicitly dropped (e.g. by a 0% sampling
+// override) still drop their whole subtree
+class LocalParentNotSampledSampler implements Sampler {
+
+  private final Sampler parentSampledSampler;
+
+  LocalParentNotSampledSampler(Sampler parentSampledSampler) {
+    this.parentSampledSampler = parentSampledSampler;
+  }
+
+  @Override
+  public SamplingResult shouldSample(
+      Context parentContext,
+      String traceId,
+      String name,
+      SpanKind spanKind,
+      Attributes attributes,
+      List<LinkData> parentLinks) {
+    if (!Span.fromContext(parentContext).isRecording()) {
+      return SamplingResult.drop();
+    }
+    // still applying the sampling overrides, so that e.g. a 0% override drops the span
+    SamplingResult result =
+        parentSampledSampler.shouldSample(
+            parentContext, traceId, name, spanKind, attributes, parentLinks);
+    if (result.getDecision() == SamplingDecision.DROP) {
+      return result;
+    }
+    return SamplingResult.recordOnly();
+  }
+
+  @Override
+  public String getDescription() {
+    return "LocalParentNotSampledSampler, delegating to: " + parentSampledSampler.getDescription();
+  }
+}
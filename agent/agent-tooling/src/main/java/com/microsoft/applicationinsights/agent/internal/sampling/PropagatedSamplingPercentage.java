@@ -0,0 +1,146 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.TraceStateBuilder;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Translates between the sampling percentage that is kept in the trace state internally (under
+ * {@link TelemetryUtil#SAMPLING_PERCENTAGE_TRACE_STATE}), and the sampling percentage that is sent
+ * over the wire to downstream services (under the "az" key, e.g. {@code az=sp:25}), so that the
+ * downstream services can keep the upstream sampling decision and report the same sampling
+ * percentage, instead of re-deriving their own.
+ */
+public final class PropagatedSamplingPercentage {
+
+  static final String TRACE_STATE_KEY = "az";
+
+  // the "az" value is a list of entries separated by ';', this one holds the sampling percentage
+  private static final String SAMPLING_PERCENTAGE_PREFIX = "sp:";
+
+  // e.g. "100", "25" or "33.333332" (and not e.g. "1e1" or "25f", which Float.parseFloat() accepts)
+  private static final Pattern SAMPLING_PERCENTAGE_PATTERN =
+      Pattern.compile("[0-9]{1,3}(\\.[0-9]{1,9})?");
+
+  /**
+   * Returns the sampling percentage that was propagated by the upstream service, or {@code null}
+   * if it is missing or malformed.
+   */
+  @Nullable
+  public static String parse(TraceState traceState) {
+    String value = traceState.get(TRACE_STATE_KEY);
+    if (value == null) {
+      return null;
+    }
+    for (String entry : value.split(";", -1)) {
+      if (entry.startsWith(SAMPLING_PERCENTAGE_PREFIX)) {
+        String samplingPercentage = entry.substring(SAMPLING_PERCENTAGE_PREFIX.length());
+        return isValid(samplingPercentage) ? samplingPercentage : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Moves the propagated sampling percentage (if any) into the internal trace state key, so that it
+   * is picked up by the samplers and reported on the telemetry of this service.
+   */
+  public static TraceState fromWire(TraceState traceState) {
+    String samplingPercentage = parse(traceState);
+    if (samplingPercentage == null) {
+      return traceState;
+    }
+    // the other entries of the "az" value are kept
+    String otherEntries = getOtherEntries(traceState.get(TRACE_STATE_KEY));
+    TraceStateBuilder builder = traceState.toBuilder();
+    if (otherEntries.isEmpty()) {
+      builder.remove(TRACE_STATE_KEY);
+    } else {
+      builder.put(TRACE_STATE_KEY, otherEntries);
+    }
+    return builder.put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, samplingPercentage).build();
+  }
+
+  /**
+   * Removes the internal trace state key, and if {@code propagate} is set, sends its value
+   * downstream under the "az" key instead.
+   */
+  public static TraceState toWire(TraceState traceState, boolean propagate) {
+    String samplingPercentage = traceState.get(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE);
+    if (samplingPercentage == null) {
+      return traceState;
+    }
+    // with tail sampling, every trace is sampled at 100% when it starts (see Samplers), and that
+    // is also what is sent downstream, since downstream services record every item of a sampled
+    // trace, and a lower percentage would make their extrapolated counts too high
+    if (!propagate || !isValid(samplingPercentage)) {
+      if (traceState.size() == 1) {
+        // this is a common case, worth optimizing
+        return TraceState.getDefault();
+      }
+      return traceState.toBuilder().remove(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE).build();
+    }
+    // the other entries of an existing "az" value are kept
+    String value = SAMPLING_PERCENTAGE_PREFIX + samplingPercentage;
+    String otherEntries = getOtherEntries(traceState.get(TRACE_STATE_KEY));
+    if (!otherEntries.isEmpty()) {
+      value += ";" + otherEntries;
+    }
+    // the internal entry is replaced by the "az" entry, so this never goes over the limit of 32
+    // trace state entries
+    return traceState.toBuilder()
+        .remove(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE)
+        .put(TRACE_STATE_KEY, value)
+        .build();
+  }
+
+  // the entries of the "az" value other than the sampling percentage, or "" if there are none
+  private static String getOtherEntries(@Nullable String value) {
+    if (value == null) {
+      return "";
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String entry : value.split(";", -1)) {
+      if (entry.isEmpty() || entry.startsWith(SAMPLING_PERCENTAGE_PREFIX)) {
+        continue;
+      }
+      if (sb.length() > 0) {
+        sb.append(';');
+      }
+      sb.append(entry);
+    }
+    return sb.toString();
+  }
+
+  private static boolean isValid(String samplingPercentage) {
+    if (!SAMPLING_PERCENTAGE_PATTERN.matcher(samplingPercentage).matches()) {
+      return false;
+    }
+    return Float.parseFloat(samplingPercentage) <= 100;
+  }
+
+  private PropagatedSamplingPercentage() {}
+}
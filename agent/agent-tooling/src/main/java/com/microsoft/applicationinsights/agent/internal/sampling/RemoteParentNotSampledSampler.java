@@ -0,0 +1,72 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.List;
+
+// used for the remote parent not sampled case when upstream "not sampled" decisions are not
+// generally trusted (see ignoreRemoteParentNotSampled), but when the upstream service has
+// propagated its sampling percentage, then it has made a real sampling decision, and so that
+// decision is kept, instead of the trace being sampled a second time (though the span is still
+// recorded when the pre-aggregated standard metrics are enabled, see AiSampler)
+class RemoteParentNotSampledSampler implements Sampler {
+
+  private final Sampler delegate;
+  private final SamplingResult upstreamSampledOutResult;
+
+  RemoteParentNotSampledSampler(Sampler delegate, boolean recordSampledOut) {
+    this.delegate = delegate;
+    upstreamSampledOutResult =
+        recordSampledOut ? SamplingResult.recordOnly() : SamplingResult.drop();
+  }
+
+  @Override
+  public SamplingResult shouldSample(
+      Context parentContext,
+      String traceId,
+      String name,
+      SpanKind spanKind,
+      Attributes attributes,
+      List<LinkData> parentLinks) {
+    if (Span.fromContext(parentContext)
+            .getSpanContext()
+            .getTraceState()
+            .get(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE)
+        != null) {
+      return upstreamSampledOutResult;
+    }
+    return delegate.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+  }
+
+  @Override
+  public String getDescription() {
+    return "RemoteParentNotSampledSampler, delegating to: " + delegate.getDescription();
+  }
+}
@@ -23,36 +23,61 @@ package com.microsoft.applicationinsights.agent.internal.sampling;
 
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
+import java.util.List;
 
 public class Samplers {
 
   public static Sampler getSampler(double samplingPercentage, Configuration config) {
-    SamplingOverrides samplingOverrides = new SamplingOverrides(config.preview.sampling.overrides);
+    return getSampler(samplingPercentage, config.preview.sampling.overrides, config);
+  }
+
+  // the sampling overrides are passed separately so that their percentages can be changed at
+  // runtime (see RuntimeControl)
+  public static Sampler getSampler(
+      double samplingPercentage,
+      List<Configuration.SamplingOverride> overrides,
+      Configuration config) {
+    // with tail sampling, every trace needs to be recorded so that it can be decided once it has
+    // completed, and the sampling percentage is applied by the TailSampler instead (sampling
+    // overrides are still applied here)
+    double headSamplingPercentage = config.preview.tailSampling.enabled ? 100 : samplingPercentage;
+    SamplingOverrides samplingOverrides = new SamplingOverrides(overrides);
+    // sampled out spans still need to be recorded so that they count towards the standard metrics
+    boolean recordSampledOut = config.preview.preAggregatedStandardMetrics.enabled;
     AiSampler rootSampler =
         new AiSampler(
-            samplingPercentage,
+            headSamplingPercentage,
             samplingOverrides,
-            AiSampler.BehaviorIfNoMatchingOverrides.USE_DEFAULT_SAMPLING_PERCENTAGE);
+            AiSampler.BehaviorIfNoMatchingOverrides.USE_DEFAULT_SAMPLING_PERCENTAGE,
+            recordSampledOut);
     AiSampler parentSampledSampler =
         new AiSampler(
-            samplingPercentage,
+            headSamplingPercentage,
             samplingOverrides,
-            AiSampler.BehaviorIfNoMatchingOverrides.RECORD_AND_SAMPLE);
+            AiSampler.BehaviorIfNoMatchingOverrides.RECORD_AND_SAMPLE,
+            recordSampledOut);
     // ignoreRemoteParentNotSampled is currently needed
     // because .NET SDK always propagates trace flags "00" (not sampled)
-    // NOTE: once we start propagating sampling percentage over the wire, we can use that to know
-    // that we can
-    // respect upstream decision for remoteParentNotSampled
+    // but when the upstream service propagates its sampling percentage, its decision is respected
     Sampler remoteParentNotSampled =
-        config.preview.ignoreRemoteParentNotSampled ? rootSampler : Sampler.alwaysOff();
+        config.preview.ignoreRemoteParentNotSampled
+            ? new RemoteParentNotSampledSampler(rootSampler, recordSampledOut)
+            : Sampler.alwaysOff();
+    Sampler localParentNotSampled =
+        recordSampledOut
+            ? new LocalParentNotSampledSampler(parentSampledSampler)
+            : Sampler.alwaysOff();
     return Sampler.parentBasedBuilder(rootSampler)
         .setRemoteParentNotSampled(remoteParentNotSampled)
-        // this is the default, just including it for completeness
-        // intentionally not allowing to capture a downstream span when upstream span has not been
-        // sampled
-        // because this will lead to broken traces in A (sampled) -> B (not sampled) -> C (sampled)
+        // (unless the pre-aggregated standard metrics are enabled) this is the default
+        // intentionally not allowing to capture a downstream span when upstream span has not
+        // been sampled
+        // because this will lead to broken traces in A (sampled) -> B (not sampled) ->
+        // C (sampled)
         // C will point to parent B, but B will not be exported
-        .setLocalParentNotSampled(Sampler.alwaysOff())
+        // (spans under a recorded but not sampled parent are only ever recorded, see
+        // LocalParentNotSampledSampler)
+        .setLocalParentNotSampled(localParentNotSampled)
         // can filter out subtree of sampled trace, by applying sampling override
         .setRemoteParentSampled(parentSampledSampler)
         // can filter out subtree of sampled trace, by applying sampling override
@@ -0,0 +1,291 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RemoteDependencyData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryExceptionData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.ThreadPoolUtils;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the telemetry items of each trace for a short decision window, and then keeps or drops
+ * the whole trace. Traces that contain a failed request or dependency, an exception, or a request
+ * or dependency that is slower than the latency threshold are always kept, while the other traces
+ * are kept based on a baseline sampling percentage (using the same score as the head sampler, so
+ * that the decision is consistent across services).
+ *
+ * <p>Items of traces that are kept because of the baseline percentage get that percentage as their
+ * sample rate, while items of traces that are always kept do not, so that counts extrapolated from
+ * the sample rate remain accurate.
+ *
+ * <p>The buffer is bounded by its number of items rather than by their size in memory, since the
+ * size of a telemetry item is not known without serializing it, and the oldest traces are decided
+ * early once that bound is reached.
+ */
+public final class TailSampler {
+
+  private static final Logger logger = LoggerFactory.getLogger(TailSampler.class);
+
+  // the remembered decision for traces that were dropped
+  private static final float DROPPED = 0;
+
+  private final Consumer<TelemetryItem> downstream;
+  private final long latencyThresholdNanos;
+  private final long decisionWindowNanos;
+  private final int maxBufferedItems;
+  private final Clock clock;
+
+  // can be changed at runtime (see RuntimeControl)
+  private volatile float baselinePercentage;
+
+  // guarded by this, in order of arrival of the first item of each trace
+  private final LinkedHashMap<String, Trace> pending = new LinkedHashMap<>();
+  // guarded by this
+  private int bufferedItems;
+  // guarded by this, the sample rate that the items of recently decided traces are kept with
+  private final Map<String, Float> decisions;
+
+  public static TailSampler start(
+      Consumer<TelemetryItem> downstream,
+      float baselinePercentage,
+      Configuration.TailSampling config) {
+    TailSampler tailSampler =
+        new TailSampler(
+            downstream,
+            baselinePercentage,
+            TimeUnit.MILLISECONDS.toNanos(config.latencyThresholdMillis),
+            TimeUnit.SECONDS.toNanos(config.decisionWindowSeconds),
+            config.maxBufferedItems,
+            config.maxRememberedDecisions,
+            Clock.getDefault());
+    ScheduledExecutorService scheduledExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolUtils.createDaemonThreadFactory(TailSampler.class));
+    scheduledExecutor.scheduleWithFixedDelay(tailSampler::decideExpired, 1, 1, TimeUnit.SECONDS);
+    return tailSampler;
+  }
+
+  // visible for testing
+  TailSampler(
+      Consumer<TelemetryItem> downstream,
+      float baselinePercentage,
+      long latencyThresholdNanos,
+      long decisionWindowNanos,
+      int maxBufferedItems,
+      int maxRememberedDecisions,
+      Clock clock) {
+    this.downstream = downstream;
+    this.baselinePercentage = baselinePercentage;
+    this.latencyThresholdNanos = latencyThresholdNanos;
+    this.decisionWindowNanos = decisionWindowNanos;
+    this.maxBufferedItems = maxBufferedItems;
+    this.clock = clock;
+    decisions =
+        new LinkedHashMap<String, Float>() {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+            return size() > maxRememberedDecisions;
+          }
+        };
+  }
+
+  /** Changes the sampling percentage that the traces which are not interesting are kept with. */
+  public void setBaselinePercentage(float baselinePercentage) {
+    this.baselinePercentage = baselinePercentage;
+  }
+
+  /**
+   * Buffers the item until its trace is decided, or forwards it right away if it is not part of a
+   * trace, or if its trace has already been decided.
+   */
+  public void add(TelemetryItem item) {
+    String operationId = getOperationId(item);
+    if (operationId == null) {
+      downstream.accept(item);
+      return;
+    }
+    boolean interesting = isInteresting(item);
+    Float decision;
+    List<Trace> decided = null;
+    synchronized (this) {
+      decision = decisions.get(operationId);
+      if (decision == null) {
+        Trace trace = pending.get(operationId);
+        if (trace == null) {
+          trace = new Trace(operationId, clock.nanoTime());
+          pending.put(operationId, trace);
+        }
+        trace.items.add(item);
+        trace.interesting |= interesting;
+        bufferedItems++;
+        if (bufferedItems > maxBufferedItems) {
+          decided = decideOldest();
+        }
+      }
+    }
+    if (decision != null) {
+      // the item arrived after its trace was decided
+      if (decision != DROPPED) {
+        emit(item, decision);
+      } else if (interesting) {
+        // a failure is worth keeping even if the rest of its trace was dropped
+        emit(item, 100);
+      }
+    }
+    if (decided != null) {
+      emit(decided);
+    }
+  }
+
+  /** Decides the traces whose decision window has elapsed. */
+  public void decideExpired() {
+    List<Trace> decided = new ArrayList<>();
+    synchronized (this) {
+      long now = clock.nanoTime();
+      Iterator<Trace> i = pending.values().iterator();
+      while (i.hasNext()) {
+        Trace trace = i.next();
+        if (now - trace.startNanos < decisionWindowNanos) {
+          // the remaining traces started later
+          break;
+        }
+        i.remove();
+        decide(trace);
+        decided.add(trace);
+      }
+    }
+    emit(decided);
+  }
+
+  /** Decides all of the buffered traces right away, e.g. on shutdown. */
+  public void flush() {
+    List<Trace> decided;
+    synchronized (this) {
+      decided = new ArrayList<>(pending.values());
+      pending.clear();
+      for (Trace trace : decided) {
+        decide(trace);
+      }
+    }
+    emit(decided);
+  }
+
+  // must be called while holding the lock
+  private List<Trace> decideOldest() {
+    List<Trace> decided = new ArrayList<>();
+    Iterator<Trace> i = pending.values().iterator();
+    while (bufferedItems > maxBufferedItems && i.hasNext()) {
+      Trace trace = i.next();
+      i.remove();
+      decide(trace);
+      decided.add(trace);
+    }
+    logger.debug("tail sampling buffer is full, decided {} traces early", decided.size());
+    return decided;
+  }
+
+  // must be called while holding the lock
+  private void decide(Trace trace) {
+    float baselinePercentage = this.baselinePercentage;
+    if (trace.interesting) {
+      trace.sampleRate = 100;
+    } else if (SamplingScoreGeneratorV2.getSamplingScore(trace.operationId) < baselinePercentage) {
+      trace.sampleRate = baselinePercentage;
+    } else {
+      trace.sampleRate = DROPPED;
+    }
+    decisions.put(trace.operationId, trace.sampleRate);
+    bufferedItems -= trace.items.size();
+  }
+
+  private void emit(List<Trace> decided) {
+    for (Trace trace : decided) {
+      if (trace.sampleRate == DROPPED) {
+        continue;
+      }
+      for (TelemetryItem item : trace.items) {
+        emit(item, trace.sampleRate);
+      }
+    }
+  }
+
+  private void emit(TelemetryItem item, float sampleRate) {
+    if (sampleRate != 100) {
+      Float existing = item.getSampleRate();
+      // the item may have already been sampled upstream, which picks traces by the same
+      // sampling score, so a trace that was kept there at a lower percentage is always kept here
+      item.setSampleRate(existing == null ? sampleRate : Math.min(existing, sampleRate));
+    }
+    downstream.accept(item);
+  }
+
+  private boolean isInteresting(TelemetryItem item) {
+    MonitorDomain data = item.getData().getBaseData();
+    if (data instanceof RequestData) {
+      RequestData requestData = (RequestData) data;
+      return !requestData.isSuccess() || requestData.getDuration() >= latencyThresholdNanos;
+    }
+    if (data instanceof RemoteDependencyData) {
+      RemoteDependencyData dependencyData = (RemoteDependencyData) data;
+      return Boolean.FALSE.equals(dependencyData.isSuccess())
+          || dependencyData.getDuration() >= latencyThresholdNanos;
+    }
+    return data instanceof TelemetryExceptionData;
+  }
+
+  @Nullable
+  private static String getOperationId(TelemetryItem item) {
+    Map<String, String> tags = item.getTags();
+    return tags == null ? null : tags.get(ContextTagKeys.AI_OPERATION_ID.toString());
+  }
+
+  private static class Trace {
+
+    private final String operationId;
+    private final long startNanos;
+    private final List<TelemetryItem> items = new ArrayList<>();
+    private boolean interesting;
+    private float sampleRate;
+
+    private Trace(String operationId, long startNanos) {
+      this.operationId = operationId;
+      this.startNanos = startNanos;
+    }
+  }
+}
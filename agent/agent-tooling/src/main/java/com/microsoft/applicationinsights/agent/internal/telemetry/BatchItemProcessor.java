@@ -30,6 +30,7 @@ import io.opentelemetry.internal.shaded.jctools.queues.MpscArrayQueue;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.internal.DaemonThreadFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Queue;
 import java.util.Set;
@@ -40,6 +41,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 // copied from io.opentelemetry.sdk.trace.export.BatchSpanProcessor
 public final class BatchItemProcessor {
@@ -68,8 +70,21 @@ public final class BatchItemProcessor {
       int maxExportBatchSize,
       long exporterTimeoutNanos,
       int maxPendingExports,
+      boolean priorityLanes,
+      @Nullable TelemetryItemSpiller spiller,
       String queueName) {
-    MpscArrayQueue<TelemetryItem> queue = new MpscArrayQueue<>(maxQueueSize);
+    Queue<TelemetryItem> queue;
+    int queueCapacity;
+    if (priorityLanes) {
+      PrioritizedItemQueue prioritizedQueue = new PrioritizedItemQueue(maxQueueSize);
+      queue = prioritizedQueue;
+      queueCapacity = prioritizedQueue.laneCapacity();
+    } else {
+      MpscArrayQueue<TelemetryItem> mpscQueue = new MpscArrayQueue<>(maxQueueSize);
+      queue = mpscQueue;
+      queueCapacity = mpscQueue.capacity();
+    }
+    exporter.getStats().setQueueDepthSupplier(queue::size);
     this.worker =
         new Worker(
             exporter,
@@ -78,7 +93,8 @@ public final class BatchItemProcessor {
             exporterTimeoutNanos,
             maxPendingExports,
             queue,
-            queue.capacity(),
+            queueCapacity,
+            spiller,
             queueName);
     Thread workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(worker);
     workerThread.start();
@@ -114,6 +130,7 @@ public final class BatchItemProcessor {
     private final Queue<TelemetryItem> queue;
     private final int queueCapacity;
     private final String queueName;
+    @Nullable private final TelemetryItemSpiller spiller;
     // When waiting on the items queue, exporter thread sets this atomic to the number of more
     // items it needs before doing an export. Writer threads would then wait for the queue to reach
     // itemsNeeded size before notifying the exporter thread about new entries.
@@ -143,6 +160,7 @@ public final class BatchItemProcessor {
         int maxPendingExports,
         Queue<TelemetryItem> queue,
         int queueCapacity,
+        @Nullable TelemetryItemSpiller spiller,
         String queueName) {
       this.exporter = exporter;
       this.scheduleDelayNanos = scheduleDelayNanos;
@@ -152,12 +170,18 @@ public final class BatchItemProcessor {
       this.queue = queue;
       this.queueCapacity = queueCapacity;
       this.queueName = queueName;
+      this.spiller = spiller;
       this.signal = new ArrayBlockingQueue<>(1);
       this.batch = new ArrayList<>(this.maxExportBatchSize);
     }
 
     private void addItem(TelemetryItem item) {
       if (!queue.offer(item)) {
+        if (spiller != null) {
+          // the spiller takes care of logging if it has to drop the item too
+          spiller.spill(item);
+          return;
+        }
         queuingItemLogger.recordFailure(
             "Max "
                 + queueName
@@ -172,6 +196,7 @@ public final class BatchItemProcessor {
                 + (queueCapacity * 2)
                 + " } }",
             BATCH_ITEM_PROCESSOR_ERROR);
+        exporter.getStats().recordDroppedItem();
       } else {
         queuingItemLogger.recordSuccess();
         if (queue.size() >= itemsNeeded.get()) {
@@ -261,7 +286,10 @@ public final class BatchItemProcessor {
               overallResult.fail();
               return;
             }
-            CompletableResultCode exporterResult = exporter.flush();
+            CompletableResultCode exporterResult =
+                spiller == null
+                    ? exporter.flush()
+                    : CompletableResultCode.ofAll(Arrays.asList(exporter.flush(), spiller.flush()));
             exporterResult.whenComplete(
                 () -> {
                   if (exporterResult.isSuccess()) {
@@ -26,6 +26,7 @@ import static java.util.Objects.requireNonNull;
 
 import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryItemExporter;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 // copied from io.opentelemetry.sdk.trace.export.BatchSpanProcessorBuilder
 final class BatchItemProcessorBuilder {
@@ -47,6 +48,8 @@ final class BatchItemProcessorBuilder {
   private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
   private int maxExportBatchSize = DEFAULT_MAX_EXPORT_BATCH_SIZE;
   private int maxPendingExports = DEFAULT_MAX_PENDING_EXPORTS;
+  private boolean priorityLanes;
+  @Nullable private TelemetryItemSpiller spiller;
 
   BatchItemProcessorBuilder(TelemetryItemExporter exporter) {
     this.exporter = requireNonNull(exporter, "exporter");
@@ -107,6 +110,36 @@ final class BatchItemProcessorBuilder {
     return this;
   }
 
+  /**
+   * Splits the queue into one lane per {@link TelemetryItemPriority}, each with its own reserved
+   * capacity of {@code maxQueueSize}, and drains the lanes using weighted round-robin, so that a
+   * flood of low priority items (e.g. logs) cannot cause high priority items (e.g. requests and
+   * exceptions) to be dropped.
+   *
+   * <p>Default value is {@code false}.
+   *
+   * @param priorityLanes whether to use a separate queue lane per priority.
+   * @return this.
+   */
+  public BatchItemProcessorBuilder setPriorityLanes(boolean priorityLanes) {
+    this.priorityLanes = priorityLanes;
+    return this;
+  }
+
+  /**
+   * Sets the {@link TelemetryItemSpiller} that receives the items which don't fit into the queue,
+   * instead of dropping them.
+   *
+   * <p>Default value is {@code null} (items are dropped when the queue is full).
+   *
+   * @param spiller the spiller that writes overflowing items to local storage.
+   * @return this.
+   */
+  public BatchItemProcessorBuilder setSpiller(@Nullable TelemetryItemSpiller spiller) {
+    this.spiller = spiller;
+    return this;
+  }
+
   /**
    * Returns a new {@link BatchItemProcessor} that batches, then converts items to proto and
    * forwards them to the given {@code exporter}.
@@ -122,6 +155,8 @@ final class BatchItemProcessorBuilder {
         maxExportBatchSize,
         exporterTimeoutNanos,
         maxPendingExports,
+        priorityLanes,
+        spiller,
         queueName);
   }
 }
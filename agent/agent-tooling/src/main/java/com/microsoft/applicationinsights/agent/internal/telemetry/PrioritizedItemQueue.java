@@ -0,0 +1,149 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import io.opentelemetry.internal.shaded.jctools.queues.MpscArrayQueue;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
+
+// multi-producer single-consumer queue with one bounded lane per TelemetryItemPriority
+//
+// each lane has its own reserved capacity, so that filling up one lane (e.g. a log flood) never
+// causes items of another priority to be dropped
+//
+// lanes are drained using weighted round-robin: on each visit a lane can hand out up to its
+// weight in items before the next lane gets a turn, and an empty lane forfeits the rest of its
+// turn, so no capacity is wasted when only one kind of telemetry is flowing
+final class PrioritizedItemQueue extends AbstractQueue<TelemetryItem> {
+
+  private static final TelemetryItemPriority[] PRIORITIES = TelemetryItemPriority.values();
+
+  private final MpscArrayQueue<TelemetryItem>[] lanes;
+  private final int laneCapacity;
+
+  // consumer-side state, only accessed from the single worker thread
+  private int currentLane;
+  private int remainingCredit;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  PrioritizedItemQueue(int maxLaneSize) {
+    lanes = new MpscArrayQueue[PRIORITIES.length];
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new MpscArrayQueue<>(maxLaneSize);
+    }
+    laneCapacity = lanes[0].capacity();
+    remainingCredit = PRIORITIES[0].getWeight();
+  }
+
+  int laneCapacity() {
+    return laneCapacity;
+  }
+
+  int size(TelemetryItemPriority priority) {
+    return lanes[priority.ordinal()].size();
+  }
+
+  @Override
+  public boolean offer(TelemetryItem item) {
+    return lanes[TelemetryItemPriority.of(item).ordinal()].offer(item);
+  }
+
+  @Override
+  @Nullable
+  public TelemetryItem poll() {
+    // visiting every lane once more than the number of lanes guarantees that the current lane
+    // is re-checked with a fresh credit after all the other lanes turned out to be empty
+    for (int i = 0; i <= lanes.length; i++) {
+      if (remainingCredit > 0) {
+        TelemetryItem item = lanes[currentLane].poll();
+        if (item != null) {
+          remainingCredit--;
+          return item;
+        }
+      }
+      currentLane = (currentLane + 1) % lanes.length;
+      remainingCredit = PRIORITIES[currentLane].getWeight();
+    }
+    return null;
+  }
+
+  // returns the item that the next poll() would return, without advancing the round-robin state
+  @Override
+  @Nullable
+  public TelemetryItem peek() {
+    int lane = currentLane;
+    int credit = remainingCredit;
+    for (int i = 0; i <= lanes.length; i++) {
+      if (credit > 0) {
+        TelemetryItem item = lanes[lane].peek();
+        if (item != null) {
+          return item;
+        }
+      }
+      lane = (lane + 1) % lanes.length;
+      credit = PRIORITIES[lane].getWeight();
+    }
+    return null;
+  }
+
+  // weakly consistent (like the lanes' own iterators), visits the lanes in priority order rather
+  // than in poll() order, and does not support remove()
+  @Override
+  public Iterator<TelemetryItem> iterator() {
+    return new Iterator<TelemetryItem>() {
+
+      private int lane;
+      private Iterator<TelemetryItem> laneIterator = lanes[0].iterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!laneIterator.hasNext()) {
+          if (lane == lanes.length - 1) {
+            return false;
+          }
+          laneIterator = lanes[++lane].iterator();
+        }
+        return true;
+      }
+
+      @Override
+      public TelemetryItem next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return laneIterator.next();
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (MpscArrayQueue<TelemetryItem> lane : lanes) {
+      size += lane.size();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,364 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricPointBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RemoteDependencyData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.ThreadPoolUtils;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pre-aggregates the standard request and dependency metrics (count, duration sum, min and max per
+ * dimension set) before sampling, so that these metrics stay accurate at any sampling percentage.
+ *
+ * <p>Items that have been recorded are marked with {@code _MS.ProcessedByMetricExtractors}, which
+ * tells the ingestion endpoint not to derive the standard metrics from them a second time.
+ */
+public final class StandardMetricsAggregator {
+
+  private static final Logger logger = LoggerFactory.getLogger(StandardMetricsAggregator.class);
+
+  static final String REQUESTS_DURATION = "requests/duration";
+  static final String DEPENDENCIES_DURATION = "dependencies/duration";
+
+  static final String PROCESSED_BY_METRIC_EXTRACTORS = "_MS.ProcessedByMetricExtractors";
+  private static final String REQUESTS_EXTRACTOR = "(Name:'Requests', Ver:'1.1')";
+  private static final String DEPENDENCIES_EXTRACTOR = "(Name:'Dependencies', Ver:'1.1')";
+
+  // used for all dimension values once the cardinality cap has been reached
+  static final String OTHER = "Other";
+
+  private final Supplier<MetricTelemetryBuilder> metricTelemetryBuilderFactory;
+  private final Consumer<TelemetryItem> metricConsumer;
+  private final int maxSeries;
+  private final long intervalMillis;
+
+  // swapped out on each flush
+  private volatile ConcurrentHashMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+  private volatile long intervalStartMillis = System.currentTimeMillis();
+
+  public static StandardMetricsAggregator start(
+      Supplier<MetricTelemetryBuilder> metricTelemetryBuilderFactory,
+      Consumer<TelemetryItem> metricConsumer,
+      int maxSeries,
+      long intervalSeconds) {
+    StandardMetricsAggregator aggregator =
+        new StandardMetricsAggregator(
+            metricTelemetryBuilderFactory,
+            metricConsumer,
+            maxSeries,
+            TimeUnit.SECONDS.toMillis(intervalSeconds));
+    ScheduledExecutorService scheduledExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolUtils.createDaemonThreadFactory(StandardMetricsAggregator.class));
+    scheduledExecutor.scheduleAtFixedRate(
+        aggregator::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    return aggregator;
+  }
+
+  // visible for testing
+  StandardMetricsAggregator(
+      Supplier<MetricTelemetryBuilder> metricTelemetryBuilderFactory,
+      Consumer<TelemetryItem> metricConsumer,
+      int maxSeries,
+      long intervalMillis) {
+    this.metricTelemetryBuilderFactory = metricTelemetryBuilderFactory;
+    this.metricConsumer = metricConsumer;
+    this.maxSeries = maxSeries;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Records a request or dependency item into the current interval, and marks it as already
+   * processed by the metric extractors. All other item types are ignored.
+   */
+  public void record(TelemetryItem item) {
+    record(item, true);
+  }
+
+  /**
+   * Records a request or dependency item that is never exported (e.g. because it was sampled out),
+   * so there is no need to mark it.
+   */
+  public void recordNotExported(TelemetryItem item) {
+    record(item, false);
+  }
+
+  private void record(TelemetryItem item, boolean mark) {
+    MonitorBase data = item.getData();
+    MonitorDomain baseData = data == null ? null : data.getBaseData();
+    if (baseData instanceof RequestData) {
+      RequestData requestData = (RequestData) baseData;
+      record(
+          new SeriesKey(
+              REQUESTS_DURATION,
+              item.getInstrumentationKey(),
+              getTag(item, ContextTagKeys.AI_OPERATION_NAME),
+              requestData.getResponseCode(),
+              requestData.isSuccess(),
+              null,
+              null,
+              getTag(item, ContextTagKeys.AI_CLOUD_ROLE)),
+          requestData.getDuration());
+      if (mark) {
+        requestData.setProperties(addMarker(requestData.getProperties(), REQUESTS_EXTRACTOR));
+      }
+    } else if (baseData instanceof RemoteDependencyData) {
+      RemoteDependencyData dependencyData = (RemoteDependencyData) baseData;
+      Boolean success = dependencyData.isSuccess();
+      record(
+          new SeriesKey(
+              DEPENDENCIES_DURATION,
+              item.getInstrumentationKey(),
+              getTag(item, ContextTagKeys.AI_OPERATION_NAME),
+              dependencyData.getResultCode(),
+              success == null || success,
+              dependencyData.getTarget(),
+              dependencyData.getType(),
+              getTag(item, ContextTagKeys.AI_CLOUD_ROLE)),
+          dependencyData.getDuration());
+      if (mark) {
+        dependencyData.setProperties(
+            addMarker(dependencyData.getProperties(), DEPENDENCIES_EXTRACTOR));
+      }
+    }
+  }
+
+  private void record(SeriesKey key, long durationNanos) {
+    while (true) {
+      ConcurrentHashMap<SeriesKey, Series> current = series;
+      Series s = current.get(key);
+      if (s == null) {
+        if (current.size() >= maxSeries) {
+          key = key.overflow();
+        }
+        s = current.computeIfAbsent(key, k -> new Series());
+      }
+      if (s.record(durationNanos)) {
+        return;
+      }
+      // lost the race with flush(), the series has already been reported,
+      // so record into the next interval instead
+    }
+  }
+
+  /**
+   * Emits one metric item per series recorded since the previous flush.
+   *
+   * <p>Synchronized since it is called both periodically and at shutdown.
+   */
+  public synchronized void flush() {
+    ConcurrentHashMap<SeriesKey, Series> previous = series;
+    series = new ConcurrentHashMap<>();
+    long startMillis = intervalStartMillis;
+    intervalStartMillis = System.currentTimeMillis();
+    for (Map.Entry<SeriesKey, Series> entry : previous.entrySet()) {
+      try {
+        Series s = entry.getValue();
+        s.close();
+        if (s.count > 0) {
+          metricConsumer.accept(createMetricItem(entry.getKey(), s, startMillis));
+        }
+      } catch (RuntimeException e) {
+        logger.debug("error emitting standard metric: {}", e.getMessage(), e);
+      }
+    }
+  }
+
+  private TelemetryItem createMetricItem(SeriesKey key, Series s, long startMillis) {
+    MetricTelemetryBuilder telemetryBuilder = metricTelemetryBuilderFactory.get();
+
+    MetricPointBuilder point = new MetricPointBuilder();
+    point.setName(key.metricName);
+    point.setValue(nanosToMillis(s.sumNanos));
+    point.setCount(s.count);
+    point.setMin(nanosToMillis(s.minNanos));
+    point.setMax(nanosToMillis(s.maxNanos));
+    telemetryBuilder.setMetricPoint(point);
+
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(startMillis));
+    if (key.instrumentationKey != null) {
+      telemetryBuilder.setInstrumentationKey(key.instrumentationKey);
+    }
+    if (key.cloudRoleName != null) {
+      telemetryBuilder.addTag(ContextTagKeys.AI_CLOUD_ROLE.toString(), key.cloudRoleName);
+    }
+
+    telemetryBuilder.addProperty("_MS.MetricId", key.metricName);
+    telemetryBuilder.addProperty("_MS.IsAutocollected", "True");
+    telemetryBuilder.addProperty("_MS.AggregationIntervalMs", Long.toString(intervalMillis));
+    telemetryBuilder.addProperty("operation/name", key.operationName);
+    telemetryBuilder.addProperty("cloud/roleName", key.cloudRoleName);
+    if (key.metricName.equals(REQUESTS_DURATION)) {
+      telemetryBuilder.addProperty("request/resultCode", key.resultCode);
+      telemetryBuilder.addProperty("Request.Success", key.success ? "True" : "False");
+    } else {
+      telemetryBuilder.addProperty("dependency/target", key.target);
+      telemetryBuilder.addProperty("Dependency.Type", key.type);
+      telemetryBuilder.addProperty("dependency/resultCode", key.resultCode);
+      telemetryBuilder.addProperty("Dependency.Success", key.success ? "True" : "False");
+    }
+    return telemetryBuilder.build();
+  }
+
+  private static double nanosToMillis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+
+  @Nullable
+  private static String getTag(TelemetryItem item, ContextTagKeys key) {
+    Map<String, String> tags = item.getTags();
+    return tags == null ? null : tags.get(key.toString());
+  }
+
+  private static Map<String, String> addMarker(
+      @Nullable Map<String, String> properties, String extractor) {
+    if (properties == null) {
+      properties = new HashMap<>();
+    }
+    properties.put(PROCESSED_BY_METRIC_EXTRACTORS, extractor);
+    return properties;
+  }
+
+  private static final class Series {
+
+    private int count;
+    private long sumNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos = Long.MIN_VALUE;
+    private boolean closed;
+
+    synchronized boolean record(long durationNanos) {
+      if (closed) {
+        return false;
+      }
+      count++;
+      sumNanos += durationNanos;
+      minNanos = Math.min(minNanos, durationNanos);
+      maxNanos = Math.max(maxNanos, durationNanos);
+      return true;
+    }
+
+    synchronized void close() {
+      closed = true;
+    }
+  }
+
+  private static final class SeriesKey {
+
+    private final String metricName;
+    @Nullable private final String instrumentationKey;
+    @Nullable private final String operationName;
+    @Nullable private final String resultCode;
+    private final boolean success;
+    @Nullable private final String target;
+    @Nullable private final String type;
+    @Nullable private final String cloudRoleName;
+    private final int hashCode;
+
+    private SeriesKey(
+        String metricName,
+        @Nullable String instrumentationKey,
+        @Nullable String operationName,
+        @Nullable String resultCode,
+        boolean success,
+        @Nullable String target,
+        @Nullable String type,
+        @Nullable String cloudRoleName) {
+      this.metricName = metricName;
+      this.instrumentationKey = instrumentationKey;
+      this.operationName = operationName;
+      this.resultCode = resultCode;
+      this.success = success;
+      this.target = target;
+      this.type = type;
+      this.cloudRoleName = cloudRoleName;
+      hashCode =
+          Objects.hash(
+              metricName,
+              instrumentationKey,
+              operationName,
+              resultCode,
+              success,
+              target,
+              type,
+              cloudRoleName);
+    }
+
+    // keeps the metric name, instrumentation key and cloud role name, so that the overflow series
+    // still ends up in the right resource (and keeps the dependency type, which has a low
+    // cardinality)
+    private SeriesKey overflow() {
+      return new SeriesKey(
+          metricName,
+          instrumentationKey,
+          OTHER,
+          OTHER,
+          success,
+          target == null ? null : OTHER,
+          type,
+          cloudRoleName);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) obj;
+      return success == other.success
+          && metricName.equals(other.metricName)
+          && Objects.equals(instrumentationKey, other.instrumentationKey)
+          && Objects.equals(operationName, other.operationName)
+          && Objects.equals(resultCode, other.resultCode)
+          && Objects.equals(target, other.target)
+          && Objects.equals(type, other.type)
+          && Objects.equals(cloudRoleName, other.cloudRoleName);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
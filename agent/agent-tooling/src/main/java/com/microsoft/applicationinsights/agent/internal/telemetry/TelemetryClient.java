@@ -40,14 +40,18 @@ import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricData
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.ExportStats;
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryFileSink;
 import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryItemExporter;
 import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryPipeline;
 import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryPipelineListener;
 import com.azure.monitor.opentelemetry.exporter.implementation.quickpulse.QuickPulse;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.LayeredMap;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.TempDirs;
 import com.microsoft.applicationinsights.agent.internal.common.PropertyHelper;
 import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
 import com.microsoft.applicationinsights.agent.internal.httpclient.LazyHttpClient;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.NetworkStatsbeatHttpPipelinePolicy;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatModule;
 import com.microsoft.applicationinsights.agent.internal.statsbeat.StatsbeatTelemetryPipelineListener;
@@ -80,8 +84,12 @@ public class TelemetryClient {
   // * sdk version
   // * application version (if provided in customDimensions)
   private final Map<String, String> globalTags;
-  // contains customDimensions from json configuration
-  private final Map<String, String> globalProperties;
+
+  // immutable snapshot of globalTags, shared by all telemetry items instead of being copied into
+  // each one
+  private volatile LayeredMap.Defaults defaultTags;
+  // contains customDimensions from json configuration, also shared by all telemetry items
+  private final LayeredMap.Defaults defaultProperties;
 
   private final List<MetricFilter> metricFilters;
 
@@ -90,11 +98,19 @@ public class TelemetryClient {
   private final StatsbeatModule statsbeatModule;
   @Nullable private final File tempDir;
   private final int generalExportQueueCapacity;
+  private final boolean generalExportQueuePriorityLanes;
   private final int metricsExportQueueCapacity;
   private final int diskPersistenceMaxSizeMb;
+  private final boolean exportQueueOverflowToDisk;
+  private final int exportQueueOverflowMaxFilesPerSecond;
+  @Nullable private final TelemetryFileSink fileSink;
 
   @Nullable private final Configuration.AadAuthentication aadAuthentication;
 
+  // created up front, so that they can be exposed before the (lazily created) queues are used
+  private final ExportStats generalExportStats = new ExportStats();
+  private final ExportStats metricsExportStats = new ExportStats();
+
   private final Object batchItemProcessorInitLock = new Object();
   @Nullable private volatile BatchItemProcessor generalBatchItemProcessor;
   @Nullable private volatile BatchItemProcessor metricsBatchItemProcessor;
@@ -116,11 +132,14 @@ public class TelemetryClient {
 
   public TelemetryClient(Builder builder) {
     this.globalTags = builder.globalTags;
-    this.globalProperties = builder.globalProperties;
+    this.defaultTags = LayeredMap.Defaults.of(globalTags);
+    this.defaultProperties =
+        AbstractTelemetryBuilder.createDefaultProperties(builder.globalProperties);
     this.metricFilters = builder.metricFilters;
     this.statsbeatModule = builder.statsbeatModule;
     this.tempDir = builder.tempDir;
     this.generalExportQueueCapacity = builder.generalExportQueueCapacity;
+    this.generalExportQueuePriorityLanes = builder.generalExportQueuePriorityLanes;
     this.metricsExportQueueCapacity = builder.metricsExportQueueCapacity;
     this.aadAuthentication = builder.aadAuthentication;
     this.connectionString = builder.connectionString;
@@ -128,6 +147,9 @@ public class TelemetryClient {
     this.roleName = builder.roleName;
     this.roleInstance = builder.roleInstance;
     this.diskPersistenceMaxSizeMb = builder.diskPersistenceMaxSizeMb;
+    this.exportQueueOverflowToDisk = builder.exportQueueOverflowToDisk;
+    this.exportQueueOverflowMaxFilesPerSecond = builder.exportQueueOverflowMaxFilesPerSecond;
+    this.fileSink = builder.fileSink;
   }
 
   public static TelemetryClient getActive() {
@@ -146,6 +168,12 @@ public class TelemetryClient {
   }
 
   public void trackAsync(TelemetryItem telemetryItem) {
+    trackAsync(telemetryItem, null);
+  }
+
+  // with tail sampling, live metrics and the telemetry observers still see every item, while only
+  // the items of the traces that are kept are exported (see TailSampler)
+  public void trackAsync(TelemetryItem telemetryItem, @Nullable TailSampler tailSampler) {
     if (connectionString == null) {
       return;
     }
@@ -170,7 +198,7 @@ public class TelemetryClient {
       }
     }
 
-    if (telemetryItem.getTime() == null) {
+    if (telemetryItem.getTime() == 0) {
       // this is easy to forget when adding new telemetry
       throw new AssertionError("telemetry item is missing time");
     }
@@ -186,6 +214,8 @@ public class TelemetryClient {
     // only that it was successfully delivered to the next layer
     if (data instanceof MetricsData) {
       getMetricsBatchItemProcessor().trackAsync(telemetryItem);
+    } else if (tailSampler != null) {
+      tailSampler.add(telemetryItem);
     } else {
       getGeneralBatchItemProcessor().trackAsync(telemetryItem);
     }
@@ -209,7 +239,13 @@ public class TelemetryClient {
     if (statsbeatBatchItemProcessor != null) {
       resultCodes.add(statsbeatBatchItemProcessor.forceFlush());
     }
-    return CompletableResultCode.ofAll(resultCodes);
+    CompletableResultCode result = CompletableResultCode.ofAll(resultCodes);
+    TelemetryFileSink fileSink = this.fileSink;
+    if (fileSink != null) {
+      // complete the current file, so that the flushed telemetry can be picked up right away
+      result.whenComplete(fileSink::rotate);
+    }
+    return result;
   }
 
   public BatchItemProcessor getGeneralBatchItemProcessor() {
@@ -217,7 +253,12 @@ public class TelemetryClient {
       synchronized (batchItemProcessorInitLock) {
         if (generalBatchItemProcessor == null) {
           generalBatchItemProcessor =
-              initBatchItemProcessor(generalExportQueueCapacity, 512, "general");
+              initBatchItemProcessor(
+                  generalExportQueueCapacity,
+                  512,
+                  generalExportQueuePriorityLanes,
+                  "general",
+                  generalExportStats);
         }
       }
     }
@@ -231,7 +272,8 @@ public class TelemetryClient {
       synchronized (batchItemProcessorInitLock) {
         if (metricsBatchItemProcessor == null) {
           metricsBatchItemProcessor =
-              initBatchItemProcessor(metricsExportQueueCapacity, 2048, "metrics");
+              initBatchItemProcessor(
+                  metricsExportQueueCapacity, 2048, false, "metrics", metricsExportStats);
         }
       }
     }
@@ -239,46 +281,88 @@ public class TelemetryClient {
   }
 
   private BatchItemProcessor initBatchItemProcessor(
-      int exportQueueCapacity, int maxExportBatchSize, String queueName) {
-
-    HttpPipeline httpPipeline =
-        LazyHttpClient.newHttpPipeLine(
-            aadAuthentication,
-            new NetworkStatsbeatHttpPipelinePolicy(statsbeatModule.getNetworkStatsbeat()));
-    TelemetryPipeline telemetryPipeline =
-        new TelemetryPipeline(httpPipeline, () -> connectionString.getIngestionEndpoint());
-
-    TelemetryPipelineListener telemetryPipelineListener;
-    if (tempDir == null) {
-      telemetryPipelineListener =
-          new DiagnosticTelemetryPipelineListener(
-              "Sending telemetry to the ingestion service", false);
+      int exportQueueCapacity,
+      int maxExportBatchSize,
+      boolean priorityLanes,
+      String queueName,
+      ExportStats exportStats) {
+
+    TelemetryItemExporter exporter;
+    TelemetryItemSpiller spiller = null;
+    if (fileSink != null) {
+      // no http pipeline and no local storage retries are needed when writing to local files
+      // (the file sink logs its own failures)
+      exporter =
+          new TelemetryItemExporter(
+              new TelemetryPipeline(fileSink), TelemetryPipelineListener.noop(), exportStats);
     } else {
-      telemetryPipelineListener =
-          TelemetryPipelineListener.composite(
-              // suppress warnings on retryable failures, in order to reduce sporadic/annoying
-              // warnings when storing to disk and retrying shortly afterwards anyways
-              // will log if that retry from disk fails
-              new DiagnosticTelemetryPipelineListener(
-                  "Sending telemetry to the ingestion service", true),
-              new LocalStorageTelemetryPipelineListener(
-                  diskPersistenceMaxSizeMb,
-                  TempDirs.getSubDir(tempDir, TELEMETRY_FOLDER_NAME),
-                  telemetryPipeline,
-                  statsbeatModule.getNonessentialStatsbeat(),
-                  false));
+      HttpPipeline httpPipeline =
+          LazyHttpClient.newHttpPipeLine(
+              aadAuthentication,
+              new NetworkStatsbeatHttpPipelinePolicy(statsbeatModule.getNetworkStatsbeat()));
+      TelemetryPipeline telemetryPipeline =
+          new TelemetryPipeline(httpPipeline, () -> connectionString.getIngestionEndpoint());
+
+      TelemetryPipelineListener telemetryPipelineListener;
+      LocalStorageTelemetryPipelineListener localStorageTelemetryPipelineListener;
+      if (tempDir == null) {
+        telemetryPipelineListener =
+            new DiagnosticTelemetryPipelineListener(
+                "Sending telemetry to the ingestion service", false);
+        localStorageTelemetryPipelineListener = null;
+      } else {
+        localStorageTelemetryPipelineListener =
+            new LocalStorageTelemetryPipelineListener(
+                diskPersistenceMaxSizeMb,
+                TempDirs.getSubDir(tempDir, TELEMETRY_FOLDER_NAME),
+                telemetryPipeline,
+                statsbeatModule.getNonessentialStatsbeat(),
+                false);
+        telemetryPipelineListener =
+            TelemetryPipelineListener.composite(
+                // suppress warnings on retryable failures, in order to reduce sporadic/annoying
+                // warnings when storing to disk and retrying shortly afterwards anyways
+                // will log if that retry from disk fails
+                new DiagnosticTelemetryPipelineListener(
+                    "Sending telemetry to the ingestion service", true),
+                localStorageTelemetryPipelineListener);
+        exportStats.setLocalStorageBacklogFileCountSupplier(
+            localStorageTelemetryPipelineListener::getBacklogFileCount);
+      }
+
+      exporter =
+          new TelemetryItemExporter(telemetryPipeline, telemetryPipelineListener, exportStats);
+
+      if (exportQueueOverflowToDisk && localStorageTelemetryPipelineListener != null) {
+        spiller =
+            new TelemetryItemSpiller(
+                exporter,
+                localStorageTelemetryPipelineListener,
+                exportQueueCapacity,
+                maxExportBatchSize,
+                exportQueueOverflowMaxFilesPerSecond);
+      }
     }
 
-    return BatchItemProcessor.builder(
-            new TelemetryItemExporter(telemetryPipeline, telemetryPipelineListener))
+    return BatchItemProcessor.builder(exporter)
         .setMaxQueueSize(exportQueueCapacity)
         .setMaxExportBatchSize(maxExportBatchSize)
         // the number 100 was calculated as the max number of concurrent exports that the single
         // worker thread can drive, so anything higher than this should not increase throughput
         .setMaxPendingExports(100)
+        .setPriorityLanes(priorityLanes)
+        .setSpiller(spiller)
         .build(queueName);
   }
 
+  public ExportStats getGeneralExportStats() {
+    return generalExportStats;
+  }
+
+  public ExportStats getMetricsExportStats() {
+    return metricsExportStats;
+  }
+
   public BatchItemProcessor getStatsbeatBatchItemProcessor() {
     if (statsbeatBatchItemProcessor == null) {
       synchronized (batchItemProcessorInitLock) {
@@ -384,12 +468,8 @@ public class TelemetryClient {
 
   private void populateDefaults(AbstractTelemetryBuilder telemetryBuilder) {
     telemetryBuilder.setInstrumentationKey(getInstrumentationKey());
-    for (Map.Entry<String, String> entry : globalTags.entrySet()) {
-      telemetryBuilder.addTag(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : globalProperties.entrySet()) {
-      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
-    }
+    telemetryBuilder.setDefaultTags(defaultTags);
+    telemetryBuilder.setDefaultProperties(defaultProperties);
   }
 
   @Nullable
@@ -401,6 +481,7 @@ public class TelemetryClient {
   public void updateRoleName(String roleName) {
     this.roleName = roleName;
     globalTags.put(ContextTagKeys.AI_CLOUD_ROLE.toString(), roleName);
+    defaultTags = LayeredMap.Defaults.of(globalTags);
   }
 
   @Nullable
@@ -444,6 +525,7 @@ public class TelemetryClient {
     private StatsbeatModule statsbeatModule;
     @Nullable private File tempDir;
     private int generalExportQueueCapacity;
+    private boolean generalExportQueuePriorityLanes;
     private int metricsExportQueueCapacity;
     @Nullable private Configuration.AadAuthentication aadAuthentication;
     @Nullable private ConnectionString connectionString;
@@ -451,6 +533,9 @@ public class TelemetryClient {
     @Nullable private String roleName;
     @Nullable private String roleInstance;
     private int diskPersistenceMaxSizeMb;
+    private boolean exportQueueOverflowToDisk;
+    private int exportQueueOverflowMaxFilesPerSecond;
+    @Nullable private TelemetryFileSink fileSink;
 
     public Builder setCustomDimensions(Map<String, String> customDimensions) {
       StringSubstitutor substitutor = new StringSubstitutor(System.getenv());
@@ -496,6 +581,11 @@ public class TelemetryClient {
       return this;
     }
 
+    public Builder setGeneralExportQueuePriorityLanes(boolean generalExportQueuePriorityLanes) {
+      this.generalExportQueuePriorityLanes = generalExportQueuePriorityLanes;
+      return this;
+    }
+
     public Builder setMetricsExportQueueSize(int metricsExportQueueCapacity) {
       this.metricsExportQueueCapacity = metricsExportQueueCapacity;
       return this;
@@ -536,6 +626,20 @@ public class TelemetryClient {
       return this;
     }
 
+    public Builder setExportQueueOverflowToDisk(
+        boolean exportQueueOverflowToDisk, int exportQueueOverflowMaxFilesPerSecond) {
+      this.exportQueueOverflowToDisk = exportQueueOverflowToDisk;
+      this.exportQueueOverflowMaxFilesPerSecond = exportQueueOverflowMaxFilesPerSecond;
+      return this;
+    }
+
+    // when set, the general and metrics telemetry is written to local files instead of being sent
+    // to the ingestion service
+    public Builder setFileSink(@Nullable TelemetryFileSink fileSink) {
+      this.fileSink = fileSink;
+      return this;
+    }
+
     public TelemetryClient build() {
       return new TelemetryClient(this);
     }
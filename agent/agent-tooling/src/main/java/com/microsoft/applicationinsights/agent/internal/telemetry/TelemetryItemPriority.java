@@ -0,0 +1,71 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.AvailabilityData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RemoteDependencyData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryExceptionData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+
+// priority classes used by the BatchItemProcessor lanes, so that a flood of one kind of telemetry
+// (typically logs) cannot crowd out the telemetry behind the availability and failure experiences
+enum TelemetryItemPriority {
+  // requests, dependencies, exceptions and availability results
+  HIGH(4),
+  // custom events, page views and anything else
+  NORMAL(2),
+  // traces (logs), which are by far the most likely to flood
+  LOW(1);
+
+  // number of items drained from this lane per weighted round-robin cycle
+  private final int weight;
+
+  TelemetryItemPriority(int weight) {
+    this.weight = weight;
+  }
+
+  int getWeight() {
+    return weight;
+  }
+
+  static TelemetryItemPriority of(TelemetryItem telemetryItem) {
+    MonitorBase data = telemetryItem.getData();
+    if (data == null) {
+      return NORMAL;
+    }
+    MonitorDomain baseData = data.getBaseData();
+    if (baseData instanceof RequestData
+        || baseData instanceof RemoteDependencyData
+        || baseData instanceof TelemetryExceptionData
+        || baseData instanceof AvailabilityData) {
+      return HIGH;
+    }
+    if (baseData instanceof MessageData) {
+      return LOW;
+    }
+    return NORMAL;
+  }
+}
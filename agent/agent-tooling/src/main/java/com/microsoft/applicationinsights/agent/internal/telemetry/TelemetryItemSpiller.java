@@ -0,0 +1,179 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static com.azure.monitor.opentelemetry.exporter.implementation.utils.AzureMonitorMsgId.BATCH_ITEM_PROCESSOR_ERROR;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.localstorage.LocalStorageTelemetryPipelineListener;
+import com.azure.monitor.opentelemetry.exporter.implementation.logging.OperationLogger;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryItemExporter;
+import io.opentelemetry.internal.shaded.jctools.queues.MpscArrayQueue;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.internal.DaemonThreadFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// receives the telemetry items that don't fit into the BatchItemProcessor queue, and writes them
+// to local storage (in bulk, on a background thread) instead of dropping them
+//
+// the files are written into the same folder that is used for retrying failed exports, so they
+// are picked up and sent later on by the LocalFileSender
+//
+// the number of files written per second is bounded, so that the disk cannot become the new
+// bottleneck, if the spill buffer fills up while waiting then items are dropped (same as without
+// spilling)
+final class TelemetryItemSpiller implements Runnable {
+
+  private static final String WORKER_THREAD_NAME =
+      TelemetryItemSpiller.class.getSimpleName() + "_WorkerThread";
+
+  // spilled items that haven't been written to disk within this interval are written anyways,
+  // even if there aren't enough of them to fill a file
+  private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final OperationLogger spillingItemLogger =
+      new OperationLogger(TelemetryItemSpiller.class, "Spilling telemetry item to disk");
+
+  private static final OperationLogger encodingItemsLogger =
+      new OperationLogger(TelemetryItemSpiller.class, "Encoding spilled telemetry items");
+
+  private final TelemetryItemExporter exporter;
+  private final LocalStorageTelemetryPipelineListener localStorage;
+  private final int maxItemsPerFile;
+  private final long minWriteIntervalNanos;
+
+  private final MpscArrayQueue<TelemetryItem> buffer;
+  private final BlockingQueue<Boolean> signal = new ArrayBlockingQueue<>(1);
+  private final AtomicReference<CompletableResultCode> flushRequested = new AtomicReference<>();
+  private final ArrayList<TelemetryItem> batch;
+
+  private long nextWriteTime;
+
+  TelemetryItemSpiller(
+      TelemetryItemExporter exporter,
+      LocalStorageTelemetryPipelineListener localStorage,
+      int bufferSize,
+      int maxItemsPerFile,
+      int maxFilesPerSecond) {
+    this.exporter = exporter;
+    this.localStorage = localStorage;
+    this.maxItemsPerFile = maxItemsPerFile;
+    this.minWriteIntervalNanos = TimeUnit.SECONDS.toNanos(1) / maxFilesPerSecond;
+    this.buffer = new MpscArrayQueue<>(bufferSize);
+    this.batch = new ArrayList<>(maxItemsPerFile);
+
+    Thread workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(this);
+    workerThread.start();
+  }
+
+  void spill(TelemetryItem item) {
+    if (!buffer.offer(item)) {
+      spillingItemLogger.recordFailure(
+          "Max spill buffer capacity of "
+              + buffer.capacity()
+              + " has been hit (the disk spill rate is limited), dropping a telemetry record",
+          BATCH_ITEM_PROCESSOR_ERROR);
+      exporter.getStats().recordDroppedItem();
+      return;
+    }
+    spillingItemLogger.recordSuccess();
+    if (buffer.size() >= maxItemsPerFile) {
+      signal.offer(true);
+    }
+  }
+
+  // writes everything that is currently buffered, ignoring the files per second limit (e.g. so that
+  // nothing is lost at shutdown)
+  CompletableResultCode flush() {
+    CompletableResultCode flushResult = new CompletableResultCode();
+    if (flushRequested.compareAndSet(null, flushResult)) {
+      signal.offer(true);
+    }
+    CompletableResultCode possibleResult = flushRequested.get();
+    // same race as in BatchItemProcessor: the flush may already have completed in the meantime
+    return possibleResult == null ? CompletableResultCode.ofSuccess() : possibleResult;
+  }
+
+  @Override
+  public void run() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        if (buffer.size() < maxItemsPerFile && flushRequested.get() == null) {
+          signal.poll(MAX_WAIT_NANOS, TimeUnit.NANOSECONDS);
+        }
+        CompletableResultCode flushResult = flushRequested.get();
+        if (flushResult != null) {
+          while (buffer.drain(batch::add, maxItemsPerFile) > 0) {
+            writeCurrentBatch();
+          }
+          flushResult.succeed();
+          flushRequested.set(null);
+          continue;
+        }
+        long waitTime = nextWriteTime - System.nanoTime();
+        if (waitTime > 0) {
+          TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      buffer.drain(batch::add, maxItemsPerFile);
+      if (!batch.isEmpty()) {
+        writeCurrentBatch();
+        nextWriteTime = System.nanoTime() + minWriteIntervalNanos;
+      }
+    }
+  }
+
+  private void writeCurrentBatch() {
+    try {
+      Map<String, List<TelemetryItem>> instrumentationKeyMap = new HashMap<>();
+      for (TelemetryItem telemetryItem : batch) {
+        instrumentationKeyMap
+            .computeIfAbsent(telemetryItem.getInstrumentationKey(), k -> new ArrayList<>())
+            .add(telemetryItem);
+      }
+      for (Map.Entry<String, List<TelemetryItem>> entry : instrumentationKeyMap.entrySet()) {
+        List<ByteBuffer> byteBuffers;
+        try {
+          byteBuffers = exporter.encode(entry.getValue());
+          encodingItemsLogger.recordSuccess();
+        } catch (Throwable t) {
+          encodingItemsLogger.recordFailure(t.getMessage(), t, BATCH_ITEM_PROCESSOR_ERROR);
+          continue;
+        }
+        localStorage.writeToDisk(entry.getKey(), byteBuffers);
+      }
+    } finally {
+      batch.clear();
+    }
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricPointBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.ThreadPoolUtils;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pre-aggregates the single values tracked through the 2.x SDK's {@code
+ * TelemetryClient.trackMetric()} (count, sum, min, max and standard deviation per metric name,
+ * custom dimensions and context tags), so that they are sent as one metric item per series and
+ * interval, instead of as one metric item per call.
+ */
+public final class TrackMetricAggregator {
+
+  private static final Logger logger = LoggerFactory.getLogger(TrackMetricAggregator.class);
+
+  // used for all custom dimension values once the cardinality cap has been reached
+  static final String OTHER = "Other";
+
+  private final Supplier<MetricTelemetryBuilder> metricTelemetryBuilderFactory;
+  private final Consumer<TelemetryItem> metricConsumer;
+  private final int maxSeries;
+  private final long intervalMillis;
+
+  // swapped out on each flush
+  private volatile Generation current = new Generation(System.currentTimeMillis());
+
+  public static TrackMetricAggregator start(
+      Supplier<MetricTelemetryBuilder> metricTelemetryBuilderFactory,
+      Consumer<TelemetryItem> metricConsumer,
+      int maxSeries,
+      long intervalSeconds) {
+    TrackMetricAggregator aggregator =
+        new TrackMetricAggregator(
+            metricTelemetryBuilderFactory,
+            metricConsumer,
+            maxSeries,
+            TimeUnit.SECONDS.toMillis(intervalSeconds));
+    ScheduledExecutorService scheduledExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolUtils.createDaemonThreadFactory(TrackMetricAggregator.class));
+    scheduledExecutor.scheduleAtFixedRate(
+        aggregator::flush, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    return aggregator;
+  }
+
+  // visible for testing
+  TrackMetricAggregator(
+      Supplier<MetricTelemetryBuilder> metricTelemetryBuilderFactory,
+      Consumer<TelemetryItem> metricConsumer,
+      int maxSeries,
+      long intervalMillis) {
+    this.metricTelemetryBuilderFactory = metricTelemetryBuilderFactory;
+    this.metricConsumer = metricConsumer;
+    this.maxSeries = maxSeries;
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Records a single value into the current interval.
+   *
+   * <p>Returns {@code false} if the value was not recorded because its timestamp is back-dated to
+   * before the previous interval, in which case the caller should send it as is.
+   */
+  public boolean record(
+      String name,
+      double value,
+      Map<String, String> properties,
+      Map<String, String> tags,
+      @Nullable String instrumentationKey,
+      long timestampMillis) {
+    if (!Double.isFinite(value)) {
+      // a single NaN or infinite value would make the whole series' sum (and so its average)
+      // meaningless
+      logger.debug("ignoring non-finite value {} for metric: {}", value, name);
+      return true;
+    }
+    SeriesKey key = new SeriesKey(name, properties, tags, instrumentationKey);
+    while (true) {
+      Generation generation = current;
+      // the previous interval is still accepted, since the timestamp can be taken just before
+      // that interval is flushed
+      if (timestampMillis < generation.startMillis - intervalMillis) {
+        return false;
+      }
+      generation.recordingThreads.incrementAndGet();
+      try {
+        // checked after registering as a recording thread, so that flush() either waits for this
+        // recording, or this recording sees that the generation is closed
+        if (!generation.closed) {
+          Series s = generation.series.get(key);
+          if (s == null) {
+            // the caller's properties and tags are only copied when a new series is added
+            key = generation.series.size() >= maxSeries ? key.overflow() : key.copy();
+            s = generation.series.computeIfAbsent(key, k -> new Series());
+          }
+          s.record(value, timestampMillis);
+          return true;
+        }
+      } finally {
+        generation.recordingThreads.decrementAndGet();
+      }
+      // lost the race with flush(), the generation has already been reported,
+      // so record into the next one instead
+    }
+  }
+
+  /** Emits one metric item per series recorded since the previous flush. */
+  // synchronized since it is called by the scheduled flush, by the 2.x SDK's flush() and on
+  // shutdown, which could otherwise report the same generation twice
+  public synchronized void flush() {
+    Generation previous = current;
+    current = new Generation(System.currentTimeMillis());
+    previous.close();
+    for (Map.Entry<SeriesKey, Series> entry : previous.series.entrySet()) {
+      try {
+        Series s = entry.getValue();
+        long count = s.count.sum();
+        if (count > 0) {
+          metricConsumer.accept(createMetricItem(entry.getKey(), s, count));
+        }
+      } catch (RuntimeException e) {
+        logger.debug("error emitting aggregated metric: {}", e.getMessage(), e);
+      }
+    }
+  }
+
+  private TelemetryItem createMetricItem(SeriesKey key, Series s, long count) {
+    MetricTelemetryBuilder telemetryBuilder = metricTelemetryBuilderFactory.get();
+
+    double sum = s.sum.sum();
+    double mean = sum / count;
+    // population standard deviation, clamped since rounding can make the variance slightly negative
+    double variance = Math.max(0, s.sumOfSquares.sum() / count - mean * mean);
+
+    MetricPointBuilder point = new MetricPointBuilder();
+    point.setName(key.name);
+    point.setValue(sum);
+    point.setCount(count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count);
+    point.setMin(s.min.get());
+    point.setMax(s.max.get());
+    point.setStdDev(Math.sqrt(variance));
+    telemetryBuilder.setMetricPoint(point);
+
+    // the earliest of the timestamps that the values were tracked with
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(s.minTimestampMillis.get()));
+    if (key.instrumentationKey != null) {
+      telemetryBuilder.setInstrumentationKey(key.instrumentationKey);
+    }
+    for (Map.Entry<String, String> entry : key.tags.entrySet()) {
+      telemetryBuilder.addTag(entry.getKey(), entry.getValue());
+    }
+    for (Map.Entry<String, String> entry : key.properties.entrySet()) {
+      telemetryBuilder.addProperty(entry.getKey(), entry.getValue());
+    }
+    telemetryBuilder.addProperty("_MS.AggregationIntervalMs", Long.toString(intervalMillis));
+    return telemetryBuilder.build();
+  }
+
+  // the series recorded during one interval
+  private static final class Generation {
+
+    private final long startMillis;
+    private final ConcurrentHashMap<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    private final AtomicInteger recordingThreads = new AtomicInteger();
+    private volatile boolean closed;
+
+    private Generation(long startMillis) {
+      this.startMillis = startMillis;
+    }
+
+    // lock-free for recording threads, only flush() waits for in-flight recordings to finish
+    private void close() {
+      closed = true;
+      while (recordingThreads.get() > 0) {
+        Thread.yield();
+      }
+    }
+  }
+
+  private static final class Series {
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder sumOfSquares = new DoubleAdder();
+    private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.MAX_VALUE);
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, -Double.MAX_VALUE);
+    private final LongAccumulator minTimestampMillis =
+        new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    private void record(double value, long timestampMillis) {
+      count.increment();
+      sum.add(value);
+      sumOfSquares.add(value * value);
+      min.accumulate(value);
+      max.accumulate(value);
+      minTimestampMillis.accumulate(timestampMillis);
+    }
+  }
+
+  private static final class SeriesKey {
+
+    private final String name;
+    private final Map<String, String> properties;
+    private final Map<String, String> tags;
+    @Nullable private final String instrumentationKey;
+    private final int hashCode;
+
+    private SeriesKey(
+        String name,
+        Map<String, String> properties,
+        Map<String, String> tags,
+        @Nullable String instrumentationKey) {
+      this.name = name;
+      this.properties = properties;
+      this.tags = tags;
+      this.instrumentationKey = instrumentationKey;
+      hashCode = 31 * Objects.hash(name, properties, instrumentationKey) + tagsHashCode(tags);
+    }
+
+    private SeriesKey copy() {
+      Map<String, String> copiedTags = new HashMap<>();
+      for (Map.Entry<String, String> entry : tags.entrySet()) {
+        if (!isExcludedTag(entry.getKey())) {
+          copiedTags.put(entry.getKey(), entry.getValue());
+        }
+      }
+      return new SeriesKey(name, new HashMap<>(properties), copiedTags, instrumentationKey);
+    }
+
+    // keeps the metric name, the custom dimension names and the instrumentation key, so that the
+    // overflow series still ends up in the right resource with the same dimensions, but not the
+    // context tags, whose values are just as likely to be what caused the cardinality
+    private SeriesKey overflow() {
+      Map<String, String> overflowProperties = new HashMap<>();
+      for (String propertyName : properties.keySet()) {
+        overflowProperties.put(propertyName, OTHER);
+      }
+      return new SeriesKey(name, overflowProperties, Collections.emptyMap(), instrumentationKey);
+    }
+
+    // the operation id and parent id identify a single operation, which an aggregate of values
+    // tracked across many operations cannot be correlated with, and which would otherwise turn
+    // every operation into its own series (the sdk version is not sent for 2.x items either)
+    private static boolean isExcludedTag(String tagName) {
+      return tagName.equals(ContextTagKeys.AI_OPERATION_ID.toString())
+          || tagName.equals(ContextTagKeys.AI_OPERATION_PARENT_ID.toString())
+          || tagName.equals(ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString());
+    }
+
+    // the excluded tags are ignored when comparing keys, so that the key built from the caller's
+    // tags matches the key of the series it was copied into
+
+    private static int tagsHashCode(Map<String, String> tags) {
+      int hashCode = 0;
+      for (Map.Entry<String, String> entry : tags.entrySet()) {
+        if (!isExcludedTag(entry.getKey())) {
+          hashCode += entry.hashCode();
+        }
+      }
+      return hashCode;
+    }
+
+    private static boolean tagsEqual(Map<String, String> tags, Map<String, String> otherTags) {
+      return containsAllTags(tags, otherTags) && containsAllTags(otherTags, tags);
+    }
+
+    private static boolean containsAllTags(Map<String, String> tags, Map<String, String> subset) {
+      for (Map.Entry<String, String> entry : subset.entrySet()) {
+        if (!isExcludedTag(entry.getKey())
+            && !Objects.equals(entry.getValue(), tags.get(entry.getKey()))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) obj;
+      return name.equals(other.name)
+          && properties.equals(other.properties)
+          && tagsEqual(tags, other.tags)
+          && Objects.equals(instrumentationKey, other.instrumentationKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
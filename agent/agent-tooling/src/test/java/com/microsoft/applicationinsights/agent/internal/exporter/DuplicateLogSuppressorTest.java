@@ -0,0 +1,240 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.exporter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.logs.data.Body;
+import io.opentelemetry.sdk.logs.data.LogData;
+import io.opentelemetry.sdk.logs.data.Severity;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DuplicateLogSuppressorTest {
+
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  private FakeClock clock;
+  private List<Summary> summaries;
+
+  @BeforeEach
+  void setup() {
+    clock = new FakeClock();
+    summaries = new ArrayList<>();
+  }
+
+  @Test
+  void shouldExportFirstOccurrenceAndSuppressDuplicatesWithinWindow() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 10, clock);
+
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isTrue();
+    clock.advance(TimeUnit.SECONDS.toNanos(1));
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isFalse();
+    clock.advance(TimeUnit.SECONDS.toNanos(58));
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isFalse();
+
+    suppressor.emitExpiredSummaries(this::record);
+    assertThat(summaries).isEmpty();
+  }
+
+  @Test
+  void shouldEmitSummaryOnceWindowIsOver() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 10, clock);
+
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    LogData last = null;
+    for (int i = 0; i < 5; i++) {
+      clock.advance(TimeUnit.SECONDS.toNanos(1));
+      last = log("a", Severity.ERROR, "boom");
+      suppressor.shouldExport(last, this::record);
+    }
+
+    clock.advance(WINDOW_NANOS);
+    suppressor.emitExpiredSummaries(this::record);
+
+    assertThat(summaries).hasSize(1);
+    assertThat(summaries.get(0).log).isSameAs(last);
+    assertThat(summaries.get(0).occurrenceCount).isEqualTo(5);
+    assertThat(suppressor.getTrackedLogCount()).isZero();
+
+    // a new window starts with the next occurrence
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isTrue();
+  }
+
+  @Test
+  void shouldEmitSummaryOfPreviousWindowWhenNextOccurrenceArrives() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 10, clock);
+
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+
+    clock.advance(WINDOW_NANOS);
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isTrue();
+
+    assertThat(summaries).hasSize(1);
+    assertThat(summaries.get(0).occurrenceCount).isEqualTo(2);
+
+    // and the new window suppresses again
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isFalse();
+  }
+
+  @Test
+  void shouldNotEmitSummaryWhenNothingWasSuppressed() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 10, clock);
+
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    clock.advance(WINDOW_NANOS);
+    suppressor.emitExpiredSummaries(this::record);
+
+    assertThat(summaries).isEmpty();
+    assertThat(suppressor.getTrackedLogCount()).isZero();
+  }
+
+  @Test
+  void shouldTrackEachKeySeparately() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 10, clock);
+
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isTrue();
+    assertThat(suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record)).isTrue();
+    assertThat(suppressor.shouldExport(log("a", Severity.WARN, "boom"), this::record)).isTrue();
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "bang"), this::record)).isTrue();
+    assertThat(
+            suppressor.shouldExport(
+                log("a", Severity.ERROR, "boom", "java.io.IOException"), this::record))
+        .isTrue();
+    assertThat(
+            suppressor.shouldExport(
+                log("a", Severity.ERROR, "boom", "java.lang.IllegalStateException"),
+                this::record))
+        .isTrue();
+
+    assertThat(suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record)).isFalse();
+    assertThat(
+            suppressor.shouldExport(
+                log("a", Severity.ERROR, "boom", "java.io.IOException"), this::record))
+        .isFalse();
+    assertThat(suppressor.getTrackedLogCount()).isEqualTo(6);
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyLoggedAndEmitItsSummary() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 2, clock);
+
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record);
+    // "a" becomes the most recently logged
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+
+    suppressor.shouldExport(log("c", Severity.ERROR, "boom"), this::record);
+
+    assertThat(suppressor.getTrackedLogCount()).isEqualTo(2);
+    assertThat(summaries).hasSize(1);
+    assertThat(summaries.get(0).log.getInstrumentationScopeInfo().getName()).isEqualTo("b");
+    assertThat(summaries.get(0).occurrenceCount).isEqualTo(1);
+
+    // "b" is no longer tracked, so it is exported again
+    assertThat(suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record)).isTrue();
+  }
+
+  @Test
+  void shouldEmitAllSummariesOnFlush() {
+    DuplicateLogSuppressor suppressor = new DuplicateLogSuppressor(WINDOW_NANOS, 10, clock);
+
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("a", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record);
+    suppressor.shouldExport(log("b", Severity.ERROR, "boom"), this::record);
+
+    suppressor.emitAllSummaries(this::record);
+
+    assertThat(summaries).hasSize(2);
+    assertThat(summaries.get(0).occurrenceCount).isEqualTo(1);
+    assertThat(summaries.get(1).occurrenceCount).isEqualTo(2);
+    assertThat(suppressor.getTrackedLogCount()).isZero();
+  }
+
+  private void record(LogData log, long occurrenceCount) {
+    summaries.add(new Summary(log, occurrenceCount));
+  }
+
+  private static LogData log(String loggerName, Severity severity, String message) {
+    return log(loggerName, severity, message, null);
+  }
+
+  private static LogData log(
+      String loggerName, Severity severity, String message, @Nullable String exceptionType) {
+    LogData log = mock(LogData.class);
+    when(log.getInstrumentationScopeInfo()).thenReturn(InstrumentationScopeInfo.create(loggerName));
+    when(log.getSeverity()).thenReturn(severity);
+    when(log.getBody()).thenReturn(Body.string(message));
+    when(log.getAttributes())
+        .thenReturn(
+            exceptionType == null
+                ? Attributes.empty()
+                : Attributes.of(SemanticAttributes.EXCEPTION_TYPE, exceptionType));
+    return log;
+  }
+
+  private static class Summary {
+
+    private final LogData log;
+    private final long occurrenceCount;
+
+    private Summary(LogData log, long occurrenceCount) {
+      this.log = log;
+      this.occurrenceCount = occurrenceCount;
+    }
+  }
+
+  private static class FakeClock implements Clock {
+
+    private long nanos;
+
+    private void advance(long nanos) {
+      this.nanos += nanos;
+    }
+
+    @Override
+    public long now() {
+      return nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+  }
+}
@@ -28,7 +28,6 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
-import com.microsoft.applicationinsights.agent.internal.exporter.AgentLogExporter;
 import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
 import org.junit.jupiter.api.Test;
 
@@ -79,10 +78,10 @@ class AzureFunctionsInitializerTestHolder {
 
     // given
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    AgentLogExporter agentLogExporter = mock(AgentLogExporter.class);
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
     AppIdSupplier appIdSupplier = mock(AppIdSupplier.class);
     AzureFunctionsInitializer lazyConfigurationAccessor =
-        new AzureFunctionsInitializer(telemetryClient, agentLogExporter, appIdSupplier);
+        new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier);
 
     // when
     lazyConfigurationAccessor.setConnectionString(null, null);
@@ -99,10 +98,10 @@ class AzureFunctionsInitializerTestHolder {
 
     // given
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    AgentLogExporter agentLogExporter = mock(AgentLogExporter.class);
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
     AppIdSupplier appIdSupplier = mock(AppIdSupplier.class);
     AzureFunctionsInitializer lazyConfigurationAccessor =
-        new AzureFunctionsInitializer(telemetryClient, agentLogExporter, appIdSupplier);
+        new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier);
 
     // when
     lazyConfigurationAccessor.setConnectionString(CONNECTION_STRING, null);
@@ -127,10 +126,10 @@ class AzureFunctionsInitializerTestHolder {
 
     // given
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    AgentLogExporter agentLogExporter = mock(AgentLogExporter.class);
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
     AppIdSupplier appIdSupplier = mock(AppIdSupplier.class);
     AzureFunctionsInitializer lazyConfigurationAccessor =
-        new AzureFunctionsInitializer(telemetryClient, agentLogExporter, appIdSupplier);
+        new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier);
 
     // when
     lazyConfigurationAccessor.setConnectionString(null, INSTRUMENTATION_KEY);
@@ -141,6 +140,19 @@ class AzureFunctionsInitializerTestHolder {
             argThat(cs -> cs.getInstrumentationKey().equals(INSTRUMENTATION_KEY)));
   }
 
+  @Test
+  void shouldSetInstrumentationLoggingLevelThroughRuntimeControl() {
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
+    AzureFunctionsInitializer lazyConfigurationAccessor =
+        new AzureFunctionsInitializer(
+            mock(TelemetryClient.class), runtimeControl, mock(AppIdSupplier.class));
+
+    lazyConfigurationAccessor.setInstrumentationLoggingLevel("WARN");
+    lazyConfigurationAccessor.setInstrumentationLoggingLevel(null);
+
+    verify(runtimeControl).setInstrumentationLoggingLevel("WARN");
+  }
+
   @Test
   // "LazySetOptIn is TRUE, ConnectionString is valid and EnableAgent is TRUE"
   void enableLazySetWithLazySetOptInOnEnableAgentOn() {
@@ -167,10 +179,10 @@ class AzureFunctionsInitializerTestHolder {
 
     // given
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    AgentLogExporter agentLogExporter = mock(AgentLogExporter.class);
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
     AppIdSupplier appIdSupplier = mock(AppIdSupplier.class);
     AzureFunctionsInitializer lazyConfigurationAccessor =
-        new AzureFunctionsInitializer(telemetryClient, agentLogExporter, appIdSupplier);
+        new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier);
 
     // when
     lazyConfigurationAccessor.setConnectionString(null, null);
@@ -187,10 +199,10 @@ class AzureFunctionsInitializerTestHolder {
 
     // given
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    AgentLogExporter agentLogExporter = mock(AgentLogExporter.class);
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
     AppIdSupplier appIdSupplier = mock(AppIdSupplier.class);
     AzureFunctionsInitializer lazyConfigurationAccessor =
-        new AzureFunctionsInitializer(telemetryClient, agentLogExporter, appIdSupplier);
+        new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier);
 
     // when
     lazyConfigurationAccessor.setConnectionString(CONNECTION_STRING, null);
@@ -209,10 +221,10 @@ class AzureFunctionsInitializerTestHolder {
 
     // given
     TelemetryClient telemetryClient = mock(TelemetryClient.class);
-    AgentLogExporter agentLogExporter = mock(AgentLogExporter.class);
+    RuntimeControl runtimeControl = mock(RuntimeControl.class);
     AppIdSupplier appIdSupplier = mock(AppIdSupplier.class);
     AzureFunctionsInitializer lazyConfigurationAccessor =
-        new AzureFunctionsInitializer(telemetryClient, agentLogExporter, appIdSupplier);
+        new AzureFunctionsInitializer(telemetryClient, runtimeControl, appIdSupplier);
 
     // when
     lazyConfigurationAccessor.setConnectionString(null, INSTRUMENTATION_KEY);
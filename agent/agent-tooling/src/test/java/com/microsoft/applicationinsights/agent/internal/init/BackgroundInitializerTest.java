@@ -0,0 +1,76 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class BackgroundInitializerTest {
+
+  @Test
+  void shouldInitializeOnBackgroundThread() throws InterruptedException {
+    BackgroundInitializer backgroundInitializer = new BackgroundInitializer(true);
+    AtomicReference<Thread> initializingThread = new AtomicReference<>();
+    CountDownLatch initialized = new CountDownLatch(1);
+
+    backgroundInitializer.submit(
+        "test",
+        () -> {
+          initializingThread.set(Thread.currentThread());
+          initialized.countDown();
+        });
+
+    assertThat(initialized.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(initializingThread.get()).isNotSameAs(Thread.currentThread());
+    assertThat(initializingThread.get().isDaemon()).isTrue();
+  }
+
+  @Test
+  void shouldInitializeInlineWhenDisabled() {
+    BackgroundInitializer backgroundInitializer = new BackgroundInitializer(false);
+    AtomicReference<Thread> initializingThread = new AtomicReference<>();
+
+    backgroundInitializer.submit("test", () -> initializingThread.set(Thread.currentThread()));
+
+    assertThat(initializingThread.get()).isSameAs(Thread.currentThread());
+  }
+
+  @Test
+  void shouldContinueAfterFailure() throws InterruptedException {
+    BackgroundInitializer backgroundInitializer = new BackgroundInitializer(true);
+    CountDownLatch initialized = new CountDownLatch(1);
+
+    backgroundInitializer.submit(
+        "failing",
+        () -> {
+          throw new IllegalStateException("test");
+        });
+    backgroundInitializer.submit("test", initialized::countDown);
+
+    assertThat(initialized.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(StartupTimer.getSummary()).doesNotContain("failing");
+  }
+}
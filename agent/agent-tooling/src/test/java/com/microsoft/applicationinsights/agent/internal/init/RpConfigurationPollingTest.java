@@ -94,7 +94,10 @@ class RpConfigurationPollingTest {
     assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
 
     // when
-    new RpConfigurationPolling(rpConfiguration, new Configuration(), telemetryClient, appIdSupplier)
+    Configuration configuration = new Configuration();
+    RuntimeControl runtimeControl = new RuntimeControl(configuration, severity -> {}, null, null);
+    new RpConfigurationPolling(
+            rpConfiguration, configuration, telemetryClient, appIdSupplier, runtimeControl)
         .run();
 
     // then
@@ -135,7 +138,10 @@ class RpConfigurationPollingTest {
     assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
 
     // when
-    new RpConfigurationPolling(rpConfiguration, new Configuration(), telemetryClient, appIdSupplier)
+    Configuration configuration = new Configuration();
+    RuntimeControl runtimeControl = new RuntimeControl(configuration, severity -> {}, null, null);
+    new RpConfigurationPolling(
+            rpConfiguration, configuration, telemetryClient, appIdSupplier, runtimeControl)
         .run();
 
     // then
@@ -145,6 +151,42 @@ class RpConfigurationPollingTest {
     assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
   }
 
+  @Test
+  void shouldKeepPollingWhenSamplingPercentageIsInvalid() throws URISyntaxException {
+    // given
+    RpConfiguration rpConfiguration = new RpConfiguration();
+    rpConfiguration.connectionString = "InstrumentationKey=11111111-1111-1111-1111-111111111111";
+    rpConfiguration.sampling.percentage = 90;
+    rpConfiguration.configPath =
+        Paths.get(
+            RpConfigurationPollingTest.class
+                .getResource("/applicationinsights-rp-invalid-sampling.json")
+                .toURI());
+    rpConfiguration.lastModifiedTime = 0;
+
+    TelemetryClient telemetryClient = TelemetryClient.createForTest();
+    ConnectionString connectionString =
+        ConnectionString.parse("InstrumentationKey=00000000-0000-0000-0000-000000000000");
+    telemetryClient.updateConnectionString(connectionString);
+    AppIdSupplier appIdSupplier = new AppIdSupplier(connectionString);
+
+    BytecodeUtilImpl.samplingPercentage = 100;
+
+    // when
+    Configuration configuration = new Configuration();
+    RuntimeControl runtimeControl = new RuntimeControl(configuration, severity -> {}, null, null);
+    new RpConfigurationPolling(
+            rpConfiguration, configuration, telemetryClient, appIdSupplier, runtimeControl)
+        .run();
+
+    // then
+    // the rest of the json config file is still applied
+    assertThat(telemetryClient.getInstrumentationKey())
+        .isEqualTo("22222222-2222-2222-2222-222222222222");
+    assertThat(BytecodeUtilImpl.samplingPercentage).isEqualTo(100);
+    assertThat(getCurrentSamplingPercentage()).isEqualTo(100);
+  }
+
   private static double getCurrentSamplingPercentage() {
     SpanContext spanContext =
         SpanContext.create(
@@ -0,0 +1,272 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.quickpulse.QuickPulse;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import com.microsoft.applicationinsights.agent.internal.legacysdk.BytecodeUtilImpl;
+import com.microsoft.applicationinsights.agent.internal.sampling.DelegatingSampler;
+import com.microsoft.applicationinsights.agent.internal.sampling.Samplers;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.logs.data.Severity;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RuntimeControlTest {
+
+  private Configuration configuration;
+  private final AtomicReference<Severity> severityThreshold = new AtomicReference<>();
+
+  @BeforeEach
+  void beforeEach() {
+    configuration = new Configuration();
+    Configuration.SamplingOverride override = new Configuration.SamplingOverride();
+    override.spanKind = Configuration.SpanKind.CLIENT;
+    override.percentage = 50f;
+    configuration.preview.sampling.overrides.add(override);
+
+    DelegatingSampler.getInstance().setDelegate(Samplers.getSampler(100, configuration));
+    BytecodeUtilImpl.samplingPercentage = 100;
+  }
+
+  @AfterEach
+  void afterEach() {
+    // need to reset trace config back to default (with default sampler)
+    // otherwise tests run after this can fail
+    DelegatingSampler.getInstance().setDelegate(Samplers.getSampler(100, new Configuration()));
+    BytecodeUtilImpl.samplingPercentage = 100;
+  }
+
+  @Test
+  void shouldChangeSamplingWhileSamplingLoadIsRunning() throws Exception {
+    // given
+    RuntimeControl runtimeControl = newRuntimeControl(null);
+    Set<Double> serverPercentages = ConcurrentHashMap.newKeySet();
+    Set<Double> clientPercentages = ConcurrentHashMap.newKeySet();
+    AtomicBoolean stopped = new AtomicBoolean();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                while (!stopped.get()) {
+                  Double server = getSamplingPercentage(SpanKind.SERVER);
+                  if (server != null) {
+                    serverPercentages.add(server);
+                  }
+                  Double client = getSamplingPercentage(SpanKind.CLIENT);
+                  if (client != null) {
+                    clientPercentages.add(client);
+                  }
+                }
+              }));
+    }
+
+    // when
+    float[] percentages = {50, 25, 10, 20};
+    float[] overridePercentages = {25, 10, 5, 20};
+    for (int i = 0; i < 100; i++) {
+      runtimeControl.setSamplingPercentage(percentages[i % percentages.length]);
+      runtimeControl.setSamplingOverridePercentage(
+          0, overridePercentages[i % overridePercentages.length]);
+      Thread.sleep(1);
+    }
+    runtimeControl.setSamplingPercentage(10);
+    runtimeControl.setSamplingOverridePercentage(0, 5);
+    stopped.set(true);
+    for (Future<?> future : futures) {
+      // rethrows any failure of the sampling load
+      future.get(10, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    // then
+    assertThat(serverPercentages).isSubsetOf(100.0, 50.0, 25.0, 10.0, 20.0);
+    assertThat(clientPercentages).isSubsetOf(50.0, 25.0, 10.0, 5.0, 20.0);
+    assertThat(runtimeControl.getSamplingPercentage()).isEqualTo(10);
+    assertThat(runtimeControl.getSamplingOverridePercentages()).containsExactly(5f);
+    assertThat(BytecodeUtilImpl.samplingPercentage).isEqualTo(10);
+    assertThat(getSampledPercentage(SpanKind.SERVER)).isEqualTo(10);
+    assertThat(getSampledPercentage(SpanKind.CLIENT)).isEqualTo(5);
+    // the configuration that the agent was started with is not changed
+    assertThat(configuration.sampling.percentage).isEqualTo(100);
+    assertThat(configuration.preview.sampling.overrides.get(0).percentage).isEqualTo(50);
+  }
+
+  @Test
+  void shouldRoundSamplingPercentage() {
+    RuntimeControl runtimeControl = newRuntimeControl(null);
+
+    runtimeControl.setSamplingPercentage(33);
+
+    assertThat(runtimeControl.getSamplingPercentage()).isEqualTo(100f / 3);
+  }
+
+  @Test
+  void shouldRejectInvalidSamplingPercentage() {
+    RuntimeControl runtimeControl = newRuntimeControl(null);
+
+    assertThatThrownBy(() -> runtimeControl.setSamplingPercentage(101))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> runtimeControl.setSamplingPercentage(Float.NaN))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> runtimeControl.setSamplingOverridePercentage(0, -1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> runtimeControl.setSamplingOverridePercentage(1, 50))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    assertThat(runtimeControl.getSamplingPercentage()).isEqualTo(100);
+    assertThat(runtimeControl.getSamplingOverridePercentages()).containsExactly(50f);
+  }
+
+  @Test
+  void shouldChangeInstrumentationLoggingLevel() {
+    RuntimeControl runtimeControl = newRuntimeControl(null);
+    assertThat(runtimeControl.getInstrumentationLoggingLevel()).isEqualTo("INFO");
+
+    runtimeControl.setInstrumentationLoggingLevel("WARN");
+
+    assertThat(runtimeControl.getInstrumentationLoggingLevel()).isEqualTo("WARN");
+    assertThat(severityThreshold.get()).isEqualTo(Severity.WARN);
+  }
+
+  @Test
+  void shouldRejectInvalidInstrumentationLoggingLevel() {
+    RuntimeControl runtimeControl = newRuntimeControl(null);
+
+    assertThatThrownBy(() -> runtimeControl.setInstrumentationLoggingLevel("LOUD"))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    assertThat(runtimeControl.getInstrumentationLoggingLevel()).isEqualTo("INFO");
+    assertThat(severityThreshold.get()).isNull();
+  }
+
+  @Test
+  void shouldPauseAndResumeLiveMetrics() {
+    QuickPulse quickPulse = new QuickPulse();
+    RuntimeControl runtimeControl = newRuntimeControl(quickPulse);
+    assertThat(runtimeControl.isLiveMetricsEnabled()).isTrue();
+
+    runtimeControl.setLiveMetricsEnabled(false);
+
+    assertThat(runtimeControl.isLiveMetricsEnabled()).isFalse();
+    assertThat(quickPulse.isPaused()).isTrue();
+    assertThat(quickPulse.isEnabled()).isFalse();
+
+    runtimeControl.setLiveMetricsEnabled(true);
+
+    assertThat(runtimeControl.isLiveMetricsEnabled()).isTrue();
+    assertThat(quickPulse.isPaused()).isFalse();
+  }
+
+  @Test
+  void shouldNotResumeLiveMetricsThatWereNotEnabledAtStartup() {
+    RuntimeControl runtimeControl = newRuntimeControl(null);
+    assertThat(runtimeControl.isLiveMetricsEnabled()).isFalse();
+
+    runtimeControl.setLiveMetricsEnabled(false);
+
+    assertThatThrownBy(() -> runtimeControl.setLiveMetricsEnabled(true))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldReplaceExistingMBeanWhenRegistering() throws Exception {
+    MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = new ObjectName(RuntimeControl.OBJECT_NAME);
+    try {
+      newRuntimeControl(null).register();
+      RuntimeControl runtimeControl = newRuntimeControl(null);
+      runtimeControl.setSamplingPercentage(42);
+
+      runtimeControl.register();
+
+      assertThat(mbeanServer.getAttribute(objectName, "SamplingPercentage")).isEqualTo(42f);
+    } finally {
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+    }
+  }
+
+  private RuntimeControl newRuntimeControl(@Nullable QuickPulse quickPulse) {
+    return new RuntimeControl(configuration, severityThreshold::set, quickPulse, null);
+  }
+
+  private static double getSampledPercentage(SpanKind spanKind) {
+    while (true) {
+      Double samplingPercentage = getSamplingPercentage(spanKind);
+      if (samplingPercentage != null) {
+        return samplingPercentage;
+      }
+    }
+  }
+
+  @Nullable
+  private static Double getSamplingPercentage(SpanKind spanKind) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String traceId = TraceId.fromLongs(random.nextLong(), random.nextLong());
+    SamplingResult samplingResult =
+        DelegatingSampler.getInstance()
+            .shouldSample(
+                Context.root(),
+                traceId,
+                "my span name",
+                spanKind,
+                Attributes.empty(),
+                Collections.emptyList());
+    if (samplingResult.getDecision() != SamplingDecision.RECORD_AND_SAMPLE) {
+      return null;
+    }
+    TraceState traceState = samplingResult.getUpdatedTraceState(TraceState.getDefault());
+    return Double.parseDouble(traceState.get(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE));
+  }
+}
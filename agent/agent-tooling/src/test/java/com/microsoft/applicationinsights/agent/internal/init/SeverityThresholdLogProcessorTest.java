@@ -0,0 +1,142 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.init;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.EnumSource.Mode.EXCLUDE;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogProcessor;
+import io.opentelemetry.sdk.logs.data.LogData;
+import io.opentelemetry.sdk.logs.data.Severity;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class SeverityThresholdLogProcessorTest {
+
+  @ParameterizedTest
+  @EnumSource(value = Severity.class, names = "UNDEFINED_SEVERITY_NUMBER", mode = EXCLUDE)
+  void shouldDropBelowWarnThreshold(Severity severity) {
+    RecordingLogProcessor delegate = new RecordingLogProcessor();
+    SeverityThresholdLogProcessor processor =
+        new SeverityThresholdLogProcessor(
+            Configuration.LoggingInstrumentation.getSeverity("WARN"), delegate);
+
+    processor.emit(logData(severity));
+
+    boolean expectedPassThrough = severity.getSeverityNumber() >= Severity.WARN.getSeverityNumber();
+    assertThat(delegate.emitted).hasSize(expectedPassThrough ? 1 : 0);
+  }
+
+  @ParameterizedTest
+  @EnumSource(value = Severity.class, names = "UNDEFINED_SEVERITY_NUMBER", mode = EXCLUDE)
+  void shouldPassEverythingAtTraceThreshold(Severity severity) {
+    RecordingLogProcessor delegate = new RecordingLogProcessor();
+    SeverityThresholdLogProcessor processor =
+        new SeverityThresholdLogProcessor(
+            Configuration.LoggingInstrumentation.getSeverity("TRACE"), delegate);
+
+    processor.emit(logData(severity));
+
+    assertThat(delegate.emitted).hasSize(1);
+  }
+
+  @Test
+  void shouldApplyUpdatedThreshold() {
+    RecordingLogProcessor delegate = new RecordingLogProcessor();
+    SeverityThresholdLogProcessor processor =
+        new SeverityThresholdLogProcessor(Severity.INFO, delegate);
+
+    LogData debug = logData(Severity.DEBUG);
+    processor.emit(debug);
+    assertThat(delegate.emitted).isEmpty();
+
+    processor.setThreshold(Severity.DEBUG);
+    processor.emit(debug);
+    assertThat(delegate.emitted).containsExactly(debug);
+
+    processor.setThreshold(Severity.ERROR);
+    processor.emit(logData(Severity.WARN));
+    assertThat(delegate.emitted).containsExactly(debug);
+  }
+
+  @Test
+  void shouldDropLogsFromSampledOutTraces() {
+    RecordingLogProcessor delegate = new RecordingLogProcessor();
+    SeverityThresholdLogProcessor processor =
+        new SeverityThresholdLogProcessor(Severity.INFO, delegate);
+
+    LogData sampledIn = logData(Severity.INFO, spanContext(TraceFlags.getSampled()));
+    LogData sampledOut = logData(Severity.INFO, spanContext(TraceFlags.getDefault()));
+    LogData standalone = logData(Severity.INFO);
+    processor.emit(sampledIn);
+    processor.emit(sampledOut);
+    processor.emit(standalone);
+
+    assertThat(delegate.emitted).containsExactly(sampledIn, standalone);
+  }
+
+  private static LogData logData(Severity severity) {
+    return logData(severity, SpanContext.getInvalid());
+  }
+
+  private static LogData logData(Severity severity, SpanContext spanContext) {
+    LogData logData = mock(LogData.class);
+    when(logData.getSeverity()).thenReturn(severity);
+    when(logData.getSpanContext()).thenReturn(spanContext);
+    return logData;
+  }
+
+  private static SpanContext spanContext(TraceFlags traceFlags) {
+    return SpanContext.create(
+        "0123456789abcdef0123456789abcdef", "0123456789abcdef", traceFlags, TraceState.getDefault());
+  }
+
+  private static class RecordingLogProcessor implements LogProcessor {
+
+    private final List<LogData> emitted = new ArrayList<>();
+
+    @Override
+    public void emit(LogData logData) {
+      emitted.add(logData);
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.legacysdk;
+
+import static com.microsoft.applicationinsights.agent.internal.legacysdk.BytecodeUtilImpl.SAMPLED_OUT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import com.microsoft.applicationinsights.agent.internal.configuration.Configuration;
+import com.microsoft.applicationinsights.agent.internal.sampling.SamplingScoreGeneratorV2;
+import com.microsoft.applicationinsights.agent.internal.sampling.TailSampler;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BytecodeUtilImplTest {
+
+  private static final String TRACE_ID = "0123456789abcdef0123456789abcdef";
+  private static final String SPAN_ID = "0123456789abcdef";
+
+  @AfterEach
+  void resetSampling() {
+    BytecodeUtilImpl.samplingPercentage = 100;
+    BytecodeUtilImpl.tailSampler = null;
+  }
+
+  @Test
+  void shouldKeepTheSameStandaloneItemsAsBeforeBuilding() {
+    BytecodeUtilImpl.samplingPercentage = 10;
+
+    int kept = 0;
+    for (int i = 0; i < 10000; i++) {
+      String operationId = UUID.randomUUID().toString().replace("-", "");
+      float samplingPercentage =
+          BytecodeUtilImpl.beginTrack(SpanContext.getInvalid(), operationIdTag(operationId), true);
+
+      if (SamplingScoreGeneratorV2.getSamplingScore(operationId) < 10) {
+        assertThat(samplingPercentage).isEqualTo(10);
+        kept++;
+      } else {
+        assertThat(samplingPercentage).isEqualTo(SAMPLED_OUT);
+      }
+    }
+    assertThat(kept).isBetween(800, 1200);
+  }
+
+  @Test
+  void shouldNotSampleStandaloneItemsWhenSamplingIsNotApplied() {
+    BytecodeUtilImpl.samplingPercentage = 0;
+
+    float samplingPercentage =
+        BytecodeUtilImpl.beginTrack(SpanContext.getInvalid(), operationIdTag(TRACE_ID), false);
+
+    assertThat(samplingPercentage).isEqualTo(100);
+  }
+
+  @Test
+  void shouldLeaveStandaloneItemsOfATraceToTheTailSampler() {
+    BytecodeUtilImpl.samplingPercentage = 0;
+    BytecodeUtilImpl.tailSampler =
+        TailSampler.start(item -> {}, 0, new Configuration.TailSampling());
+
+    float samplingPercentage =
+        BytecodeUtilImpl.beginTrack(SpanContext.getInvalid(), operationIdTag(TRACE_ID), true);
+
+    assertThat(samplingPercentage).isEqualTo(100);
+    // items that are not part of a trace are not seen by the tail sampler as part of one
+    assertThat(BytecodeUtilImpl.beginTrack(SpanContext.getInvalid(), Collections.emptyMap(), true))
+        .isEqualTo(SAMPLED_OUT);
+  }
+
+  @Test
+  void shouldUseSamplingPercentageFromSampledInSpanContext() {
+    BytecodeUtilImpl.samplingPercentage = 50;
+    TraceState traceState =
+        TraceState.builder().put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25").build();
+    SpanContext spanContext =
+        SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getSampled(), traceState);
+
+    assertThat(BytecodeUtilImpl.beginTrack(spanContext, Collections.emptyMap(), true))
+        .isEqualTo(25);
+    assertThat(BytecodeUtilImpl.beginTrack(spanContext, operationIdTag(TRACE_ID), true))
+        .isEqualTo(25);
+    assertThat(BytecodeUtilImpl.beginTrack(spanContext, Collections.emptyMap(), false))
+        .isEqualTo(100);
+  }
+
+  @Test
+  void shouldDropItemsInsideSampledOutSpanContext() {
+    SpanContext spanContext =
+        SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getDefault(), TraceState.getDefault());
+
+    assertThat(BytecodeUtilImpl.beginTrack(spanContext, Collections.emptyMap(), true))
+        .isEqualTo(SAMPLED_OUT);
+    // this includes metrics, which otherwise are not sampled
+    assertThat(BytecodeUtilImpl.beginTrack(spanContext, Collections.emptyMap(), false))
+        .isEqualTo(SAMPLED_OUT);
+  }
+
+  @Test
+  void shouldTreatItemsFromAnotherOperationAsStandalone() {
+    SpanContext spanContext =
+        SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getDefault(), TraceState.getDefault());
+
+    float samplingPercentage =
+        BytecodeUtilImpl.beginTrack(
+            spanContext, operationIdTag("fedcba9876543210fedcba9876543210"), true);
+
+    assertThat(samplingPercentage).isEqualTo(100);
+  }
+
+  private static Map<String, String> operationIdTag(String operationId) {
+    return Collections.singletonMap(ContextTagKeys.AI_OPERATION_ID.toString(), operationId);
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.legacysdk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransformedClassCacheTest {
+
+  private static final String CLASS_NAME =
+      UnshadedSdkPackageName.get() + "/web/internal/WebRequestTrackingFilter";
+
+  @TempDir Path tempDir;
+
+  private byte[] classfileBuffer;
+  private byte[] freshlyTransformed;
+  private final AtomicInteger transformCount = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    // any class will do, since the transformer rewrites the class regardless of its content
+    try (InputStream in =
+        TransformedClassCacheTest.class.getResourceAsStream(
+            TransformedClassCacheTest.class.getSimpleName() + ".class")) {
+      classfileBuffer = readAllBytes(in);
+    }
+    freshlyTransformed = transform(classfileBuffer);
+    assertThat(freshlyTransformed).isNotNull();
+  }
+
+  @Test
+  void shouldReturnSameBytesAsFreshTransformOnCacheHit() {
+    TransformedClassCache cache = new TransformedClassCache(tempDir, "1.0.0");
+
+    byte[] miss = cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+    byte[] hit = cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    assertThat(miss).isEqualTo(freshlyTransformed);
+    assertThat(hit).isEqualTo(freshlyTransformed);
+    assertThat(transformCount).hasValue(1);
+  }
+
+  @Test
+  void shouldHitAfterRestart() {
+    new TransformedClassCache(tempDir, "1.0.0")
+        .getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    byte[] hit =
+        new TransformedClassCache(tempDir, "1.0.0")
+            .getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    assertThat(hit).isEqualTo(freshlyTransformed);
+    assertThat(transformCount).hasValue(1);
+  }
+
+  @Test
+  void shouldMissForDifferentAgentVersion() {
+    new TransformedClassCache(tempDir, "1.0.0")
+        .getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    byte[] miss =
+        new TransformedClassCache(tempDir, "1.0.1")
+            .getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    assertThat(miss).isEqualTo(freshlyTransformed);
+    assertThat(transformCount).hasValue(2);
+  }
+
+  @Test
+  void shouldMissForDifferentClassBytes() {
+    TransformedClassCache cache = new TransformedClassCache(tempDir, "1.0.0");
+    cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    byte[] otherClassfileBuffer = freshlyTransformed;
+    byte[] miss = cache.getOrTransform(CLASS_NAME, otherClassfileBuffer, this::countingTransform);
+
+    assertThat(miss).isEqualTo(transform(otherClassfileBuffer));
+    assertThat(transformCount).hasValue(2);
+  }
+
+  @Test
+  void shouldDiscardCorruptedEntry() throws IOException {
+    TransformedClassCache cache = new TransformedClassCache(tempDir, "1.0.0");
+    cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+    List<Path> entries = listFiles();
+    assertThat(entries).hasSize(1);
+    byte[] entry = Files.readAllBytes(entries.get(0));
+    entry[entry.length - 1]++;
+    Files.write(entries.get(0), entry);
+
+    byte[] result = cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    assertThat(result).isEqualTo(freshlyTransformed);
+    assertThat(transformCount).hasValue(2);
+    // and the entry has been rewritten
+    assertThat(cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform))
+        .isEqualTo(freshlyTransformed);
+    assertThat(transformCount).hasValue(2);
+  }
+
+  @Test
+  void shouldNotCacheWhenNotTransformed() throws IOException {
+    TransformedClassCache cache = new TransformedClassCache(tempDir, "1.0.0");
+
+    byte[] result = cache.getOrTransform(CLASS_NAME, classfileBuffer, bytes -> null);
+
+    assertThat(result).isNull();
+    assertThat(listFiles()).isEmpty();
+  }
+
+  @Test
+  void shouldNotLeaveTemporaryFiles() throws IOException {
+    TransformedClassCache cache = new TransformedClassCache(tempDir, "1.0.0");
+
+    cache.getOrTransform(CLASS_NAME, classfileBuffer, this::countingTransform);
+
+    assertThat(listFiles()).allMatch(path -> path.toString().endsWith(".class"));
+  }
+
+  @Nullable
+  private byte[] countingTransform(byte[] bytes) {
+    transformCount.incrementAndGet();
+    return transform(bytes);
+  }
+
+  @Nullable
+  private static byte[] transform(byte[] bytes) {
+    return new WebRequestTrackingFilterClassFileTransformer()
+        .transform(null, CLASS_NAME, null, null, bytes);
+  }
+
+  private List<Path> listFiles() throws IOException {
+    try (Stream<Path> files = Files.list(tempDir)) {
+      return files.collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] readAllBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MessageTelemetryBuilder;
+import com.microsoft.applicationinsights.agent.internal.telemetry.TelemetryClient;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class DeadLockDetectorPerformanceCounterTest {
+
+  private static final String METRIC_NAME = "Suspected Deadlocked Threads";
+
+  private static Thread thread1;
+  private static Thread thread2;
+
+  // using interruptible locks (instead of monitors), so that the deadlock can be broken once the
+  // tests are done, instead of leaving deadlocked threads behind in the shared test JVM
+  @BeforeAll
+  static void createDeadlock() {
+    ReentrantLock lock1 = new ReentrantLock();
+    ReentrantLock lock2 = new ReentrantLock();
+    CountDownLatch bothLocked = new CountDownLatch(2);
+    thread1 = new Thread(() -> lockBoth(lock1, lock2, bothLocked), "deadlock-test-1");
+    thread2 = new Thread(() -> lockBoth(lock2, lock1, bothLocked), "deadlock-test-2");
+    thread1.setDaemon(true);
+    thread2.setDaemon(true);
+    thread1.start();
+    thread2.start();
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .until(
+            () -> {
+              long[] threadIds = threadBean.findDeadlockedThreads();
+              return threadIds != null && threadIds.length >= 2;
+            });
+  }
+
+  @AfterAll
+  static void releaseDeadlock() throws InterruptedException {
+    thread1.interrupt();
+    thread2.interrupt();
+    thread1.join(10_000);
+    thread2.join(10_000);
+    assertThat(thread1.isAlive()).isFalse();
+    assertThat(thread2.isAlive()).isFalse();
+  }
+
+  @Test
+  void shouldDetectRealDeadlock() {
+    DeadLockDetectorPerformanceCounter counter =
+        new DeadLockDetectorPerformanceCounter(false, 1, 20);
+
+    long[] threadIds = counter.findDeadlockedThreads();
+
+    assertThat(threadIds).contains(thread1.getId(), thread2.getId());
+
+    String message = counter.getDetailedMessage(threadIds);
+    assertThat(message)
+        .startsWith("Suspected deadlocked threads: ")
+        .contains("deadlock-test-1 Id=" + thread1.getId() + " is in WAITING")
+        .contains("deadlock-test-2 Id=" + thread2.getId() + " is in WAITING")
+        .contains("is owned by deadlock-test-2")
+        .contains("is owned by deadlock-test-1")
+        .contains("lockBoth");
+  }
+
+  @Test
+  void shouldOnlyDetectMonitorDeadlocksWhenMonitorsOnly() {
+    DeadLockDetectorPerformanceCounter counter =
+        new DeadLockDetectorPerformanceCounter(true, 1, 20);
+
+    assertThat(counter.findDeadlockedThreads()).doesNotContain(thread1.getId(), thread2.getId());
+  }
+
+  @Test
+  void shouldCapStackDepth() {
+    DeadLockDetectorPerformanceCounter counter =
+        new DeadLockDetectorPerformanceCounter(false, 1, 1);
+
+    String message = counter.getDetailedMessage(new long[] {thread1.getId()});
+
+    // one line for the thread, and one line for its single stack frame
+    assertThat(message.split("\n")).hasSize(3);
+  }
+
+  @Test
+  void shouldBackOffWhileThereAreNoDeadlocks() {
+    ThreadMXBean threadBean = mock(ThreadMXBean.class);
+    TelemetryClient telemetryClient = mock(TelemetryClient.class);
+    DeadLockDetectorPerformanceCounter counter =
+        new DeadLockDetectorPerformanceCounter(threadBean, true, 4, 3);
+
+    // scans at collections 1, 3, 7 and 11 (the back off doubles up to 4 collections)
+    for (int i = 0; i < 12; i++) {
+      counter.report(telemetryClient);
+    }
+
+    verify(threadBean, times(4)).findMonitorDeadlockedThreads();
+    verify(telemetryClient, times(4)).newMetricTelemetry(METRIC_NAME, 0);
+  }
+
+  @Test
+  void shouldStopBackingOffOnceDeadlockIsFound() {
+    ThreadMXBean threadBean = mock(ThreadMXBean.class);
+    TelemetryClient telemetryClient = mock(TelemetryClient.class);
+    DeadLockDetectorPerformanceCounter counter =
+        new DeadLockDetectorPerformanceCounter(threadBean, false, 4, 3);
+
+    // scans at collections 1 and 3, after which the next scan is at collection 7
+    for (int i = 0; i < 3; i++) {
+      counter.report(telemetryClient);
+    }
+    verify(threadBean, times(2)).findDeadlockedThreads();
+
+    when(threadBean.findDeadlockedThreads()).thenReturn(new long[] {1, 2});
+    when(threadBean.getThreadInfo(new long[] {1, 2}, 3)).thenReturn(new ThreadInfo[0]);
+    when(telemetryClient.newMessageTelemetryBuilder()).thenReturn(MessageTelemetryBuilder.create());
+
+    // scans at collection 7, which finds the deadlock, and then at every collection
+    for (int i = 0; i < 6; i++) {
+      counter.report(telemetryClient);
+    }
+    verify(threadBean, times(5)).findDeadlockedThreads();
+    verify(telemetryClient, times(3)).newMetricTelemetry(METRIC_NAME, 2);
+  }
+
+  @Test
+  void shouldNotBackOffByDefault() {
+    ThreadMXBean threadBean = mock(ThreadMXBean.class);
+    DeadLockDetectorPerformanceCounter counter =
+        new DeadLockDetectorPerformanceCounter(threadBean, true, 1, 3);
+
+    for (int i = 0; i < 5; i++) {
+      counter.report(mock(TelemetryClient.class));
+    }
+
+    verify(threadBean, times(5)).findMonitorDeadlockedThreads();
+  }
+
+  private static void lockBoth(Lock first, Lock second, CountDownLatch bothLocked) {
+    try {
+      first.lockInterruptibly();
+      try {
+        bothLocked.countDown();
+        bothLocked.await();
+        second.lockInterruptibly();
+        // never gets here, until the other thread has been interrupted
+        second.unlock();
+      } finally {
+        first.unlock();
+      }
+    } catch (InterruptedException e) {
+      // released by the test
+    }
+  }
+}
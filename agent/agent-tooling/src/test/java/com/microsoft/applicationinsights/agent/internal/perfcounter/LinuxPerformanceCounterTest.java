@@ -0,0 +1,126 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LinuxPerformanceCounterTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void shouldReadProcessBytes() throws Exception {
+    LinuxPerformanceCounter counter = new LinuxPerformanceCounter(fixture("io"), fixture("stat"));
+
+    // read_bytes + write_bytes, ignoring cancelled_write_bytes
+    assertThat(counter.readProcessBytes()).isEqualTo(4096000 + 12288);
+  }
+
+  @Test
+  void shouldReadTotalProcessorMillis() throws Exception {
+    LinuxPerformanceCounter counter = new LinuxPerformanceCounter(fixture("io"), fixture("stat"));
+
+    // (user + system) ticks at 100 ticks per second
+    assertThat(counter.readTotalProcessorMillis()).isEqualTo((5310 + 958) * 10);
+    assertThat(counter.getLogicalProcessorCount()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldPickUpChangesOnEachRead() throws Exception {
+    Path io = tempDir.resolve("io");
+    Path stat = tempDir.resolve("stat");
+    Files.copy(fixture("io"), io);
+    Files.copy(fixture("stat"), stat);
+    LinuxPerformanceCounter counter = new LinuxPerformanceCounter(io, stat);
+
+    assertThat(counter.readProcessBytes()).isEqualTo(4096000 + 12288);
+    assertThat(counter.readTotalProcessorMillis()).isEqualTo((5310 + 958) * 10);
+
+    write(io, "read_bytes: 1\nwrite_bytes: 2\n");
+    write(stat, "cpu  7 0 3 100 0 0 0 0 0 0\ncpu0 7 0 3 100 0 0 0 0 0 0\nintr 1\n");
+
+    assertThat(counter.readProcessBytes()).isEqualTo(3);
+    assertThat(counter.readTotalProcessorMillis()).isEqualTo(100);
+    assertThat(counter.getLogicalProcessorCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReadFilesLargerThanTheInitialBuffer() throws Exception {
+    StringBuilder sb = new StringBuilder("cpu  1000 0 500 100000 0 0 0 0 0 0\n");
+    for (int i = 0; i < 256; i++) {
+      sb.append("cpu").append(i).append(" 4 0 2 400 0 0 0 0 0 0\n");
+    }
+    sb.append("intr");
+    for (int i = 0; i < 4096; i++) {
+      sb.append(" 0");
+    }
+    sb.append('\n');
+    Path stat = tempDir.resolve("stat");
+    write(stat, sb.toString());
+    LinuxPerformanceCounter counter = new LinuxPerformanceCounter(fixture("io"), stat);
+
+    assertThat(counter.readTotalProcessorMillis()).isEqualTo(15000);
+    assertThat(counter.getLogicalProcessorCount()).isEqualTo(256);
+  }
+
+  @Test
+  void shouldFailOnUnexpectedFormat() throws Exception {
+    Path stat = tempDir.resolve("stat");
+    write(stat, "intr 1\n");
+    LinuxPerformanceCounter counter = new LinuxPerformanceCounter(fixture("io"), stat);
+
+    assertThatThrownBy(counter::readTotalProcessorMillis).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldFailOnMissingFile() {
+    LinuxPerformanceCounter counter =
+        new LinuxPerformanceCounter(tempDir.resolve("missing"), fixture("stat"));
+
+    assertThatThrownBy(counter::readProcessBytes).isInstanceOf(IOException.class);
+  }
+
+  private static Path fixture(String name) {
+    try {
+      return Paths.get(LinuxPerformanceCounterTest.class.getResource("/procfs/" + name).toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void write(Path path, String content) throws IOException {
+    Path tmp = Files.createTempFile(path.getParent(), "tmp", null);
+    Files.write(tmp, content.getBytes(StandardCharsets.US_ASCII));
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// threads that are deadlocked on monitors cannot be released, so the deadlock is created in a
+// separate JVM, instead of leaving deadlocked threads behind in the shared test JVM (see
+// DeadLockDetectorPerformanceCounterTest for deadlocks on interruptible locks)
+class MonitorDeadLockDetectorTest {
+
+  @TempDir File tempFolder;
+
+  @Test
+  void shouldDetectRealMonitorDeadlockWhenMonitorsOnly() throws Exception {
+    File output = new File(tempFolder, "output.txt");
+    Process process =
+        new ProcessBuilder(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                "-cp",
+                System.getProperty("java.class.path"),
+                DeadlockedJvm.class.getName())
+            .redirectErrorStream(true)
+            .redirectOutput(output)
+            .start();
+    try {
+      assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      process.destroyForcibly();
+    }
+
+    String[] lines = new String(Files.readAllBytes(output.toPath()), UTF_8).split("\n");
+    assertThat(process.exitValue()).as(String.join("\n", lines)).isZero();
+    String[] deadlockedThreadIds = lines[0].trim().split(" ");
+    String[] foundThreadIds = lines[1].trim().split(" ");
+    assertThat(foundThreadIds).contains(deadlockedThreadIds);
+    assertThat(lines[2])
+        .startsWith("Suspected deadlocked threads: ")
+        .contains("monitor-deadlock-test-1 Id=" + deadlockedThreadIds[0] + " is in BLOCKED")
+        .contains("monitor-deadlock-test-2 Id=" + deadlockedThreadIds[1] + " is in BLOCKED")
+        .contains("lockBoth");
+  }
+
+  static class DeadlockedJvm {
+
+    private static final Object monitor1 = new Object();
+    private static final Object monitor2 = new Object();
+
+    public static void main(String[] args) throws InterruptedException {
+      CountDownLatch bothLocked = new CountDownLatch(2);
+      Thread thread1 =
+          new Thread(() -> lockBoth(monitor1, monitor2, bothLocked), "monitor-deadlock-test-1");
+      Thread thread2 =
+          new Thread(() -> lockBoth(monitor2, monitor1, bothLocked), "monitor-deadlock-test-2");
+      // so that the JVM exits once main returns
+      thread1.setDaemon(true);
+      thread2.setDaemon(true);
+      thread1.start();
+      thread2.start();
+
+      ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (!isDeadlocked(threadBean.findMonitorDeadlockedThreads())) {
+        if (System.nanoTime() > deadline) {
+          throw new AssertionError("threads did not deadlock");
+        }
+        Thread.sleep(10);
+      }
+
+      DeadLockDetectorPerformanceCounter counter =
+          new DeadLockDetectorPerformanceCounter(true, 1, 20);
+      long[] threadIds = counter.findDeadlockedThreads();
+      // the ids of the two deadlocked threads, and then the ids that were found
+      System.out.println(thread1.getId() + " " + thread2.getId());
+      System.out.println(toString(threadIds));
+      // on a single line, so that the output can be read back line by line
+      System.out.println(counter.getDetailedMessage(threadIds).replace('\n', ' '));
+    }
+
+    private static boolean isDeadlocked(long[] threadIds) {
+      return threadIds != null && threadIds.length >= 2;
+    }
+
+    private static String toString(long[] threadIds) {
+      StringBuilder sb = new StringBuilder();
+      for (long threadId : threadIds) {
+        sb.append(threadId).append(' ');
+      }
+      return sb.toString();
+    }
+
+    private static void lockBoth(Object first, Object second, CountDownLatch bothLocked) {
+      synchronized (first) {
+        bothLocked.countDown();
+        try {
+          bothLocked.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        synchronized (second) {
+          // never gets here
+          System.out.println("not deadlocked");
+        }
+      }
+    }
+
+    private DeadlockedJvm() {}
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.perfcounter;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PerformanceCounterTaskTest {
+
+  private ScheduledExecutorService scheduler;
+  private ExecutorService collectors;
+
+  @BeforeEach
+  void setup() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    collectors = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdownNow();
+    collectors.shutdownNow();
+  }
+
+  @Test
+  void shouldCollectOffTheSchedulerThread() throws Exception {
+    CountDownLatch reported = new CountDownLatch(1);
+    Thread[] reportingThread = new Thread[1];
+    PerformanceCounterTask task =
+        newTask(
+            telemetryClient -> {
+              reportingThread[0] = Thread.currentThread();
+              reported.countDown();
+            },
+            10_000);
+
+    Thread schedulerThread = scheduler.submit(Thread::currentThread).get();
+    scheduler.submit(task).get();
+
+    assertThat(reported.await(10, SECONDS)).isTrue();
+    assertThat(reportingThread[0]).isNotSameAs(schedulerThread);
+  }
+
+  @Test
+  void shouldNotLetSlowCounterHoldUpOthers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger slowCount = new AtomicInteger();
+    AtomicInteger fastCount = new AtomicInteger();
+    PerformanceCounterTask slow =
+        newTask(
+            telemetryClient -> {
+              slowCount.incrementAndGet();
+              awaitUninterruptibly(release);
+            },
+            10_000);
+    PerformanceCounterTask fast = newTask(telemetryClient -> fastCount.incrementAndGet(), 10_000);
+
+    for (int i = 1; i <= 3; i++) {
+      scheduler.submit(slow).get();
+      scheduler.submit(fast).get();
+      awaitCount(fastCount, i);
+      awaitReturned(fast);
+    }
+
+    // the slow counter is still in its first collection, so it has been skipped since
+    assertThat(slowCount.get()).isEqualTo(1);
+    assertThat(slow.isInProgress()).isTrue();
+
+    release.countDown();
+    awaitReturned(slow);
+    scheduler.submit(slow).get();
+    awaitCount(slowCount, 2);
+  }
+
+  @Test
+  void shouldInterruptCollectionOverTimeBudget() throws Exception {
+    CountDownLatch interrupted = new CountDownLatch(1);
+    PerformanceCounterTask task =
+        newTask(
+            telemetryClient -> {
+              try {
+                Thread.sleep(60_000);
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+            },
+            50);
+
+    scheduler.submit(task).get();
+
+    assertThat(interrupted.await(10, SECONDS)).isTrue();
+    awaitReturned(task);
+    assertThat(task.getLastCollectionMillis()).isGreaterThanOrEqualTo(0).isLessThan(60_000);
+  }
+
+  @Test
+  void shouldExposeCollectionLatency() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    PerformanceCounterTask fast = newTask("fast", telemetryClient -> {}, 10_000);
+    PerformanceCounterTask slow =
+        newTask("slow", telemetryClient -> awaitUninterruptibly(release), 50);
+    PerformanceCounterMetrics metrics =
+        new PerformanceCounterMetrics(Arrays.asList(fast, slow), 10_000);
+
+    scheduler.submit(fast).get();
+    scheduler.submit(slow).get();
+    awaitReturned(fast);
+    await().atMost(Duration.ofSeconds(10)).until(slow::isOverTimeBudget);
+
+    assertThat(metrics.getLastCollectionMillis()).containsOnlyKeys("fast");
+    assertThat(metrics.getOverTimeBudget()).containsExactly("slow");
+
+    release.countDown();
+    awaitReturned(slow);
+
+    assertThat(metrics.getLastCollectionMillis()).containsOnlyKeys("fast", "slow");
+  }
+
+  @Test
+  void shouldKeepCollectingAfterException() throws Exception {
+    AtomicInteger count = new AtomicInteger();
+    PerformanceCounterTask task =
+        newTask(
+            telemetryClient -> {
+              count.incrementAndGet();
+              throw new IllegalStateException("test");
+            },
+            10_000);
+
+    scheduler.submit(task).get();
+    awaitCount(count, 1);
+    awaitReturned(task);
+    scheduler.submit(task).get();
+
+    awaitCount(count, 2);
+  }
+
+  private PerformanceCounterTask newTask(
+      PerformanceCounter performanceCounter, long timeBudgetMillis) {
+    return newTask("test", performanceCounter, timeBudgetMillis);
+  }
+
+  private PerformanceCounterTask newTask(
+      String name, PerformanceCounter performanceCounter, long timeBudgetMillis) {
+    return new PerformanceCounterTask(
+        performanceCounter, name, timeBudgetMillis, scheduler, collectors, () -> null);
+  }
+
+  private static void awaitReturned(PerformanceCounterTask task) {
+    await().atMost(Duration.ofSeconds(10)).until(() -> !task.isInProgress());
+  }
+
+  private static void awaitCount(AtomicInteger count, int expected) {
+    await().atMost(Duration.ofSeconds(10)).until(() -> count.get() >= expected);
+    assertThat(count.get()).isEqualTo(expected);
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    while (true) {
+      try {
+        latch.await();
+        return;
+      } catch (InterruptedException e) {
+        // keep waiting, like JMX calls that don't respond to interruption
+      }
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.TraceStateBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class PropagatedSamplingPercentageTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {"sp:25", "sp:33.33", "x:1;sp:25;y:2", "sp:0", "sp:100"})
+  void shouldParse(String value) {
+    TraceState traceState = TraceState.builder().put("az", value).build();
+
+    String samplingPercentage = PropagatedSamplingPercentage.parse(traceState);
+
+    assertThat(samplingPercentage).isNotNull();
+    assertThat(value).contains("sp:" + samplingPercentage);
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "sp:",
+        "sp:abc",
+        "sp:-1",
+        "sp:100.5",
+        "sp:1000",
+        "sp:NaN",
+        "sp:1e1",
+        "sp:25f",
+        "sp:25.",
+        "sp:.5",
+        ";sp:",
+        "x:25",
+        "sp25"
+      })
+  void shouldIgnoreMalformedValues(String value) {
+    TraceState traceState = TraceState.builder().put("az", value).build();
+
+    assertThat(PropagatedSamplingPercentage.parse(traceState)).isNull();
+    assertThat(PropagatedSamplingPercentage.fromWire(traceState)).isSameAs(traceState);
+  }
+
+  @Test
+  void shouldIgnoreMissingValue() {
+    TraceState traceState = TraceState.builder().put("other", "sp:25").build();
+
+    assertThat(PropagatedSamplingPercentage.parse(traceState)).isNull();
+    assertThat(PropagatedSamplingPercentage.fromWire(traceState)).isSameAs(traceState);
+  }
+
+  @Test
+  void shouldMoveInboundValueToInternalKey() {
+    TraceState traceState = TraceState.builder().put("other", "1").put("az", "sp:25").build();
+
+    TraceState updated = PropagatedSamplingPercentage.fromWire(traceState);
+
+    assertThat(updated.get(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE)).isEqualTo("25");
+    assertThat(updated.get("az")).isNull();
+    assertThat(updated.get("other")).isEqualTo("1");
+  }
+
+  @Test
+  void shouldKeepOtherInboundEntries() {
+    TraceState traceState = TraceState.builder().put("az", "x:1;sp:25;y:2").build();
+
+    TraceState updated = PropagatedSamplingPercentage.fromWire(traceState);
+
+    assertThat(updated.asMap())
+        .containsOnly(
+            entry("az", "x:1;y:2"), entry(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25"));
+  }
+
+  @Test
+  void shouldKeepOtherOutboundEntries() {
+    TraceState traceState =
+        TraceState.builder()
+            .put("az", "x:1;y:2")
+            .put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25")
+            .build();
+
+    TraceState updated = PropagatedSamplingPercentage.toWire(traceState, true);
+
+    assertThat(updated.asMap()).containsOnly(entry("az", "sp:25;x:1;y:2"));
+    // and back again on the downstream service
+    assertThat(PropagatedSamplingPercentage.fromWire(updated).asMap())
+        .containsOnly(
+            entry("az", "x:1;y:2"), entry(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25"));
+
+    // when not propagating, the other entries are still sent
+    assertThat(PropagatedSamplingPercentage.toWire(traceState, false).asMap())
+        .containsOnly(entry("az", "x:1;y:2"));
+  }
+
+  @Test
+  void shouldMoveInternalKeyToOutboundValue() {
+    TraceState traceState =
+        TraceState.builder()
+            .put("other", "1")
+            .put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "33.33")
+            .build();
+
+    TraceState updated = PropagatedSamplingPercentage.toWire(traceState, true);
+
+    assertThat(updated.asMap()).containsOnly(entry("other", "1"), entry("az", "sp:33.33"));
+    // and back again on the downstream service
+    assertThat(PropagatedSamplingPercentage.fromWire(updated).asMap())
+        .containsOnly(
+            entry("other", "1"), entry(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "33.33"));
+  }
+
+  @Test
+  void shouldPropagateFullPercentageWithTailSampling() {
+    // with tail sampling, every trace is sampled at 100% when it starts, and downstream services
+    // need to record all of it, since the traces that are kept are only decided once they complete
+    TraceState traceState =
+        TraceState.builder().put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "100").build();
+
+    assertThat(PropagatedSamplingPercentage.toWire(traceState, true).get("az"))
+        .isEqualTo("sp:100");
+  }
+
+  @Test
+  void shouldOnlyRemoveInternalKeyWhenNotPropagating() {
+    TraceState traceState =
+        TraceState.builder()
+            .put("other", "1")
+            .put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25")
+            .build();
+
+    assertThat(PropagatedSamplingPercentage.toWire(traceState, false).asMap())
+        .containsOnly(entry("other", "1"));
+
+    TraceState onlyInternal =
+        TraceState.builder().put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25").build();
+    assertThat(PropagatedSamplingPercentage.toWire(onlyInternal, false))
+        .isEqualTo(TraceState.getDefault());
+  }
+
+  @Test
+  void shouldNotPropagateMalformedInternalValue() {
+    TraceState traceState =
+        TraceState.builder().put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "1E-7").build();
+
+    assertThat(PropagatedSamplingPercentage.toWire(traceState, true).isEmpty()).isTrue();
+  }
+
+  @Test
+  void shouldStayWithinTraceStateEntryLimit() {
+    // 32 is the maximum number of trace state entries
+    TraceStateBuilder builder = TraceState.builder();
+    for (int i = 0; i < 31; i++) {
+      builder.put("vendor" + i, "value" + i);
+    }
+    TraceState traceState =
+        builder.put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "25").build();
+    assertThat(traceState.size()).isEqualTo(32);
+
+    TraceState outbound = PropagatedSamplingPercentage.toWire(traceState, true);
+
+    assertThat(outbound.size()).isEqualTo(32);
+    assertThat(outbound.get("az")).isEqualTo("sp:25");
+    for (int i = 0; i < 31; i++) {
+      assertThat(outbound.get("vendor" + i)).isEqualTo("value" + i);
+    }
+
+    TraceState inbound = PropagatedSamplingPercentage.fromWire(outbound);
+
+    assertThat(inbound.size()).isEqualTo(32);
+    assertThat(inbound.get(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE)).isEqualTo("25");
+  }
+
+  @Test
+  void shouldIgnoreOverlyLongValue() {
+    StringBuilder value = new StringBuilder("sp:");
+    for (int i = 0; i < 200; i++) {
+      value.append('1');
+    }
+    TraceState traceState = TraceState.builder().put("az", value.toString()).build();
+
+    assertThat(PropagatedSamplingPercentage.parse(traceState)).isNull();
+  }
+}
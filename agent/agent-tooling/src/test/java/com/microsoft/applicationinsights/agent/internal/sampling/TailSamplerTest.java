@@ -0,0 +1,312 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.sampling;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.AbstractTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MessageTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.RemoteDependencyTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.RequestTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TailSamplerTest {
+
+  private static final long LATENCY_THRESHOLD_NANOS = SECONDS.toNanos(3);
+  private static final long WINDOW_NANOS = SECONDS.toNanos(5);
+
+  private FakeClock clock;
+  private List<TelemetryItem> exported;
+
+  @BeforeEach
+  void setup() {
+    clock = new FakeClock();
+    exported = new ArrayList<>();
+  }
+
+  @Test
+  void shouldKeepWholeTraceThatContainsFailure() {
+    TailSampler tailSampler = newTailSampler(0, 100);
+
+    TelemetryItem request = request("a", MILLISECONDS.toNanos(10), true);
+    TelemetryItem dependency = dependency("a", MILLISECONDS.toNanos(10), false);
+    TelemetryItem message = message("a");
+    tailSampler.add(request);
+    tailSampler.add(dependency);
+    tailSampler.add(message);
+    tailSampler.add(request("b", MILLISECONDS.toNanos(10), true));
+    tailSampler.add(message("b"));
+
+    tailSampler.decideExpired();
+    assertThat(exported).isEmpty();
+
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+
+    assertThat(exported).containsExactly(request, dependency, message);
+    assertThat(exported).allSatisfy(item -> assertThat(item.getSampleRate()).isNull());
+  }
+
+  @Test
+  void shouldKeepWholeTraceThatIsSlow() {
+    TailSampler tailSampler = newTailSampler(0, 100);
+
+    TelemetryItem request = request("a", SECONDS.toNanos(5), true);
+    TelemetryItem dependency = dependency("a", SECONDS.toNanos(4), true);
+    tailSampler.add(request);
+    tailSampler.add(dependency);
+    tailSampler.add(request("b", SECONDS.toNanos(1), true));
+
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+
+    assertThat(exported).containsExactly(request, dependency);
+  }
+
+  @Test
+  void shouldSampleOtherTracesWithBaselinePercentage() {
+    TailSampler tailSampler = newTailSampler(50, 100);
+
+    List<String> operationIds = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      String operationId = UUID.randomUUID().toString().replace("-", "");
+      operationIds.add(operationId);
+      tailSampler.add(request(operationId, MILLISECONDS.toNanos(10), true));
+    }
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+
+    List<String> expected = new ArrayList<>();
+    for (String operationId : operationIds) {
+      if (SamplingScoreGeneratorV2.getSamplingScore(operationId) < 50) {
+        expected.add(operationId);
+      }
+    }
+    List<String> actual = new ArrayList<>();
+    for (TelemetryItem item : exported) {
+      actual.add(getOperationId(item));
+      assertThat(item.getSampleRate()).isEqualTo(50);
+    }
+    assertThat(actual).isEqualTo(expected);
+    assertThat(actual.size()).isBetween(400, 600);
+  }
+
+  @Test
+  void shouldCombineWithUpstreamSampleRate() {
+    TailSampler tailSampler = newTailSampler(50, 100);
+
+    String operationId = operationIdWithScoreBelow(50);
+    TelemetryItem request = request(operationId, MILLISECONDS.toNanos(10), true);
+    request.setSampleRate(20f);
+    tailSampler.add(request);
+    tailSampler.flush();
+
+    assertThat(exported).containsExactly(request);
+    // both pick by the same sampling score, so the upstream 20% are all within the 50% here
+    assertThat(request.getSampleRate()).isEqualTo(20);
+  }
+
+  @Test
+  void shouldForwardItemsOutsideOfTraceRightAway() {
+    TailSampler tailSampler = newTailSampler(0, 100);
+
+    TelemetryItem message = message(null);
+    tailSampler.add(message);
+
+    assertThat(exported).containsExactly(message);
+  }
+
+  @Test
+  void shouldDecideOldestTracesEarlyWhenBufferIsFull() {
+    TailSampler tailSampler = newTailSampler(100, 5);
+
+    TelemetryItem a1 = message("a");
+    TelemetryItem a2 = message("a");
+    TelemetryItem b1 = message("b");
+    TelemetryItem b2 = message("b");
+    TelemetryItem c1 = message("c");
+    tailSampler.add(a1);
+    tailSampler.add(a2);
+    tailSampler.add(b1);
+    tailSampler.add(b2);
+    tailSampler.add(c1);
+    assertThat(exported).isEmpty();
+
+    // the sixth buffered item is over the limit, so the oldest trace is decided
+    TelemetryItem c2 = message("c");
+    tailSampler.add(c2);
+    assertThat(exported).containsExactly(a1, a2);
+
+    // a single trace that does not fit into the buffer is decided on its own
+    List<TelemetryItem> d = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      TelemetryItem item = message("d");
+      d.add(item);
+      tailSampler.add(item);
+    }
+    assertThat(exported.subList(0, 6)).containsExactly(a1, a2, b1, b2, c1, c2);
+    assertThat(exported.subList(6, exported.size())).isEqualTo(d);
+
+    tailSampler.flush();
+    assertThat(exported).hasSize(12);
+  }
+
+  @Test
+  void shouldApplyDecisionToLateArrivingItems() {
+    TailSampler tailSampler = newTailSampler(0, 100);
+
+    tailSampler.add(request("kept", MILLISECONDS.toNanos(10), false));
+    tailSampler.add(request("dropped", MILLISECONDS.toNanos(10), true));
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+    assertThat(exported).hasSize(1);
+
+    // the late items are not buffered again, but follow the decision right away
+    TelemetryItem lateKept = dependency("kept", MILLISECONDS.toNanos(10), true);
+    tailSampler.add(lateKept);
+    assertThat(exported).hasSize(2).endsWith(lateKept);
+
+    tailSampler.add(dependency("dropped", MILLISECONDS.toNanos(10), true));
+    assertThat(exported).hasSize(2);
+
+    // unless they are failures themselves
+    TelemetryItem lateFailure = dependency("dropped", MILLISECONDS.toNanos(10), false);
+    tailSampler.add(lateFailure);
+    assertThat(exported).hasSize(3).endsWith(lateFailure);
+
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+    assertThat(exported).hasSize(3);
+  }
+
+  @Test
+  void shouldForgetOldestDecisions() {
+    TailSampler tailSampler = newTailSampler(0, 100, 1);
+
+    tailSampler.add(request("a", MILLISECONDS.toNanos(10), false));
+    tailSampler.add(request("b", MILLISECONDS.toNanos(10), false));
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+    assertThat(exported).hasSize(2);
+
+    // the decision for "a" is no longer remembered, so its late item starts a new trace
+    tailSampler.add(message("a"));
+    tailSampler.add(message("b"));
+    assertThat(exported).hasSize(3);
+
+    clock.advance(WINDOW_NANOS);
+    tailSampler.decideExpired();
+    assertThat(exported).hasSize(3);
+  }
+
+  private TailSampler newTailSampler(float baselinePercentage, int maxBufferedItems) {
+    return newTailSampler(baselinePercentage, maxBufferedItems, 100);
+  }
+
+  private TailSampler newTailSampler(
+      float baselinePercentage, int maxBufferedItems, int maxRememberedDecisions) {
+    return new TailSampler(
+        exported::add,
+        baselinePercentage,
+        LATENCY_THRESHOLD_NANOS,
+        WINDOW_NANOS,
+        maxBufferedItems,
+        maxRememberedDecisions,
+        clock);
+  }
+
+  private static TelemetryItem request(String operationId, long durationNanos, boolean success) {
+    RequestTelemetryBuilder builder = RequestTelemetryBuilder.create();
+    builder.setId("0123456789abcdef");
+    builder.setName("GET /");
+    builder.setDuration(durationNanos);
+    builder.setSuccess(success);
+    builder.setResponseCode(success ? "200" : "500");
+    return build(builder, operationId);
+  }
+
+  private static TelemetryItem dependency(
+      String operationId, long durationNanos, boolean success) {
+    RemoteDependencyTelemetryBuilder builder = RemoteDependencyTelemetryBuilder.create();
+    builder.setId("0123456789abcdef");
+    builder.setName("SELECT");
+    builder.setDuration(durationNanos);
+    builder.setSuccess(success);
+    return build(builder, operationId);
+  }
+
+  private static TelemetryItem message(@Nullable String operationId) {
+    MessageTelemetryBuilder builder = MessageTelemetryBuilder.create();
+    builder.setMessage("hello");
+    return build(builder, operationId);
+  }
+
+  private static TelemetryItem build(
+      AbstractTelemetryBuilder builder, @Nullable String operationId) {
+    if (operationId != null) {
+      builder.addTag(ContextTagKeys.AI_OPERATION_ID.toString(), operationId);
+    }
+    return builder.build();
+  }
+
+  private static String getOperationId(TelemetryItem item) {
+    return item.getTags().get(ContextTagKeys.AI_OPERATION_ID.toString());
+  }
+
+  private static String operationIdWithScoreBelow(double score) {
+    while (true) {
+      String operationId = UUID.randomUUID().toString().replace("-", "");
+      if (SamplingScoreGeneratorV2.getSamplingScore(operationId) < score) {
+        return operationId;
+      }
+    }
+  }
+
+  private static class FakeClock implements Clock {
+
+    private long nanos;
+
+    private void advance(long nanos) {
+      this.nanos += nanos;
+    }
+
+    @Override
+    public long now() {
+      return nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+  }
+}
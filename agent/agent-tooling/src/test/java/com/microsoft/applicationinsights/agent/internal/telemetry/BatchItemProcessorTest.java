@@ -0,0 +1,104 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.ExportStats;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class BatchItemProcessorTest {
+
+  @Test
+  void shouldReportQueueDepthAndDroppedItemsUnderLoad() throws Exception {
+    // given
+    BlockingExporter exporter = new BlockingExporter();
+    ExportStats stats = exporter.getStats();
+    BatchItemProcessor batchItemProcessor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(16)
+            .setMaxExportBatchSize(4)
+            .build("test");
+
+    // the first batch blocks the worker thread in the exporter
+    for (int i = 0; i < 4; i++) {
+      batchItemProcessor.trackAsync(createItem());
+    }
+    assertThat(exporter.awaitSendStarted(10, TimeUnit.SECONDS)).isTrue();
+    // usually zero, unless the first batch was exported on the schedule delay before it was full
+    int queueDepthBeforeLoad = stats.getQueueDepth();
+
+    // when
+    int threads = 4;
+    int itemsPerThread = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < itemsPerThread; j++) {
+                    batchItemProcessor.trackAsync(createItem());
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // then
+    // nothing is drained while the worker thread is blocked, so the queue is full
+    assertThat(stats.getQueueDepth()).isEqualTo(16);
+    assertThat(stats.getDroppedItemCount())
+        .isEqualTo(threads * itemsPerThread - (16 - queueDepthBeforeLoad));
+
+    exporter.unblock();
+    assertThat(batchItemProcessor.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+    assertThat(stats.getQueueDepth()).isZero();
+    assertThat(exporter.getSentCount() + stats.getDroppedItemCount())
+        .isEqualTo(4 + threads * itemsPerThread);
+
+    batchItemProcessor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  private static TelemetryItem createItem() {
+    TelemetryItem telemetryItem = new TelemetryItem();
+    MessageData data = new MessageData();
+    data.setMessage("hello");
+    telemetryItem.setData(new MonitorBase().setBaseType("MessageData").setBaseData(data));
+    return telemetryItem;
+  }
+}
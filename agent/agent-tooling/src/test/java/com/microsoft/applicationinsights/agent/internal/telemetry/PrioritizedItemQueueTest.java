@@ -0,0 +1,205 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryEventData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryExceptionData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryItemExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PrioritizedItemQueueTest {
+
+  @Test
+  void requestsSurviveLogStorm() {
+    PrioritizedItemQueue queue = new PrioritizedItemQueue(16);
+
+    for (int i = 0; i < 10_000; i++) {
+      queue.offer(createItem(new MessageData()));
+    }
+    assertThat(queue.size(TelemetryItemPriority.LOW)).isEqualTo(16);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(queue.offer(createItem(new RequestData()))).isTrue();
+    }
+    assertThat(queue.offer(createItem(new TelemetryExceptionData()))).isTrue();
+
+    int requests = 0;
+    int exceptions = 0;
+    TelemetryItem item;
+    while ((item = queue.poll()) != null) {
+      MonitorDomain baseData = item.getData().getBaseData();
+      if (baseData instanceof RequestData) {
+        requests++;
+      } else if (baseData instanceof TelemetryExceptionData) {
+        exceptions++;
+      }
+    }
+    assertThat(requests).isEqualTo(10);
+    assertThat(exceptions).isEqualTo(1);
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  void drainsUsingWeightedRoundRobin() {
+    PrioritizedItemQueue queue = new PrioritizedItemQueue(64);
+    for (int i = 0; i < 20; i++) {
+      queue.offer(createItem(new MessageData()));
+      queue.offer(createItem(new TelemetryEventData()));
+      queue.offer(createItem(new RequestData()));
+    }
+
+    List<TelemetryItemPriority> firstCycle = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      firstCycle.add(TelemetryItemPriority.of(queue.poll()));
+    }
+
+    assertThat(firstCycle)
+        .containsExactly(
+            TelemetryItemPriority.HIGH,
+            TelemetryItemPriority.HIGH,
+            TelemetryItemPriority.HIGH,
+            TelemetryItemPriority.HIGH,
+            TelemetryItemPriority.NORMAL,
+            TelemetryItemPriority.NORMAL,
+            TelemetryItemPriority.LOW);
+    assertThat(queue.size()).isEqualTo(60 - 7);
+  }
+
+  @Test
+  void emptyLanesDoNotHoldBackOtherLanes() {
+    PrioritizedItemQueue queue = new PrioritizedItemQueue(64);
+    for (int i = 0; i < 10; i++) {
+      queue.offer(createItem(new MessageData()));
+    }
+
+    int polled = 0;
+    while (queue.poll() != null) {
+      polled++;
+    }
+    assertThat(polled).isEqualTo(10);
+  }
+
+  @Test
+  void peekReturnsWhatPollReturnsNext() {
+    PrioritizedItemQueue queue = new PrioritizedItemQueue(64);
+    assertThat(queue.peek()).isNull();
+    for (int i = 0; i < 5; i++) {
+      queue.offer(createItem(new MessageData()));
+      queue.offer(createItem(new RequestData()));
+    }
+
+    TelemetryItem peeked;
+    while ((peeked = queue.peek()) != null) {
+      assertThat(queue.peek()).isSameAs(peeked);
+      assertThat(queue.poll()).isSameAs(peeked);
+    }
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  void iteratorVisitsEveryLane() {
+    PrioritizedItemQueue queue = new PrioritizedItemQueue(64);
+    TelemetryItem log = createItem(new MessageData());
+    TelemetryItem event = createItem(new TelemetryEventData());
+    TelemetryItem request = createItem(new RequestData());
+    queue.offer(log);
+    queue.offer(event);
+    queue.offer(request);
+
+    assertThat(queue).containsExactly(request, event, log);
+    assertThat(queue.size()).isEqualTo(3);
+  }
+
+  @Test
+  void batchItemProcessorDeliversRequestsDuringLogStorm() {
+    RecordingExporter exporter = new RecordingExporter();
+    BatchItemProcessor batchItemProcessor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(1024)
+            .setPriorityLanes(true)
+            .build("test");
+
+    for (int i = 0; i < 100_000; i++) {
+      batchItemProcessor.trackAsync(createItem(new MessageData()));
+      if (i % 100 == 0) {
+        batchItemProcessor.trackAsync(createItem(new RequestData()));
+      }
+    }
+
+    assertThat(batchItemProcessor.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(exporter.count(RequestData.class)).isEqualTo(1000);
+    assertThat(exporter.count(MessageData.class)).isGreaterThan(0);
+
+    batchItemProcessor.shutdown().join(10, TimeUnit.SECONDS);
+  }
+
+  private static TelemetryItem createItem(MonitorDomain baseData) {
+    TelemetryItem telemetryItem = new TelemetryItem();
+    telemetryItem.setData(new MonitorBase().setBaseData(baseData));
+    return telemetryItem;
+  }
+
+  private static class RecordingExporter extends TelemetryItemExporter {
+
+    private final List<TelemetryItem> telemetryItems = new ArrayList<>();
+
+    private RecordingExporter() {
+      super(null, null);
+    }
+
+    @Override
+    public CompletableResultCode send(List<TelemetryItem> telemetryItems) {
+      synchronized (this.telemetryItems) {
+        this.telemetryItems.addAll(telemetryItems);
+      }
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    private int count(Class<? extends MonitorDomain> baseDataType) {
+      synchronized (telemetryItems) {
+        int count = 0;
+        for (TelemetryItem telemetryItem : telemetryItems) {
+          if (baseDataType.isInstance(telemetryItem.getData().getBaseData())) {
+            count++;
+          }
+        }
+        return count;
+      }
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.RemoteDependencyTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.RequestTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricDataPoint;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class StandardMetricsAggregatorTest {
+
+  private final List<TelemetryItem> metrics = new ArrayList<>();
+
+  private final StandardMetricsAggregator aggregator =
+      new StandardMetricsAggregator(MetricTelemetryBuilder::create, metrics::add, 10, 60000);
+
+  @Test
+  void aggregatesRequests() {
+    aggregator.record(request("GET /a", "200", true, 10));
+    aggregator.record(request("GET /a", "200", true, 30));
+    aggregator.record(request("GET /a", "200", true, 20));
+    aggregator.record(request("GET /a", "500", false, 5));
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    MetricsData ok = find("request/resultCode", "200");
+    MetricDataPoint point = ok.getMetrics().get(0);
+    assertThat(point.getName()).isEqualTo(StandardMetricsAggregator.REQUESTS_DURATION);
+    assertThat(point.getCount()).isEqualTo(3);
+    assertThat(point.getValue()).isEqualTo(60.0);
+    assertThat(point.getMin()).isEqualTo(10.0);
+    assertThat(point.getMax()).isEqualTo(30.0);
+    assertThat(ok.getProperties())
+        .containsEntry("operation/name", "GET /a")
+        .containsEntry("Request.Success", "True")
+        .containsEntry("cloud/roleName", "role")
+        .containsEntry("_MS.MetricId", StandardMetricsAggregator.REQUESTS_DURATION)
+        .containsEntry("_MS.IsAutocollected", "True")
+        .containsEntry("_MS.AggregationIntervalMs", "60000");
+    assertThat(find("request/resultCode", "500").getProperties())
+        .containsEntry("Request.Success", "False");
+
+    // nothing recorded since the previous flush
+    metrics.clear();
+    aggregator.flush();
+    assertThat(metrics).isEmpty();
+  }
+
+  @Test
+  void aggregatesDependenciesByTarget() {
+    aggregator.record(dependency("a.example.com", "Http", 10));
+    aggregator.record(dependency("b.example.com", "Http", 20));
+    aggregator.record(dependency("b.example.com", "Http", 40));
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    MetricsData b = find("dependency/target", "b.example.com");
+    assertThat(b.getMetrics().get(0).getName())
+        .isEqualTo(StandardMetricsAggregator.DEPENDENCIES_DURATION);
+    assertThat(b.getMetrics().get(0).getCount()).isEqualTo(2);
+    assertThat(b.getMetrics().get(0).getValue()).isEqualTo(60.0);
+    assertThat(b.getProperties())
+        .containsEntry("Dependency.Success", "True")
+        .containsEntry("Dependency.Type", "Http");
+  }
+
+  @Test
+  void aggregatesDependenciesByType() {
+    aggregator.record(dependency("a.example.com", "Http", 10));
+    aggregator.record(dependency("a.example.com", "SQL", 20));
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    assertThat(find("Dependency.Type", "SQL").getMetrics().get(0).getValue()).isEqualTo(20.0);
+  }
+
+  @Test
+  void marksRecordedItems() {
+    TelemetryItem item = request("GET /a", "200", true, 10);
+
+    aggregator.record(item);
+
+    Map<String, String> properties = ((RequestData) item.getData().getBaseData()).getProperties();
+    assertThat(properties).containsKey(StandardMetricsAggregator.PROCESSED_BY_METRIC_EXTRACTORS);
+  }
+
+  @Test
+  void doesNotMarkItemsThatAreNotExported() {
+    TelemetryItem item = request("GET /a", "200", true, 10);
+
+    aggregator.recordNotExported(item);
+    aggregator.flush();
+
+    assertThat(((RequestData) item.getData().getBaseData()).getProperties()).isNullOrEmpty();
+    assertThat(metrics).hasSize(1);
+  }
+
+  @Test
+  void collapsesIntoOtherWhenCardinalityCapIsReached() {
+    for (int i = 0; i < 100; i++) {
+      aggregator.record(request("GET /" + i, "200", true, 1));
+    }
+
+    aggregator.flush();
+
+    // 10 distinct series plus the overflow series
+    assertThat(metrics).hasSize(11);
+    MetricsData other = find("operation/name", StandardMetricsAggregator.OTHER);
+    assertThat(other.getMetrics().get(0).getCount()).isEqualTo(90);
+  }
+
+  private MetricsData find(String property, String value) {
+    for (TelemetryItem item : metrics) {
+      MetricsData data = (MetricsData) item.getData().getBaseData();
+      if (value.equals(data.getProperties().get(property))) {
+        return data;
+      }
+    }
+    throw new AssertionError("no metric with " + property + "=" + value);
+  }
+
+  private static TelemetryItem request(
+      String name, String responseCode, boolean success, long durationMillis) {
+    RequestTelemetryBuilder builder = RequestTelemetryBuilder.create();
+    builder.setName(name);
+    builder.setResponseCode(responseCode);
+    builder.setSuccess(success);
+    builder.setDuration(durationMillis * 1_000_000);
+    builder.addTag(ContextTagKeys.AI_OPERATION_NAME.toString(), name);
+    builder.addTag(ContextTagKeys.AI_CLOUD_ROLE.toString(), "role");
+    return builder.build();
+  }
+
+  private static TelemetryItem dependency(String target, String type, long durationMillis) {
+    RemoteDependencyTelemetryBuilder builder = RemoteDependencyTelemetryBuilder.create();
+    builder.setName("GET /");
+    builder.setTarget(target);
+    builder.setType(type);
+    builder.setResultCode("200");
+    builder.setSuccess(true);
+    builder.setDuration(durationMillis * 1_000_000);
+    builder.addTag(ContextTagKeys.AI_OPERATION_NAME.toString(), "GET /a");
+    return builder.build();
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.localstorage.LocalStorageStats;
+import com.azure.monitor.opentelemetry.exporter.implementation.localstorage.LocalStorageTelemetryPipelineListener;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MessageData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBase;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TelemetryItemSpillerTest {
+
+  private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
+
+  @TempDir File tempFolder;
+
+  private LocalStorageTelemetryPipelineListener localStorage;
+
+  @BeforeEach
+  void setUp() {
+    // the pipeline is only used to send the files from disk, which happens after 30 seconds
+    localStorage =
+        new LocalStorageTelemetryPipelineListener(
+            50, tempFolder, null, LocalStorageStats.noop(), false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    localStorage.shutdown();
+  }
+
+  @Test
+  void noLossBelowDiskQuota() throws Exception {
+    BlockingExporter exporter = new BlockingExporter();
+    TelemetryItemSpiller spiller = new TelemetryItemSpiller(exporter, localStorage, 1024, 64, 100);
+    BatchItemProcessor batchItemProcessor =
+        BatchItemProcessor.builder(exporter)
+            .setMaxQueueSize(16)
+            .setMaxExportBatchSize(8)
+            .setSpiller(spiller)
+            .build("test");
+
+    // exports are blocked, so once the queue is full everything else needs to be spilled
+    for (int i = 0; i < 1000; i++) {
+      batchItemProcessor.trackAsync(createItem());
+    }
+
+    await().atMost(Duration.ofSeconds(10)).until(() -> countItemsOnDisk() >= 1000 - 16 - 8);
+    exporter.unblock();
+    assertThat(batchItemProcessor.forceFlush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+    // the flush also drains the spill buffer
+    assertThat(exporter.getSentCount() + countItemsOnDisk()).isEqualTo(1000);
+  }
+
+  @Test
+  void flushWritesBufferedItems() throws Exception {
+    // files are only written once 64 items are buffered or after a second
+    TelemetryItemSpiller spiller =
+        new TelemetryItemSpiller(new BlockingExporter(), localStorage, 1024, 64, 1);
+
+    for (int i = 0; i < 10; i++) {
+      spiller.spill(createItem());
+    }
+
+    assertThat(spiller.flush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    assertThat(countItemsOnDisk()).isEqualTo(10);
+  }
+
+  @Test
+  void spillRateIsBounded() throws Exception {
+    TelemetryItemSpiller spiller =
+        new TelemetryItemSpiller(new BlockingExporter(), localStorage, 100, 10, 2);
+
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < 100; i++) {
+      spiller.spill(createItem());
+    }
+
+    // nothing is lost, it just takes longer
+    await().atMost(Duration.ofSeconds(10)).until(() -> countItemsOnDisk() == 100);
+    assertThat(listTrnFiles()).hasSize(10);
+    // one file right away, and then one every 500 milliseconds
+    assertThat(System.nanoTime() - startNanos)
+        .isGreaterThanOrEqualTo(MILLISECONDS.toNanos(9 * 500));
+  }
+
+  @Test
+  void dropsWhenSpillBufferIsFull() throws Exception {
+    BlockingExporter exporter = new BlockingExporter();
+    TelemetryItemSpiller spiller = new TelemetryItemSpiller(exporter, localStorage, 16, 16, 1);
+
+    for (int i = 0; i < 1000; i++) {
+      spiller.spill(createItem());
+    }
+
+    await().atMost(Duration.ofSeconds(10)).until(() -> countItemsOnDisk() > 0);
+    assertThat(spiller.flush().join(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+    long dropped = exporter.getStats().getDroppedItemCount();
+    assertThat(dropped).isPositive();
+    assertThat(countItemsOnDisk() + dropped).isEqualTo(1000);
+  }
+
+  private File[] listTrnFiles() {
+    File[] files = tempFolder.listFiles((dir, name) -> name.endsWith(".trn"));
+    return files == null ? new File[0] : files;
+  }
+
+  private int countItemsOnDisk() throws IOException {
+    int count = 0;
+    for (File file : listTrnFiles()) {
+      byte[] bytes = Files.readAllBytes(file.toPath());
+      int ikeyLength = INSTRUMENTATION_KEY.getBytes(UTF_8).length;
+      assertThat(new String(bytes, 0, ikeyLength, UTF_8)).isEqualTo(INSTRUMENTATION_KEY);
+      try (BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(
+                  new GZIPInputStream(
+                      new ByteArrayInputStream(bytes, ikeyLength, bytes.length - ikeyLength)),
+                  UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.isEmpty()) {
+            count++;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  private static TelemetryItem createItem() {
+    TelemetryItem telemetryItem = new TelemetryItem();
+    telemetryItem.setName("Message");
+    telemetryItem.setInstrumentationKey(INSTRUMENTATION_KEY);
+    telemetryItem.setTime(FormattedTime.epochNanosFromNow());
+    MessageData data = new MessageData();
+    data.setMessage("hello");
+    telemetryItem.setData(new MonitorBase().setBaseType("MessageData").setBaseData(data));
+    return telemetryItem;
+  }
+}
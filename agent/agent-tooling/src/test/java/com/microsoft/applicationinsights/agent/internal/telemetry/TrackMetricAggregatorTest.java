@@ -0,0 +1,293 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.microsoft.applicationinsights.agent.internal.telemetry;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricDataPoint;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class TrackMetricAggregatorTest {
+
+  private static final Map<String, String> NO_TAGS = Collections.emptyMap();
+
+  private final List<TelemetryItem> metrics = Collections.synchronizedList(new ArrayList<>());
+
+  private final TrackMetricAggregator aggregator =
+      new TrackMetricAggregator(MetricTelemetryBuilder::create, metrics::add, 10, 60000);
+
+  @Test
+  void aggregatesByNameAndProperties() {
+    aggregator.record("queue length", 1, properties("queue", "a"), NO_TAGS, null, now());
+    aggregator.record("queue length", 2, properties("queue", "a"), NO_TAGS, null, now());
+    aggregator.record("queue length", 3, properties("queue", "a"), NO_TAGS, null, now());
+    aggregator.record("queue length", 4, properties("queue", "a"), NO_TAGS, null, now());
+    aggregator.record("queue length", 100, properties("queue", "b"), NO_TAGS, null, now());
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    MetricsData a = find("queue", "a");
+    MetricDataPoint point = a.getMetrics().get(0);
+    assertThat(point.getName()).isEqualTo("queue length");
+    assertThat(point.getCount()).isEqualTo(4);
+    assertThat(point.getValue()).isEqualTo(10.0);
+    assertThat(point.getMin()).isEqualTo(1.0);
+    assertThat(point.getMax()).isEqualTo(4.0);
+    assertThat(point.getStdDev()).isCloseTo(Math.sqrt(1.25), within(1e-9));
+    assertThat(a.getProperties()).containsEntry("_MS.AggregationIntervalMs", "60000");
+
+    MetricDataPoint b = find("queue", "b").getMetrics().get(0);
+    assertThat(b.getCount()).isEqualTo(1);
+    assertThat(b.getValue()).isEqualTo(100.0);
+    assertThat(b.getStdDev()).isEqualTo(0.0);
+
+    // nothing recorded since the previous flush
+    metrics.clear();
+    aggregator.flush();
+    assertThat(metrics).isEmpty();
+  }
+
+  @Test
+  void separatesSeriesByInstrumentationKey() {
+    aggregator.record("m", 1, properties("k", "v"), NO_TAGS, "ikey1", now());
+    aggregator.record("m", 1, properties("k", "v"), NO_TAGS, "ikey2", now());
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    assertThat(metrics)
+        .extracting(TelemetryItem::getInstrumentationKey)
+        .containsExactlyInAnyOrder("ikey1", "ikey2");
+  }
+
+  @Test
+  void doesNotRetainCallersProperties() {
+    Map<String, String> properties = properties("k", "v");
+    aggregator.record("m", 1, properties, NO_TAGS, null, now());
+    properties.put("k", "changed");
+    aggregator.record("m", 1, properties, NO_TAGS, null, now());
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    assertThat(find("k", "v").getMetrics().get(0).getCount()).isEqualTo(1);
+    assertThat(find("k", "changed").getMetrics().get(0).getCount()).isEqualTo(1);
+  }
+
+  @Test
+  void separatesSeriesByTags() {
+    Map<String, String> tags1 = new HashMap<>();
+    tags1.put(ContextTagKeys.AI_CLOUD_ROLE.toString(), "role1");
+    tags1.put(ContextTagKeys.AI_USER_ID.toString(), "user1");
+    tags1.put(ContextTagKeys.AI_OPERATION_ID.toString(), "operation1");
+    tags1.put(ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString(), "java:2.6.4");
+    Map<String, String> tags2 = new HashMap<>();
+    tags2.put(ContextTagKeys.AI_CLOUD_ROLE.toString(), "role2");
+
+    aggregator.record("m", 1, properties("k", "v"), tags1, null, now());
+    // only differs by operation id
+    tags1.put(ContextTagKeys.AI_OPERATION_ID.toString(), "operation2");
+    aggregator.record("m", 2, properties("k", "v"), tags1, null, now());
+    aggregator.record("m", 3, properties("k", "v"), tags2, null, now());
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(2);
+    TelemetryItem role1 = findByRole("role1");
+    assertThat(role1.getTags())
+        .containsEntry(ContextTagKeys.AI_USER_ID.toString(), "user1")
+        .doesNotContainKeys(
+            ContextTagKeys.AI_OPERATION_ID.toString(),
+            ContextTagKeys.AI_INTERNAL_SDK_VERSION.toString());
+    assertThat(point(role1).getCount()).isEqualTo(2);
+    assertThat(point(role1).getValue()).isEqualTo(3.0);
+    assertThat(point(findByRole("role2")).getValue()).isEqualTo(3.0);
+  }
+
+  @Test
+  void usesEarliestTimestamp() {
+    long now = now();
+    aggregator.record("m", 1, properties("k", "v"), NO_TAGS, null, now + 2000);
+    aggregator.record("m", 1, properties("k", "v"), NO_TAGS, null, now + 1000);
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(1);
+    assertThat(metrics.get(0).getTime()).isEqualTo(MILLISECONDS.toNanos(now + 1000));
+  }
+
+  @Test
+  void doesNotRecordBackdatedValues() {
+    long backdated = now() - 3600_000;
+
+    assertThat(aggregator.record("m", 1, properties("k", "v"), NO_TAGS, null, backdated))
+        .isFalse();
+
+    aggregator.flush();
+    assertThat(metrics).isEmpty();
+  }
+
+  @Test
+  void ignoresNonFiniteValues() {
+    aggregator.record("m", Double.NaN, properties("k", "v"), NO_TAGS, null, now());
+    aggregator.record("m", Double.POSITIVE_INFINITY, properties("k", "v"), NO_TAGS, null, now());
+    aggregator.record("m", 5, properties("k", "v"), NO_TAGS, null, now());
+
+    aggregator.flush();
+
+    assertThat(metrics).hasSize(1);
+    assertThat(point(metrics.get(0)).getCount()).isEqualTo(1);
+    assertThat(point(metrics.get(0)).getValue()).isEqualTo(5.0);
+  }
+
+  @Test
+  void collapsesIntoOtherWhenCardinalityCapIsReached() {
+    for (int i = 0; i < 100; i++) {
+      aggregator.record("m", 1, properties("user", "user" + i), NO_TAGS, null, now());
+    }
+
+    aggregator.flush();
+
+    // 10 distinct series plus the overflow series
+    assertThat(metrics).hasSize(11);
+    MetricsData other = find("user", TrackMetricAggregator.OTHER);
+    assertThat(other.getMetrics().get(0).getCount()).isEqualTo(90);
+  }
+
+  @Test
+  void aggregatesExactlyUnderConcurrency() throws InterruptedException {
+    int threadCount = 8;
+    int valuesPerThread = 100_000;
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean recording = new AtomicBoolean(true);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                awaitUninterruptibly(start);
+                for (int j = 0; j < valuesPerThread; j++) {
+                  aggregator.record("m", j % 10, properties("k", "v"), NO_TAGS, null, now());
+                }
+              }));
+    }
+    // flushing concurrently from more than one thread (like the scheduled flush, the 2.x SDK's
+    // flush() and the shutdown hook), so that recordings race with the series being reported
+    List<Thread> flushers = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      flushers.add(
+          new Thread(
+              () -> {
+                awaitUninterruptibly(start);
+                while (recording.get()) {
+                  aggregator.flush();
+                }
+              }));
+    }
+    threads.forEach(Thread::start);
+    flushers.forEach(Thread::start);
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    recording.set(false);
+    for (Thread flusher : flushers) {
+      flusher.join();
+    }
+    aggregator.flush();
+
+    long count = 0;
+    double sum = 0;
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    synchronized (metrics) {
+      for (TelemetryItem item : metrics) {
+        MetricDataPoint point = point(item);
+        count += point.getCount();
+        sum += point.getValue();
+        min = Math.min(min, point.getMin());
+        max = Math.max(max, point.getMax());
+      }
+    }
+    assertThat(count).isEqualTo((long) threadCount * valuesPerThread);
+    // each of the values 0 to 9 is recorded equally often
+    assertThat(sum).isEqualTo(threadCount * valuesPerThread * 4.5);
+    assertThat(min).isEqualTo(0.0);
+    assertThat(max).isEqualTo(9.0);
+  }
+
+  private MetricsData find(String property, String value) {
+    for (TelemetryItem item : metrics) {
+      MetricsData data = (MetricsData) item.getData().getBaseData();
+      if (value.equals(data.getProperties().get(property))) {
+        return data;
+      }
+    }
+    throw new AssertionError("no metric with " + property + "=" + value);
+  }
+
+  private TelemetryItem findByRole(String roleName) {
+    for (TelemetryItem item : metrics) {
+      if (roleName.equals(item.getTags().get(ContextTagKeys.AI_CLOUD_ROLE.toString()))) {
+        return item;
+      }
+    }
+    throw new AssertionError("no metric with role name " + roleName);
+  }
+
+  private static MetricDataPoint point(TelemetryItem item) {
+    return ((MetricsData) item.getData().getBaseData()).getMetrics().get(0);
+  }
+
+  private static long now() {
+    return System.currentTimeMillis();
+  }
+
+  private static Map<String, String> properties(String key, String value) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put(key, value);
+    return properties;
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -42,6 +42,7 @@ import com.azure.monitor.opentelemetry.exporter.implementation.LogDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.MetricDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.SpanDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.AbstractTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionDetailsCache;
 import com.azure.monitor.opentelemetry.exporter.implementation.configuration.ConnectionString;
 import com.azure.monitor.opentelemetry.exporter.implementation.heartbeat.HeartbeatExporter;
 import com.azure.monitor.opentelemetry.exporter.implementation.localstorage.LocalStorageStats;
@@ -75,6 +76,8 @@ public final class AzureMonitorExporterBuilder {
   private static final String APPLICATIONINSIGHTS_AUTHENTICATION_SCOPE =
       "https://monitor.azure.com//.default";
 
+  private static final int EXCEPTION_DETAILS_CACHE_SIZE = 100;
+
   private static final Map<String, String> properties =
       CoreUtils.getProperties("azure-monitor-opentelemetry-exporter.properties");
 
@@ -255,7 +258,11 @@ public final class AzureMonitorExporterBuilder {
   public AzureMonitorTraceExporter buildTraceExporter() {
     SpanDataMapper mapper =
         new SpanDataMapper(
-            true, this::populateDefaults, (event, instrumentationName) -> false, () -> null);
+            true,
+            this::populateDefaults,
+            (event, instrumentationName) -> false,
+            () -> null,
+            new ExceptionDetailsCache(EXCEPTION_DETAILS_CACHE_SIZE));
 
     return new AzureMonitorTraceExporter(mapper, initExporterBuilder());
   }
@@ -289,7 +296,11 @@ public final class AzureMonitorExporterBuilder {
    */
   public AzureMonitorLogExporter buildLogExporter() {
     return new AzureMonitorLogExporter(
-        new LogDataMapper(true, this::populateDefaults), initExporterBuilder());
+        new LogDataMapper(
+            true,
+            this::populateDefaults,
+            new ExceptionDetailsCache(EXCEPTION_DETAILS_CACHE_SIZE)),
+        initExporterBuilder());
   }
 
   private TelemetryItemExporter initExporterBuilder() {
@@ -72,16 +72,18 @@ public class AzureMonitorMetricExporter implements MetricExporter {
       return CompletableResultCode.ofFailure();
     }
 
-    List<TelemetryItem> telemetryItems = new ArrayList<>();
     for (MetricData metricData : metrics) {
       LOGGER.verbose("exporting metric: {}", metricData);
-      try {
-        mapper.map(metricData, telemetryItems::add);
-        exportingMetricLogger.recordSuccess();
-      } catch (Throwable t) {
-        exportingMetricLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
-        return CompletableResultCode.ofFailure();
-      }
+    }
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    try {
+      // mapping all of the metrics together allows items for points which share the same
+      // dimensions to share the same tags and properties
+      mapper.map(metrics, telemetryItems::add);
+      exportingMetricLogger.recordSuccess();
+    } catch (Throwable t) {
+      exportingMetricLogger.recordFailure(t.getMessage(), t, EXPORTER_MAPPING_ERROR);
+      return CompletableResultCode.ofFailure();
     }
 
     return telemetryItemExporter.send(telemetryItems);
@@ -0,0 +1,132 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation;
+
+import java.util.List;
+
+/**
+ * Summarizes the buckets of an exponential histogram (count per bucket, where bucket {@code i}
+ * covers {@code (base^i, base^(i+1)]} and {@code base = 2^(2^-scale)}) into min, max and
+ * percentile estimates.
+ *
+ * <p>Every estimate is the point of its bucket with the smallest worst-case relative error, which
+ * bounds the relative error by {@code (base - 1) / (base + 1)}, e.g. about 2.2% at scale 4.
+ *
+ * <p>The buckets are walked in place, nothing is allocated per bucket.
+ */
+final class ExponentialHistogramSummary {
+
+  private final int scale;
+  private final long zeroCount;
+  private final int positiveOffset;
+  private final List<Long> positiveCounts;
+  private final int negativeOffset;
+  private final List<Long> negativeCounts;
+  private final long totalCount;
+
+  ExponentialHistogramSummary(
+      int scale,
+      long zeroCount,
+      int positiveOffset,
+      List<Long> positiveCounts,
+      int negativeOffset,
+      List<Long> negativeCounts) {
+    this.scale = scale;
+    this.zeroCount = zeroCount;
+    this.positiveOffset = positiveOffset;
+    this.positiveCounts = positiveCounts;
+    this.negativeOffset = negativeOffset;
+    this.negativeCounts = negativeCounts;
+    long total = zeroCount;
+    for (int i = 0; i < positiveCounts.size(); i++) {
+      total += positiveCounts.get(i);
+    }
+    for (int i = 0; i < negativeCounts.size(); i++) {
+      total += negativeCounts.get(i);
+    }
+    totalCount = total;
+  }
+
+  long getTotalCount() {
+    return totalCount;
+  }
+
+  double getMin() {
+    return valueAtRank(1);
+  }
+
+  double getMax() {
+    return valueAtRank(totalCount);
+  }
+
+  // percentile is between 0 and 100, nearest-rank method
+  double getPercentile(double percentile) {
+    long rank = (long) Math.ceil(percentile / 100 * totalCount);
+    return valueAtRank(Math.max(1, Math.min(rank, totalCount)));
+  }
+
+  // rank is 1-based, walking from the most negative value up to the most positive value
+  private double valueAtRank(long rank) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long cumulative = 0;
+    for (int i = negativeCounts.size() - 1; i >= 0; i--) {
+      cumulative += negativeCounts.get(i);
+      if (cumulative >= rank) {
+        return -bucketEstimate(negativeOffset + i);
+      }
+    }
+    cumulative += zeroCount;
+    if (cumulative >= rank) {
+      return 0;
+    }
+    int highestNonEmpty = -1;
+    for (int i = 0; i < positiveCounts.size(); i++) {
+      long count = positiveCounts.get(i);
+      if (count == 0) {
+        continue;
+      }
+      cumulative += count;
+      highestNonEmpty = i;
+      if (cumulative >= rank) {
+        return bucketEstimate(positiveOffset + i);
+      }
+    }
+    // only reachable if the counts changed underneath
+    return highestNonEmpty == -1 ? 0 : bucketEstimate(positiveOffset + highestNonEmpty);
+  }
+
+  // for a bucket (lower, upper] with upper = lower * base, 2 * upper / (1 + base) has the same
+  // relative error towards both ends of the bucket
+  private double bucketEstimate(int index) {
+    double base = Math.pow(2, Math.scalb(1.0, -scale));
+    double upper = Math.pow(2, Math.scalb((double) index + 1, -scale));
+    return 2 * upper / (1 + base);
+  }
+
+  // visible for testing
+  static double relativeErrorBound(int scale) {
+    double base = Math.pow(2, Math.scalb(1.0, -scale));
+    return (base - 1) / (base + 1);
+  }
+}
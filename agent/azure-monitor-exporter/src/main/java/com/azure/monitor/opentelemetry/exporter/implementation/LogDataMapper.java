@@ -22,16 +22,16 @@
 package com.azure.monitor.opentelemetry.exporter.implementation;
 
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.AbstractTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionDetailsCache;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionTelemetryBuilder;
-import com.azure.monitor.opentelemetry.exporter.implementation.builders.Exceptions;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.MessageTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.SeverityLevel;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanId;
 import io.opentelemetry.sdk.logs.data.LogData;
 import io.opentelemetry.sdk.logs.data.Severity;
@@ -52,31 +52,52 @@ public class LogDataMapper {
 
   private final boolean captureLoggingLevelAsCustomDimension;
   private final BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer;
+  private final ExceptionDetailsCache exceptionDetailsCache;
 
   public LogDataMapper(
       boolean captureLoggingLevelAsCustomDimension,
-      BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer) {
+      BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer,
+      ExceptionDetailsCache exceptionDetailsCache) {
     this.captureLoggingLevelAsCustomDimension = captureLoggingLevelAsCustomDimension;
     this.telemetryInitializer = telemetryInitializer;
+    this.exceptionDetailsCache = exceptionDetailsCache;
   }
 
   public void map(LogData log, Consumer<TelemetryItem> consumer) {
+    map(log, null, consumer);
+  }
+
+  // occurrenceCount is set when the log record stands in for a number of identical log records
+  // that were collapsed into it, and is then captured as the "OccurrenceCount" custom dimension
+  public void map(LogData log, @Nullable Long occurrenceCount, Consumer<TelemetryItem> consumer) {
+    SpanContext spanContext = log.getSpanContext();
+    if (spanContext.isValid() && !spanContext.isSampled()) {
+      // the log record belongs to a sampled out trace, so there is no point in mapping it
+      return;
+    }
+    // standalone logs (not part of an existing trace) will not have sampling percentage encoded in
+    // their trace state
+    float samplingPercentage =
+        TelemetryUtil.getSamplingPercentage(spanContext.getTraceState(), 100, false);
+
     String stack = log.getAttributes().get(SemanticAttributes.EXCEPTION_STACKTRACE);
     if (stack == null) {
-      consumer.accept(createMessageTelemetryItem(log));
+      consumer.accept(createMessageTelemetryItem(log, samplingPercentage, occurrenceCount));
     } else {
-      consumer.accept(createExceptionTelemetryItem(log, stack));
+      consumer.accept(
+          createExceptionTelemetryItem(log, stack, samplingPercentage, occurrenceCount));
     }
   }
 
-  private TelemetryItem createMessageTelemetryItem(LogData log) {
+  private TelemetryItem createMessageTelemetryItem(
+      LogData log, float samplingPercentage, @Nullable Long occurrenceCount) {
     MessageTelemetryBuilder telemetryBuilder = MessageTelemetryBuilder.create();
     telemetryInitializer.accept(telemetryBuilder, log.getResource());
 
     // set standard properties
     setOperationTags(telemetryBuilder, log);
     setTime(telemetryBuilder, log.getEpochNanos());
-    setSampleRate(telemetryBuilder, log);
+    setSampleRate(telemetryBuilder, samplingPercentage);
 
     // update tags
     Attributes attributes = log.getAttributes();
@@ -90,25 +111,27 @@ public class LogDataMapper {
         telemetryBuilder,
         log.getInstrumentationScopeInfo().getName(),
         attributes.get(SemanticAttributes.THREAD_NAME),
-        log.getSeverity());
+        log.getSeverity(),
+        occurrenceCount);
 
     return telemetryBuilder.build();
   }
 
-  private TelemetryItem createExceptionTelemetryItem(LogData log, String stack) {
+  private TelemetryItem createExceptionTelemetryItem(
+      LogData log, String stack, float samplingPercentage, @Nullable Long occurrenceCount) {
     ExceptionTelemetryBuilder telemetryBuilder = ExceptionTelemetryBuilder.create();
     telemetryInitializer.accept(telemetryBuilder, log.getResource());
 
     // set standard properties
     setOperationTags(telemetryBuilder, log);
     setTime(telemetryBuilder, log.getEpochNanos());
-    setSampleRate(telemetryBuilder, log);
+    setSampleRate(telemetryBuilder, samplingPercentage);
 
     // update tags
     Attributes attributes = log.getAttributes();
     setExtraAttributes(telemetryBuilder, attributes);
 
-    telemetryBuilder.setExceptions(Exceptions.minimalParse(stack));
+    exceptionDetailsCache.setExceptions(telemetryBuilder, stack);
     telemetryBuilder.setSeverityLevel(toSeverityLevel(log.getSeverity()));
 
     // set exception-specific properties
@@ -116,7 +139,8 @@ public class LogDataMapper {
         telemetryBuilder,
         log.getInstrumentationScopeInfo().getName(),
         attributes.get(SemanticAttributes.THREAD_NAME),
-        log.getSeverity());
+        log.getSeverity(),
+        occurrenceCount);
 
     if (log.getBody() != null) {
       telemetryBuilder.addProperty("Logger Message", log.getBody().asString());
@@ -148,14 +172,11 @@ public class LogDataMapper {
   }
 
   private static void setTime(AbstractTelemetryBuilder telemetryBuilder, long epochNanos) {
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochNanos(epochNanos));
+    telemetryBuilder.setTime(epochNanos);
   }
 
-  private static void setSampleRate(AbstractTelemetryBuilder telemetryBuilder, LogData log) {
-    // standalone logs (not part of an existing trace) will not have sampling percentage encoded in
-    // their trace state
-    float samplingPercentage =
-        TelemetryUtil.getSamplingPercentage(log.getSpanContext().getTraceState(), 100, false);
+  private static void setSampleRate(
+      AbstractTelemetryBuilder telemetryBuilder, float samplingPercentage) {
     if (samplingPercentage != 100) {
       telemetryBuilder.setSampleRate(samplingPercentage);
     }
@@ -213,7 +234,8 @@ public class LogDataMapper {
       AbstractTelemetryBuilder telemetryBuilder,
       @Nullable String loggerName,
       @Nullable String threadName,
-      Severity severity) {
+      Severity severity,
+      @Nullable Long occurrenceCount) {
 
     telemetryBuilder.addProperty("SourceType", "Logger");
 
@@ -230,6 +252,9 @@ public class LogDataMapper {
     if (threadName != null) {
       telemetryBuilder.addProperty("ThreadName", threadName);
     }
+    if (occurrenceCount != null) {
+      telemetryBuilder.addProperty("OccurrenceCount", Long.toString(occurrenceCount));
+    }
   }
 
   @Nullable
@@ -24,26 +24,39 @@ package com.azure.monitor.opentelemetry.exporter.implementation;
 import static io.opentelemetry.api.internal.Utils.checkArgument;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.DOUBLE_GAUGE;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.DOUBLE_SUM;
+import static io.opentelemetry.sdk.metrics.data.MetricDataType.EXPONENTIAL_HISTOGRAM;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.HISTOGRAM;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.LONG_GAUGE;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.LONG_SUM;
+import static io.opentelemetry.sdk.metrics.data.MetricDataType.SUMMARY;
 
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.AbstractTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricPointBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.LayeredMap;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.sdk.metrics.data.DoublePointData;
 import io.opentelemetry.sdk.metrics.data.HistogramPointData;
 import io.opentelemetry.sdk.metrics.data.LongPointData;
 import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.metrics.data.MetricDataType;
 import io.opentelemetry.sdk.metrics.data.PointData;
+import io.opentelemetry.sdk.metrics.data.SummaryPointData;
+import io.opentelemetry.sdk.metrics.data.ValueAtQuantile;
+import io.opentelemetry.sdk.metrics.internal.data.exponentialhistogram.ExponentialHistogramBuckets;
+import io.opentelemetry.sdk.metrics.internal.data.exponentialhistogram.ExponentialHistogramPointData;
 import io.opentelemetry.sdk.resources.Resource;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +66,9 @@ public class MetricDataMapper {
 
   private static final Logger logger = LoggerFactory.getLogger(MetricDataMapper.class);
   private final BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer;
+  // percentiles (between 0 and 100) that are estimated from the exponential histogram buckets
+  private final double[] percentiles;
+  private final String[] percentilePropertyNames;
 
   static {
     EXCLUDED_METRIC_NAMES.add("http.server.active_requests"); // Servlet
@@ -63,42 +79,105 @@ public class MetricDataMapper {
   }
 
   public MetricDataMapper(BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer) {
+    this(telemetryInitializer, Collections.emptyList());
+  }
+
+  public MetricDataMapper(
+      BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer,
+      List<Double> exponentialHistogramPercentiles) {
     this.telemetryInitializer = telemetryInitializer;
+    percentiles = new double[exponentialHistogramPercentiles.size()];
+    percentilePropertyNames = new String[exponentialHistogramPercentiles.size()];
+    for (int i = 0; i < percentiles.length; i++) {
+      double percentile = exponentialHistogramPercentiles.get(i);
+      checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+      percentiles[i] = percentile;
+      // e.g. P50, P99.9
+      percentilePropertyNames[i] =
+          percentile == Math.rint(percentile) ? "P" + (long) percentile : "P" + percentile;
+    }
   }
 
   public void map(MetricData metricData, Consumer<TelemetryItem> consumer) {
-    if (EXCLUDED_METRIC_NAMES.contains(metricData.getName())) {
-      return;
-    }
+    map(Collections.singletonList(metricData), consumer);
+  }
 
-    MetricDataType type = metricData.getType();
-    if (type == DOUBLE_SUM
-        || type == DOUBLE_GAUGE
-        || type == LONG_SUM
-        || type == LONG_GAUGE
-        || type == HISTOGRAM) {
-      List<TelemetryItem> telemetryItemList = convertOtelMetricToAzureMonitorMetric(metricData);
-      for (TelemetryItem telemetryItem : telemetryItemList) {
-        consumer.accept(telemetryItem);
+  // each point is still sent as its own telemetry item (since ingestion only uses the first point
+  // of each MetricsData), but points that share the same resource and attributes share the same
+  // tags and properties (see LayeredMap), instead of building and serializing them for every point
+  public void map(Collection<MetricData> metrics, Consumer<TelemetryItem> consumer) {
+    Map<DefaultsKey, ItemDefaults> defaultsCache = new HashMap<>();
+    for (MetricData metricData : metrics) {
+      if (EXCLUDED_METRIC_NAMES.contains(metricData.getName())) {
+        continue;
+      }
+      MetricDataType type = metricData.getType();
+      if (type != DOUBLE_SUM
+          && type != DOUBLE_GAUGE
+          && type != LONG_SUM
+          && type != LONG_GAUGE
+          && type != HISTOGRAM
+          && type != EXPONENTIAL_HISTOGRAM
+          && type != SUMMARY) {
+        logger.warn("metric data type {} is not supported yet.", metricData.getType());
+        continue;
+      }
+      for (PointData pointData : metricData.getData().getPoints()) {
+        if (type == EXPONENTIAL_HISTOGRAM && percentiles.length > 0) {
+          // percentiles are sent as properties, so this point can't share its properties
+          consumer.accept(
+              createExponentialHistogramItem(
+                  metricData, (ExponentialHistogramPointData) pointData));
+          continue;
+        }
+        ItemDefaults defaults =
+            defaultsCache.computeIfAbsent(
+                new DefaultsKey(metricData.getResource(), pointData.getAttributes()),
+                this::createItemDefaults);
+        MetricTelemetryBuilder builder = MetricTelemetryBuilder.create();
+        defaults.applyTo(builder);
+        builder.setTime(pointData.getEpochNanos());
+        builder.setMetricPoint(createMetricPointBuilder(metricData, pointData));
+        consumer.accept(builder.build());
       }
-    } else {
-      logger.warn("metric data type {} is not supported yet.", metricData.getType());
     }
   }
 
-  private List<TelemetryItem> convertOtelMetricToAzureMonitorMetric(MetricData metricData) {
-    List<TelemetryItem> telemetryItems = new ArrayList<>();
+  private ItemDefaults createItemDefaults(DefaultsKey key) {
+    // populating a throwaway item, so that the defaults include whatever the telemetry initializer
+    // adds (along with the same validation and truncation as any other item)
+    MetricTelemetryBuilder template = MetricTelemetryBuilder.create();
+    telemetryInitializer.accept(template, key.resource);
+    addProperties(template, key.attributes);
+    TelemetryItem item = template.build();
+    Map<String, String> tags = item.getTags();
+    Map<String, String> properties = ((MetricsData) item.getData().getBaseData()).getProperties();
+    return new ItemDefaults(
+        item.getInstrumentationKey(),
+        tags == null ? LayeredMap.Defaults.empty() : LayeredMap.Defaults.of(tags),
+        properties == null ? LayeredMap.Defaults.empty() : LayeredMap.Defaults.of(properties));
+  }
 
-    for (PointData pointData : metricData.getData().getPoints()) {
-      MetricTelemetryBuilder builder = MetricTelemetryBuilder.create();
-      telemetryInitializer.accept(builder, metricData.getResource());
+  private TelemetryItem createExponentialHistogramItem(
+      MetricData metricData, ExponentialHistogramPointData pointData) {
+    MetricTelemetryBuilder builder = MetricTelemetryBuilder.create();
+    telemetryInitializer.accept(builder, metricData.getResource());
+    builder.setTime(pointData.getEpochNanos());
+    addProperties(builder, pointData.getAttributes());
 
-      builder.setTime(FormattedTime.offSetDateTimeFromEpochNanos(pointData.getEpochNanos()));
-      updateMetricPointBuilder(builder, metricData, pointData);
+    ExponentialHistogramSummary summary = summarize(pointData);
+    MetricPointBuilder pointBuilder = new MetricPointBuilder();
+    pointBuilder.setName(metricData.getName());
+    setExponentialHistogramValues(pointBuilder, pointData, summary);
+    builder.setMetricPoint(pointBuilder);
 
-      telemetryItems.add(builder.build());
+    if (summary.getTotalCount() > 0) {
+      for (int i = 0; i < percentiles.length; i++) {
+        builder.addProperty(
+            percentilePropertyNames[i], Double.toString(summary.getPercentile(percentiles[i])));
+      }
     }
-    return telemetryItems;
+    return builder.build();
   }
 
   // visible for testing
@@ -106,6 +185,13 @@ public class MetricDataMapper {
       MetricTelemetryBuilder metricTelemetryBuilder, MetricData metricData, PointData pointData) {
     checkArgument(metricData != null, "MetricData cannot be null.");
 
+    metricTelemetryBuilder.setMetricPoint(createMetricPointBuilder(metricData, pointData));
+
+    addProperties(metricTelemetryBuilder, pointData.getAttributes());
+  }
+
+  private static MetricPointBuilder createMetricPointBuilder(
+      MetricData metricData, PointData pointData) {
     MetricPointBuilder pointBuilder = new MetricPointBuilder();
     MetricDataType type = metricData.getType();
     switch (type) {
@@ -131,19 +217,117 @@ public class MetricDataMapper {
         pointBuilder.setMin(histogramPointData.getMin());
         pointBuilder.setMax(histogramPointData.getMax());
         break;
-      case SUMMARY: // not supported yet in OpenTelemetry SDK
-      case EXPONENTIAL_HISTOGRAM: // not supported yet in OpenTelemetry SDK
+      case EXPONENTIAL_HISTOGRAM:
+        ExponentialHistogramPointData exponentialHistogramPointData =
+            (ExponentialHistogramPointData) pointData;
+        setExponentialHistogramValues(
+            pointBuilder, exponentialHistogramPointData, summarize(exponentialHistogramPointData));
+        break;
+      case SUMMARY:
+        SummaryPointData summaryPointData = (SummaryPointData) pointData;
+        long summaryCount = summaryPointData.getCount();
+        if (summaryCount <= Integer.MAX_VALUE && summaryCount >= Integer.MIN_VALUE) {
+          pointBuilder.setCount((int) summaryCount);
+        }
+        pointBuilder.setValue(summaryPointData.getSum());
+        for (ValueAtQuantile valueAtQuantile : summaryPointData.getValues()) {
+          if (valueAtQuantile.getQuantile() == 0.0) {
+            pointBuilder.setMin(valueAtQuantile.getValue());
+          } else if (valueAtQuantile.getQuantile() == 1.0) {
+            pointBuilder.setMax(valueAtQuantile.getValue());
+          }
+        }
+        break;
       default:
         throw new IllegalArgumentException("metric data type '" + type + "' is not supported yet");
     }
 
     pointBuilder.setName(metricData.getName());
+    return pointBuilder;
+  }
 
-    metricTelemetryBuilder.setMetricPoint(pointBuilder);
+  private static void setExponentialHistogramValues(
+      MetricPointBuilder pointBuilder,
+      ExponentialHistogramPointData pointData,
+      ExponentialHistogramSummary summary) {
+    long count = pointData.getCount();
+    if (count <= Integer.MAX_VALUE && count >= Integer.MIN_VALUE) {
+      pointBuilder.setCount((int) count);
+    }
+    pointBuilder.setValue(pointData.getSum());
+    if (summary.getTotalCount() > 0) {
+      pointBuilder.setMin(summary.getMin());
+      pointBuilder.setMax(summary.getMax());
+    }
+  }
+
+  private static ExponentialHistogramSummary summarize(ExponentialHistogramPointData pointData) {
+    ExponentialHistogramBuckets positiveBuckets = pointData.getPositiveBuckets();
+    ExponentialHistogramBuckets negativeBuckets = pointData.getNegativeBuckets();
+    return new ExponentialHistogramSummary(
+        pointData.getScale(),
+        pointData.getZeroCount(),
+        positiveBuckets.getOffset(),
+        positiveBuckets.getBucketCounts(),
+        negativeBuckets.getOffset(),
+        negativeBuckets.getBucketCounts());
+  }
+
+  private static void addProperties(
+      MetricTelemetryBuilder metricTelemetryBuilder, Attributes attributes) {
+    attributes.forEach(
+        (key, value) -> metricTelemetryBuilder.addProperty(key.getKey(), value.toString()));
+  }
+
+  private static final class ItemDefaults {
+
+    @Nullable private final String instrumentationKey;
+    private final LayeredMap.Defaults tags;
+    private final LayeredMap.Defaults properties;
+
+    private ItemDefaults(
+        @Nullable String instrumentationKey,
+        LayeredMap.Defaults tags,
+        LayeredMap.Defaults properties) {
+      this.instrumentationKey = instrumentationKey;
+      this.tags = tags;
+      this.properties = properties;
+    }
+
+    private void applyTo(MetricTelemetryBuilder builder) {
+      if (instrumentationKey != null) {
+        builder.setInstrumentationKey(instrumentationKey);
+      }
+      builder.setDefaultTags(tags);
+      builder.setDefaultProperties(properties);
+    }
+  }
+
+  private static final class DefaultsKey {
+
+    private final Resource resource;
+    private final Attributes attributes;
+
+    private DefaultsKey(Resource resource, Attributes attributes) {
+      this.resource = resource;
+      this.attributes = attributes;
+    }
 
-    pointData
-        .getAttributes()
-        .forEach(
-            (key, value) -> metricTelemetryBuilder.addProperty(key.getKey(), value.toString()));
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof DefaultsKey)) {
+        return false;
+      }
+      DefaultsKey other = (DefaultsKey) obj;
+      return resource.equals(other.resource) && attributes.equals(other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * resource.hashCode() + attributes.hashCode();
+    }
   }
 }
@@ -26,15 +26,13 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.azure.core.util.logging.ClientLogger;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.AbstractTelemetryBuilder;
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionDetailsCache;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionTelemetryBuilder;
-import com.azure.monitor.opentelemetry.exporter.implementation.builders.Exceptions;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.MessageTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.RemoteDependencyTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.RequestTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedDuration;
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.Trie;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.UrlParser;
@@ -83,6 +81,11 @@ public final class SpanDataMapper {
   public static final AttributeKey<String> AI_LEGACY_ROOT_ID_KEY =
       AttributeKey.stringKey("applicationinsights.internal.legacy_root_id");
 
+  private static final AttributeKey<String> AI_PREVIEW_INSTRUMENTATION_KEY =
+      AttributeKey.stringKey("ai.preview.instrumentation_key");
+  private static final AttributeKey<String> AI_PREVIEW_SERVICE_NAME =
+      AttributeKey.stringKey("ai.preview.service_name");
+
   // this is only used by the 2.x web interop bridge
   // for ThreadContext.getRequestTelemetryContext().getRequestTelemetry().setSource()
   private static final AttributeKey<String> AI_SPAN_SOURCE_KEY =
@@ -145,16 +148,19 @@ public final class SpanDataMapper {
   private final BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer;
   private final BiPredicate<EventData, String> eventSuppressor;
   private final Supplier<String> appIdSupplier;
+  private final ExceptionDetailsCache exceptionDetailsCache;
 
   public SpanDataMapper(
       boolean captureHttpServer4xxAsError,
       BiConsumer<AbstractTelemetryBuilder, Resource> telemetryInitializer,
       BiPredicate<EventData, String> eventSuppressor,
-      Supplier<String> appIdSupplier) {
+      Supplier<String> appIdSupplier,
+      ExceptionDetailsCache exceptionDetailsCache) {
     this.captureHttpServer4xxAsError = captureHttpServer4xxAsError;
     this.telemetryInitializer = telemetryInitializer;
     this.eventSuppressor = eventSuppressor;
     this.appIdSupplier = appIdSupplier;
+    this.exceptionDetailsCache = exceptionDetailsCache;
   }
 
   public TelemetryItem map(SpanData span) {
@@ -181,6 +187,52 @@ public final class SpanDataMapper {
     }
   }
 
+  /**
+   * Maps only the fields that the standard metrics are derived from (operation name, duration,
+   * success and result code, and for dependencies also the type and target). This is much cheaper
+   * than {@link #map(SpanData, float)}, since the rest of the span attributes, the links and the
+   * events are not processed, and is used for spans that are sampled out (and so never exported).
+   */
+  public TelemetryItem mapForStandardMetrics(SpanData span) {
+    Attributes attributes = span.getAttributes();
+    long durationNanos = span.getEndEpochNanos() - span.getStartEpochNanos();
+    if (isRequest(span)) {
+      RequestTelemetryBuilder telemetryBuilder = RequestTelemetryBuilder.create();
+      telemetryInitializer.accept(telemetryBuilder, span.getResource());
+      applyResourceOverrides(telemetryBuilder, attributes);
+      setOperationName(telemetryBuilder, getOperationName(span));
+      telemetryBuilder.setDuration(durationNanos);
+      telemetryBuilder.setSuccess(getSuccess(span));
+      telemetryBuilder.setResponseCode(getResponseCode(attributes));
+      return telemetryBuilder.build();
+    }
+    RemoteDependencyTelemetryBuilder telemetryBuilder = RemoteDependencyTelemetryBuilder.create();
+    telemetryInitializer.accept(telemetryBuilder, span.getResource());
+    applyResourceOverrides(telemetryBuilder, attributes);
+    setOperationName(telemetryBuilder, attributes);
+    telemetryBuilder.setDuration(durationNanos);
+    telemetryBuilder.setSuccess(getSuccess(span));
+    if (span.getKind() == SpanKind.INTERNAL) {
+      telemetryBuilder.setType("InProc");
+    } else {
+      applySemanticConventions(telemetryBuilder, span);
+    }
+    return telemetryBuilder.build();
+  }
+
+  // the subset of applyCommonTags() that decides which resource the standard metrics belong to
+  private static void applyResourceOverrides(
+      AbstractTelemetryBuilder telemetryBuilder, Attributes attributes) {
+    String instrumentationKey = attributes.get(AI_PREVIEW_INSTRUMENTATION_KEY);
+    if (instrumentationKey != null) {
+      telemetryBuilder.setInstrumentationKey(instrumentationKey);
+    }
+    String serviceName = attributes.get(AI_PREVIEW_SERVICE_NAME);
+    if (serviceName != null) {
+      telemetryBuilder.addTag(ContextTagKeys.AI_CLOUD_ROLE.toString(), serviceName);
+    }
+  }
+
   public static boolean isRequest(SpanData span) {
     SpanKind kind = span.getKind();
     String instrumentationName = span.getInstrumentationScopeInfo().getName();
@@ -220,8 +272,7 @@ public final class SpanDataMapper {
     // set dependency-specific properties
     telemetryBuilder.setId(span.getSpanId());
     telemetryBuilder.setName(getDependencyName(span));
-    telemetryBuilder.setDuration(
-        FormattedDuration.fromNanos(span.getEndEpochNanos() - span.getStartEpochNanos()));
+    telemetryBuilder.setDuration(span.getEndEpochNanos() - span.getStartEpochNanos());
     telemetryBuilder.setSuccess(getSuccess(span));
 
     if (inProc) {
@@ -608,8 +659,7 @@ public final class SpanDataMapper {
 
     // set request-specific properties
     telemetryBuilder.setName(operationName);
-    telemetryBuilder.setDuration(
-        FormattedDuration.fromNanos(span.getEndEpochNanos() - startEpochNanos));
+    telemetryBuilder.setDuration(span.getEndEpochNanos() - startEpochNanos);
     telemetryBuilder.setSuccess(getSuccess(span));
 
     String httpUrl = getHttpUrlFromServerSpan(attributes);
@@ -617,15 +667,7 @@ public final class SpanDataMapper {
       telemetryBuilder.setUrl(httpUrl);
     }
 
-    Long httpStatusCode = attributes.get(SemanticAttributes.HTTP_STATUS_CODE);
-    if (httpStatusCode == null) {
-      httpStatusCode = attributes.get(SemanticAttributes.RPC_GRPC_STATUS_CODE);
-    }
-    if (httpStatusCode != null) {
-      telemetryBuilder.setResponseCode(Long.toString(httpStatusCode));
-    } else {
-      telemetryBuilder.setResponseCode("0");
-    }
+    telemetryBuilder.setResponseCode(getResponseCode(attributes));
 
     String locationIp = attributes.get(SemanticAttributes.HTTP_CLIENT_IP);
     if (locationIp == null) {
@@ -674,6 +716,14 @@ public final class SpanDataMapper {
     return telemetryBuilder.build();
   }
 
+  private static String getResponseCode(Attributes attributes) {
+    Long httpStatusCode = attributes.get(SemanticAttributes.HTTP_STATUS_CODE);
+    if (httpStatusCode == null) {
+      httpStatusCode = attributes.get(SemanticAttributes.RPC_GRPC_STATUS_CODE);
+    }
+    return httpStatusCode != null ? Long.toString(httpStatusCode) : "0";
+  }
+
   private boolean getSuccess(SpanData span) {
     switch (span.getStatus().getStatusCode()) {
       case ERROR:
@@ -854,13 +904,13 @@ public final class SpanDataMapper {
     setExtraAttributes(telemetryBuilder, span.getAttributes());
 
     // set exception-specific properties
-    telemetryBuilder.setExceptions(Exceptions.minimalParse(errorStack));
+    exceptionDetailsCache.setExceptions(telemetryBuilder, errorStack);
 
     return telemetryBuilder.build();
   }
 
   private static void setTime(AbstractTelemetryBuilder telemetryBuilder, long epochNanos) {
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochNanos(epochNanos));
+    telemetryBuilder.setTime(epochNanos);
   }
 
   private static void setSampleRate(
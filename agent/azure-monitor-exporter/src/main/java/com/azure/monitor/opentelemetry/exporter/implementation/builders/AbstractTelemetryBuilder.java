@@ -24,7 +24,7 @@ package com.azure.monitor.opentelemetry.exporter.implementation.builders;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBase;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
-import java.time.OffsetDateTime;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.LayeredMap;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -41,6 +41,9 @@ public abstract class AbstractTelemetryBuilder {
 
   private final TelemetryItem telemetryItem;
 
+  @Nullable private LayeredMap.Defaults defaultProperties;
+  private boolean propertiesCreated;
+
   protected AbstractTelemetryBuilder(MonitorDomain data, String telemetryName, String baseType) {
 
     telemetryItem = new TelemetryItem();
@@ -55,8 +58,8 @@ public abstract class AbstractTelemetryBuilder {
     monitorBase.setBaseData(data);
   }
 
-  public void setTime(OffsetDateTime time) {
-    telemetryItem.setTime(time);
+  public void setTime(long epochNanos) {
+    telemetryItem.setTime(epochNanos);
   }
 
   public void setSampleRate(float sampleRate) {
@@ -76,6 +79,50 @@ public abstract class AbstractTelemetryBuilder {
     tags.put(key, value);
   }
 
+  // the defaults are shared with (not copied into) the item, so this should be called before
+  // adding any other tags
+  public void setDefaultTags(LayeredMap.Defaults defaults) {
+    if (defaults.isEmpty()) {
+      return;
+    }
+    Map<String, String> tags = telemetryItem.getTags();
+    if (tags == null) {
+      telemetryItem.setTags(new LayeredMap(defaults));
+    } else {
+      tags.putAll(defaults.getMap());
+    }
+  }
+
+  // the defaults are shared with (not copied into) the item, so this should be called before
+  // adding any other properties
+  public void setDefaultProperties(LayeredMap.Defaults defaults) {
+    if (defaults.isEmpty()) {
+      return;
+    }
+    if (propertiesCreated) {
+      getProperties().putAll(defaults.getMap());
+    } else {
+      defaultProperties = defaults;
+      // creates the layered properties map
+      getProperties();
+    }
+  }
+
+  // applies the same validation and truncation as addProperty(), so that the result can be passed
+  // to setDefaultProperties()
+  public static LayeredMap.Defaults createDefaultProperties(Map<String, String> properties) {
+    Map<String, String> validated = new HashMap<>();
+    for (Map.Entry<String, String> entry : properties.entrySet()) {
+      String key = entry.getKey();
+      String value = entry.getValue();
+      if (!key.isEmpty() && key.length() <= MAX_PROPERTY_KEY_LENGTH && value != null) {
+        validated.put(
+            key, TelemetryTruncation.truncatePropertyValue(value, MAX_PROPERTY_VALUE_LENGTH, key));
+      }
+    }
+    return LayeredMap.Defaults.of(validated);
+  }
+
   public void addProperty(@Nullable String key, @Nullable String value) {
     if (key == null || key.isEmpty() || key.length() > MAX_PROPERTY_KEY_LENGTH || value == null) {
       // TODO (trask) log
@@ -90,4 +137,10 @@ public abstract class AbstractTelemetryBuilder {
   }
 
   protected abstract Map<String, String> getProperties();
+
+  // used by subclasses when lazily creating the properties map
+  protected Map<String, String> newProperties() {
+    propertiesCreated = true;
+    return defaultProperties == null ? new HashMap<>() : new LayeredMap(defaultProperties);
+  }
 }
@@ -64,7 +64,7 @@ public final class EventTelemetryBuilder extends AbstractTelemetryBuilder {
   protected Map<String, String> getProperties() {
     Map<String, String> properties = data.getProperties();
     if (properties == null) {
-      properties = new HashMap<>();
+      properties = newProperties();
       data.setProperties(properties);
     }
     return properties;
@@ -0,0 +1,152 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.builders;
+
+import static java.util.Collections.singletonList;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryExceptionDetails;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+// the same exception tends to recur with the exact same stack trace, so rather than parsing (and
+// truncating) the stack trace each time, the parsed exception details are cached per stack trace
+// and shared between the telemetry items (which is fine since they are not modified once built)
+//
+// the cache key is a 64-bit hash of the stack trace (the same one that is sent as the
+// "StackTraceHash" custom dimension), so that the cache doesn't hold on to the stack traces, and
+// looking them up doesn't compare them with the cached ones (a collision is unlikely enough to not
+// be worth guarding against)
+public final class ExceptionDetailsCache {
+
+  private static final String STACK_TRACE_HASH = "StackTraceHash";
+
+  private final Map<Long, CachedDetails> cache;
+  private final long fullStackIntervalNanos;
+  private final Clock clock;
+
+  public ExceptionDetailsCache(int maxSize) {
+    this(maxSize, 0, Clock.getDefault());
+  }
+
+  // when fullStackIntervalNanos is greater than 0, each distinct stack trace is only sent in full
+  // once per interval, and in between only its first line is sent, along with a reference to the
+  // full stack trace (both are sent with the same "StackTraceHash" custom dimension)
+  public ExceptionDetailsCache(int maxSize, long fullStackIntervalNanos, Clock clock) {
+    this.cache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<Long, CachedDetails>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<Long, CachedDetails> eldest) {
+                return size() > maxSize;
+              }
+            });
+    this.fullStackIntervalNanos = fullStackIntervalNanos;
+    this.clock = clock;
+  }
+
+  public void setExceptions(ExceptionTelemetryBuilder telemetryBuilder, String stack) {
+    CachedDetails cachedDetails =
+        cache.computeIfAbsent(hash(stack), key -> new CachedDetails(stack, key));
+    if (fullStackIntervalNanos <= 0) {
+      telemetryBuilder.setExceptions(cachedDetails.details);
+      return;
+    }
+    telemetryBuilder.addProperty(STACK_TRACE_HASH, cachedDetails.hash);
+    if (cachedDetails.shouldSendFullStack(clock.nanoTime(), fullStackIntervalNanos)) {
+      telemetryBuilder.setExceptions(cachedDetails.details);
+    } else {
+      telemetryBuilder.setExceptions(cachedDetails.getReferenceDetails());
+    }
+  }
+
+  // visible for testing
+  int size() {
+    return cache.size();
+  }
+
+  private static class CachedDetails {
+
+    private final List<ExceptionDetailBuilder> details;
+    private final String hash;
+
+    @Nullable private List<ExceptionDetailBuilder> referenceDetails;
+    private boolean fullStackSent;
+    private long fullStackSentNanos;
+
+    private CachedDetails(String stack, long hash) {
+      details = Exceptions.minimalParse(stack);
+      this.hash = Long.toHexString(hash);
+    }
+
+    private synchronized boolean shouldSendFullStack(long now, long fullStackIntervalNanos) {
+      if (fullStackSent && now - fullStackSentNanos < fullStackIntervalNanos) {
+        return false;
+      }
+      fullStackSent = true;
+      fullStackSentNanos = now;
+      return true;
+    }
+
+    private synchronized List<ExceptionDetailBuilder> getReferenceDetails() {
+      if (referenceDetails == null) {
+        TelemetryExceptionDetails full = details.get(0).build();
+        ExceptionDetailBuilder builder = new ExceptionDetailBuilder();
+        builder.setTypeName(full.getTypeName());
+        builder.setMessage(full.getMessage());
+        builder.setHasFullStack(false);
+        builder.setStack(
+            firstLine(full.getStack())
+                + "\n\t... (see the full stack trace sent earlier with "
+                + STACK_TRACE_HASH
+                + " "
+                + hash
+                + ")");
+        referenceDetails = singletonList(builder);
+      }
+      return referenceDetails;
+    }
+
+    private static String firstLine(String stack) {
+      for (int i = 0; i < stack.length(); i++) {
+        char c = stack.charAt(i);
+        if (c == '\r' || c == '\n') {
+          return stack.substring(0, i);
+        }
+      }
+      return stack;
+    }
+  }
+
+  // 64-bit FNV-1a, since String.hashCode() is too collision prone to identify a stack trace
+  private static long hash(String stack) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < stack.length(); i++) {
+      hash ^= stack.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+}
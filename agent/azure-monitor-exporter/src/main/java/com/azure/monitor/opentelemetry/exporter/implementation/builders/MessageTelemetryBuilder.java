@@ -73,7 +73,7 @@ public final class MessageTelemetryBuilder extends AbstractTelemetryBuilder {
   protected Map<String, String> getProperties() {
     Map<String, String> properties = data.getProperties();
     if (properties == null) {
-      properties = new HashMap<>();
+      properties = newProperties();
       data.setProperties(properties);
     }
     return properties;
@@ -25,7 +25,6 @@ import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricData
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -46,7 +45,7 @@ public final class MetricTelemetryBuilder extends AbstractTelemetryBuilder {
     point.setValue(value);
     telemetryBuilder.setMetricPoint(point);
 
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromNow());
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromNow());
 
     return telemetryBuilder;
   }
@@ -71,7 +70,7 @@ public final class MetricTelemetryBuilder extends AbstractTelemetryBuilder {
   protected Map<String, String> getProperties() {
     Map<String, String> properties = data.getProperties();
     if (properties == null) {
-      properties = new HashMap<>();
+      properties = newProperties();
       data.setProperties(properties);
     }
     return properties;
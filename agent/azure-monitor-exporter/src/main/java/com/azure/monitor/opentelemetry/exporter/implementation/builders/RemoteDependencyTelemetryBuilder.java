@@ -71,8 +71,8 @@ public final class RemoteDependencyTelemetryBuilder extends AbstractTelemetryBui
     data.setTarget(truncateTelemetry(target, MAX_TARGET_NAME_LENGTH, "RemoteDependency.target"));
   }
 
-  public void setDuration(String duration) {
-    data.setDuration(duration);
+  public void setDuration(long durationNanos) {
+    data.setDuration(durationNanos);
   }
 
   public void setSuccess(Boolean success) {
@@ -96,7 +96,7 @@ public final class RemoteDependencyTelemetryBuilder extends AbstractTelemetryBui
   protected Map<String, String> getProperties() {
     Map<String, String> properties = data.getProperties();
     if (properties == null) {
-      properties = new HashMap<>();
+      properties = newProperties();
       data.setProperties(properties);
     }
     return properties;
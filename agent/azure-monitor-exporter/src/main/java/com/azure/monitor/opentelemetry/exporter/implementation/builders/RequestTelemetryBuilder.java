@@ -53,8 +53,8 @@ public final class RequestTelemetryBuilder extends AbstractTelemetryBuilder {
     data.setName(truncateTelemetry(name, MAX_NAME_LENGTH, "Request.name"));
   }
 
-  public void setDuration(String duration) {
-    data.setDuration(duration);
+  public void setDuration(long durationNanos) {
+    data.setDuration(durationNanos);
   }
 
   public void setSuccess(boolean success) {
@@ -91,7 +91,7 @@ public final class RequestTelemetryBuilder extends AbstractTelemetryBuilder {
   protected Map<String, String> getProperties() {
     Map<String, String> properties = data.getProperties();
     if (properties == null) {
-      properties = new HashMap<>();
+      properties = newProperties();
       data.setProperties(properties);
     }
     return properties;
@@ -59,6 +59,11 @@ class LocalFileCache {
     return persistedFilesCache.poll();
   }
 
+  // this is linear in the number of files, which is bounded by the disk persistence quota
+  int size() {
+    return persistedFilesCache.size();
+  }
+
   // only used by tests
   Queue<File> getPersistedFilesCache() {
     return persistedFilesCache;
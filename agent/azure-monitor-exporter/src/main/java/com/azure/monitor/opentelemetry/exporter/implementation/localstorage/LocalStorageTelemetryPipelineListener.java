@@ -28,10 +28,13 @@ import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.Telemetr
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.StatusCode;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LocalStorageTelemetryPipelineListener implements TelemetryPipelineListener {
 
+  private final LocalFileCache localFileCache;
   private final LocalFileWriter localFileWriter;
   private final LocalFileSender localFileSender;
   private final LocalFilePurger localFilePurger;
@@ -46,7 +49,7 @@ public class LocalStorageTelemetryPipelineListener implements TelemetryPipelineL
       LocalStorageStats stats,
       boolean suppressWarnings) { // used to suppress warnings from statsbeat
 
-    LocalFileCache localFileCache = new LocalFileCache(telemetryFolder);
+    localFileCache = new LocalFileCache(telemetryFolder);
     LocalFileLoader loader =
         new LocalFileLoader(localFileCache, telemetryFolder, stats, suppressWarnings);
     localFileWriter =
@@ -73,6 +76,17 @@ public class LocalStorageTelemetryPipelineListener implements TelemetryPipelineL
     localFileWriter.writeToDisk(request.getInstrumentationKey(), request.getTelemetry());
   }
 
+  // used to write telemetry directly to local storage without attempting to send it first,
+  // it will then be sent later on by the LocalFileSender
+  public void writeToDisk(String instrumentationKey, List<ByteBuffer> telemetry) {
+    localFileWriter.writeToDisk(instrumentationKey, telemetry);
+  }
+
+  // the number of files that are waiting on disk to be sent
+  public int getBacklogFileCount() {
+    return localFileCache.size();
+  }
+
   @Override
   public CompletableResultCode shutdown() {
     // guarding against multiple shutdown calls because this can get called if statsbeat shuts down
@@ -22,7 +22,10 @@
 package com.azure.monitor.opentelemetry.exporter.implementation.models;
 
 import com.azure.core.annotation.Fluent;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedDuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.util.Map;
 
 /**
@@ -50,9 +53,13 @@ public final class RequestData extends MonitorDomain {
   /*
    * Request duration in format: DD.HH:MM:SS.MMMMMM. Must be less than 1000
    * days.
+   *
+   * Held as nanos and only formatted while being serialized (see
+   * getDurationForSerialization()).
    */
   @JsonProperty(value = "duration", required = true)
-  private String duration;
+  @JsonDeserialize(using = FormattedDuration.Deserializer.class)
+  private long duration;
 
   /*
    * Indication of successful or unsuccessful call.
@@ -138,27 +145,34 @@ public final class RequestData extends MonitorDomain {
   }
 
   /**
-   * Get the duration property: Request duration in format: DD.HH:MM:SS.MMMMMM. Must be less than
-   * 1000 days.
+   * Get the duration property: Request duration, serialized in format: DD.HH:MM:SS.MMMMMM. Must be
+   * less than 1000 days.
    *
-   * @return the duration value.
+   * @return the duration value, in nanoseconds.
    */
-  public String getDuration() {
+  public long getDuration() {
     return this.duration;
   }
 
   /**
-   * Set the duration property: Request duration in format: DD.HH:MM:SS.MMMMMM. Must be less than
-   * 1000 days.
+   * Set the duration property: Request duration, serialized in format: DD.HH:MM:SS.MMMMMM. Must be
+   * less than 1000 days.
    *
-   * @param duration the duration value to set.
+   * @param duration the duration value to set, in nanoseconds.
    * @return the RequestData object itself.
    */
-  public RequestData setDuration(String duration) {
+  public RequestData setDuration(long duration) {
     this.duration = duration;
     return this;
   }
 
+  // the duration is serialized through the data itself, so that it doesn't need to be boxed
+  @JsonProperty(value = "duration")
+  @JsonSerialize(using = FormattedDuration.RequestDataDurationSerializer.class)
+  private RequestData getDurationForSerialization() {
+    return this;
+  }
+
   /**
    * Get the success property: Indication of successful or unsuccessful call.
    *
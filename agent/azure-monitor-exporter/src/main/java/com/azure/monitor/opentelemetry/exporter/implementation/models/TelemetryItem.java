@@ -22,8 +22,10 @@
 package com.azure.monitor.opentelemetry.exporter.implementation.models;
 
 import com.azure.core.annotation.Fluent;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.time.OffsetDateTime;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.util.Map;
 
 /** System variables for a telemetry item. */
@@ -53,9 +55,13 @@ public final class TelemetryItem {
    * handle this, i.e. managed code consumers should not use format 'O' for
    * parsing as it specifies a fixed length. Example:
    * 2009-06-15T13:45:30.0000000Z.
+   *
+   * Held as epoch nanos and only formatted while being serialized (see
+   * getTimeForSerialization()).
    */
   @JsonProperty(value = "time", required = true)
-  private OffsetDateTime time;
+  @JsonDeserialize(using = FormattedTime.Deserializer.class)
+  private long time;
 
   /*
    * Sampling rate used in application. This telemetry item represents 100 /
@@ -140,9 +146,9 @@ public final class TelemetryItem {
    * handle this, i.e. managed code consumers should not use format 'O' for parsing as it specifies
    * a fixed length. Example: 2009-06-15T13:45:30.0000000Z.
    *
-   * @return the time value.
+   * @return the time value, in nanoseconds since the epoch (0 if it has not been set).
    */
-  public OffsetDateTime getTime() {
+  public long getTime() {
     return this.time;
   }
 
@@ -155,14 +161,21 @@ public final class TelemetryItem {
    * handle this, i.e. managed code consumers should not use format 'O' for parsing as it specifies
    * a fixed length. Example: 2009-06-15T13:45:30.0000000Z.
    *
-   * @param time the time value to set.
+   * @param time the time value to set, in nanoseconds since the epoch.
    * @return the TelemetryItem object itself.
    */
-  public TelemetryItem setTime(OffsetDateTime time) {
+  public TelemetryItem setTime(long time) {
     this.time = time;
     return this;
   }
 
+  // the time is serialized through the item itself, so that it doesn't need to be boxed
+  @JsonProperty(value = "time")
+  @JsonSerialize(using = FormattedTime.TelemetryItemTimeSerializer.class)
+  private TelemetryItem getTimeForSerialization() {
+    return this;
+  }
+
   /**
    * Get the sampleRate property: Sampling rate used in application. This telemetry item represents
    * 100 / sampleRate actual telemetry items.
@@ -0,0 +1,119 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.pipeline;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// self metrics of an export queue, these are updated on the hot path so they are only striped
+// counters (no locks, and no per-item timestamps, encoding and sending are timed once per batch)
+public final class ExportStats {
+
+  private final LongAdder droppedItemCount = new LongAdder();
+
+  private final LongAdder encodedBatchCount = new LongAdder();
+  private final LongAdder encodedItemCount = new LongAdder();
+  private final LongAdder encodeTimeNanos = new LongAdder();
+  private final LongAdder uncompressedBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+
+  private final LongAdder sendCount = new LongAdder();
+  private final LongAdder sendFailureCount = new LongAdder();
+  private final LongAdder sendTimeNanos = new LongAdder();
+
+  // gauges are only read on demand
+  private volatile IntSupplier queueDepth = () -> 0;
+  private volatile IntSupplier localStorageBacklogFileCount = () -> 0;
+
+  public void recordDroppedItem() {
+    droppedItemCount.increment();
+  }
+
+  void recordEncode(int itemCount, long nanos, long uncompressed, long compressed) {
+    encodedBatchCount.increment();
+    encodedItemCount.add(itemCount);
+    encodeTimeNanos.add(nanos);
+    uncompressedBytes.add(uncompressed);
+    compressedBytes.add(compressed);
+  }
+
+  void recordSend(long nanos, boolean success) {
+    sendCount.increment();
+    if (!success) {
+      sendFailureCount.increment();
+    }
+    sendTimeNanos.add(nanos);
+  }
+
+  public void setQueueDepthSupplier(IntSupplier queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  public void setLocalStorageBacklogFileCountSupplier(IntSupplier localStorageBacklogFileCount) {
+    this.localStorageBacklogFileCount = localStorageBacklogFileCount;
+  }
+
+  public int getQueueDepth() {
+    return queueDepth.getAsInt();
+  }
+
+  public long getDroppedItemCount() {
+    return droppedItemCount.sum();
+  }
+
+  public long getEncodedBatchCount() {
+    return encodedBatchCount.sum();
+  }
+
+  public long getEncodedItemCount() {
+    return encodedItemCount.sum();
+  }
+
+  public long getEncodeTimeNanos() {
+    return encodeTimeNanos.sum();
+  }
+
+  public long getUncompressedBytes() {
+    return uncompressedBytes.sum();
+  }
+
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+
+  public long getSendCount() {
+    return sendCount.sum();
+  }
+
+  public long getSendFailureCount() {
+    return sendFailureCount.sum();
+  }
+
+  // the time until the send completes, which for the ingestion service includes the http latency
+  public long getSendTimeNanos() {
+    return sendTimeNanos.sum();
+  }
+
+  public int getLocalStorageBacklogFileCount() {
+    return localStorageBacklogFileCount.getAsInt();
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.pipeline;
+
+import static com.azure.monitor.opentelemetry.exporter.implementation.utils.AzureMonitorMsgId.FILE_EXPORT_ERROR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.logging.OperationLogger;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.ThreadPoolUtils;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Writes the encoded telemetry batches to rotating files in a local directory, instead of sending
+ * them to the ingestion service (e.g. so that a node agent can ship them).
+ *
+ * <p>Each batch is written exactly as it was encoded (a gzip member of newline delimited json),
+ * followed by a gzip member holding a single newline, so that each file decompresses to newline
+ * delimited json (gzip readers concatenate all members of a file).
+ *
+ * <p>The file that is being written to ends with ".ndjson.gz.tmp", and is renamed to end with
+ * ".ndjson.gz" once it reaches the maximum file size or the rotation interval, so that only
+ * complete files are picked up. Only the most recent {@code maxFiles} complete files are kept.
+ *
+ * <p>Several processes can write to the same directory (e.g. pods sharing a volume on the same
+ * node). The file names contain a random id of the writing process, so that they never collide,
+ * and each process only deletes its own files. Files that were left incomplete by a process that
+ * stopped are completed by another one once they have not been written to for two rotation
+ * intervals.
+ */
+public class TelemetryFileSink {
+
+  static final String FILE_EXTENSION = ".ndjson.gz";
+  static final String TEMP_FILE_EXTENSION = FILE_EXTENSION + ".tmp";
+
+  private static final byte[] NEWLINE_GZIP_MEMBER = gzip("\n");
+
+  private final File directory;
+  private final long maxFileSizeBytes;
+  private final long rotationIntervalNanos;
+  private final int maxFiles;
+  private final Clock clock;
+  // distinguishes the files of this process from the files of other processes that write to the
+  // same directory
+  private final String processId = newProcessId();
+
+  private final OperationLogger operationLogger =
+      new OperationLogger(TelemetryFileSink.class, "Writing telemetry to local files");
+
+  // guarded by this
+  @Nullable private FileChannel channel;
+  // guarded by this
+  @Nullable private File currentFile;
+  // guarded by this
+  private long currentFileSize;
+  // guarded by this
+  private long currentFileStartNanos;
+  // guarded by this, used to keep file names unique (and ordered) within the same millisecond
+  private int sequence;
+
+  public static TelemetryFileSink create(
+      File directory, long maxFileSizeBytes, long rotationIntervalSeconds, int maxFiles) {
+    TelemetryFileSink fileSink =
+        new TelemetryFileSink(
+            directory,
+            maxFileSizeBytes,
+            TimeUnit.SECONDS.toNanos(rotationIntervalSeconds),
+            maxFiles,
+            Clock.getDefault());
+    // so that a file is rotated on time even if no more telemetry is written to it
+    ScheduledExecutorService scheduledExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            ThreadPoolUtils.createDaemonThreadFactory(TelemetryFileSink.class));
+    scheduledExecutor.scheduleWithFixedDelay(fileSink::rotateIfExpired, 1, 1, TimeUnit.SECONDS);
+    return fileSink;
+  }
+
+  // visible for testing
+  TelemetryFileSink(
+      File directory,
+      long maxFileSizeBytes,
+      long rotationIntervalNanos,
+      int maxFiles,
+      Clock clock) {
+    this.directory = directory;
+    this.maxFileSizeBytes = maxFileSizeBytes;
+    this.rotationIntervalNanos = rotationIntervalNanos;
+    this.maxFiles = maxFiles;
+    this.clock = clock;
+    completeLeftoverFiles();
+  }
+
+  /** Appends the encoded batch to the current file, rotating the file first if needed. */
+  public boolean write(List<ByteBuffer> telemetry) {
+    int size = NEWLINE_GZIP_MEMBER.length;
+    for (ByteBuffer byteBuffer : telemetry) {
+      size += byteBuffer.remaining();
+    }
+    synchronized (this) {
+      try {
+        // a batch that is larger than the maximum file size still goes to its own file
+        if (channel != null
+            && (currentFileSize + size > maxFileSizeBytes || isExpired(clock.nanoTime()))) {
+          rotate();
+        }
+        if (channel == null) {
+          openNewFile();
+        }
+        for (ByteBuffer byteBuffer : telemetry) {
+          // duplicate so that the batch can still be read by others (e.g. on failure)
+          writeFully(channel, byteBuffer.duplicate());
+        }
+        writeFully(channel, ByteBuffer.wrap(NEWLINE_GZIP_MEMBER));
+        currentFileSize += size;
+      } catch (IOException e) {
+        operationLogger.recordFailure(
+            "Error writing telemetry to local file in directory: " + directory.getAbsolutePath(),
+            e,
+            FILE_EXPORT_ERROR);
+        // start over with a new file, since this one may now end with a partial batch
+        completeAfterFailure();
+        return false;
+      }
+    }
+    operationLogger.recordSuccess();
+    return true;
+  }
+
+  /** Completes the current file (if any), so that it can be picked up right away. */
+  public synchronized void rotate() {
+    if (channel == null) {
+      return;
+    }
+    File tempFile = currentFile;
+    try {
+      channel.close();
+    } catch (IOException e) {
+      operationLogger.recordFailure(
+          "Error closing local file: " + tempFile.getAbsolutePath(), e, FILE_EXPORT_ERROR);
+    }
+    channel = null;
+    currentFile = null;
+    complete(tempFile);
+    completeLeftoverFiles();
+  }
+
+  // visible for testing
+  synchronized void rotateIfExpired() {
+    if (channel != null && isExpired(clock.nanoTime())) {
+      rotate();
+    }
+  }
+
+  // must be called while holding the lock
+  private boolean isExpired(long nanoTime) {
+    return nanoTime - currentFileStartNanos >= rotationIntervalNanos;
+  }
+
+  // must be called while holding the lock
+  @SuppressFBWarnings(
+      value = "SECPTI", // Potential Path Traversal
+      justification =
+          "The constructed file path cannot be controlled by an end user of the instrumented application")
+  private void openNewFile() throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory: " + directory.getAbsolutePath());
+    }
+    // zero padded so that the file names sort by creation time
+    String baseName =
+        String.format("%013d-%s-%06d", clock.now() / 1_000_000, processId, sequence);
+    sequence = (sequence + 1) % 1_000_000;
+    File file = new File(directory, baseName + TEMP_FILE_EXTENSION);
+    channel = openChannel(file);
+    currentFile = file;
+    currentFileSize = 0;
+    currentFileStartNanos = clock.nanoTime();
+  }
+
+  // visible for testing
+  FileChannel openChannel(File file) throws IOException {
+    // never truncates an existing file, even if it was somehow written by another process
+    return FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+  }
+
+  // must be called while holding the lock
+  private void completeAfterFailure() {
+    if (channel == null) {
+      return;
+    }
+    File tempFile = currentFile;
+    // the batches written before the failure have already been reported as written, so the file
+    // is cut back to the end of the last of them and completed, instead of being deleted
+    try {
+      channel.truncate(currentFileSize);
+    } catch (IOException e) {
+      // a partial batch at the end of the file does not prevent reading the batches before it
+      operationLogger.recordFailure(
+          "Error truncating local file: " + tempFile.getAbsolutePath(), e, FILE_EXPORT_ERROR);
+    }
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+      // the writes have already reached the file
+    }
+    channel = null;
+    currentFile = null;
+    if (currentFileSize == 0) {
+      if (!tempFile.delete()) {
+        operationLogger.recordFailure(
+            "Unable to delete local file: " + tempFile.getAbsolutePath(), FILE_EXPORT_ERROR);
+      }
+      return;
+    }
+    complete(tempFile);
+    deleteOldFiles();
+  }
+
+  private void complete(File tempFile) {
+    String name = tempFile.getName();
+    String baseName = name.substring(0, name.length() - TEMP_FILE_EXTENSION.length());
+    File file = new File(directory, baseName + FILE_EXTENSION);
+    if (!tempFile.renameTo(file)) {
+      operationLogger.recordFailure(
+          "Unable to rename local file: " + tempFile.getAbsolutePath(), FILE_EXPORT_ERROR);
+    }
+  }
+
+  // files that were being written to when this or another process stopped, while the files that
+  // other processes are still writing to are rotated (and so modified) within the rotation interval
+  private void completeLeftoverFiles() {
+    long leftoverMillis = clock.now() / 1_000_000 - 2 * rotationIntervalNanos / 1_000_000;
+    for (File tempFile : listFiles(TEMP_FILE_EXTENSION)) {
+      if (!isOwnFile(tempFile) && tempFile.lastModified() < leftoverMillis) {
+        complete(tempFile);
+      }
+    }
+    deleteOldFiles();
+  }
+
+  // only the files of this process count towards maxFiles, since other processes that write to
+  // the same directory apply their own maxFiles to theirs
+  private void deleteOldFiles() {
+    List<File> files = listFiles(FILE_EXTENSION);
+    files.removeIf(file -> !isOwnFile(file));
+    // the file names start with the creation time, so this is oldest first
+    files.sort(Comparator.comparing(File::getName));
+    for (int i = 0; i < files.size() - maxFiles; i++) {
+      File file = files.get(i);
+      if (!file.delete() && file.exists()) {
+        operationLogger.recordFailure(
+            "Unable to delete local file: " + file.getAbsolutePath(), FILE_EXPORT_ERROR);
+      }
+    }
+  }
+
+  private boolean isOwnFile(File file) {
+    return file.getName().contains("-" + processId + "-");
+  }
+
+  private List<File> listFiles(String extension) {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(extension));
+    return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer byteBuffer) throws IOException {
+    while (byteBuffer.hasRemaining()) {
+      channel.write(byteBuffer);
+    }
+  }
+
+  @SuppressFBWarnings(
+      value = "SECPR", // Predictable pseudorandom number generator
+      justification = "Predictable random is ok for telling apart the files of each process")
+  private static String newProcessId() {
+    return String.format("%08x", ThreadLocalRandom.current().nextInt());
+  }
+
+  private static byte[] gzip(String value) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(value.getBytes(UTF_8));
+    } catch (IOException e) {
+      // not expected when writing to a byte array
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -31,7 +31,9 @@ import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -78,6 +80,7 @@ public class TelemetryItemExporter {
 
   private final TelemetryPipeline telemetryPipeline;
   private final TelemetryPipelineListener listener;
+  private final ExportStats stats;
 
   private final Set<CompletableResultCode> activeExportResults =
       Collections.newSetFromMap(new ConcurrentHashMap<>());
@@ -85,8 +88,18 @@ public class TelemetryItemExporter {
   // e.g. construct with diagnostic listener and local storage listener
   public TelemetryItemExporter(
       TelemetryPipeline telemetryPipeline, TelemetryPipelineListener listener) {
+    this(telemetryPipeline, listener, new ExportStats());
+  }
+
+  public TelemetryItemExporter(
+      TelemetryPipeline telemetryPipeline, TelemetryPipelineListener listener, ExportStats stats) {
     this.telemetryPipeline = telemetryPipeline;
     this.listener = listener;
+    this.stats = stats;
+  }
+
+  public ExportStats getStats() {
+    return stats;
   }
 
   public CompletableResultCode send(List<TelemetryItem> telemetryItems) {
@@ -143,10 +156,15 @@ public class TelemetryItemExporter {
       encodeBatchOperationLogger.recordFailure(t.getMessage(), t);
       return CompletableResultCode.ofFailure();
     }
-    return telemetryPipeline.send(byteBuffers, instrumentationKey, listener);
+    long startNanos = System.nanoTime();
+    CompletableResultCode result =
+        telemetryPipeline.send(byteBuffers, instrumentationKey, listener);
+    result.whenComplete(() -> stats.recordSend(System.nanoTime() - startNanos, result.isSuccess()));
+    return result;
   }
 
-  List<ByteBuffer> encode(List<TelemetryItem> telemetryItems) throws IOException {
+  // also used to encode telemetry items that are spilled straight to local storage
+  public List<ByteBuffer> encode(List<TelemetryItem> telemetryItems) throws IOException {
 
     if (logger.isDebugEnabled()) {
       StringWriter debug = new StringWriter();
@@ -156,9 +174,11 @@ public class TelemetryItemExporter {
       logger.debug("sending telemetry to ingestion service:\n{}", debug);
     }
 
+    long startNanos = System.nanoTime();
     ByteBufferOutputStream out = new ByteBufferOutputStream(byteBufferPool);
+    CountingOutputStream uncompressed = new CountingOutputStream(new GZIPOutputStream(out));
 
-    try (JsonGenerator jg = mapper.createGenerator(new GZIPOutputStream(out))) {
+    try (JsonGenerator jg = mapper.createGenerator(uncompressed)) {
       writeTelemetryItems(jg, telemetryItems);
     } catch (IOException e) {
       byteBufferPool.offer(out.getByteBuffers());
@@ -168,9 +188,13 @@ public class TelemetryItemExporter {
     out.close(); // closing ByteBufferOutputStream is a no-op, but this line makes LGTM happy
 
     List<ByteBuffer> byteBuffers = out.getByteBuffers();
+    long compressedBytes = 0;
     for (ByteBuffer byteBuffer : byteBuffers) {
       byteBuffer.flip();
+      compressedBytes += byteBuffer.remaining();
     }
+    stats.recordEncode(
+        telemetryItems.size(), System.nanoTime() - startNanos, uncompressed.count, compressedBytes);
     return byteBuffers;
   }
 
@@ -181,4 +205,26 @@ public class TelemetryItemExporter {
       mapper.writeValue(jg, telemetryItem);
     }
   }
+
+  // jackson writes through its own buffer, so counting adds only one addition per flushed buffer
+  private static class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
 }
@@ -36,6 +36,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import reactor.core.publisher.Mono;
 
 public class TelemetryPipeline {
@@ -43,8 +44,10 @@ public class TelemetryPipeline {
   // Based on Stamp specific redirects design doc
   private static final int MAX_REDIRECTS = 10;
 
-  private final HttpPipeline pipeline;
+  @Nullable private final HttpPipeline pipeline;
   private final Supplier<URL> endpoint;
+  // when set, the telemetry is written to local files instead of being sent over http
+  @Nullable private final TelemetryFileSink fileSink;
 
   // key is instrumentationKey, value is redirectUrl
   private final Map<String, URL> redirectCache =
@@ -59,11 +62,27 @@ public class TelemetryPipeline {
   public TelemetryPipeline(HttpPipeline pipeline, Supplier<URL> endpoint) {
     this.pipeline = pipeline;
     this.endpoint = endpoint;
+    fileSink = null;
+  }
+
+  public TelemetryPipeline(TelemetryFileSink fileSink) {
+    pipeline = null;
+    // not used, since there is no request being sent
+    endpoint = () -> null;
+    this.fileSink = fileSink;
   }
 
   public CompletableResultCode send(
       List<ByteBuffer> telemetry, String instrumentationKey, TelemetryPipelineListener listener) {
 
+    if (fileSink != null) {
+      // failures are logged by the file sink, and there is no point in passing them to the
+      // listener, since there is nothing to retry
+      return fileSink.write(telemetry)
+          ? CompletableResultCode.ofSuccess()
+          : CompletableResultCode.ofFailure();
+    }
+
     URL url = redirectCache.computeIfAbsent(instrumentationKey, k -> defaultUrl());
     TelemetryPipelineRequest request =
         new TelemetryPipelineRequest(url, instrumentationKey, telemetry);
@@ -40,6 +40,11 @@ public class QuickPulse {
 
   private volatile QuickPulseDataCollector collector;
 
+  // live metrics can be paused at runtime (e.g. to reduce the overhead during an incident), in
+  // which case the telemetry is no longer collected, but the connection to the live metrics service
+  // is kept, so that it can be resumed right away
+  private volatile boolean paused;
+
   public static QuickPulse create(
       HttpPipeline httpPipeline,
       Supplier<URL> endpointUrl,
@@ -75,15 +80,25 @@ public class QuickPulse {
   }
 
   public boolean isEnabled() {
-    return collector.isEnabled();
+    QuickPulseDataCollector collector = this.collector;
+    return !paused && collector != null && collector.isEnabled();
   }
 
   public void add(TelemetryItem telemetryItem) {
-    if (collector != null) {
+    QuickPulseDataCollector collector = this.collector;
+    if (!paused && collector != null) {
       collector.add(telemetryItem);
     }
   }
 
+  public boolean isPaused() {
+    return paused;
+  }
+
+  public void setPaused(boolean paused) {
+    this.paused = paused;
+  }
+
   private void initialize(
       HttpPipeline httpPipeline,
       Supplier<URL> endpointUrl,
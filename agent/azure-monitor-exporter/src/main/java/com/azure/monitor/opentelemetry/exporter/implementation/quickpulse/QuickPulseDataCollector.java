@@ -21,6 +21,8 @@
 
 package com.azure.monitor.opentelemetry.exporter.implementation.quickpulse;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.RemoteDependencyData;
@@ -156,7 +158,7 @@ final class QuickPulseDataCollector {
     if (counters == null) {
       return;
     }
-    long durationMillis = parseDurationToMillis(telemetry.getDuration());
+    long durationMillis = NANOSECONDS.toMillis(telemetry.getDuration());
     counters.rddsAndDuations.addAndGet(Counters.encodeCountAndDuration(itemCount, durationMillis));
     Boolean success = telemetry.isSuccess();
     if (success != null && !success) { // success should not be null
@@ -226,7 +228,7 @@ final class QuickPulseDataCollector {
     if (counters == null) {
       return;
     }
-    long durationMillis = parseDurationToMillis(requestTelemetry.getDuration());
+    long durationMillis = NANOSECONDS.toMillis(requestTelemetry.getDuration());
     counters.requestsAndDurations.addAndGet(
         QuickPulseDataCollector.Counters.encodeCountAndDuration(itemCount, durationMillis));
     if (!requestTelemetry.isSuccess()) {
@@ -264,72 +266,6 @@ final class QuickPulseDataCollector {
     return aggregatedProperties;
   }
 
-  // TODO (trask) optimization: move live metrics request capture to OpenTelemetry layer so don't
-  // have to parse String duration
-  // visible for testing
-  static long parseDurationToMillis(String duration) {
-    // format is DD.HH:MM:SS.MMMMMM
-    return startingAtDaysOrHours(duration);
-  }
-
-  private static long startingAtDaysOrHours(String duration) {
-    int i = 0;
-    char c = duration.charAt(i++);
-    long daysOrHours = charToInt(c);
-
-    c = duration.charAt(i++);
-    while (c != ':' && c != '.') {
-      daysOrHours = 10 * daysOrHours + charToInt(c);
-      c = duration.charAt(i++);
-    }
-    if (c == ':') {
-      // was really hours
-      return startingAtMinutes(duration, i, daysOrHours);
-    } else {
-      return startingAtHours(duration, i, daysOrHours);
-    }
-  }
-
-  private static long startingAtHours(String duration, int i, long runningTotalInDays) {
-    char c1 = duration.charAt(i++);
-    char c2 = duration.charAt(i++);
-    int hours = 10 * charToInt(c1) + charToInt(c2);
-    return startingAtMinutes(duration, i + 1, 24 * runningTotalInDays + hours);
-  }
-
-  private static long startingAtMinutes(String duration, int i, long runningTotalInHours) {
-    char c1 = duration.charAt(i++);
-    char c2 = duration.charAt(i++);
-    int minutes = 10 * charToInt(c1) + charToInt(c2);
-    // next char must be ':'
-    return startingAtSeconds(duration, i + 1, 60 * runningTotalInHours + minutes);
-  }
-
-  private static long startingAtSeconds(String duration, int i, long runningTotalInMinutes) {
-    char c1 = duration.charAt(i++);
-    char c2 = duration.charAt(i++);
-    int seconds = 10 * charToInt(c1) + charToInt(c2);
-    return startingAtMicros(duration, i + 1, 60 * runningTotalInMinutes + seconds);
-  }
-
-  private static long startingAtMicros(String duration, int i, long runningTotalInSeconds) {
-    int millis = 0;
-    // only care about milliseconds
-    for (int j = i; j < i + 3; j++) {
-      char c = duration.charAt(j);
-      millis = 10 * millis + charToInt(c);
-    }
-    return 1000 * runningTotalInSeconds + millis;
-  }
-
-  private static int charToInt(char c) {
-    int x = c - '0';
-    if (x < 0 || x > 9) {
-      throw new AssertionError("Unexpected char '" + c + "'");
-    }
-    return x;
-  }
-
   class FinalCounters {
 
     final int exceptions;
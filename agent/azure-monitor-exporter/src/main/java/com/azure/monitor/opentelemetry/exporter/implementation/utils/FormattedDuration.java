@@ -23,10 +23,24 @@ package com.azure.monitor.opentelemetry.exporter.implementation.utils;
 
 import static java.util.concurrent.TimeUnit.DAYS;
 import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RemoteDependencyData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+
+// request and dependency durations are carried around as nanos, and only formatted (as
+// [D.]HH:MM:SS.ffffff) while being written to the json stream
 public final class FormattedDuration {
 
   private static final long NANOSECONDS_PER_DAY = DAYS.toNanos(1);
@@ -34,11 +48,28 @@ public final class FormattedDuration {
   private static final long NANOSECONDS_PER_MINUTE = MINUTES.toNanos(1);
   private static final long NANOSECONDS_PER_SECOND = SECONDS.toNanos(1);
 
-  private static final ThreadLocal<StringBuilder> reusableStringBuilder =
-      ThreadLocal.withInitial(StringBuilder::new);
+  // up to 6 digits of days (Long.MAX_VALUE nanos is ~106751 days), then ".HH:MM:SS.ffffff"
+  private static final int MAX_LENGTH = 6 + 16;
+
+  private static final ThreadLocal<char[]> reusableBuffer =
+      ThreadLocal.withInitial(() -> new char[MAX_LENGTH]);
 
   public static String fromNanos(long durationNanos) {
-    long remainingNanos = durationNanos;
+    char[] buffer = reusableBuffer.get();
+    int length = format(buffer, durationNanos);
+    return new String(buffer, 0, length);
+  }
+
+  public static void writeTo(JsonGenerator generator, long durationNanos) throws IOException {
+    char[] buffer = reusableBuffer.get();
+    int length = format(buffer, durationNanos);
+    generator.writeString(buffer, 0, length);
+  }
+
+  // writes the formatted duration into the buffer and returns its length
+  private static int format(char[] buffer, long durationNanos) {
+    // negative durations can come from clock adjustments between start and end
+    long remainingNanos = Math.max(durationNanos, 0);
 
     long days = remainingNanos / NANOSECONDS_PER_DAY;
     remainingNanos = remainingNanos % NANOSECONDS_PER_DAY;
@@ -52,55 +83,157 @@ public final class FormattedDuration {
     long seconds = remainingNanos / NANOSECONDS_PER_SECOND;
     remainingNanos = remainingNanos % NANOSECONDS_PER_SECOND;
 
-    // TODO (trask) optimization: even better than reusing string builder would be to write this
-    //  directly to json stream during json serialization
-    StringBuilder sb = reusableStringBuilder.get();
-    sb.setLength(0);
+    int i = 0;
+    if (days > 0) {
+      int dayDigits = digitCount(days);
+      writeDigits(buffer, i, dayDigits, days);
+      i += dayDigits;
+      buffer[i++] = '.';
+    }
+    writeDigits(buffer, i, 2, hours);
+    buffer[i + 2] = ':';
+    writeDigits(buffer, i + 3, 2, minutes);
+    buffer[i + 5] = ':';
+    writeDigits(buffer, i + 6, 2, seconds);
+    buffer[i + 8] = '.';
+    // sub-microsecond precision is truncated
+    writeDigits(buffer, i + 9, 6, NANOSECONDS.toMicros(remainingNanos));
+    return i + 15;
+  }
 
-    appendDaysHoursMinutesSeconds(sb, days, hours, minutes, seconds);
-    appendMinSixDigits(sb, NANOSECONDS.toMicros(remainingNanos));
+  private static int digitCount(long value) {
+    int count = 1;
+    while (value >= 10) {
+      value /= 10;
+      count++;
+    }
+    return count;
+  }
 
-    return sb.toString();
+  private static void writeDigits(char[] buffer, int offset, int length, long value) {
+    for (int i = offset + length - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
   }
 
-  private static void appendDaysHoursMinutesSeconds(
-      StringBuilder sb, long days, long hours, long minutes, long seconds) {
-    if (days > 0) {
-      sb.append(days);
-      sb.append('.');
+  // inverse of fromNanos(), format is [DD.]HH:MM:SS.MMMMMM (sub-microsecond precision is lost)
+  public static long toNanos(String duration) {
+    long days = 0;
+    int i = 0;
+    int firstColon = duration.indexOf(':');
+    if (firstColon == -1) {
+      throw new IllegalArgumentException("Invalid duration: " + duration);
+    }
+    int dot = duration.indexOf('.');
+    if (dot != -1 && dot < firstColon) {
+      days = Long.parseLong(duration.substring(0, dot));
+      i = dot + 1;
+    }
+    long hours = parseDigits(duration, i, firstColon);
+    i = firstColon + 1;
+    int secondColon = duration.indexOf(':', i);
+    long minutes = parseDigits(duration, i, secondColon);
+    i = secondColon + 1;
+    int fractionDot = duration.indexOf('.', i);
+    if (fractionDot == -1) {
+      fractionDot = duration.length();
+    }
+    long seconds = parseDigits(duration, i, fractionDot);
+    long micros =
+        fractionDot < duration.length()
+            ? parseDigits(duration, fractionDot + 1, duration.length())
+            : 0;
+    return days * NANOSECONDS_PER_DAY
+        + hours * NANOSECONDS_PER_HOUR
+        + minutes * NANOSECONDS_PER_MINUTE
+        + seconds * NANOSECONDS_PER_SECOND
+        + MICROSECONDS.toNanos(micros);
+  }
+
+  private static long parseDigits(String str, int start, int end) {
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      char c = str.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new IllegalArgumentException("Invalid duration: " + str);
+      }
+      value = 10 * value + (c - '0');
     }
-    appendMinTwoDigits(sb, hours);
-    sb.append(':');
-    appendMinTwoDigits(sb, minutes);
-    sb.append(':');
-    appendMinTwoDigits(sb, seconds);
-    sb.append('.');
+    return value;
   }
 
-  private static void appendMinTwoDigits(StringBuilder sb, long value) {
-    if (value < 10) {
-      sb.append('0');
+  // serializes the duration of the request, instead of the duration itself, so that the nanos
+  // don't need to be boxed for every request (see RequestData.getDurationForSerialization())
+  public static final class RequestDataDurationSerializer extends StdSerializer<RequestData> {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestDataDurationSerializer() {
+      super(RequestData.class);
+    }
+
+    @Override
+    public void serialize(
+        RequestData requestData, JsonGenerator generator, SerializerProvider provider)
+        throws IOException {
+      writeTo(generator, requestData.getDuration());
+    }
+
+    // the data is polymorphic (see MonitorDomain), but the duration is not
+    @Override
+    public void serializeWithType(
+        RequestData requestData,
+        JsonGenerator generator,
+        SerializerProvider provider,
+        TypeSerializer typeSerializer)
+        throws IOException {
+      serialize(requestData, generator, provider);
     }
-    sb.append(value);
   }
 
-  private static void appendMinSixDigits(StringBuilder sb, long value) {
-    if (value < 100000) {
-      sb.append('0');
+  // same as RequestDataDurationSerializer, for dependencies
+  public static final class RemoteDependencyDataDurationSerializer
+      extends StdSerializer<RemoteDependencyData> {
+
+    private static final long serialVersionUID = 1L;
+
+    public RemoteDependencyDataDurationSerializer() {
+      super(RemoteDependencyData.class);
     }
-    if (value < 10000) {
-      sb.append('0');
+
+    @Override
+    public void serialize(
+        RemoteDependencyData dependencyData, JsonGenerator generator, SerializerProvider provider)
+        throws IOException {
+      writeTo(generator, dependencyData.getDuration());
     }
-    if (value < 1000) {
-      sb.append('0');
+
+    // the data is polymorphic (see MonitorDomain), but the duration is not
+    @Override
+    public void serializeWithType(
+        RemoteDependencyData dependencyData,
+        JsonGenerator generator,
+        SerializerProvider provider,
+        TypeSerializer typeSerializer)
+        throws IOException {
+      serialize(dependencyData, generator, provider);
     }
-    if (value < 100) {
-      sb.append('0');
+  }
+
+  // only used when reading telemetry back in (e.g. in tests)
+  public static final class Deserializer extends StdDeserializer<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    public Deserializer() {
+      super(Long.class);
     }
-    if (value < 10) {
-      sb.append('0');
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+      return toNanos(parser.getValueAsString());
     }
-    sb.append(value);
   }
 
   private FormattedDuration() {}
@@ -21,24 +21,141 @@
 
 package com.azure.monitor.opentelemetry.exporter.implementation.utils;
 
-import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
 import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 
+// telemetry timestamps are carried around as epoch nanos, and only formatted (as UTC ISO 8601,
+// e.g. 2009-06-15T13:45:30.1234567Z) while being written to the json stream
 public final class FormattedTime {
 
-  public static OffsetDateTime offSetDateTimeFromNow() {
-    return offSetDateTimeFromEpochMillis(System.currentTimeMillis());
+  private static final long NANOS_PER_SECOND = SECONDS.toNanos(1);
+
+  // yyyy-MM-ddTHH:mm:ss
+  private static final int PREFIX_LENGTH = 19;
+  // yyyy-MM-ddTHH:mm:ss.fffffffZ
+  private static final int LENGTH = PREFIX_LENGTH + 9;
+
+  // the date and time (up to the second) only needs to be re-computed once per second
+  private static final ThreadLocal<CachedPrefix> cachedPrefix =
+      ThreadLocal.withInitial(CachedPrefix::new);
+
+  public static long epochNanosFromNow() {
+    return epochNanosFromEpochMillis(System.currentTimeMillis());
+  }
+
+  public static long epochNanosFromEpochMillis(long epochMillis) {
+    return MILLISECONDS.toNanos(epochMillis);
+  }
+
+  public static String fromEpochNanos(long epochNanos) {
+    return new String(format(epochNanos), 0, LENGTH);
+  }
+
+  public static void writeTo(JsonGenerator generator, long epochNanos) throws IOException {
+    generator.writeString(format(epochNanos), 0, LENGTH);
+  }
+
+  // returns a thread local buffer holding the formatted time in its first LENGTH chars
+  private static char[] format(long epochNanos) {
+    long epochSecond = Math.floorDiv(epochNanos, NANOS_PER_SECOND);
+    // sub-second precision is in units of 100 nanoseconds (same as .NET ticks)
+    long ticks = Math.floorMod(epochNanos, NANOS_PER_SECOND) / 100;
+
+    CachedPrefix prefix = cachedPrefix.get();
+    char[] buffer = prefix.buffer;
+    if (epochSecond != prefix.epochSecond) {
+      writeDateTime(buffer, epochSecond);
+      prefix.epochSecond = epochSecond;
+    }
+    buffer[PREFIX_LENGTH] = '.';
+    writeDigits(buffer, PREFIX_LENGTH + 1, 7, ticks);
+    buffer[LENGTH - 1] = 'Z';
+    return buffer;
+  }
+
+  private static void writeDateTime(char[] buffer, long epochSecond) {
+    long epochDay = Math.floorDiv(epochSecond, 86400);
+    long secondOfDay = Math.floorMod(epochSecond, 86400);
+
+    // converts days since epoch to year/month/day in the proleptic Gregorian calendar, see
+    // http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+    long z = epochDay + 719468;
+    long era = Math.floorDiv(z, 146097);
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long shiftedMonth = (5 * dayOfYear + 2) / 153; // March is 0
+    long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+    writeDigits(buffer, 0, 4, year);
+    buffer[4] = '-';
+    writeDigits(buffer, 5, 2, month);
+    buffer[7] = '-';
+    writeDigits(buffer, 8, 2, day);
+    buffer[10] = 'T';
+    writeDigits(buffer, 11, 2, secondOfDay / 3600);
+    buffer[13] = ':';
+    writeDigits(buffer, 14, 2, (secondOfDay / 60) % 60);
+    buffer[16] = ':';
+    writeDigits(buffer, 17, 2, secondOfDay % 60);
   }
 
-  public static OffsetDateTime offSetDateTimeFromEpochNanos(long epochNanos) {
-    return Instant.ofEpochMilli(NANOSECONDS.toMillis(epochNanos)).atOffset(ZoneOffset.UTC);
+  private static void writeDigits(char[] buffer, int offset, int length, long value) {
+    for (int i = offset + length - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
   }
 
-  public static OffsetDateTime offSetDateTimeFromEpochMillis(long epochMillis) {
-    return Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC);
+  private static final class CachedPrefix {
+    private long epochSecond = Long.MIN_VALUE;
+    private final char[] buffer = new char[LENGTH];
+  }
+
+  // serializes the time of the item, instead of the time itself, so that the epoch nanos don't
+  // need to be boxed for every item (see TelemetryItem.getTimeForSerialization())
+  public static final class TelemetryItemTimeSerializer extends StdSerializer<TelemetryItem> {
+
+    private static final long serialVersionUID = 1L;
+
+    public TelemetryItemTimeSerializer() {
+      super(TelemetryItem.class);
+    }
+
+    @Override
+    public void serialize(
+        TelemetryItem telemetryItem, JsonGenerator generator, SerializerProvider provider)
+        throws IOException {
+      writeTo(generator, telemetryItem.getTime());
+    }
+  }
+
+  // only used when reading telemetry back in (e.g. in tests)
+  public static final class Deserializer extends StdDeserializer<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    public Deserializer() {
+      super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+      Instant instant = Instant.parse(parser.getValueAsString());
+      return SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
   }
 
   private FormattedTime() {}
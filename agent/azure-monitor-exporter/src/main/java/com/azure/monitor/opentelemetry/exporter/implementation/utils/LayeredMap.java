@@ -0,0 +1,295 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A map made of a small per-item overlay on top of defaults that are shared (not copied) between
+ * all the items that use them, e.g. the global tags and properties that are added to every
+ * telemetry item.
+ *
+ * <p>Entries in the overlay take precedence over the defaults. The defaults are serialized to json
+ * only once, and that fragment is then written as-is for every item that doesn't override any of
+ * them.
+ *
+ * <p>This class is not thread safe (same as the HashMap that it replaces).
+ */
+@JsonSerialize(using = LayeredMap.Serializer.class)
+public final class LayeredMap extends AbstractMap<String, String> {
+
+  private final Map<String, String> overlay = new HashMap<>();
+
+  // null once a default has been removed, at which point the remaining defaults are copied into
+  // the overlay
+  @Nullable private Defaults defaults;
+
+  public LayeredMap(Defaults defaults) {
+    this.defaults = defaults;
+  }
+
+  @Override
+  public int size() {
+    if (defaults == null) {
+      return overlay.size();
+    }
+    int size = overlay.size();
+    for (String key : defaults.map.keySet()) {
+      if (!overlay.containsKey(key)) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return overlay.isEmpty() && (defaults == null || defaults.map.isEmpty());
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return overlay.containsKey(key) || (defaults != null && defaults.map.containsKey(key));
+  }
+
+  @Override
+  @Nullable
+  public String get(Object key) {
+    String value = overlay.get(key);
+    if (value != null || defaults == null || overlay.containsKey(key)) {
+      return value;
+    }
+    return defaults.map.get(key);
+  }
+
+  @Override
+  @Nullable
+  public String put(String key, String value) {
+    String previous = get(key);
+    overlay.put(key, value);
+    return previous;
+  }
+
+  @Override
+  @Nullable
+  public String remove(Object key) {
+    if (defaults != null && defaults.map.containsKey(key)) {
+      for (Map.Entry<String, String> entry : defaults.map.entrySet()) {
+        overlay.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+      defaults = null;
+    }
+    return overlay.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    overlay.clear();
+    defaults = null;
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    return new EntrySet();
+  }
+
+  private boolean overridesAnyDefault() {
+    if (defaults == null) {
+      return false;
+    }
+    for (String key : overlay.keySet()) {
+      if (defaults.map.containsKey(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return LayeredMap.this.size();
+    }
+  }
+
+  // iterates over the overlay, and then over the defaults that are not overridden by the overlay
+  private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+    private final Iterator<Map.Entry<String, String>> overlayIterator =
+        overlay.entrySet().iterator();
+    private final Iterator<Map.Entry<String, String>> defaultsIterator =
+        defaults == null
+            ? Collections.<Map.Entry<String, String>>emptyIterator()
+            : defaults.map.entrySet().iterator();
+
+    @Nullable private Map.Entry<String, String> next;
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) {
+        return true;
+      }
+      if (overlayIterator.hasNext()) {
+        next = overlayIterator.next();
+        return true;
+      }
+      while (defaultsIterator.hasNext()) {
+        Map.Entry<String, String> entry = defaultsIterator.next();
+        if (!overlay.containsKey(entry.getKey())) {
+          next = entry;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Map.Entry<String, String> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<String, String> entry = Objects.requireNonNull(next);
+      next = null;
+      return entry;
+    }
+  }
+
+  /** An immutable set of defaults, along with its pre-serialized json fragment. */
+  public static final class Defaults {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final Defaults EMPTY = new Defaults(Collections.emptyMap());
+
+    private final Map<String, String> map;
+
+    // the entries as they appear inside of a json object, e.g. "a":"1","b":"2"
+    private final SerializedString fragment;
+
+    public static Defaults empty() {
+      return EMPTY;
+    }
+
+    public static Defaults of(Map<String, String> map) {
+      return map.isEmpty() ? EMPTY : new Defaults(map);
+    }
+
+    private Defaults(Map<String, String> map) {
+      this.map = Collections.unmodifiableMap(new LinkedHashMap<>(map));
+      this.fragment = new SerializedString(toJsonFragment(this.map));
+    }
+
+    public Map<String, String> getMap() {
+      return map;
+    }
+
+    public boolean isEmpty() {
+      return map.isEmpty();
+    }
+
+    private static String toJsonFragment(Map<String, String> map) {
+      StringWriter out = new StringWriter();
+      try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+        generator.writeStartObject();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+          generator.writeStringField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+      } catch (IOException e) {
+        // not expected when writing to a StringWriter
+        throw new IllegalStateException(e);
+      }
+      String json = out.toString();
+      // strip the enclosing braces
+      return json.substring(1, json.length() - 1);
+    }
+  }
+
+  public static final class Serializer extends StdSerializer<LayeredMap> {
+
+    private static final long serialVersionUID = 1L;
+
+    public Serializer() {
+      super(LayeredMap.class);
+    }
+
+    @Override
+    public void serialize(LayeredMap map, JsonGenerator generator, SerializerProvider provider)
+        throws IOException {
+      generator.writeStartObject(map);
+      if (map.defaults == null || map.overridesAnyDefault()) {
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+          writeEntry(generator, entry);
+        }
+      } else {
+        boolean wroteAny = false;
+        for (Map.Entry<String, String> entry : map.overlay.entrySet()) {
+          wroteAny |= writeEntry(generator, entry);
+        }
+        if (!map.defaults.map.isEmpty()) {
+          // the pre-serialized defaults have to go last, since the generator doesn't know about
+          // them and so wouldn't emit the separating comma before any field written after them
+          if (wroteAny) {
+            generator.writeRaw(',');
+          }
+          generator.writeRaw(map.defaults.fragment);
+        }
+      }
+      generator.writeEndObject();
+    }
+
+    // null values are skipped, same as for regular maps (the exporter excludes nulls)
+    private static boolean writeEntry(JsonGenerator generator, Map.Entry<String, String> entry)
+        throws IOException {
+      String value = entry.getValue();
+      if (value == null) {
+        return false;
+      }
+      generator.writeStringField(entry.getKey(), value);
+      return true;
+    }
+  }
+}
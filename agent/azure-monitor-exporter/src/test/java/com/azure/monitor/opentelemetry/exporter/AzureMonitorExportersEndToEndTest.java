@@ -29,6 +29,7 @@ import com.azure.core.http.HttpPipelineNextPolicy;
 import com.azure.core.http.HttpResponse;
 import com.azure.core.http.policy.HttpPipelinePolicy;
 import com.azure.core.util.FluxUtil;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricDataPoint;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.RemoteDependencyData;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
@@ -101,6 +102,40 @@ public class AzureMonitorExportersEndToEndTest extends MonitorExporterClientTest
     validateLogExporterEndToEnd();
   }
 
+  @Test
+  public void testBuildMetricExporterPointsSharingDimensions() throws Exception {
+    CountDownLatch metricExporterCountDown = new CountDownLatch(3);
+    CustomValidationPolicy customValidationPolicy =
+        new CustomValidationPolicy(metricExporterCountDown);
+    Meter meter = TestUtils.configureAzureMonitorMetricExporter(customValidationPolicy);
+    Attributes attributes =
+        Attributes.of(
+            AttributeKey.stringKey("name"), "apple", AttributeKey.stringKey("color"), "red");
+    meter.gaugeBuilder("testGaugeA").ofLongs().buildWithCallback(m -> m.record(1L, attributes));
+    meter.gaugeBuilder("testGaugeB").ofLongs().buildWithCallback(m -> m.record(2L, attributes));
+    metricExporterCountDown.await(60, TimeUnit.SECONDS);
+
+    List<TelemetryItem> actualTelemetryItems;
+    synchronized (customValidationPolicy.actualTelemetryItems) {
+      actualTelemetryItems = new ArrayList<>(customValidationPolicy.actualTelemetryItems);
+    }
+    // each point is sent as its own item, along with the dimensions that it shares with the other
+    assertThat(actualTelemetryItems).isNotEmpty();
+    assertThat(actualTelemetryItems)
+        .allSatisfy(
+            item -> {
+              assertThat(item.getInstrumentationKey()).isEqualTo(INSTRUMENTATION_KEY);
+              MetricsData data = (MetricsData) item.getData().getBaseData();
+              assertThat(data.getMetrics()).hasSize(1);
+              assertThat(data.getProperties())
+                  .containsOnly(entry("color", "red"), entry("name", "apple"));
+            });
+    assertThat(actualTelemetryItems)
+        .extracting(item -> ((MetricsData) item.getData().getBaseData()).getMetrics().get(0))
+        .extracting(MetricDataPoint::getName)
+        .contains("testGaugeA", "testGaugeB");
+  }
+
   private static void validateMetricExporterEndToEnd(String testName) throws Exception {
     List<TelemetryItem> actualTelemetryItems = generateMetrics(testName);
     assertThat(actualTelemetryItems.size()).isGreaterThan(0);
@@ -200,8 +235,10 @@ public class AzureMonitorExportersEndToEndTest extends MonitorExporterClientTest
             ObjectMapper objectMapper = createObjectMapper();
             try (MappingIterator<TelemetryItem> i =
                 objectMapper.readerFor(TelemetryItem.class).readValues(value)) {
-              while (i.hasNext()) {
-                actualTelemetryItems.add(i.next());
+              synchronized (actualTelemetryItems) {
+                while (i.hasNext()) {
+                  actualTelemetryItems.add(i.next());
+                }
               }
               countDown.countDown();
             } catch (Exception e) {
@@ -27,11 +27,14 @@ import static io.opentelemetry.sdk.metrics.data.MetricDataType.HISTOGRAM;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.LONG_GAUGE;
 import static io.opentelemetry.sdk.metrics.data.MetricDataType.LONG_SUM;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 import com.azure.monitor.opentelemetry.exporter.implementation.MetricDataMapper;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.MetricTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricDataPoint;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MetricsData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.LayeredMap;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
@@ -46,7 +49,9 @@ import io.opentelemetry.sdk.metrics.data.MetricData;
 import io.opentelemetry.sdk.metrics.data.PointData;
 import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
 import io.opentelemetry.sdk.testing.exporter.InMemoryMetricExporter;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -307,4 +312,49 @@ public class AzureMonitorMetricExporterTest {
     assertThat(metricData.getType()).isEqualTo(HISTOGRAM);
     assertThat(metricData.getName()).isEqualTo("testDoubleHistogram");
   }
+
+  @Test
+  public void testPointsSharingDimensionsAreNotPacked() {
+    InMemoryMetricReader metricReader = InMemoryMetricReader.create();
+    SdkMeterProvider meterProvider =
+        SdkMeterProvider.builder().registerMetricReader(metricReader).build();
+    Meter sharingMeter = meterProvider.get("AzureMonitorMetricExporterTest");
+
+    Attributes apple = Attributes.of(AttributeKey.stringKey("name"), "apple");
+    Attributes pear = Attributes.of(AttributeKey.stringKey("name"), "pear");
+    LongCounter counterA = sharingMeter.counterBuilder("testCounterA").build();
+    LongCounter counterB = sharingMeter.counterBuilder("testCounterB").build();
+    counterA.add(1, apple);
+    counterB.add(2, apple);
+    counterB.add(3, pear);
+
+    List<TelemetryItem> telemetryItems = new ArrayList<>();
+    new MetricDataMapper((builder, resource) -> {})
+        .map(metricReader.collectAllMetrics(), telemetryItems::add);
+
+    // ingestion only uses the first point of each item
+    assertThat(telemetryItems).hasSize(3);
+    List<MetricsData> metricsData =
+        telemetryItems.stream()
+            .map(item -> (MetricsData) item.getData().getBaseData())
+            .sorted(
+                Comparator.comparing((MetricsData data) -> data.getMetrics().get(0).getName())
+                    .thenComparing(data -> data.getProperties().get("name")))
+            .collect(Collectors.toList());
+    for (MetricsData data : metricsData) {
+      assertThat(data.getMetrics()).hasSize(1);
+      // the dimensions are shared between the items instead of being copied into each of them
+      assertThat(data.getProperties()).isInstanceOf(LayeredMap.class);
+    }
+
+    assertThat(metricsData.get(0).getMetrics().get(0).getName()).isEqualTo("testCounterA");
+    assertThat(metricsData.get(0).getMetrics().get(0).getValue()).isEqualTo(1);
+    assertThat(metricsData.get(0).getProperties()).containsOnly(entry("name", "apple"));
+    assertThat(metricsData.get(1).getMetrics().get(0).getName()).isEqualTo("testCounterB");
+    assertThat(metricsData.get(1).getMetrics().get(0).getValue()).isEqualTo(2);
+    assertThat(metricsData.get(1).getProperties()).containsOnly(entry("name", "apple"));
+    assertThat(metricsData.get(2).getMetrics().get(0).getName()).isEqualTo("testCounterB");
+    assertThat(metricsData.get(2).getMetrics().get(0).getValue()).isEqualTo(3);
+    assertThat(metricsData.get(2).getProperties()).containsOnly(entry("name", "pear"));
+  }
 }
@@ -34,10 +34,8 @@ import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorBas
 import com.azure.monitor.opentelemetry.exporter.implementation.models.MonitorDomain;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedDuration;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -45,6 +43,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.TestInfo;
 
@@ -115,7 +114,7 @@ public class MonitorExporterClientTestBase extends TestBase {
     MonitorDomain requestData =
         new RequestData()
             .setId(UUID.randomUUID().toString())
-            .setDuration(FormattedDuration.fromNanos(duration.toNanos()))
+            .setDuration(duration.toNanos())
             .setResponseCode(responseCode)
             .setSuccess(success)
             .setUrl("http://localhost:8080/")
@@ -136,7 +135,7 @@ public class MonitorExporterClientTestBase extends TestBase {
         .setInstrumentationKey(instrumentationKey)
         .setName("test-event-name")
         .setSampleRate(100.0f)
-        .setTime(time.atOffset(ZoneOffset.UTC))
+        .setTime(TimeUnit.SECONDS.toNanos(time.getEpochSecond()) + time.getNano())
         .setData(monitorBase);
   }
 
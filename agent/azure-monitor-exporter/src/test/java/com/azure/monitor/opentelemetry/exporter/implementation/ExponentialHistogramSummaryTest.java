@@ -0,0 +1,141 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ExponentialHistogramSummaryTest {
+
+  private static final double[] PERCENTILES = {0, 1, 25, 50, 75, 90, 95, 99, 99.9, 100};
+
+  @Test
+  void uniformDistribution() {
+    double[] values = new double[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i + 1;
+    }
+    for (int scale = 0; scale <= 8; scale += 2) {
+      verifyAccuracy(values, scale);
+    }
+  }
+
+  @Test
+  void logNormalDistribution() {
+    Random random = new Random(42);
+    double[] values = new double[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.exp(3 + 1.5 * random.nextGaussian());
+    }
+    for (int scale = 0; scale <= 8; scale += 2) {
+      verifyAccuracy(values, scale);
+    }
+  }
+
+  @Test
+  void negativeZeroAndPositiveValues() {
+    double[] values = new double[2001];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i - 1000;
+    }
+    verifyAccuracy(values, 4);
+  }
+
+  @Test
+  void empty() {
+    ExponentialHistogramSummary summary =
+        new ExponentialHistogramSummary(
+            4, 0, 0, Collections.emptyList(), 0, Collections.emptyList());
+
+    assertThat(summary.getTotalCount()).isEqualTo(0);
+    assertThat(summary.getPercentile(50)).isEqualTo(0);
+  }
+
+  private static void verifyAccuracy(double[] values, int scale) {
+    ExponentialHistogramSummary summary = summarize(values, scale);
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    double bound = ExponentialHistogramSummary.relativeErrorBound(scale);
+
+    assertThat(summary.getTotalCount()).isEqualTo(values.length);
+    assertWithinBound(summary.getMin(), sorted[0], bound);
+    assertWithinBound(summary.getMax(), sorted[sorted.length - 1], bound);
+    for (double percentile : PERCENTILES) {
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * sorted.length));
+      assertWithinBound(summary.getPercentile(percentile), sorted[(int) rank - 1], bound);
+    }
+  }
+
+  private static void assertWithinBound(double actual, double expected, double bound) {
+    // small epsilon for floating point rounding at the bucket boundaries
+    assertThat(actual).isCloseTo(expected, within(Math.abs(expected) * bound + 1e-9));
+  }
+
+  // same bucketing as the OpenTelemetry SDK: bucket i holds (base^i, base^(i+1)]
+  private static ExponentialHistogramSummary summarize(double[] values, int scale) {
+    int minIndex = Integer.MAX_VALUE;
+    int maxIndex = Integer.MIN_VALUE;
+    for (double value : values) {
+      if (value != 0) {
+        int index = index(Math.abs(value), scale);
+        minIndex = Math.min(minIndex, index);
+        maxIndex = Math.max(maxIndex, index);
+      }
+    }
+    List<Long> positiveCounts = new ArrayList<>();
+    List<Long> negativeCounts = new ArrayList<>();
+    for (int i = minIndex; i <= maxIndex; i++) {
+      positiveCounts.add(0L);
+      negativeCounts.add(0L);
+    }
+    long zeroCount = 0;
+    for (double value : values) {
+      if (value == 0) {
+        zeroCount++;
+        continue;
+      }
+      List<Long> counts = value > 0 ? positiveCounts : negativeCounts;
+      int i = index(Math.abs(value), scale) - minIndex;
+      counts.set(i, counts.get(i) + 1);
+    }
+    return new ExponentialHistogramSummary(
+        scale, zeroCount, minIndex, positiveCounts, minIndex, negativeCounts);
+  }
+
+  private static int index(double value, int scale) {
+    int index = (int) Math.ceil(Math.log(value) / Math.log(2) * Math.scalb(1.0, scale)) - 1;
+    // correct for floating point rounding right at the bucket boundaries
+    if (value > Math.pow(2, Math.scalb((double) index + 1, -scale))) {
+      index++;
+    } else if (value <= Math.pow(2, Math.scalb((double) index, -scale))) {
+      index--;
+    }
+    return index;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.builders.ExceptionDetailsCache;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.ContextTagKeys;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TelemetryUtil;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.logs.data.Body;
+import io.opentelemetry.sdk.logs.data.LogData;
+import io.opentelemetry.sdk.logs.data.Severity;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LogDataMapperTest {
+
+  private static final String TRACE_ID = "0123456789abcdef0123456789abcdef";
+  private static final String SPAN_ID = "0123456789abcdef";
+
+  private final LogDataMapper mapper =
+      new LogDataMapper(false, (builder, resource) -> {}, new ExceptionDetailsCache(10));
+
+  private final List<TelemetryItem> items = new ArrayList<>();
+
+  @Test
+  void shouldMapLogFromSampledInTrace() {
+    TraceState traceState =
+        TraceState.builder().put(TelemetryUtil.SAMPLING_PERCENTAGE_TRACE_STATE, "10").build();
+    LogData log = logData(spanContext(TraceFlags.getSampled(), traceState), Attributes.empty());
+
+    mapper.map(log, items::add);
+
+    assertThat(items).hasSize(1);
+    TelemetryItem item = items.get(0);
+    assertThat(item.getSampleRate()).isEqualTo(10);
+    assertThat(item.getTags())
+        .containsEntry(ContextTagKeys.AI_OPERATION_ID.toString(), TRACE_ID)
+        .containsEntry(ContextTagKeys.AI_OPERATION_PARENT_ID.toString(), SPAN_ID);
+  }
+
+  @Test
+  void shouldMapStandaloneLogWithoutSampleRate() {
+    LogData log = logData(SpanContext.getInvalid(), Attributes.empty());
+
+    mapper.map(log, items::add);
+
+    assertThat(items).hasSize(1);
+    assertThat(items.get(0).getSampleRate()).isNull();
+  }
+
+  @Test
+  void shouldNotMapLogFromSampledOutTrace() {
+    LogData log =
+        logData(
+            spanContext(TraceFlags.getDefault(), TraceState.getDefault()),
+            Attributes.of(SemanticAttributes.EXCEPTION_STACKTRACE, "java.lang.Exception"));
+
+    mapper.map(log, items::add);
+
+    assertThat(items).isEmpty();
+    // nothing is mapped, not even the exception stack trace
+    verify(log, never()).getAttributes();
+  }
+
+  private static SpanContext spanContext(TraceFlags traceFlags, TraceState traceState) {
+    return SpanContext.create(TRACE_ID, SPAN_ID, traceFlags, traceState);
+  }
+
+  private static LogData logData(SpanContext spanContext, Attributes attributes) {
+    LogData log = mock(LogData.class);
+    when(log.getSpanContext()).thenReturn(spanContext);
+    when(log.getAttributes()).thenReturn(attributes);
+    when(log.getResource()).thenReturn(Resource.empty());
+    when(log.getInstrumentationScopeInfo()).thenReturn(InstrumentationScopeInfo.create("test"));
+    when(log.getSeverity()).thenReturn(Severity.INFO);
+    when(log.getBody()).thenReturn(Body.string("hello"));
+    when(log.getEpochNanos()).thenReturn(1_000_000L);
+    return log;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.builders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryExceptionData;
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryExceptionDetails;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class ExceptionDetailsCacheTest {
+
+  @Test
+  public void testReusesParsedDetails() {
+    // given
+    ExceptionDetailsCache cache = new ExceptionDetailsCache(10);
+    String stack = toString(new IllegalStateException("test"));
+
+    // when
+    TelemetryExceptionData first = map(cache, stack);
+    // a separate but equal string, as it would be produced for a recurring exception
+    TelemetryExceptionData second = map(cache, new String(stack.toCharArray()));
+
+    // then
+    assertThat(first.getExceptions()).hasSize(1);
+    assertThat(second.getExceptions()).hasSize(1);
+    assertThat(second.getExceptions().get(0)).isSameAs(first.getExceptions().get(0));
+
+    TelemetryExceptionDetails details = first.getExceptions().get(0);
+    assertThat(details.getTypeName()).isEqualTo(IllegalStateException.class.getName());
+    assertThat(details.getMessage()).isEqualTo("test");
+    assertThat(details.getStack()).isEqualTo(stack);
+    assertThat(first.getProperties()).doesNotContainKey("StackTraceHash");
+  }
+
+  @Test
+  public void testStaysBounded() {
+    // given
+    ExceptionDetailsCache cache = new ExceptionDetailsCache(10);
+    String firstStack = toString(new IllegalStateException("0"));
+    TelemetryExceptionDetails firstDetails = map(cache, firstStack).getExceptions().get(0);
+
+    // when
+    for (int i = 1; i < 1000; i++) {
+      map(cache, toString(new IllegalStateException(Integer.toString(i))));
+      assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+
+    // then
+    assertThat(cache.size()).isEqualTo(10);
+    // the least recently used stack trace was evicted, so it is parsed again
+    assertThat(map(cache, firstStack).getExceptions().get(0)).isNotSameAs(firstDetails);
+  }
+
+  @Test
+  public void testKeepsRecentlyUsedStackTraces() {
+    // given
+    ExceptionDetailsCache cache = new ExceptionDetailsCache(2);
+    String stack1 = toString(new IllegalStateException("1"));
+    String stack2 = toString(new IllegalStateException("2"));
+    String stack3 = toString(new IllegalStateException("3"));
+    TelemetryExceptionDetails details1 = map(cache, stack1).getExceptions().get(0);
+    map(cache, stack2);
+
+    // when
+    map(cache, stack1);
+    map(cache, stack3);
+
+    // then
+    assertThat(map(cache, stack1).getExceptions().get(0)).isSameAs(details1);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSendsFullStackOncePerInterval() {
+    // given
+    FakeClock clock = new FakeClock();
+    ExceptionDetailsCache cache =
+        new ExceptionDetailsCache(10, TimeUnit.MINUTES.toNanos(1), clock);
+    String stack = toString(new IllegalStateException("test"));
+
+    // when
+    TelemetryExceptionData full = map(cache, stack);
+    clock.advance(TimeUnit.SECONDS.toNanos(59));
+    TelemetryExceptionData reference = map(cache, stack);
+    clock.advance(TimeUnit.SECONDS.toNanos(1));
+    TelemetryExceptionData fullAgain = map(cache, stack);
+
+    // then
+    String hash = full.getProperties().get("StackTraceHash");
+    assertThat(hash).isNotEmpty();
+    assertThat(reference.getProperties()).containsEntry("StackTraceHash", hash);
+    assertThat(fullAgain.getProperties()).containsEntry("StackTraceHash", hash);
+
+    assertThat(full.getExceptions().get(0).getStack()).isEqualTo(stack);
+    assertThat(fullAgain.getExceptions().get(0).getStack()).isEqualTo(stack);
+
+    TelemetryExceptionDetails referenceDetails = reference.getExceptions().get(0);
+    assertThat(referenceDetails.getTypeName()).isEqualTo(IllegalStateException.class.getName());
+    assertThat(referenceDetails.getMessage()).isEqualTo("test");
+    assertThat(referenceDetails.getStack())
+        .startsWith("java.lang.IllegalStateException: test")
+        .contains(hash)
+        .doesNotContain("\tat ");
+  }
+
+  @Test
+  public void testDifferentStackTracesHaveDifferentHashes() {
+    // given
+    ExceptionDetailsCache cache =
+        new ExceptionDetailsCache(10, TimeUnit.MINUTES.toNanos(1), new FakeClock());
+
+    // when
+    TelemetryExceptionData first = map(cache, toString(new IllegalStateException("1")));
+    TelemetryExceptionData second = map(cache, toString(new IllegalStateException("2")));
+
+    // then
+    assertThat(first.getProperties().get("StackTraceHash"))
+        .isNotEqualTo(second.getProperties().get("StackTraceHash"));
+  }
+
+  private static TelemetryExceptionData map(ExceptionDetailsCache cache, String stack) {
+    ExceptionTelemetryBuilder telemetryBuilder = ExceptionTelemetryBuilder.create();
+    cache.setExceptions(telemetryBuilder, stack);
+    return (TelemetryExceptionData) telemetryBuilder.build().getData().getBaseData();
+  }
+
+  private static String toString(Throwable t) {
+    StringWriter out = new StringWriter();
+    t.printStackTrace(new PrintWriter(out));
+    return out.toString();
+  }
+
+  private static class FakeClock implements Clock {
+
+    private long nanos;
+
+    private void advance(long nanos) {
+      this.nanos += nanos;
+    }
+
+    @Override
+    public long now() {
+      return nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import com.azure.core.util.Context;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
 import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryItemExporter;
 import com.azure.monitor.opentelemetry.exporter.implementation.pipeline.TelemetryPipeline;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.TestUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -44,7 +45,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.OffsetDateTime;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -102,7 +103,9 @@ public class IntegrationTests {
     List<TelemetryItem> telemetryItems = new ArrayList<>();
     for (int i = 0; i < 10; i++) {
       TelemetryItem item = TestUtils.createMetricTelemetry("metric" + i, i, INSTRUMENTATION_KEY);
-      item.setTime(OffsetDateTime.parse("2021-11-09T03:12:19.06Z"));
+      item.setTime(
+          FormattedTime.epochNanosFromEpochMillis(
+              Instant.parse("2021-11-09T03:12:19.06Z").toEpochMilli()));
       telemetryItems.add(item);
     }
 
@@ -0,0 +1,178 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TestUtils;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExportStatsTest {
+
+  private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
+
+  private static final int THREADS = 8;
+  private static final int BATCHES_PER_THREAD = 50;
+  private static final int ITEMS_PER_BATCH = 20;
+
+  @TempDir File tempFolder;
+
+  @Test
+  void shouldCountEncodedBatchesAndBytesUnderConcurrentLoad() throws Exception {
+    // given
+    ExportStats stats = new ExportStats();
+    TelemetryItemExporter exporter =
+        new TelemetryItemExporter(null, TelemetryPipelineListener.noop(), stats);
+    AtomicLong expectedUncompressedBytes = new AtomicLong();
+    AtomicLong expectedCompressedBytes = new AtomicLong();
+
+    // when
+    runConcurrently(
+        () -> {
+          List<ByteBuffer> byteBuffers = exporter.encode(createBatch());
+          for (ByteBuffer byteBuffer : byteBuffers) {
+            expectedCompressedBytes.addAndGet(byteBuffer.remaining());
+          }
+          expectedUncompressedBytes.addAndGet(gunzip(byteBuffers).length);
+        });
+
+    // then
+    int batches = THREADS * BATCHES_PER_THREAD;
+    assertThat(stats.getEncodedBatchCount()).isEqualTo(batches);
+    assertThat(stats.getEncodedItemCount()).isEqualTo((long) batches * ITEMS_PER_BATCH);
+    assertThat(stats.getEncodeTimeNanos()).isPositive();
+    assertThat(stats.getUncompressedBytes()).isEqualTo(expectedUncompressedBytes.get());
+    assertThat(stats.getCompressedBytes()).isEqualTo(expectedCompressedBytes.get());
+    assertThat(stats.getCompressedBytes()).isLessThan(stats.getUncompressedBytes());
+    // encoding alone does not send anything
+    assertThat(stats.getSendCount()).isZero();
+  }
+
+  @Test
+  void shouldCountSendsUnderConcurrentLoad() throws Exception {
+    // given
+    ExportStats stats = new ExportStats();
+    TelemetryFileSink fileSink =
+        new TelemetryFileSink(
+            tempFolder, 1024 * 1024, TimeUnit.SECONDS.toNanos(60), 100, Clock.getDefault());
+    TelemetryItemExporter exporter =
+        new TelemetryItemExporter(
+            new TelemetryPipeline(fileSink), TelemetryPipelineListener.noop(), stats);
+
+    // when
+    runConcurrently(() -> assertThat(exporter.send(createBatch()).isSuccess()).isTrue());
+
+    // then
+    int batches = THREADS * BATCHES_PER_THREAD;
+    assertThat(stats.getSendCount()).isEqualTo(batches);
+    assertThat(stats.getSendFailureCount()).isZero();
+    assertThat(stats.getSendTimeNanos()).isPositive();
+    assertThat(stats.getEncodedBatchCount()).isEqualTo(batches);
+  }
+
+  @Test
+  void shouldReadGaugesOnDemand() {
+    // given
+    ExportStats stats = new ExportStats();
+    AtomicInteger queueDepth = new AtomicInteger();
+
+    // when
+    stats.setQueueDepthSupplier(queueDepth::get);
+    stats.setLocalStorageBacklogFileCountSupplier(() -> 7);
+    queueDepth.set(42);
+
+    // then
+    assertThat(stats.getQueueDepth()).isEqualTo(42);
+    assertThat(stats.getLocalStorageBacklogFileCount()).isEqualTo(7);
+  }
+
+  private static void runConcurrently(ThrowingRunnable runnable) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < BATCHES_PER_THREAD; j++) {
+                    runnable.run();
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static List<TelemetryItem> createBatch() {
+    List<TelemetryItem> batch = new ArrayList<>();
+    for (int i = 0; i < ITEMS_PER_BATCH; i++) {
+      batch.add(TestUtils.createMetricTelemetry("metric" + i, i, INSTRUMENTATION_KEY));
+    }
+    return batch;
+  }
+
+  private static byte[] gunzip(List<ByteBuffer> byteBuffers) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    for (ByteBuffer byteBuffer : byteBuffers) {
+      ByteBuffer duplicate = byteBuffer.duplicate();
+      byte[] bytes = new byte[duplicate.remaining()];
+      duplicate.get(bytes);
+      compressed.write(bytes);
+    }
+    ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        uncompressed.write(buffer, 0, len);
+      }
+    }
+    return uncompressed.toByteArray();
+  }
+
+  private interface ThrowingRunnable {
+    void run() throws Exception;
+  }
+}
@@ -0,0 +1,509 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.pipeline;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.azure.monitor.opentelemetry.exporter.implementation.utils.TestUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TelemetryFileSinkTest {
+
+  private static final String INSTRUMENTATION_KEY = "00000000-0000-0000-0000-0FEEDDADBEEF";
+
+  @TempDir File tempFolder;
+
+  private final FakeClock clock = new FakeClock();
+
+  @Test
+  void shouldWriteEncodedBatchesAsNdjson() throws IOException {
+    // given
+    TelemetryFileSink fileSink = newFileSink(1024 * 1024, 100);
+    TelemetryItemExporter exporter =
+        new TelemetryItemExporter(
+            new TelemetryPipeline(fileSink), TelemetryPipelineListener.noop());
+    List<TelemetryItem> batch1 =
+        Arrays.asList(
+            TestUtils.createMetricTelemetry("metric1", 1, INSTRUMENTATION_KEY),
+            TestUtils.createMetricTelemetry("metric2", 2, INSTRUMENTATION_KEY));
+    List<TelemetryItem> batch2 =
+        Collections.singletonList(
+            TestUtils.createMetricTelemetry("metric3", 3, INSTRUMENTATION_KEY));
+
+    // when
+    assertThat(exporter.send(batch1).isSuccess()).isTrue();
+    assertThat(exporter.send(batch2).isSuccess()).isTrue();
+
+    // then
+    assertThat(listCompleteFiles()).isEmpty();
+    assertThat(listTempFiles()).hasSize(1);
+
+    fileSink.rotate();
+
+    assertThat(listTempFiles()).isEmpty();
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(1);
+    List<String> lines = readLines(files.get(0));
+    assertThat(lines).hasSize(3);
+    ObjectMapper mapper = new ObjectMapper();
+    for (int i = 0; i < lines.size(); i++) {
+      JsonNode json = mapper.readTree(lines.get(i));
+      assertThat(json.get("iKey").asText()).isEqualTo(INSTRUMENTATION_KEY);
+      assertThat(json.get("data").get("baseData").get("metrics").get(0).get("name").asText())
+          .isEqualTo("metric" + (i + 1));
+    }
+  }
+
+  @Test
+  void shouldRotateOnSize() throws IOException {
+    // given
+    // each batch is followed by a gzip member holding a newline
+    int batchSize = gzip("{\"n\":0}").length + gzip("\n").length;
+    // room for two batches, but not for three
+    TelemetryFileSink fileSink = newFileSink(2 * batchSize + batchSize / 2, 100);
+
+    // when
+    for (int i = 0; i < 5; i++) {
+      assertThat(fileSink.write(batchOf("{\"n\":" + i + "}"))).isTrue();
+    }
+    fileSink.rotate();
+
+    // then
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(3);
+    assertThat(readLines(files.get(0))).containsExactly("{\"n\":0}", "{\"n\":1}");
+    assertThat(readLines(files.get(1))).containsExactly("{\"n\":2}", "{\"n\":3}");
+    assertThat(readLines(files.get(2))).containsExactly("{\"n\":4}");
+  }
+
+  @Test
+  void shouldWriteOversizedBatchToItsOwnFile() throws IOException {
+    // given
+    TelemetryFileSink fileSink = newFileSink(1, 100);
+
+    // when
+    assertThat(fileSink.write(batchOf("{\"n\":0}"))).isTrue();
+    assertThat(fileSink.write(batchOf("{\"n\":1}"))).isTrue();
+    fileSink.rotate();
+
+    // then
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(2);
+    assertThat(readLines(files.get(0))).containsExactly("{\"n\":0}");
+    assertThat(readLines(files.get(1))).containsExactly("{\"n\":1}");
+  }
+
+  @Test
+  void shouldRotateOnTime() throws IOException {
+    // given
+    TelemetryFileSink fileSink = newFileSink(1024 * 1024, 100);
+    assertThat(fileSink.write(batchOf("{\"n\":0}"))).isTrue();
+
+    // when
+    clock.advance(TimeUnit.SECONDS.toNanos(59));
+    fileSink.rotateIfExpired();
+
+    // then
+    assertThat(listCompleteFiles()).isEmpty();
+
+    // when
+    clock.advance(TimeUnit.SECONDS.toNanos(1));
+    fileSink.rotateIfExpired();
+
+    // then
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(1);
+    assertThat(listTempFiles()).isEmpty();
+    assertThat(readLines(files.get(0))).containsExactly("{\"n\":0}");
+
+    // and the next write starts a new file, which is also rotated when written to after expiring
+    assertThat(fileSink.write(batchOf("{\"n\":1}"))).isTrue();
+    clock.advance(TimeUnit.SECONDS.toNanos(60));
+    assertThat(fileSink.write(batchOf("{\"n\":2}"))).isTrue();
+    assertThat(listCompleteFiles()).hasSize(2);
+  }
+
+  @Test
+  void shouldOnlyKeepMostRecentFiles() throws IOException {
+    // given
+    TelemetryFileSink fileSink = newFileSink(1, 3);
+
+    // when
+    for (int i = 0; i < 10; i++) {
+      clock.advance(TimeUnit.MILLISECONDS.toNanos(1));
+      assertThat(fileSink.write(batchOf("{\"n\":" + i + "}"))).isTrue();
+    }
+    fileSink.rotate();
+
+    // then
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(3);
+    assertThat(readLines(files.get(0))).containsExactly("{\"n\":7}");
+    assertThat(readLines(files.get(1))).containsExactly("{\"n\":8}");
+    assertThat(readLines(files.get(2))).containsExactly("{\"n\":9}");
+  }
+
+  @Test
+  void shouldKeepEarlierBatchesWhenWriteFails() throws IOException {
+    // given
+    List<FailingFileChannel> channels = new ArrayList<>();
+    TelemetryFileSink fileSink =
+        new TelemetryFileSink(tempFolder, 1024 * 1024, TimeUnit.SECONDS.toNanos(60), 100, clock) {
+          @Override
+          FileChannel openChannel(File file) throws IOException {
+            FailingFileChannel channel = new FailingFileChannel(super.openChannel(file));
+            channels.add(channel);
+            return channel;
+          }
+        };
+    assertThat(fileSink.write(batchOf("{\"n\":0}"))).isTrue();
+    assertThat(fileSink.write(batchOf("{\"n\":1}"))).isTrue();
+
+    // when
+    channels.get(0).failNextWrite = true;
+    boolean success = fileSink.write(batchOf("{\"n\":2}"));
+
+    // then
+    assertThat(success).isFalse();
+    assertThat(listTempFiles()).isEmpty();
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(1);
+    // without the partial batch
+    assertThat(readLines(files.get(0))).containsExactly("{\"n\":0}", "{\"n\":1}");
+
+    // and the next write starts a new file
+    assertThat(fileSink.write(batchOf("{\"n\":3}"))).isTrue();
+    fileSink.rotate();
+    files = listCompleteFiles();
+    assertThat(files).hasSize(2);
+    assertThat(readLines(files.get(1))).containsExactly("{\"n\":3}");
+  }
+
+  @Test
+  void shouldCompleteLeftoverFilesOnStartup() throws IOException {
+    // given
+    File leftover =
+        new File(
+            tempFolder, "0000000000000-00000000-000000" + TelemetryFileSink.TEMP_FILE_EXTENSION);
+    Files.write(leftover.toPath(), gzip("{\"n\":0}\n"));
+    // not written to for two rotation intervals
+    assertThat(leftover.setLastModified(clock.now() / 1_000_000 - 120_001)).isTrue();
+
+    // when
+    newFileSink(1024 * 1024, 100);
+
+    // then
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(1);
+    assertThat(listTempFiles()).isEmpty();
+    assertThat(readLines(files.get(0))).containsExactly("{\"n\":0}");
+  }
+
+  @Test
+  void shouldShareDirectoryWithOtherProcesses() throws IOException {
+    // given
+    TelemetryFileSink fileSink = newFileSink(1, 1);
+    TelemetryFileSink otherFileSink = newFileSink(1024 * 1024, 1);
+    File otherComplete =
+        new File(tempFolder, "0000000000000-00000000-000000" + TelemetryFileSink.FILE_EXTENSION);
+    Files.write(otherComplete.toPath(), gzip("{\"other\":0}\n"));
+
+    // when
+    // both write in the same millisecond
+    assertThat(otherFileSink.write(batchOf("{\"other\":1}"))).isTrue();
+    assertThat(fileSink.write(batchOf("{\"n\":0}"))).isTrue();
+    assertThat(fileSink.write(batchOf("{\"n\":1}"))).isTrue();
+    fileSink.rotate();
+
+    // then
+    // the file that the other process is still writing to is left alone
+    List<File> tempFiles = listTempFiles();
+    assertThat(tempFiles).hasSize(1);
+    // and so are the complete files of other processes
+    assertThat(otherComplete).exists();
+    List<File> files = listCompleteFiles();
+    assertThat(files).hasSize(2);
+    assertThat(readLines(files.get(1))).containsExactly("{\"n\":1}");
+
+    otherFileSink.rotate();
+    assertThat(listTempFiles()).isEmpty();
+    assertThat(readLines(new File(tempFolder, completeName(tempFiles.get(0)))))
+        .containsExactly("{\"other\":1}");
+  }
+
+  @Test
+  void shouldNotInterleaveConcurrentBatches() throws Exception {
+    // given
+    TelemetryFileSink fileSink = newFileSink(2048, Integer.MAX_VALUE);
+    int threads = 8;
+    int batchesPerThread = 200;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    // when
+    List<Future<Boolean>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                boolean success = true;
+                for (int b = 0; b < batchesPerThread; b++) {
+                  String line1 = "{\"t\":" + thread + ",\"b\":" + b + ",\"i\":0}";
+                  String line2 = "{\"t\":" + thread + ",\"b\":" + b + ",\"i\":1}";
+                  success &= fileSink.write(batchOf(line1 + "\n" + line2));
+                }
+                return success;
+              }));
+    }
+    for (Future<Boolean> future : futures) {
+      assertThat(future.get(30, TimeUnit.SECONDS)).isTrue();
+    }
+    executor.shutdown();
+    fileSink.rotate();
+
+    // then
+    List<File> files = listCompleteFiles();
+    assertThat(files.size()).isGreaterThan(1);
+    assertThat(listTempFiles()).isEmpty();
+    List<String> lines = new ArrayList<>();
+    for (File file : files) {
+      assertThat(file.length()).isLessThanOrEqualTo(2048);
+      List<String> fileLines = readLines(file);
+      // the two lines of a batch are always written next to each other
+      assertThat(fileLines.size() % 2).isZero();
+      for (int i = 0; i < fileLines.size(); i += 2) {
+        assertThat(fileLines.get(i + 1)).isEqualTo(fileLines.get(i).replace("\"i\":0", "\"i\":1"));
+      }
+      lines.addAll(fileLines);
+    }
+    List<String> expected = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      for (int b = 0; b < batchesPerThread; b++) {
+        expected.add("{\"t\":" + t + ",\"b\":" + b + ",\"i\":0}");
+        expected.add("{\"t\":" + t + ",\"b\":" + b + ",\"i\":1}");
+      }
+    }
+    assertThat(lines).containsExactlyInAnyOrderElementsOf(expected);
+  }
+
+  private TelemetryFileSink newFileSink(long maxFileSizeBytes, int maxFiles) {
+    return new TelemetryFileSink(
+        tempFolder, maxFileSizeBytes, TimeUnit.SECONDS.toNanos(60), maxFiles, clock);
+  }
+
+  private static String completeName(File tempFile) {
+    String name = tempFile.getName();
+    return name.substring(0, name.length() - ".tmp".length());
+  }
+
+  private List<File> listCompleteFiles() {
+    return listFiles(TelemetryFileSink.FILE_EXTENSION);
+  }
+
+  private List<File> listTempFiles() {
+    return listFiles(TelemetryFileSink.TEMP_FILE_EXTENSION);
+  }
+
+  private List<File> listFiles(String extension) {
+    File[] files = tempFolder.listFiles((dir, name) -> name.endsWith(extension));
+    return Arrays.stream(files)
+        .sorted((f1, f2) -> f1.getName().compareTo(f2.getName()))
+        .collect(Collectors.toList());
+  }
+
+  private static List<ByteBuffer> batchOf(String ndjson) throws IOException {
+    return Collections.singletonList(ByteBuffer.wrap(gzip(ndjson)));
+  }
+
+  private static byte[] gzip(String value) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(value.getBytes(UTF_8));
+    }
+    return out.toByteArray();
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), UTF_8))) {
+      return reader.lines().collect(Collectors.toList());
+    }
+  }
+
+  // writes part of the next buffer and then fails, when asked to
+  private static class FailingFileChannel extends FileChannel {
+
+    private final FileChannel delegate;
+    private boolean failNextWrite;
+
+    private FailingFileChannel(FileChannel delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      if (failNextWrite) {
+        failNextWrite = false;
+        ByteBuffer part = src.duplicate();
+        part.limit(part.position() + part.remaining() / 2);
+        delegate.write(part);
+        throw new IOException("No space left on device");
+      }
+      return delegate.write(src);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return delegate.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return delegate.read(dsts, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      return delegate.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return delegate.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+      delegate.position(newPosition);
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return delegate.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      delegate.truncate(size);
+      return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+      delegate.force(metaData);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+        throws IOException {
+      return delegate.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+        throws IOException {
+      return delegate.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+      return delegate.read(dst, position);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      return delegate.write(src, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return delegate.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      return delegate.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      return delegate.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      delegate.close();
+    }
+  }
+
+  private static class FakeClock implements Clock {
+
+    // starts at the current time, since it is compared with the modification time of the files
+    private long nanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+    private void advance(long nanos) {
+      this.nanos += nanos;
+    }
+
+    @Override
+    public long now() {
+      return nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+  }
+}
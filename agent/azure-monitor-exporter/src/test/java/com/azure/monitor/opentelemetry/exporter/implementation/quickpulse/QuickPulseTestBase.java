@@ -44,7 +44,6 @@ import com.azure.monitor.opentelemetry.exporter.implementation.builders.Exceptio
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.RemoteDependencyTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.builders.RequestTelemetryBuilder;
 import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
-import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedDuration;
 import com.azure.monitor.opentelemetry.exporter.implementation.utils.FormattedTime;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -120,11 +119,11 @@ public class QuickPulseTestBase extends TestBase {
     RequestTelemetryBuilder telemetryBuilder = RequestTelemetryBuilder.create();
     telemetryBuilder.addProperty("customProperty", "customValue");
     telemetryBuilder.setName(name);
-    telemetryBuilder.setDuration(FormattedDuration.fromNanos(MILLISECONDS.toNanos(durationMillis)));
+    telemetryBuilder.setDuration(MILLISECONDS.toNanos(durationMillis));
     telemetryBuilder.setResponseCode(responseCode);
     telemetryBuilder.setSuccess(success);
     telemetryBuilder.setUrl("foo");
-    telemetryBuilder.setTime(FormattedTime.offSetDateTimeFromEpochMillis(timestamp.getTime()));
+    telemetryBuilder.setTime(FormattedTime.epochNanosFromEpochMillis(timestamp.getTime()));
     return telemetryBuilder.build();
   }
 
@@ -134,7 +133,7 @@ public class QuickPulseTestBase extends TestBase {
     telemetryBuilder.addProperty("customProperty", "customValue");
     telemetryBuilder.setName(name);
     telemetryBuilder.setData(command);
-    telemetryBuilder.setDuration(FormattedDuration.fromNanos(MILLISECONDS.toNanos(durationMillis)));
+    telemetryBuilder.setDuration(MILLISECONDS.toNanos(durationMillis));
     telemetryBuilder.setSuccess(success);
     return telemetryBuilder.build();
   }
@@ -21,8 +21,12 @@
 
 package com.azure.monitor.opentelemetry.exporter.implementation.utils;
 
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.azure.monitor.opentelemetry.exporter.implementation.models.RequestData;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 
 public class FormattedDurationTest {
@@ -55,4 +59,66 @@ public class FormattedDurationTest {
     String formattedDuration = FormattedDuration.fromNanos(426570240000000L);
     assertThat(formattedDuration).isEqualTo("4.22:29:30.240000");
   }
+
+  @Test
+  public void testGetFormattedDurationZero() {
+    String formattedDuration = FormattedDuration.fromNanos(0);
+    assertThat(formattedDuration).isEqualTo("00:00:00.000000");
+  }
+
+  @Test
+  public void testGetFormattedDurationExactlyOneDay() {
+    String formattedDuration = FormattedDuration.fromNanos(DAYS.toNanos(1));
+    assertThat(formattedDuration).isEqualTo("1.00:00:00.000000");
+  }
+
+  @Test
+  public void testGetFormattedDurationJustUnderOneDay() {
+    String formattedDuration = FormattedDuration.fromNanos(DAYS.toNanos(1) - 1);
+    assertThat(formattedDuration).isEqualTo("23:59:59.999999");
+  }
+
+  @Test
+  public void testGetFormattedDurationManyDays() {
+    String formattedDuration = FormattedDuration.fromNanos(DAYS.toNanos(12345) + 1000);
+    assertThat(formattedDuration).isEqualTo("12345.00:00:00.000001");
+  }
+
+  @Test
+  public void testGetFormattedDurationMaxValue() {
+    String formattedDuration = FormattedDuration.fromNanos(Long.MAX_VALUE);
+    assertThat(formattedDuration).isEqualTo("106751.23:47:16.854775");
+  }
+
+  @Test
+  public void testGetFormattedDurationTruncatesSubMicroseconds() {
+    assertThat(FormattedDuration.fromNanos(999)).isEqualTo("00:00:00.000000");
+    assertThat(FormattedDuration.fromNanos(1999)).isEqualTo("00:00:00.000001");
+    assertThat(FormattedDuration.fromNanos(SECONDS.toNanos(1) - 1)).isEqualTo("00:00:00.999999");
+  }
+
+  @Test
+  public void testGetFormattedDurationNegative() {
+    String formattedDuration = FormattedDuration.fromNanos(-1);
+    assertThat(formattedDuration).isEqualTo("00:00:00.000000");
+  }
+
+  @Test
+  public void testDurationWrittenToJson() throws Exception {
+    RequestData requestData = new RequestData().setDuration(DAYS.toNanos(1) + 42657024);
+    ObjectMapper mapper = new ObjectMapper();
+
+    String json = mapper.writeValueAsString(requestData);
+
+    assertThat(json).contains("\"duration\":\"1.00:00:00.042657\"");
+    assertThat(mapper.readValue(json, RequestData.class).getDuration())
+        .isEqualTo(DAYS.toNanos(1) + 42657000);
+  }
+
+  @Test
+  public void testToNanos() {
+    assertThat(FormattedDuration.toNanos("00:00:00.042657")).isEqualTo(42657000);
+    assertThat(FormattedDuration.toNanos("01:11:05.702400")).isEqualTo(4265702400000L);
+    assertThat(FormattedDuration.toNanos("4.22:29:30.240000")).isEqualTo(426570240000000L);
+  }
 }
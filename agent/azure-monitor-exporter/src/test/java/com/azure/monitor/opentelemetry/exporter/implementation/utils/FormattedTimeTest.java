@@ -0,0 +1,116 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.monitor.opentelemetry.exporter.implementation.models.TelemetryItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class FormattedTimeTest {
+
+  private static final DateTimeFormatter FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSSS'Z'").withZone(ZoneOffset.UTC);
+
+  @Test
+  public void testEpoch() {
+    assertThat(FormattedTime.fromEpochNanos(0)).isEqualTo("1970-01-01T00:00:00.0000000Z");
+  }
+
+  @Test
+  public void testSubMillisecondPrecision() {
+    long epochNanos = toEpochNanos(Instant.parse("2021-11-09T03:12:19Z")) + 123456789;
+    assertThat(FormattedTime.fromEpochNanos(epochNanos))
+        .isEqualTo("2021-11-09T03:12:19.1234567Z");
+  }
+
+  @Test
+  public void testLeapYears() {
+    assertFormatted("2020-02-29T23:59:59.9999999Z");
+    assertFormatted("2000-02-29T12:00:00Z");
+    assertFormatted("2100-03-01T00:00:00Z");
+    assertFormatted("2024-12-31T23:59:59Z");
+    assertFormatted("2025-01-01T00:00:00Z");
+  }
+
+  @Test
+  public void testBeforeEpoch() {
+    assertFormatted("1969-12-31T23:59:59.5Z");
+  }
+
+  @Test
+  public void testIndependentOfDefaultTimeZone() {
+    TimeZone defaultTimeZone = TimeZone.getDefault();
+    try {
+      TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+      assertFormatted("2021-11-09T03:12:19.06Z");
+    } finally {
+      TimeZone.setDefault(defaultTimeZone);
+    }
+  }
+
+  @Test
+  public void testMatchesDateTimeFormatter() {
+    Random random = new Random(42);
+    long base = toEpochNanos(Instant.parse("2000-01-01T00:00:00Z"));
+    long range = TimeUnit.DAYS.toNanos(365L * 100);
+    long epochNanos = base;
+    for (int i = 0; i < 100000; i++) {
+      // mix of large jumps and small steps, so that the cached prefix is both reused and replaced
+      if (i % 10 == 0) {
+        epochNanos = base + (long) (random.nextDouble() * range);
+      } else {
+        epochNanos += random.nextInt(200_000_000);
+      }
+      Instant instant = Instant.ofEpochSecond(0, epochNanos);
+      assertThat(FormattedTime.fromEpochNanos(epochNanos)).isEqualTo(FORMATTER.format(instant));
+    }
+  }
+
+  @Test
+  public void testJsonRoundTrip() throws Exception {
+    long epochNanos = toEpochNanos(Instant.parse("2021-11-09T03:12:19.1234567Z"));
+    ObjectMapper mapper = new ObjectMapper();
+
+    String json = mapper.writeValueAsString(new TelemetryItem().setTime(epochNanos));
+
+    assertThat(json).contains("\"time\":\"2021-11-09T03:12:19.1234567Z\"");
+    assertThat(mapper.readValue(json, TelemetryItem.class).getTime()).isEqualTo(epochNanos);
+  }
+
+  private static void assertFormatted(String expected) {
+    Instant instant = Instant.parse(expected);
+    assertThat(FormattedTime.fromEpochNanos(toEpochNanos(instant)))
+        .isEqualTo(FORMATTER.format(instant));
+  }
+
+  private static long toEpochNanos(Instant instant) {
+    return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * ApplicationInsights-Java
+ * Copyright (c) Microsoft Corporation
+ * All rights reserved.
+ *
+ * MIT License
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the ""Software""), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED *AS IS*, WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE
+ * FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ */
+
+package com.azure.monitor.opentelemetry.exporter.implementation.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class LayeredMapTest {
+
+  // same inclusion as the exporter's object mapper
+  private static final ObjectMapper mapper =
+      new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+  private static final LayeredMap.Defaults DEFAULTS = LayeredMap.Defaults.of(defaultsMap());
+
+  @Test
+  void testBehavesLikeCopiedMap() {
+    LayeredMap layered = new LayeredMap(DEFAULTS);
+    Map<String, String> copied = new HashMap<>(defaultsMap());
+
+    assertThat(layered).isEqualTo(copied);
+    assertThat(layered.size()).isEqualTo(copied.size());
+    assertThat(layered.get("ai.cloud.role")).isEqualTo("my-role");
+
+    layered.put("custom", "value");
+    copied.put("custom", "value");
+    assertThat(layered).isEqualTo(copied);
+
+    assertThat(layered.put("ai.cloud.role", "other-role")).isEqualTo("my-role");
+    copied.put("ai.cloud.role", "other-role");
+    assertThat(layered).isEqualTo(copied);
+    assertThat(layered.size()).isEqualTo(copied.size());
+
+    assertThat(layered.remove("ai.internal.sdkVersion")).isEqualTo("java:3.4.0");
+    copied.remove("ai.internal.sdkVersion");
+    assertThat(layered).isEqualTo(copied);
+    assertThat(layered.containsKey("ai.internal.sdkVersion")).isFalse();
+
+    // the shared defaults are never modified
+    assertThat(DEFAULTS.getMap()).isEqualTo(defaultsMap());
+  }
+
+  @Test
+  void testClear() {
+    LayeredMap layered = new LayeredMap(DEFAULTS);
+    layered.put("custom", "value");
+
+    layered.clear();
+
+    assertThat(layered).isEmpty();
+    assertThat(layered.get("ai.cloud.role")).isNull();
+  }
+
+  @Test
+  void testSerializesSameAsCopiedMap() throws Exception {
+    assertSameJson(new LayeredMap(DEFAULTS), new HashMap<>(defaultsMap()));
+  }
+
+  @Test
+  void testSerializesSameAsCopiedMapWithOverlay() throws Exception {
+    LayeredMap layered = new LayeredMap(DEFAULTS);
+    Map<String, String> copied = new HashMap<>(defaultsMap());
+    layered.put("custom", "value with \"quotes\" and \n newline");
+    copied.put("custom", "value with \"quotes\" and \n newline");
+
+    assertSameJson(layered, copied);
+  }
+
+  @Test
+  void testSerializesSameAsCopiedMapWithOverriddenDefault() throws Exception {
+    LayeredMap layered = new LayeredMap(DEFAULTS);
+    Map<String, String> copied = new HashMap<>(defaultsMap());
+    layered.put("ai.cloud.role", "other-role");
+    copied.put("ai.cloud.role", "other-role");
+
+    assertSameJson(layered, copied);
+  }
+
+  @Test
+  void testSerializesSameAsCopiedMapWithNullValue() throws Exception {
+    LayeredMap layered = new LayeredMap(DEFAULTS);
+    Map<String, String> copied = new HashMap<>(defaultsMap());
+    layered.put("custom", null);
+    copied.put("custom", null);
+
+    assertSameJson(layered, copied);
+  }
+
+  @Test
+  void testSerializesSameAsCopiedMapWithEmptyDefaults() throws Exception {
+    LayeredMap layered = new LayeredMap(LayeredMap.Defaults.empty());
+    assertSameJson(layered, new HashMap<>());
+
+    layered.put("custom", "value");
+    assertSameJson(layered, Collections.singletonMap("custom", "value"));
+  }
+
+  @Test
+  void testSerializesAsMapProperty() throws Exception {
+    Holder layered = new Holder(new LayeredMap(DEFAULTS));
+    Holder copied = new Holder(new HashMap<>(defaultsMap()));
+    layered.tags.put("custom", "value");
+    copied.tags.put("custom", "value");
+
+    String json = mapper.writeValueAsString(layered);
+
+    assertThat(mapper.readTree(json)).isEqualTo(mapper.readTree(mapper.writeValueAsString(copied)));
+    assertThat(json).endsWith("\"name\":\"test\"}");
+  }
+
+  private static void assertSameJson(Map<String, String> layered, Map<String, String> copied)
+      throws Exception {
+    String json = mapper.writeValueAsString(layered);
+    assertThat(mapper.readTree(json)).isEqualTo(mapper.readTree(mapper.writeValueAsString(copied)));
+  }
+
+  private static Map<String, String> defaultsMap() {
+    Map<String, String> defaults = new HashMap<>();
+    defaults.put("ai.cloud.role", "my-role");
+    defaults.put("ai.cloud.roleInstance", "my-instance");
+    defaults.put("ai.internal.sdkVersion", "java:3.4.0");
+    return defaults;
+  }
+
+  @SuppressWarnings("unused") // serialized by jackson
+  private static class Holder {
+    public final Map<String, String> tags;
+    public final String name = "test";
+
+    private Holder(Map<String, String> tags) {
+      this.tags = tags;
+    }
+  }
+}
@@ -56,7 +56,8 @@ public class MockLogData implements LogData {
     return SpanContext.create(
         TraceId.fromLongs(10L, 2L),
         SpanId.fromLong(1),
-        TraceFlags.getDefault(),
+        // logs from sampled out traces are not exported
+        TraceFlags.getSampled(),
         TraceState.builder().build());
   }
 
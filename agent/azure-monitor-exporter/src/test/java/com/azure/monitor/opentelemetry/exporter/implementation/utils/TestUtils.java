@@ -75,7 +75,7 @@ public final class TestUtils {
     monitorBase.setBaseType("MetricData");
     monitorBase.setBaseData(data);
     telemetry.setData(monitorBase);
-    telemetry.setTime(FormattedTime.offSetDateTimeFromNow());
+    telemetry.setTime(FormattedTime.epochNanosFromNow());
 
     return telemetry;
   }
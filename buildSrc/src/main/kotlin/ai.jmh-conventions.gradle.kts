@@ -0,0 +1,28 @@
+plugins {
+  id("me.champeau.jmh")
+  id("io.morethan.jmhreport")
+}
+
+// invoke jmh on a single benchmark class like so:
+//   ./gradlew -PjmhIncludeSingleClass=BytecodeUtilImplBenchmark :agent:agent-tooling:jmh
+jmh {
+  jmhVersion.set("1.35")
+  failOnError.set(true)
+  resultFormat.set("JSON")
+
+  val jmhIncludeSingleClass: String? by project
+  if (jmhIncludeSingleClass != null) {
+    includes.add(jmhIncludeSingleClass as String)
+  }
+}
+
+jmhReport {
+  jmhResultPath = file("$buildDir/results/jmh/results.json").absolutePath
+  jmhReportOutput = file("$buildDir/results/jmh").absolutePath
+}
+
+tasks {
+  named("jmh") {
+    finalizedBy(named("jmhReport"))
+  }
+}
@@ -347,7 +347,7 @@ abstract class CoreAndFilterTests {
 
     assertThat(pv2).isNotNull();
     assertThat(pv2.getDuration()).isEqualTo(new Duration(123456));
-    assertThat(pvdEnvelope2.getTime()).isEqualTo("2010-10-10T00:00:00Z");
+    assertThat(pvdEnvelope2.getTime()).isEqualTo("2010-10-10T00:00:00.0000000Z");
     assertThat(pv2.getProperties()).containsEntry("key", "value");
     assertThat(pv2.getProperties()).containsEntry("a-prop", "a-value");
     assertThat(pv2.getProperties()).containsEntry("another-prop", "another-value");
@@ -369,7 +369,7 @@ abstract class CoreAndFilterTests {
 
     assertThat(pv3).isNotNull();
     assertThat(pv3.getDuration()).isEqualTo(new Duration(123456));
-    assertThat(pvdEnvelope3.getTime()).isEqualTo("2010-10-10T00:00:00Z");
+    assertThat(pvdEnvelope3.getTime()).isEqualTo("2010-10-10T00:00:00.0000000Z");
     assertThat(pv3.getProperties()).containsEntry("key", "value");
     assertThat(pv3.getProperties()).containsEntry("a-prop", "a-value");
     assertThat(pv3.getProperties()).containsEntry("another-prop", "another-value");